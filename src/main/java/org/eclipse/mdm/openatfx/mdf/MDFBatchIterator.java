@@ -0,0 +1,180 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pull based iterator over the records of a {@link MDFChannelGroup}, which
+ * provides the physical values of a subset of channels in columnar batches of
+ * a fixed number of records.
+ * <p>
+ * The value arrays are allocated once and overwritten by each call of
+ * {@link #next()}, so a batch must be processed before the next one is
+ * requested. Records are only read when the consumer asks for the next batch.
+ * The iteration can be stopped at any time with {@link #cancel()}, also from
+ * another thread.
+ *
+ * <pre>
+ * try (MDFBatchIterator batches = channelGroup.batches(channels, 10000)) {
+ * 	while (batches.next()) {
+ * 		double[] speed = batches.getValues(0);
+ * 		for (int i = 0; i &lt; batches.getSize(); i++) {
+ * 			...
+ * 		}
+ * 	}
+ * }
+ * </pre>
+ */
+public class MDFBatchIterator implements Closeable {
+
+	// number of records read per channel before switching to the next
+	// channel, so all channels are decoded from the same read buffer
+	private static final int STRIDE = 1024;
+
+	private final List<MDFChannel> channels;
+	private final long recordCount;
+	private final int batchSize;
+	private final double[][] values;
+
+	private long nextRecord;
+	private long firstRecord;
+	private int size;
+	private volatile boolean cancelled;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param channelGroup
+	 *            The channel group to iterate.
+	 * @param channels
+	 *            The numeric channels of the channel group to read.
+	 * @param batchSize
+	 *            The maximum number of records of a batch.
+	 */
+	public MDFBatchIterator(MDFChannelGroup channelGroup, List<MDFChannel> channels, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException(new StringBuilder().append("Invalid batch size: ").append(batchSize).toString());
+		}
+		for (MDFChannel channel : channels) {
+			if (!channelGroup.getChannels().contains(channel)) {
+				throw new IllegalArgumentException(new StringBuilder().append("Channel '").append(channel.getName()).append("' does not belong to the channel group").toString());
+			}
+			if (!channel.isNumeric()) {
+				throw new IllegalArgumentException(new StringBuilder().append("Channel '").append(channel.getName()).append("' has no numeric values").toString());
+			}
+		}
+		this.channels = Collections.unmodifiableList(new ArrayList<>(channels));
+		this.recordCount = channelGroup.getRecordCount();
+		this.batchSize = batchSize;
+		this.values = new double[channels.size()][(int) Math.min(batchSize, recordCount)];
+		this.firstRecord = -1;
+	}
+
+	/**
+	 * Reads the next batch into the value arrays.
+	 *
+	 * @return True, if a batch has been read. False, if all records have
+	 *         been read or the iteration has been cancelled.
+	 * @throws IOException
+	 *             Error reading from MDF file.
+	 */
+	public boolean next() throws IOException {
+		if (cancelled || nextRecord >= recordCount) {
+			size = 0;
+			return false;
+		}
+		int count = (int) Math.min(batchSize, recordCount - nextRecord);
+		for (int offset = 0; offset < count; offset += STRIDE) {
+			int length = Math.min(STRIDE, count - offset);
+			for (int i = 0; i < channels.size(); i++) {
+				channels.get(i).readDoubles(nextRecord + offset, length, values[i], offset);
+			}
+			if (cancelled) {
+				size = 0;
+				return false;
+			}
+		}
+		firstRecord = nextRecord;
+		size = count;
+		nextRecord += count;
+		return true;
+	}
+
+	/**
+	 * @return The channels of the batch columns.
+	 */
+	public List<MDFChannel> getChannels() {
+		return channels;
+	}
+
+	/**
+	 * @return The index of the first record of the current batch, -1 before
+	 *         the first batch.
+	 */
+	public long getFirstRecord() {
+		return firstRecord;
+	}
+
+	/**
+	 * @return The number of records of the current batch, only the first
+	 *         values of the value arrays are valid.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the physical values of a channel of the current batch.
+	 *
+	 * @param column
+	 *            The index of the channel within {@link #getChannels()}.
+	 * @return The shared value array, valid until the next call of
+	 *         {@link #next()}.
+	 */
+	public double[] getValues(int column) {
+		return values[column];
+	}
+
+	/**
+	 * Stops the iteration, {@link #next()} returns false from now on. A batch
+	 * being read by another thread is discarded.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return True, if the iteration has been cancelled.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Cancels the iteration.
+	 */
+	@Override
+	public void close() {
+		cancel();
+	}
+
+}
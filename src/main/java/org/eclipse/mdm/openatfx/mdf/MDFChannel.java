@@ -0,0 +1,120 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf;
+
+import java.io.IOException;
+
+/**
+ * A channel of a {@link MDFChannelGroup}. Value <code>i</code> of a channel is
+ * stored in record <code>i</code> of its channel group, so any range of values
+ * can be read without reading the preceding records.
+ */
+public interface MDFChannel {
+
+	/**
+	 * @return The channel name.
+	 */
+	String getName();
+
+	/**
+	 * @return True, if this is the master channel of its channel group.
+	 */
+	boolean isMaster();
+
+	/**
+	 * @return True, if the raw values are numbers that can be read with
+	 *         {@link #readDoubles(long, int)}.
+	 */
+	boolean isNumeric();
+
+	/**
+	 * @return True, if the raw values are integers that can be read with
+	 *         {@link #readLongs(long, int)}.
+	 */
+	boolean isInteger();
+
+	/**
+	 * @return The number of values.
+	 */
+	long getRecordCount();
+
+	/**
+	 * Reads a range of raw integer values, see
+	 * {@link #readLongs(long, int, long[], int)}.
+	 *
+	 * @param from
+	 *            The index of the first value.
+	 * @param count
+	 *            The number of values.
+	 * @return The values.
+	 * @throws IOException
+	 *             Error reading from MDF file or no integer channel.
+	 */
+	long[] readLongs(long from, int count) throws IOException;
+
+	/**
+	 * Reads a range of raw integer values into a caller provided array. No
+	 * conversion is applied, 64 bit unsigned values exceeding
+	 * {@link Long#MAX_VALUE} are returned as negative numbers.
+	 *
+	 * @param from
+	 *            The index of the first value.
+	 * @param count
+	 *            The number of values.
+	 * @param dst
+	 *            The array receiving the values.
+	 * @param offset
+	 *            The index within the array of the first value.
+	 * @throws IOException
+	 *             Error reading from MDF file or no integer channel.
+	 */
+	void readLongs(long from, int count, long[] dst, int offset) throws IOException;
+
+	/**
+	 * Reads a range of physical values, see
+	 * {@link #readDoubles(long, int, double[], int)}.
+	 *
+	 * @param from
+	 *            The index of the first value.
+	 * @param count
+	 *            The number of values.
+	 * @return The values.
+	 * @throws IOException
+	 *             Error reading from MDF file, no numeric channel or
+	 *             unsupported conversion.
+	 */
+	double[] readDoubles(long from, int count) throws IOException;
+
+	/**
+	 * Reads a range of physical values into a caller provided array, i.e. the
+	 * raw values with the conversion of the channel applied.
+	 *
+	 * @param from
+	 *            The index of the first value.
+	 * @param count
+	 *            The number of values.
+	 * @param dst
+	 *            The array receiving the values.
+	 * @param offset
+	 *            The index within the array of the first value.
+	 * @throws IOException
+	 *             Error reading from MDF file, no numeric channel or
+	 *             unsupported conversion.
+	 */
+	void readDoubles(long from, int count, double[] dst, int offset) throws IOException;
+
+}
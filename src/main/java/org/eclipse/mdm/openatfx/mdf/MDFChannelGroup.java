@@ -0,0 +1,72 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf;
+
+import java.util.List;
+
+/**
+ * A channel group of a {@link MDFFile}, i.e. the channels sharing the same
+ * records.
+ */
+public interface MDFChannelGroup {
+
+	/**
+	 * @return The acquisition name (MDF4) or the comment (MDF3) of the channel
+	 *         group, null if not available.
+	 */
+	String getName();
+
+	/**
+	 * @return The number of records.
+	 */
+	long getRecordCount();
+
+	/**
+	 * @return The channels in the order of the file.
+	 */
+	List<MDFChannel> getChannels();
+
+	/**
+	 * Returns a channel by its name. If several channels have the same name,
+	 * the first one is returned.
+	 *
+	 * @param name
+	 *            The channel name.
+	 * @return The channel.
+	 * @throws IllegalArgumentException
+	 *             No channel with given name exists.
+	 */
+	MDFChannel channel(String name);
+
+	/**
+	 * @return The master channel, null if the channel group has none.
+	 */
+	MDFChannel getMasterChannel();
+
+	/**
+	 * Returns an iterator over the records of this channel group, which reads
+	 * the values of the given channels in batches.
+	 *
+	 * @param channels
+	 *            The numeric channels to read.
+	 * @param batchSize
+	 *            The maximum number of records of a batch.
+	 * @return The iterator.
+	 */
+	MDFBatchIterator batches(List<MDFChannel> channels, int batchSize);
+
+}
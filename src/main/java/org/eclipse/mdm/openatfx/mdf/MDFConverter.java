@@ -21,12 +21,8 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.util.Properties;
 
 import org.apache.commons.logging.Log;
@@ -132,10 +128,10 @@ public class MDFConverter {
 			aoSession.startTransaction();
 
 			// open MDF file
-			sbc = Files.newByteChannel(mdfPath, StandardOpenOption.READ);
+			sbc = FileUtil.openMDFFile(mdfPath, properties);
 
 			// check whether MDF3 or MDF4 and write MDF content to session
-			String version = readMDFVersion(sbc);
+			String version = FileUtil.readMDFVersion(sbc);
 			if (version.startsWith("3")) {
 				org.eclipse.mdm.openatfx.mdf.mdf3.AoSessionWriter writer = new org.eclipse.mdm.openatfx.mdf.mdf3.AoSessionWriter();
 				org.eclipse.mdm.openatfx.mdf.mdf3.IDBLOCK idBlock = org.eclipse.mdm.openatfx.mdf.mdf3.IDBLOCK
@@ -228,10 +224,10 @@ public class MDFConverter {
 			aoSession.setContextString("write_mode", "database");
 
 			// open MDF file
-			sbc = Files.newByteChannel(mdfPath, StandardOpenOption.READ);
+			sbc = FileUtil.openMDFFile(mdfPath, properties);
 
 			// check whether MDF3 or MDF4
-			String version = readMDFVersion(sbc);
+			String version = FileUtil.readMDFVersion(sbc);
 			if (version.startsWith("3")) {
 				org.eclipse.mdm.openatfx.mdf.mdf3.AoSessionWriter writer = new org.eclipse.mdm.openatfx.mdf.mdf3.AoSessionWriter();
 				org.eclipse.mdm.openatfx.mdf.mdf3.IDBLOCK idBlock = org.eclipse.mdm.openatfx.mdf.mdf3.IDBLOCK
@@ -280,37 +276,6 @@ public class MDFConverter {
 		return getAoSessionForMDF(orb, mdfPath, null);
 	}
 
-	/**
-	 * Reads the MDF version string from the byte channel.
-	 *
-	 * @param sbc
-	 *            The byte channel.
-	 * @return The MDF version string.
-	 * @throws IOException
-	 *             Error reading from channel.
-	 */
-	private static String readMDFVersion(SeekableByteChannel sbc) throws IOException {
-		// read block
-		ByteBuffer bb = ByteBuffer.allocate(64);
-		bb.order(ByteOrder.LITTLE_ENDIAN);
-		sbc.position(0);
-		sbc.read(bb);
-		bb.rewind();
-
-		// CHAR 8: File identifier
-		byte[] b = new byte[8];
-		bb.get(b);
-		String fileIdent = new String(b, "ISO-8859-1");
-		if (!"MDF     ".equals(fileIdent)) {
-			throw new IOException("Invalid or corrupt MDF file: " + fileIdent);
-		}
-
-		// CHAR 8: Format identifier
-		b = new byte[8];
-		bb.get(b);
-		return new String(b, "ISO-8859-1");
-	}
-
 	/**
 	 * Copies the ATFX template file from the classpath to the target file.
 	 *
@@ -0,0 +1,116 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
+
+/**
+ * Read access to the channel values of a MDF3 or MDF4 file without an ASAM ODS
+ * session.
+ * <p>
+ * The channel values are read directly from the records of the file into
+ * primitive arrays, e.g.
+ *
+ * <pre>
+ * try (MDFFile mdfFile = MDFFile.open(path)) {
+ * 	double[] values = mdfFile.channelGroup(0).channel("speed").readDoubles(0, 1000);
+ * }
+ * </pre>
+ *
+ * A file instance is not thread safe.
+ */
+public abstract class MDFFile implements Closeable {
+
+	/**
+	 * Opens a MDF3 or MDF4 file.
+	 *
+	 * @param mdfPath
+	 *            The MDF file.
+	 * @return The opened file, has to be closed by the caller.
+	 * @throws IOException
+	 *             Error reading the file or unsupported MDF version.
+	 */
+	public static MDFFile open(Path mdfPath) throws IOException {
+		return open(mdfPath, null);
+	}
+
+	/**
+	 * Opens a MDF3 or MDF4 file. The property 'use_memory_mapped_reader' is
+	 * supported like for the conversion.
+	 *
+	 * @param mdfPath
+	 *            The MDF file.
+	 * @param properties
+	 *            The properties, may be null.
+	 * @return The opened file, has to be closed by the caller.
+	 * @throws IOException
+	 *             Error reading the file or unsupported MDF version.
+	 */
+	public static MDFFile open(Path mdfPath, Properties properties) throws IOException {
+		SeekableByteChannel sbc = FileUtil.openMDFFile(mdfPath, properties);
+		try {
+			String version = FileUtil.readMDFVersion(sbc);
+			if (version.startsWith("3")) {
+				return new org.eclipse.mdm.openatfx.mdf.mdf3.MDF3File(
+						org.eclipse.mdm.openatfx.mdf.mdf3.IDBLOCK.read(mdfPath, sbc));
+			} else if (version.startsWith("4")) {
+				return new org.eclipse.mdm.openatfx.mdf.mdf4.MDF4File(
+						org.eclipse.mdm.openatfx.mdf.mdf4.IDBLOCK.read(mdfPath, sbc));
+			}
+			throw new IOException(new StringBuilder().append("Unsupported MDF version: ").append(version).toString());
+		} catch (IOException | RuntimeException e) {
+			sbc.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the channel groups containing records, in the order of the data
+	 * groups within the file.
+	 *
+	 * @return The channel groups.
+	 */
+	public abstract List<MDFChannelGroup> getChannelGroups();
+
+	/**
+	 * Returns a channel group.
+	 *
+	 * @param index
+	 *            The zero based index within {@link #getChannelGroups()}.
+	 * @return The channel group.
+	 */
+	public MDFChannelGroup channelGroup(int index) {
+		return getChannelGroups().get(index);
+	}
+
+	/**
+	 * Closes the file and deletes the temporary files created while reading.
+	 *
+	 * @throws IOException
+	 *             Error closing the file.
+	 */
+	@Override
+	public abstract void close() throws IOException;
+
+}
@@ -18,6 +18,7 @@ package org.eclipse.mdm.openatfx.mdf.mdf3;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -30,6 +31,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -51,12 +53,21 @@ import org.asam.ods.T_ExternalReference;
 import org.asam.ods.T_LONGLONG;
 import org.eclipse.mdm.openatfx.mdf.ConvertException;
 import org.eclipse.mdm.openatfx.mdf.mdf4.MDF4Util;
-import org.eclipse.mdm.openatfx.mdf.util.BitInputStream;
+import org.eclipse.mdm.openatfx.mdf.util.BitFieldDecoder;
+import org.eclipse.mdm.openatfx.mdf.util.ExponentialConversion;
 import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
+import org.eclipse.mdm.openatfx.mdf.util.Formula;
+import org.eclipse.mdm.openatfx.mdf.util.FormulaConversion;
 import org.eclipse.mdm.openatfx.mdf.util.LookupTableHelper;
 import org.eclipse.mdm.openatfx.mdf.util.ODSHelper;
 import org.eclipse.mdm.openatfx.mdf.util.ODSInsertStatement;
 import org.eclipse.mdm.openatfx.mdf.util.ODSModelCache;
+import org.eclipse.mdm.openatfx.mdf.util.RationalConversion;
+import org.eclipse.mdm.openatfx.mdf.util.RecordAccessor;
+import org.eclipse.mdm.openatfx.mdf.util.RecordReader;
+import org.eclipse.mdm.openatfx.mdf.util.TableConversion;
+import org.eclipse.mdm.openatfx.mdf.util.ValueConversion;
+import org.eclipse.mdm.openatfx.mdf.util.ValueConversionWriter;
 
 /**
  * Main class for writing the MDF3 file content into an ATFX file
@@ -109,6 +120,22 @@ public class AoSessionWriter {
 
 	private Path customRatConfPath;
 
+	// size of the buffer used to read records in bulk
+	private int recordBufferSize = RecordReader.DEFAULT_BUFFER_SIZE;
+
+	// number of threads used to calculate the conversions which cannot be
+	// described in ODS
+	private int conversionThreads = Runtime.getRuntime().availableProcessors();
+
+	// sorts the records of unsorted data groups into a sidecar file
+	private RecordDemultiplexer recordDemultiplexer;
+	// the start positions of the sorted records of the channel groups of the
+	// current data group, key is the position of the CGBLOCK
+	private final Map<Long, Long> sortedRecords = new HashMap<>();
+	// the compiled text formulas (formula 10), key is the position of the
+	// CCBLOCK
+	private final Map<Long, Formula> formulas = new HashMap<>();
+
 	/**
 	 * Constructor.
 	 */
@@ -192,6 +219,12 @@ public class AoSessionWriter {
 			if (props.containsKey("skip_byte_stream_channels")) {
 				skipByteStreamChannels = Boolean.valueOf(props.getProperty("skip_byte_stream_channels"));
 			}
+			if (props.containsKey("record_buffer_size")) {
+				recordBufferSize = Integer.parseInt(props.getProperty("record_buffer_size"));
+			}
+			if (props.containsKey("conversion_threads")) {
+				conversionThreads = Integer.parseInt(props.getProperty("conversion_threads"));
+			}
 		}
 
 		// read and validate IDBLOCK
@@ -212,7 +245,34 @@ public class AoSessionWriter {
 		}
 
 		// write 'AoMeasurement' instance
-		writeMea(modelCache, iidTst, idBlock);
+		try {
+			writeMea(modelCache, iidTst, idBlock);
+		} catch (AoException | IOException e) {
+			// make sure file with sorted records is deleted in case of errors
+			if (recordDemultiplexer != null) {
+				try {
+					recordDemultiplexer.close();
+					Files.deleteIfExists(recordDemultiplexer.getPath());
+				} catch (IOException e2) {
+					LOG.warn(new StringBuilder().append("failed to delete file with sorted records: '").append(recordDemultiplexer.getPath()).append("'").toString(), e2);
+				}
+				recordDemultiplexer = null;
+			}
+
+			// preserve origin error
+			throw e;
+		} finally {
+			if (recordDemultiplexer != null) {
+				try {
+					recordDemultiplexer.close();
+				} catch (IOException e) {
+					LOG.warn(new StringBuilder().append("failed to close file with sorted records: '").append(recordDemultiplexer.getPath()).append("'").toString(), e);
+				}
+				recordDemultiplexer = null;
+			}
+			sortedRecords.clear();
+			formulas.clear();
+		}
 	}
 
 	/**
@@ -317,41 +377,132 @@ public class AoSessionWriter {
 		Map<String, Long> meqInstances = new HashMap<>();
 
 		while (dgBlock != null) {
-			// ONLY SORTED MDF files can be converted - check this!
-			if (dgBlock.getNoChannelGroups() > 1) {
-				throw new IOException(
-						new StringBuilder().append("Currently only 'sorted' MDF3 files are supported, found 'unsorted' data! [DGBLOCK=").append(dgBlock).append("]").toString());
-			}
-
-			// if sorted, only one channel group block is available
+			List<CGBLOCK> cgBlocks = new ArrayList<>();
 			CGBLOCK cgBlock = dgBlock.getNextCgBlock();
+			while (cgBlock != null && cgBlocks.size() < Math.max(1, dgBlock.getNoChannelGroups())) {
+				cgBlocks.add(cgBlock);
+				cgBlock = cgBlock.getNextCgBlock();
+			}
 
-			// skip channel groups having no channels (or optionally no values)
-			boolean skipNoValues = skipEmptyChannels && cgBlock.getNoOfRecords() < 1;
-			if (cgBlock != null && cgBlock.getNoOfChannels() > 0 && !skipNoValues) {
+			// an unsorted data group is sorted into the sidecar file first, then
+			// each channel group is written like a sorted one
+			if (cgBlocks.size() > 1) {
+				demultiplex(idBlock, dgBlock, cgBlocks);
+			}
 
-				// create SubMatrix instance
-				ODSInsertStatement ins = new ODSInsertStatement(modelCache, "sm");
-				ins.setStringVal("iname", "sm_" + countFormat.format(grpNo));
-				ins.setLongLongVal("mea", iidMea);
-				ins.setLongVal("rows", (int) cgBlock.getNoOfRecords());
-				// TODO: parse name:
-				// DATA_SysOpmHvES.SysOpmHvES_wElMinDrv_C_VW\ETKC:1\SingleShotGroup
-				TXBLOCK channelGroupComment = cgBlock.getChannelGroupComment();
-				if (channelGroupComment != null) {
-					ins.setStringVal("desc", channelGroupComment.getText());
+			// iterate over channel group blocks
+			for (int i = 0; i < cgBlocks.size(); i++) {
+				cgBlock = cgBlocks.get(i);
+				if (i > 0) {
+					grpNo++;
 				}
-				long iidSm = ins.execute();
 
-				// write LocalColumns
-				writeLc(modelCache, iidMea, iidSm, idBlock, dgBlock, cgBlock, meqNames, meqInstances);
+				// skip channel groups having no channels (or optionally no values)
+				boolean skipNoValues = skipEmptyChannels && cgBlock.getNoOfRecords() < 1;
+				if (cgBlock.getNoOfChannels() > 0 && !skipNoValues) {
+
+					// create SubMatrix instance
+					ODSInsertStatement ins = new ODSInsertStatement(modelCache, "sm");
+					ins.setStringVal("iname", "sm_" + countFormat.format(grpNo));
+					ins.setLongLongVal("mea", iidMea);
+					ins.setLongVal("rows", (int) cgBlock.getNoOfRecords());
+					// TODO: parse name:
+					// DATA_SysOpmHvES.SysOpmHvES_wElMinDrv_C_VW\ETKC:1\SingleShotGroup
+					TXBLOCK channelGroupComment = cgBlock.getChannelGroupComment();
+					if (channelGroupComment != null) {
+						ins.setStringVal("desc", channelGroupComment.getText());
+					}
+					long iidSm = ins.execute();
+
+					// write LocalColumns
+					writeLc(modelCache, iidMea, iidSm, idBlock, dgBlock, cgBlock, meqNames, meqInstances);
+				}
 			}
+			sortedRecords.clear();
 
 			dgBlock = dgBlock.getNextDgBlock();
 			grpNo++;
 		}
 	}
 
+	/**
+	 * Sorts the records of an unsorted data group by their record ID into the
+	 * {@link RecordDemultiplexer} sidecar file. The data group is read only
+	 * once for all its channel groups.
+	 *
+	 * @param idBlock
+	 *            The IDBLOCK.
+	 * @param dgBlock
+	 *            The unsorted data group.
+	 * @param cgBlocks
+	 *            The channel groups of the data group.
+	 * @throws IOException
+	 *             Error reading from MDF file or writing the sidecar file.
+	 */
+	private void demultiplex(IDBLOCK idBlock, DGBLOCK dgBlock, List<CGBLOCK> cgBlocks) throws IOException {
+		if (dgBlock.getNoRecordIds() < 1) {
+			throw new IOException(new StringBuilder().append("Unsorted data group without record IDs! [DGBLOCK=").append(dgBlock).append("]").toString());
+		}
+		if (recordDemultiplexer == null) {
+			recordDemultiplexer = RecordDemultiplexer.open(idBlock.getMdfFilePath());
+		}
+		sortedRecords.clear();
+		sortedRecords.putAll(recordDemultiplexer.demultiplex(idBlock.sbc, dgBlock.getLnkDataRecords(),
+				dgBlock.getNoRecordIds(), cgBlocks, recordBufferSize));
+	}
+
+	/**
+	 * Returns the file containing the records of a channel group, i.e. the
+	 * {@link RecordDemultiplexer} sidecar file if the data group is unsorted.
+	 *
+	 * @param idBlock
+	 *            The IDBLOCK.
+	 * @param cgBlock
+	 *            The CGBLOCK.
+	 * @return The file.
+	 */
+	private Path getRecordsFile(IDBLOCK idBlock, CGBLOCK cgBlock) {
+		if (sortedRecords.containsKey(cgBlock.getPos())) {
+			return recordDemultiplexer.getPath();
+		}
+		return idBlock.getMdfFilePath();
+	}
+
+	/**
+	 * Returns the channel to read the records of a channel group from, see
+	 * {@link #getRecordsFile(IDBLOCK, CGBLOCK)}.
+	 *
+	 * @param idBlock
+	 *            The IDBLOCK.
+	 * @param cgBlock
+	 *            The CGBLOCK.
+	 * @return The channel.
+	 */
+	private SeekableByteChannel getRecordsChannel(IDBLOCK idBlock, CGBLOCK cgBlock) {
+		if (sortedRecords.containsKey(cgBlock.getPos())) {
+			return recordDemultiplexer.getChannel();
+		}
+		return idBlock.sbc;
+	}
+
+	/**
+	 * Returns the position of the first record of a channel group within the
+	 * file returned by {@link #getRecordsFile(IDBLOCK, CGBLOCK)}.
+	 *
+	 * @param dgBlock
+	 *            The DGBLOCK.
+	 * @param cgBlock
+	 *            The CGBLOCK.
+	 * @return The position.
+	 */
+	private long getRecordsPos(DGBLOCK dgBlock, CGBLOCK cgBlock) {
+		Long sorted = sortedRecords.get(cgBlock.getPos());
+		if (sorted != null) {
+			return sorted;
+		}
+		return dgBlock.getLnkDataRecords();
+	}
+
 	/**
 	 * Write the instances of 'AoLocalColumn'.
 	 *
@@ -375,18 +526,22 @@ public class AoSessionWriter {
 	private void writeLc(ODSModelCache modelCache, long iidMea, long iidSm, IDBLOCK idBlock, DGBLOCK dgBlock,
 			CGBLOCK cgBlock, Map<String, Integer> meqNames, Map<String, Long> meqInstances)
 			throws AoException, IOException {
-		ApplicationElement aeMeq = modelCache.getApplicationElement("meq");
-		ApplicationElement aeLc = modelCache.getApplicationElement("lc");
-		ApplicationElement aeMea = modelCache.getApplicationElement("mea");
-		ApplicationElement aeSm = modelCache.getApplicationElement("sm");
 		ApplicationRelation relLcSm = modelCache.getApplicationRelation("lc", "sm", "LookupTable");
 
+		// the instances of each application element are inserted with a single
+		// batch per channel group
+		List<LocalColumn> localColumns = new ArrayList<>();
+		// new 'AoMeasurementQuantity' instances by name, with their row in the
+		// batch
+		Map<String, Integer> meqRows = new LinkedHashMap<>();
+		ODSInsertStatement meqIns = new ODSInsertStatement(modelCache, "meq");
+
 		// iterate over channel blocks
 		CNBLOCK cnBlock = cgBlock.getFirstCnBlock();
 		while (cnBlock != null) {
 
 			// build signal name - parse the device info
-			String meqName = readMeqName(cnBlock);
+			String meqName = cnBlock.getMeqName();
 			String device = null;
 			String[] str = meqName.split("\\\\");
 			if (str.length > 0) {
@@ -418,7 +573,8 @@ public class AoSessionWriter {
 
 			// sequence representation
 			CCBLOCK ccBlock = cnBlock.getCcBlock();
-			if (ccBlock != null && ccBlock.getFormulaIdent() == 10 && skipUnsupportedFormula) {
+			if (ccBlock != null && ccBlock.getFormulaIdent() == 10 && skipUnsupportedFormula
+					&& !isValidFormula(ccBlock)) {
 				LOG.info(new StringBuilder().append("Channel '").append(meqName).append("' with unsupported formula (10 MCD2 Text Formular) skipped: ").append(ccBlock).toString());
 				// jump to next channel
 				cnBlock = cnBlock.getNextCnBlock();
@@ -457,16 +613,16 @@ public class AoSessionWriter {
 			}
 
 			// create 'AoMeasurementQuantity' instance if not yet existing
-			Long iidMeq = meqInstances.get(meqName);
 			double[] genParams = getGenerationParameters(ccBlock);
 
-			if (iidMeq == null) {
-				ODSInsertStatement ins = new ODSInsertStatement(modelCache, "meq");
+			if (!meqInstances.containsKey(meqName) && !meqRows.containsKey(meqName)) {
+				ODSInsertStatement ins = meqIns;
+				meqRows.put(meqName, ins.next());
 				ins.setStringVal("iname", meqName);
 				ins.setStringVal("desc", cnBlock.getSignalDescription().trim());
 				boolean expandDataType = genParams != null && genParams.length > 0 && seqRep != 0 && seqRep != 7;
 				DataType dt = DataType.from_int(getDataType(expandDataType, cnBlock, ccBlock));
-				ins.setEnumVal("dt", seqRep == 1 || isRatConv2ExtComp(ccBlock) ? DataType.DT_DOUBLE.value() : dt.value());
+				ins.setEnumVal("dt", seqRep == 1 || isCalculated(ccBlock) ? DataType.DT_DOUBLE.value() : dt.value());
 				if (ccBlock != null && ccBlock.isKnownPhysValue()) {
 					ins.setDoubleVal("min", ccBlock.getMinPhysValue());
 					ins.setDoubleVal("max", ccBlock.getMaxPhysValue());
@@ -490,18 +646,43 @@ public class AoSessionWriter {
 					ins.setStringVal("SenderName", ext.getSenderName());
 				}
 				ins.setLongLongVal("mea", iidMea);
-				iidMeq = ins.execute();
-				meqInstances.put(meqName, iidMeq);
 			}
+			localColumns.add(new LocalColumn(cnBlock, ccBlock, meqName, seqRep, genParams));
+
+			// jump to next channel
+			cnBlock = cnBlock.getNextCnBlock();
+		}
+
+		// insert the 'AoMeasurementQuantity' instances
+		long[] iidMeqs = meqIns.executeBatch();
+		for (Map.Entry<String, Integer> entry : meqRows.entrySet()) {
+			meqInstances.put(entry.getKey(), iidMeqs[entry.getValue()]);
+		}
 
-			// create 'AoLocalColumn' instance
-			ODSInsertStatement ins = new ODSInsertStatement(modelCache, "lc");
+		// insert the 'AoLocalColumn' instances, columns having values are
+		// inserted one by one, so the other rows do not get a value sequence
+		ODSInsertStatement lcIns = new ODSInsertStatement(modelCache, "lc");
+		for (LocalColumn localColumn : localColumns) {
+			cnBlock = localColumn.cnBlock;
+			CCBLOCK ccBlock = localColumn.ccBlock;
+			String meqName = localColumn.meqName;
+			int seqRep = localColumn.seqRep;
+			double[] genParams = localColumn.genParams;
+			long iidMeq = meqInstances.get(meqName);
+
+			ODSInsertStatement ins;
+			if (cnBlock.getSignalDataType() == 7 || seqRep == 1) {
+				ins = new ODSInsertStatement(modelCache, "lc");
+			} else {
+				ins = lcIns;
+				localColumn.lcRow = ins.next();
+			}
 			ins.setStringVal("iname", meqName);
 			ins.setLongLongVal("sm", iidSm);
 			// sequence_representation: string channel cannot be referenced in
 			// ASAM ODS: read and write external
 			if (cnBlock.getSignalDataType() == 7) {
-				String[] stringDataValues = readStringDataValues(dgBlock, cgBlock, cnBlock);
+				String[] stringDataValues = readStringDataValues(idBlock, dgBlock, cgBlock, cnBlock);
 				ins.setEnumVal("srp", 0);
 				ins.setNameValueUnit(ODSHelper.createStringSeqNVU("val", stringDataValues));
 				LOG.info(new StringBuilder().append("Unable to reference into MDF3, extracting string values. [Channel=").append(meqName).append("]").toString());
@@ -525,7 +706,7 @@ public class AoSessionWriter {
 				// raw_datatype
 				int valueType = getValueType(cnBlock);
 				int rawDataType = getRawDataTypeForValueType(valueType, cnBlock);
-				ins.setEnumVal("rdt", isRatConv2ExtComp(ccBlock) ? DataType.DT_DOUBLE.value() : rawDataType);
+				ins.setEnumVal("rdt", isCalculated(ccBlock) ? DataType.DT_DOUBLE.value() : rawDataType);
 			}
 			// axistype
 			int axistype = cnBlock.getChannelType() == 0 ? 1 : 0;
@@ -540,34 +721,49 @@ public class AoSessionWriter {
 			ins.setLongLongVal("sm", iidSm);
 			ins.setLongLongVal("meq", iidMeq);
 
-			long iidLc = ins.execute();
+			if (localColumn.lcRow < 0) {
+				localColumn.iidLc = ins.execute();
+			}
+		}
+		long[] iidLcs = lcIns.executeBatch();
+
+		ODSInsertStatement ecIns = new ODSInsertStatement(modelCache, "ec");
+		InstanceElement ieMea = modelCache.getInstanceElement("mea", iidMea);
+		for (LocalColumn localColumn : localColumns) {
+			cnBlock = localColumn.cnBlock;
+			CCBLOCK ccBlock = localColumn.ccBlock;
+			if (localColumn.lcRow >= 0) {
+				localColumn.iidLc = iidLcs[localColumn.lcRow];
+			}
+			long iidLc = localColumn.iidLc;
 
 			// create 'AoExternalComponent' instance
 			if (cnBlock.getSignalDataType() != 7
-					&& seqRep != 1 /* skip implicit_constant */) {
-				writeEc(modelCache, iidLc, idBlock, dgBlock, cgBlock, cnBlock, ccBlock);
+					&& localColumn.seqRep != 1 /* skip implicit_constant */) {
+				addEc(ecIns, iidLc, idBlock, dgBlock, cgBlock, cnBlock, ccBlock);
 			}
 
 			// create 'AoUnit' instance if not yet existing
-			InstanceElement ieMeq = aeMeq.getInstanceById(ODSHelper.asODSLongLong(iidMeq));
+			long iidMeq = meqInstances.get(localColumn.meqName);
+			InstanceElement ieMeq = modelCache.getInstanceElement("meq", iidMeq);
 			writeUnit(ieMeq, ccBlock);
 
 			// special handling for formula 11 'ASAM-MCD2 Text Table,
 			// (COMPU_VTAB)': create lookup table
-			InstanceElement ieMea = aeMea.getInstanceById(ODSHelper.asODSLongLong(iidMea));
-			InstanceElement ieLc = aeLc.getInstanceById(ODSHelper.asODSLongLong(iidLc));
 			if (ccBlock != null && ccBlock.getFormulaIdent() == 11) {
+				InstanceElement ieLc = modelCache.getInstanceElement("lc", iidLc);
 				double[] keys = ccBlock.getKeysForTextTable();
 				String[] values = ccBlock.getValuesForTextTable();
 				// this.lookupTableHelper.createMCD2TextTableMeasurement(modelCache,
 				// ieMea, ieLc, keys, values);
 				long iidLookup = lookupTableHelper.createValueToTextTable(modelCache, ieMea, ieLc, keys, values, null);
-				InstanceElement ieSmLookup = aeSm.getInstanceById(ODSHelper.asODSLongLong(iidLookup));
-				ieLc.createRelation(relLcSm, ieSmLookup);
+				modelCache.appendRelatedInstances("sm", iidLookup, relLcSm.getInverseRelationName(),
+						new long[] { iidLc });
 			}
 			// special handling for formula 12 'ASAM-MCD2 Text Range Table
 			// (COMPU_VTAB_RANGE)': create lookup table
 			else if (ccBlock != null && ccBlock.getFormulaIdent() == 12) {
+				InstanceElement ieLc = modelCache.getInstanceElement("lc", iidLc);
 				double[] keysMin = ccBlock.getLowerRangeKeysForTextRangeTable();
 				double[] keysMax = ccBlock.getUpperRangeKeysForTextRangeTable();
 				String[] values = ccBlock.getValuesForTextRangeTable();
@@ -577,31 +773,11 @@ public class AoSessionWriter {
 				// values, defaultValue);
 				long iidLookup = lookupTableHelper.createValueRangeToTextTable(modelCache, ieMea, ieLc, keysMin,
 						keysMax, values, defaultValue);
-				InstanceElement ieSmLookup = aeSm.getInstanceById(ODSHelper.asODSLongLong(iidLookup));
-				ieLc.createRelation(relLcSm, ieSmLookup);
+				modelCache.appendRelatedInstances("sm", iidLookup, relLcSm.getInverseRelationName(),
+						new long[] { iidLc });
 			}
-
-			// jump to next channel
-			cnBlock = cnBlock.getNextCnBlock();
 		}
-	}
-
-	private static String readMeqName(CNBLOCK cnBlock) throws IOException {
-		String meqName = cnBlock.getSignalName();
-		TXBLOCK signalDisplayIdentifier = cnBlock.getSignalDisplayIdentifier();
-		TXBLOCK mcdUniqueName = cnBlock.getMcdUniqueName();
-		if (signalDisplayIdentifier != null) {
-			String signalDisplayIdentifierTxt = signalDisplayIdentifier.getText().trim();
-			if (signalDisplayIdentifierTxt.length() > 0) {
-				meqName = signalDisplayIdentifierTxt;
-			}
-		} else if (mcdUniqueName != null) {
-			String mcdUniqueNameTxt = mcdUniqueName.getText().trim();
-			if (mcdUniqueNameTxt.length() > 0) {
-				meqName = mcdUniqueNameTxt;
-			}
-		}
-		return meqName;
+		ecIns.executeBatch();
 	}
 
 	private void writeUnit(InstanceElement ieMeq, CCBLOCK ccBlock) throws AoException {
@@ -636,10 +812,11 @@ public class AoSessionWriter {
 	}
 
 	/**
-	 * Write the instances of 'AoExternalComponent'.
+	 * Adds the instance of 'AoExternalComponent' of a channel as a new row to
+	 * an insert statement.
 	 *
-	 * @param modelCache
-	 *            The application model cache.
+	 * @param ins
+	 *            The insert statement of the 'AoExternalComponent' instances.
 	 * @param iidLc
 	 *            The instance id of the 'AoLocalColumn' instance.
 	 * @param dgBlock
@@ -653,22 +830,22 @@ public class AoSessionWriter {
 	 * @throws IOException
 	 *             Error reading from MDF file.
 	 */
-	private void writeEc(ODSModelCache modelCache, long iidLc, IDBLOCK idBlock, DGBLOCK dgBlock, CGBLOCK cgBlock,
+	private void addEc(ODSInsertStatement ins, long iidLc, IDBLOCK idBlock, DGBLOCK dgBlock, CGBLOCK cgBlock,
 			CNBLOCK cnBlock, CCBLOCK ccBlock) throws AoException, IOException {
-		if (isRatConv2ExtComp(ccBlock)) {
+		if (isCalculated(ccBlock)) {
 			// NOTE: once CCBLOCK is no longer required, it should be removed
 			// from this method's signature!
-			createCustomRatConvEC(modelCache, iidLc, idBlock, dgBlock, cgBlock, cnBlock, ccBlock);
+			addCustomRatConvEC(ins, iidLc, idBlock, dgBlock, cgBlock, cnBlock, ccBlock);
 		} else {
-			ODSInsertStatement ins = new ODSInsertStatement(modelCache, "ec");
+			ins.next();
 			ins.setStringVal("iname", "ec_" + countFormat.format(1));
-			Path mdfFilePath = idBlock.getMdfFilePath().getFileName();
+			Path mdfFilePath = getRecordsFile(idBlock, cgBlock).getFileName();
 			if (mdfFilePath == null) {
 				throw new IOException("mdfFilePath must not be null");
 			}
 			ins.setStringVal("fl", mdfFilePath.toString());
 			ins.setEnumVal("vt", getValueType(cnBlock));
-			ins.setLongLongVal("so", dgBlock.getLnkDataRecords());
+			ins.setLongLongVal("so", getRecordsPos(dgBlock, cgBlock));
 			ins.setLongVal("cl", (int) cgBlock.getNoOfRecords());
 			ins.setLongVal("vb", 1);
 			int recordIdOffset = dgBlock.getNoRecordIds() > 0 ? 1 : 0;
@@ -681,7 +858,6 @@ public class AoSessionWriter {
 				ins.setShortVal("bc", (short) cnBlock.getNumberOfBits());
 			}
 			ins.setLongLongVal("lc", iidLc);
-			ins.execute();
 		}
 	}
 
@@ -951,11 +1127,20 @@ public class AoSessionWriter {
 			return 11; // DT_BYTESTR
 		}
 
-		// 0 = parametric, linear
-		// 6 = polynomial function
+		// 2 = tabular
 		// 7 = exponential function
 		// 8 = logarithmic function
-		else if (formula == 0 || formula == 1 || formula == 6 || formula == 7 || formula == 8) {
+		// 9 = ASAP2 Rational conversion formula, if calculated
+		// 10 = ASAM-MCD2 Text formula
+		else if (isCalculated(ccBlock)) {
+			// values are calculated as real (64 bit ieee-754) double values
+			return 7; // DT_DOUBLE
+		}
+
+		// 0 = parametric, linear
+		// 1 = tabular with interpolation
+		// 6 = polynomial function
+		else if (formula == 0 || formula == 1 || formula == 6) {
 			if (nb == 0 && dt == 0) {
 				return 8; // DT_LONGLONG
 			} else if (nb == 1) {
@@ -1060,6 +1245,12 @@ public class AoSessionWriter {
 		else if (formula == 1) {
 			return 7;
 		}
+		// 'tabular', 'exponential function', 'logarithmic function' and
+		// 'ASAM-MCD2 Text formula' => 'external_component', values are
+		// calculated
+		else if (formula == 2 || formula == 7 || formula == 8 || formula == 10) {
+			return 7;
+		}
 		// 'polynomial function' => 'raw_polynomial_external'
 		else if (formula == 6) {
 			return 9;
@@ -1226,33 +1417,33 @@ public class AoSessionWriter {
 		}
 	}
 
-	private static String[] readStringDataValues(DGBLOCK dgBlock, CGBLOCK cgBlock, CNBLOCK cnBlock) throws IOException {
+	private String[] readStringDataValues(IDBLOCK idBlock, DGBLOCK dgBlock, CGBLOCK cgBlock, CNBLOCK cnBlock)
+			throws IOException {
 		List<String> list = new ArrayList<>();
 
-		SeekableByteChannel sbc = dgBlock.sbc;
+		SeekableByteChannel sbc = getRecordsChannel(idBlock, cgBlock);
 		int recordIdOffset = dgBlock.getNoRecordIds() > 0 ? 1 : 0;
-		long mapStart = dgBlock.getLnkDataRecords();
+		long mapStart = getRecordsPos(dgBlock, cgBlock);
 		long mapSize = (cgBlock.getDataRecordSize() + recordIdOffset) * cgBlock.getNoOfRecords();
 		ByteBuffer bb = ByteBuffer.allocate((int) mapSize);
-		sbc.position(mapStart);
-		sbc.read(bb);
+		FileUtil.readFully(sbc, bb, mapStart);
 		bb.rewind();
 
+		// the value bytes are copied into a single reused buffer
+		int recordSize = cgBlock.getDataRecordSize() + recordIdOffset;
+		int skipBits = recordIdOffset * 8 + cnBlock.getByteOffset() * 8 + cnBlock.getNumberOfFirstBits();
+		byte[] b = new byte[(cnBlock.getNumberOfBits() + 7) >>> 3];
+		ByteBuffer valueBuffer = ByteBuffer.wrap(b);
+
 		// iterate over records
 		for (int i = 0; i < cgBlock.getNoOfRecords(); i++) {
 
-			// read record
-			byte[] record = new byte[cgBlock.getDataRecordSize() + recordIdOffset];
-			bb.get(record);
-
 			// skip first bits and read value
-			BitInputStream bis = new BitInputStream(record);
-			int skipBits = recordIdOffset * 8 + cnBlock.getByteOffset() * 8 + cnBlock.getNumberOfFirstBits();
-			bis.skip(skipBits);
-			byte[] b = bis.readByteArray(cnBlock.getNumberOfBits());
+			BitFieldDecoder.readBytes(bb, i * recordSize, skipBits, cnBlock.getNumberOfBits(), b);
+			valueBuffer.rewind();
 
 			// build string value and append
-			list.add(Mdf3Util.readChars(ByteBuffer.wrap(b), b.length));
+			list.add(Mdf3Util.readChars(valueBuffer, b.length));
 		}
 
 		return list.toArray(new String[0]);
@@ -1335,20 +1526,41 @@ public class AoSessionWriter {
 	}
 
 	/**
-	 * Write the instances of 'AoExternalComponent'.
+	 * Checks whether the physical values of a channel have to be calculated
+	 * and stored in an external file, which is the case for rational
+	 * conversions not representable as 'raw_linear_external' and for tabular
+	 * (without interpolation), exponential, logarithmic and text formula
+	 * conversions.
+	 *
+	 * @param ccBlock
+	 *            the conversion block
+	 * @return true if the values must be calculated and stored in an external
+	 *         file
+	 */
+	private static boolean isCalculated(CCBLOCK ccBlock) {
+		if (ccBlock == null) {
+			return false;
+		}
+		int formula = ccBlock.getFormulaIdent();
+		return formula == 2 || formula == 7 || formula == 8 || formula == 10 || isRatConv2ExtComp(ccBlock);
+	}
+
+	/**
+	 * Adds the instance of 'AoExternalComponent' as a new row to an insert
+	 * statement.
 	 * <p>
 	 * One instance is written for all calculated vaues.
 	 * <p>
-	 * NOTE: This is a workaround to provide channels with formula == 2. Such
-	 * channel values are described with a rational conversion, which can not be
-	 * described in ODS. Therefore the whole value sequence is calculated and
+	 * NOTE: This is a workaround to provide channels with formula == 2, 7, 8, 9
+	 * or 10. Such channel values are described with a conversion, which can not
+	 * be described in ODS. Therefore the whole value sequence is calculated and
 	 * referenced as an 'external_component'.
 	 * <p>
 	 * <b>ATTENTION: THIS IS JUST A WORKAROUND UND HAS TO BE REMOVED AS SOON AS
 	 * IT IS POSSIBLE TO DESCRIBE SUCH CHANNELS IN ODS!</b>
 	 *
-	 * @param modelCache
-	 *            The application model cache.
+	 * @param ins
+	 *            The insert statement of the 'AoExternalComponent' instances.
 	 * @param iidLc
 	 *            The instance id of the 'AoLocalColumn' instance.
 	 * @param idBlock
@@ -1367,7 +1579,7 @@ public class AoSessionWriter {
 	 *             Error reading from MDF file.
 	 */
 	@Deprecated
-	private void createCustomRatConvEC(ODSModelCache modelCache, long iidLc, IDBLOCK idBlock, DGBLOCK dgBlock,
+	private void addCustomRatConvEC(ODSInsertStatement ins, long iidLc, IDBLOCK idBlock, DGBLOCK dgBlock,
 			CGBLOCK cgBlock, CNBLOCK cnBlock, CCBLOCK ccBlock) throws AoException, IOException {
 
 		if (customRatConfPath == null) {
@@ -1383,102 +1595,73 @@ public class AoSessionWriter {
 			throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0, new StringBuilder().append("bit count '").append(bc).append("' and bit offset '").append(bo).append("' is not supported for custom ration conversion").toString());
 		}
 
-		try (SeekableByteChannel channel = Files.newByteChannel(customRatConfPath, StandardOpenOption.APPEND)) {
-			ByteBuffer writeBuffer = ByteBuffer.wrap(new byte[8]);
-			writeBuffer.order(ByteOrder.LITTLE_ENDIAN);
-			long startOffset = channel.position();
-			long count = 0;
-
-			int recordIdOffset = dgBlock.getNoRecordIds() > 0 ? 1 : 0;
-			long vo = recordIdOffset + cnBlock.getByteOffset() + cnBlock.getNumberOfFirstBits() / 8;
-			long bs = cgBlock.getDataRecordSize() + recordIdOffset;
-			long so = dgBlock.getLnkDataRecords();
-			double[] p = ccBlock.getValuePairsForFormula();
+		int recordIdOffset = dgBlock.getNoRecordIds() > 0 ? 1 : 0;
+		int vo = (int) (recordIdOffset + cnBlock.getByteOffset() + cnBlock.getNumberOfFirstBits() / 8);
+		int bs = (int) (cgBlock.getDataRecordSize() + recordIdOffset);
+		long so = getRecordsPos(dgBlock, cgBlock);
 
-			int bits = (int) cnBlock.getNumberOfBits();
-			int dt = cnBlock.getSignalDataType();
-			boolean isInteger = dt == 0 || dt == 1 || dt == 9 || dt == 10 || dt == 13 || dt == 14;
-			boolean isReal = dt == 2 || dt == 3 || dt == 11 || dt == 12 || dt == 15 || dt == 16;
-			boolean isUnsigned = dt == 0 || dt == 9 || dt == 13;
-			ByteOrder byteOrder;
-			if (dt < 4) {
-				byteOrder = idBlock.getIdByteOrder() == 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+		int bits = (int) cnBlock.getNumberOfBits();
+		int dt = cnBlock.getSignalDataType();
+		boolean isInteger = dt == 0 || dt == 1 || dt == 9 || dt == 10 || dt == 13 || dt == 14;
+		boolean isReal = dt == 2 || dt == 3 || dt == 11 || dt == 12 || dt == 15 || dt == 16;
+		boolean isUnsigned = dt == 0 || dt == 9 || dt == 13;
+		ByteOrder byteOrder;
+		if (dt < 4) {
+			byteOrder = idBlock.getIdByteOrder() == 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+		} else {
+			if (dt > 8 && dt < 13) {
+				byteOrder = ByteOrder.BIG_ENDIAN;
+			} else if (dt > 12 && dt < 17) {
+				byteOrder = ByteOrder.LITTLE_ENDIAN;
 			} else {
-				if (dt > 8 && dt < 13) {
-					byteOrder = ByteOrder.BIG_ENDIAN;
-				} else if (dt > 12 && dt < 17) {
-					byteOrder = ByteOrder.LITTLE_ENDIAN;
-				} else {
-					throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
-							"unable to determine byte order for CN block with rational conversion :" + cnBlock);
-				}
+				throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
+						"unable to determine byte order for CN block with rational conversion :" + cnBlock);
 			}
-			for (long i = 0; i < cgBlock.getNoOfRecords(); i++) {
-				idBlock.sbc.position(so + i * bs + vo);
-				ByteBuffer byteBuffer = ByteBuffer.allocate(bits / 8);
-				byteBuffer.order(byteOrder);
-				idBlock.sbc.read(byteBuffer);
-				byteBuffer.rewind();
-
-				double internal = 0;
-				if (isInteger) {
-					if (bits == 8) {
-						// isUnsigned ? short : byte
-						internal = isUnsigned ? byteBuffer.get() & 0xFF : byteBuffer.get();
-					} else if (bits == 16) {
-						// isUnsigned ? int : short
-						internal = isUnsigned ? byteBuffer.getShort() & 0xFFFF : byteBuffer.getShort();
-					} else if (bits == 32) {
-						// isUnsigned ? long : int
-						internal = isUnsigned ? byteBuffer.getInt() & 0xFFFFFFFF : byteBuffer.getInt();
-					} else if (bits == 64) {
-						if (isUnsigned) {
-							throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
-									"reading unsigned 64 bit integeres is not implemented");
-						}
-						// to support unsigned 64 bit, BigInteger has to be
-						// used -> performance costs
-						internal = byteBuffer.getLong();
-					} else {
-						String unsigned = isUnsigned ? "unsigned" : "signed";
-						throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
-								new StringBuilder().append("customized reading of '").append(bits).append("' bit '").append(unsigned).append("' intergers is not implemented")
-										.toString());
-					}
-				} else if (isReal) {
-					if (bits == 32) {
-						// ieee754 floating point
-						internal = byteBuffer.getFloat();
-					} else if (bits == 64) {
-						// ieee754 floating point
-						internal = byteBuffer.getDouble();
-					} else {
-						String unsigned = isUnsigned ? "unsigned" : "signed";
-						throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
-								new StringBuilder().append("customized reading of '").append(bits).append("' bit '").append(unsigned).append("' real is not implemented")
-										.toString());
-					}
-				} else {
-					throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
-							"given value is neither an integer nor a real number");
-				}
-				double phys = (p[0] * Math.pow(internal, 2) + p[1] * internal + p[2])
-						/ (p[3] * Math.pow(internal, 2) + p[4] * internal + p[5]);
-
-				writeBuffer.putDouble(phys);
-				writeBuffer.rewind();
-				channel.write(writeBuffer);
-				writeBuffer.rewind();
-				count++;
+		}
+		if (isInteger) {
+			if (bits == 64 && isUnsigned) {
+				// to support unsigned 64 bit, BigInteger has to be
+				// used -> performance costs
+				throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
+						"reading unsigned 64 bit integeres is not implemented");
+			} else if (bits != 8 && bits != 16 && bits != 32 && bits != 64) {
+				String unsigned = isUnsigned ? "unsigned" : "signed";
+				throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
+						new StringBuilder().append("customized reading of '").append(bits).append("' bit '").append(unsigned).append("' intergers is not implemented")
+								.toString());
 			}
-
-			if (count < 0 || count != (int) count || count * 8 > Integer.MAX_VALUE) {
-				throw new AoException(ErrorCode.AO_IMPLEMENTATION_PROBLEM, SeverityFlag.ERROR, 0,
-						"value count exceeded max supported block size supported by ODS");
+		} else if (isReal) {
+			if (bits != 32 && bits != 64) {
+				String unsigned = isUnsigned ? "unsigned" : "signed";
+				throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
+						new StringBuilder().append("customized reading of '").append(bits).append("' bit '").append(unsigned).append("' real is not implemented")
+								.toString());
 			}
+		} else {
+			throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
+					"given value is neither an integer nor a real number");
+		}
+
+		long count = cgBlock.getNoOfRecords();
+		if (count < 0 || count != (int) count || count * 8 > Integer.MAX_VALUE) {
+			throw new AoException(ErrorCode.AO_IMPLEMENTATION_PROBLEM, SeverityFlag.ERROR, 0,
+					"value count exceeded max supported block size supported by ODS");
+		}
+
+		try (FileChannel channel = FileChannel.open(customRatConfPath, StandardOpenOption.WRITE)) {
+			long startOffset = channel.size();
+
+			// the record ranges are converted in parallel, each thread reads
+			// with an own buffer
+			int threads = Math.max(1, conversionThreads);
+			RecordAccessor records = new RecordAccessor(bs, Math.max(64 * 1024, recordBufferSize / threads));
+			records.addSection(getRecordsChannel(idBlock, cgBlock), so, count * bs);
+			ValueConversionWriter writer = new ValueConversionWriter(records, threads);
+			writer.addChannel(createConversion(ccBlock, vo, byteOrder, bits, isInteger, isUnsigned), startOffset);
+			writer.write(channel);
 
 			// values have been calculated and written to an external file
-			ODSInsertStatement ins = new ODSInsertStatement(modelCache, "ec");
+			ins.next();
 			ins.setStringVal("iname", "ec_custom_rat_conv");
 			ins.setLongVal("cl", (int) count);
 			ins.setEnumVal("vt", 6); // ieeefloat8 (little endian; 11 would be
@@ -1489,8 +1672,118 @@ public class AoSessionWriter {
 			ins.setLongVal("vo", 0);
 			ins.setStringVal("fl", customRatConfPath.getFileName().toString());
 			ins.setLongLongVal("lc", iidLc);
-			ins.execute();
 		}
 	}
 
+	/**
+	 * Creates the conversion calculating the physical values of a channel.
+	 *
+	 * @param ccBlock
+	 *            The CCBLOCK with formula 2, 7, 8, 9 or 10.
+	 * @param vo
+	 *            The byte offset of the raw value within the record.
+	 * @param byteOrder
+	 *            The byte order of the raw value.
+	 * @param bits
+	 *            The number of bits of the raw value.
+	 * @param isInteger
+	 *            True, if the raw value is an integer.
+	 * @param isUnsigned
+	 *            True, if the raw value is an unsigned integer.
+	 * @return The conversion.
+	 * @throws AoException
+	 *             Invalid conversion parameters.
+	 */
+	private ValueConversion createConversion(CCBLOCK ccBlock, int vo, ByteOrder byteOrder, int bits,
+			boolean isInteger, boolean isUnsigned) throws AoException {
+		int formula = ccBlock.getFormulaIdent();
+		if (formula == 2) {
+			return new TableConversion(vo, byteOrder, bits, isInteger, isUnsigned,
+					ccBlock.getLookupConversion(isInteger));
+		} else if (formula == 7 || formula == 8) {
+			double[] p = ccBlock.getValuePairsForFormula();
+			if (p == null || p.length < 7) {
+				throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
+						"exponential and logarithmic conversions require 7 parameters: " + ccBlock);
+			}
+			try {
+				return new ExponentialConversion(vo, byteOrder, bits, isInteger, isUnsigned, formula == 8, p);
+			} catch (IllegalArgumentException e) {
+				throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
+						new StringBuilder().append(e.getMessage()).append(": ").append(ccBlock).toString());
+			}
+		} else if (formula == 10) {
+			return new FormulaConversion(vo, byteOrder, bits, isInteger, isUnsigned, getFormula(ccBlock));
+		}
+		return new RationalConversion(vo, byteOrder, bits, isInteger, isUnsigned, ccBlock.getValuePairsForFormula());
+	}
+
+	/**
+	 * Returns the compiled text formula of a conversion with formula 10. Each
+	 * formula is compiled only once, channels sharing a CCBLOCK share the
+	 * formula.
+	 *
+	 * @param ccBlock
+	 *            The CCBLOCK with formula 10.
+	 * @return The compiled formula.
+	 * @throws AoException
+	 *             The formula is not valid.
+	 */
+	private Formula getFormula(CCBLOCK ccBlock) throws AoException {
+		Formula formula = formulas.get(ccBlock.getPos());
+		if (formula == null) {
+			try {
+				formula = Formula.compile(ccBlock.getTextFormula());
+			} catch (IllegalArgumentException e) {
+				throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
+						new StringBuilder().append("unable to compile text formula: ").append(e.getMessage()).toString());
+			}
+			formulas.put(ccBlock.getPos(), formula);
+		}
+		return formula;
+	}
+
+	/**
+	 * Checks whether the text formula of a conversion with formula 10 can be
+	 * compiled.
+	 *
+	 * @param ccBlock
+	 *            The CCBLOCK with formula 10.
+	 * @return True, if the formula is valid.
+	 */
+	private boolean isValidFormula(CCBLOCK ccBlock) {
+		try {
+			getFormula(ccBlock);
+			return true;
+		} catch (AoException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * A channel written as 'AoLocalColumn', with its row in the batch insert
+	 * of its channel group.
+	 */
+	private static class LocalColumn {
+
+		private final CNBLOCK cnBlock;
+		private final CCBLOCK ccBlock;
+		private final String meqName;
+		private final int seqRep;
+		private final double[] genParams;
+
+		// row in the batch insert, -1 if inserted on its own
+		private int lcRow = -1;
+		private long iidLc;
+
+		private LocalColumn(CNBLOCK cnBlock, CCBLOCK ccBlock, String meqName, int seqRep, double[] genParams) {
+			this.cnBlock = cnBlock;
+			this.ccBlock = ccBlock;
+			this.meqName = meqName;
+			this.seqRep = seqRep;
+			this.genParams = genParams;
+		}
+
+	}
+
 }
@@ -20,6 +20,9 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
 import java.util.Arrays;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
+import org.eclipse.mdm.openatfx.mdf.util.LookupConversion;
 
 /**
  * <p>
@@ -73,7 +76,9 @@ class CCBLOCK extends BLOCK {
 	// 10), depending on the conversion formula identifier. See formula-specific
 	// block
 	// supplement.
-	private double[] valuePairsForFormula; // formula = 0,6,7,8,9
+	private double[] valuePairsForFormula; // formula = 0,1,2,6,7,8,9
+
+	private String textFormula; // formula = 10
 
 	private double[] keysForTextTable; // formula = 11
 	private String[] valuesForTextTable; // formula = 11
@@ -167,6 +172,14 @@ class CCBLOCK extends BLOCK {
 		this.valuesForTextTable = valuesForTextTable;
 	}
 
+	public String getTextFormula() {
+		return textFormula;
+	}
+
+	private void setTextFormula(String textFormula) {
+		this.textFormula = textFormula;
+	}
+
 	public String getDefaultTextForTextRangeTable() {
 		return defaultTextForTextRangeTable;
 	}
@@ -199,6 +212,36 @@ class CCBLOCK extends BLOCK {
 		this.valuesForTextRangeTable = valuesForTextRangeTable;
 	}
 
+	/**
+	 * Creates the indexed lookup conversion of a tabular conversion (formula
+	 * 1, 2, 11 and 12).
+	 *
+	 * @param integerInput
+	 *            True, if the raw values are integers. The upper limits of the
+	 *            value ranges of formula 12 belong to the range for integers
+	 *            only.
+	 * @return The conversion, null if this is not a tabular conversion.
+	 */
+	public LookupConversion getLookupConversion(boolean integerInput) {
+		if (formulaIdent == 1 || formulaIdent == 2) {
+			double[] keys = new double[valuePairsForFormula.length / 2];
+			double[] values = new double[keys.length];
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = valuePairsForFormula[2 * i];
+				values[i] = valuePairsForFormula[2 * i + 1];
+			}
+			return formulaIdent == 1 ? LookupConversion.interpolated(keys, values)
+					: LookupConversion.lower(keys, values);
+		} else if (formulaIdent == 11) {
+			return LookupConversion.valueToText(keysForTextTable, valuesForTextTable, null);
+		} else if (formulaIdent == 12) {
+			return LookupConversion.valueRangeToText(lowerRangeKeysForTextRangeTable,
+					upperRangeKeysForTextRangeTable, valuesForTextRangeTable, defaultTextForTextRangeTable,
+					integerInput);
+		}
+		return null;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -227,8 +270,7 @@ class CCBLOCK extends BLOCK {
 		// read block
 		ByteBuffer bb = ByteBuffer.allocate(46);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		sbc.position(pos);
-		sbc.read(bb);
+		FileUtil.readFully(sbc, bb, pos);
 		bb.rewind();
 
 		// CHAR 2 Block type identifier
@@ -273,29 +315,38 @@ class CCBLOCK extends BLOCK {
 		block.setNoOfValuePairsForFormula(Mdf3Util.readUInt16(bb));
 
 		int formula = block.getFormulaIdent();
-		if (formula == 0 || formula == 1 || formula == 6 || formula == 7 || formula == 8 || formula == 9) {
+		if (formula == 0 || formula == 1 || formula == 2 || formula == 6 || formula == 7 || formula == 8
+				|| formula == 9) {
+			// tables (1, 2) consist of value pairs (raw value, physical value)
+			int count = block.getNoOfValuePairsForFormula();
+			if (formula == 1 || formula == 2) {
+				count *= 2;
+			}
 
 			// read block
-			bb = ByteBuffer.allocate(block.getNoOfValuePairsForFormula() * 8);
+			bb = ByteBuffer.allocate(count * 8);
 			bb.order(ByteOrder.LITTLE_ENDIAN);
-			sbc.position(pos + 46);
-			sbc.read(bb);
+			FileUtil.readFully(sbc, bb, pos + 46);
 			bb.rewind();
 
-			double[] d = new double[block.getNoOfValuePairsForFormula()];
-			for (int i = 0; i < block.getNoOfValuePairsForFormula(); i++) {
+			double[] d = new double[count];
+			for (int i = 0; i < count; i++) {
 				d[i] = Mdf3Util.readReal(bb);
 			}
 			block.setValuePairsForFormula(d);
 		}
 
+		else if (formula == 10) {
+			// CHAR 256 ASAM-MCD2 text formula
+			block.setTextFormula(Mdf3Util.readChars(sbc, pos + 46, 256).trim());
+		}
+
 		else if (formula == 11) {
 
 			// read block
 			bb = ByteBuffer.allocate(block.getNoOfValuePairsForFormula() * 40);
 			bb.order(ByteOrder.LITTLE_ENDIAN);
-			sbc.position(pos + 46);
-			sbc.read(bb);
+			FileUtil.readFully(sbc, bb, pos + 46);
 			bb.rewind();
 
 			double[] keys = new double[block.getNoOfValuePairsForFormula()];
@@ -314,8 +365,7 @@ class CCBLOCK extends BLOCK {
 			// read block
 			bb = ByteBuffer.allocate(block.getNoOfValuePairsForFormula() * 20);
 			bb.order(ByteOrder.LITTLE_ENDIAN);
-			sbc.position(pos + 46);
-			sbc.read(bb);
+			FileUtil.readFully(sbc, bb, pos + 46);
 			bb.rewind();
 
 			// REAL 1 Undefined (to be ignored)
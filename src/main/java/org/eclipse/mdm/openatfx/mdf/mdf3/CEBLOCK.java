@@ -19,6 +19,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
 
 /**
  * <p>
@@ -103,8 +105,7 @@ class CEBLOCK extends BLOCK {
 		// read block
 		ByteBuffer bb = ByteBuffer.allocate(6);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		sbc.position(pos);
-		sbc.read(bb);
+		FileUtil.readFully(sbc, bb, pos);
 		bb.rewind();
 
 		// CHAR 2 Block type identifier
@@ -19,6 +19,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
 
 /**
  * CEBLOCK extension type DIM
@@ -109,8 +111,7 @@ class CEBLOCK_DIM extends BLOCK {
 		// read block
 		ByteBuffer bb = ByteBuffer.allocate(118);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		sbc.position(pos);
-		sbc.read(bb);
+		FileUtil.readFully(sbc, bb, pos);
 		bb.rewind();
 
 		// UINT16 1 Number of module
@@ -19,6 +19,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
 
 /**
  * CEBLOCK extension type Vector CAN
@@ -106,8 +108,7 @@ class CEBLOCK_VectorCAN extends BLOCK {
 		// read block
 		ByteBuffer bb = ByteBuffer.allocate(80);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		sbc.position(pos);
-		sbc.read(bb);
+		FileUtil.readFully(sbc, bb, pos);
 		bb.rewind();
 
 		// UINT32 1 Identifier of CAN message
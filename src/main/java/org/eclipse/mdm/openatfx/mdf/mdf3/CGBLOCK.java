@@ -19,6 +19,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
 
 /**
  * <p>
@@ -183,8 +185,7 @@ class CGBLOCK extends BLOCK {
 		// read block header
 		ByteBuffer bb = ByteBuffer.allocate(4);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		sbc.position(pos);
-		sbc.read(bb);
+		FileUtil.readFully(sbc, bb, pos);
 		bb.rewind();
 
 		// CHAR 2 Block type identifier
@@ -199,8 +200,7 @@ class CGBLOCK extends BLOCK {
 		// read block
 		bb = ByteBuffer.allocate(block.getLength() - 4);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		sbc.position(pos + 4);
-		sbc.read(bb);
+		FileUtil.readFully(sbc, bb, pos + 4);
 		bb.rewind();
 
 		// LINK 1 Pointer to next data Channel group block (CGBLOCK) (NIL
@@ -19,6 +19,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
 
 /**
  * <p>
@@ -321,6 +323,32 @@ class CNBLOCK extends BLOCK {
 		return null;
 	}
 
+	/**
+	 * Returns the name of the measurement quantity of this channel: the signal
+	 * display identifier, the MCD unique name or the signal name.
+	 *
+	 * @return The name.
+	 * @throws IOException
+	 *             Error reading from MDF file.
+	 */
+	public String getMeqName() throws IOException {
+		String meqName = getSignalName();
+		TXBLOCK signalDisplayIdentifier = getSignalDisplayIdentifier();
+		TXBLOCK mcdUniqueName = getMcdUniqueName();
+		if (signalDisplayIdentifier != null) {
+			String signalDisplayIdentifierTxt = signalDisplayIdentifier.getText().trim();
+			if (signalDisplayIdentifierTxt.length() > 0) {
+				meqName = signalDisplayIdentifierTxt;
+			}
+		} else if (mcdUniqueName != null) {
+			String mcdUniqueNameTxt = mcdUniqueName.getText().trim();
+			if (mcdUniqueNameTxt.length() > 0) {
+				meqName = mcdUniqueNameTxt;
+			}
+		}
+		return meqName;
+	}
+
 	/**
 	 * Reads a CNBLOCK from the channel starting at pos
 	 *
@@ -338,8 +366,7 @@ class CNBLOCK extends BLOCK {
 		// read block
 		ByteBuffer bb = ByteBuffer.allocate(228);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		sbc.position(pos);
-		sbc.read(bb);
+		FileUtil.readFully(sbc, bb, pos);
 		bb.rewind();
 
 		// CHAR 2 Block type identifier
@@ -20,6 +20,8 @@ import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
 
 /**
  * <p>
@@ -259,8 +261,7 @@ class HDBLOCK extends BLOCK {
 		// read block header
 		ByteBuffer bb = ByteBuffer.allocate(4);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		sbc.position(64);
-		sbc.read(bb);
+		FileUtil.readFully(sbc, bb, 64);
 		bb.rewind();
 
 		// CHAR 2 Block type identifier
@@ -275,8 +276,7 @@ class HDBLOCK extends BLOCK {
 		// read block header
 		bb = ByteBuffer.allocate(block.getLength() - 4);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		sbc.position(68);
-		sbc.read(bb);
+		FileUtil.readFully(sbc, bb, 68);
 		bb.rewind();
 
 		// LINK 1 Pointer to the first file group block (DGBLOCK)
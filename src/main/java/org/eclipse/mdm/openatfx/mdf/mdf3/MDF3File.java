@@ -0,0 +1,392 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf3;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.mdm.openatfx.mdf.MDFBatchIterator;
+import org.eclipse.mdm.openatfx.mdf.MDFChannel;
+import org.eclipse.mdm.openatfx.mdf.MDFChannelGroup;
+import org.eclipse.mdm.openatfx.mdf.MDFFile;
+import org.eclipse.mdm.openatfx.mdf.util.LookupConversion;
+import org.eclipse.mdm.openatfx.mdf.util.NumericFieldReader;
+import org.eclipse.mdm.openatfx.mdf.util.RecordAccessor;
+
+/**
+ * {@link MDFFile} implementation for MDF3 files.
+ * <p>
+ * The records of unsorted data groups are copied into a temporary file on
+ * first access, which is deleted when the file is closed.
+ */
+public class MDF3File extends MDFFile {
+
+	private static final Log LOG = LogFactory.getLog(MDF3File.class);
+
+	// size of the read buffer of a channel group
+	private static final int READ_BUFFER_SIZE = 1024 * 1024;
+
+	private final IDBLOCK idBlock;
+	private final List<MDFChannelGroup> channelGroups;
+
+	// sorts the records of unsorted data groups into a temporary file
+	private RecordDemultiplexer recordDemultiplexer;
+	// the start positions of the records of the channel groups of unsorted
+	// data groups, key is the position of the CGBLOCK
+	private final Map<Long, Long> sortedRecords = new HashMap<>();
+
+	/**
+	 * Constructor, loads the channel metadata.
+	 *
+	 * @param idBlock
+	 *            The IDBLOCK of the opened MDF file. The file is closed by
+	 *            {@link #close()}.
+	 * @throws IOException
+	 *             Error reading from MDF file.
+	 */
+	public MDF3File(IDBLOCK idBlock) throws IOException {
+		this.idBlock = idBlock;
+
+		List<MDFChannelGroup> groups = new ArrayList<>();
+		DGBLOCK dgBlock = idBlock.getHDBlock().getFirstFileGroup();
+		while (dgBlock != null) {
+			List<CGBLOCK> cgBlocks = new ArrayList<>();
+			CGBLOCK cgBlock = dgBlock.getNextCgBlock();
+			while (cgBlock != null && cgBlocks.size() < Math.max(1, dgBlock.getNoChannelGroups())) {
+				cgBlocks.add(cgBlock);
+				cgBlock = cgBlock.getNextCgBlock();
+			}
+			for (CGBLOCK block : cgBlocks) {
+				groups.add(new ChannelGroup(dgBlock, cgBlocks, block));
+			}
+			dgBlock = dgBlock.getNextDgBlock();
+		}
+		this.channelGroups = Collections.unmodifiableList(groups);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<MDFChannelGroup> getChannelGroups() {
+		return channelGroups;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (recordDemultiplexer != null) {
+				try {
+					recordDemultiplexer.close();
+					Files.deleteIfExists(recordDemultiplexer.getPath());
+				} catch (IOException e) {
+					LOG.warn(new StringBuilder().append("failed to delete file with sorted records: '").append(recordDemultiplexer.getPath()).append("'").toString(), e);
+				}
+				recordDemultiplexer = null;
+			}
+			sortedRecords.clear();
+		} finally {
+			idBlock.sbc.close();
+		}
+	}
+
+	/**
+	 * A channel group, the records are located on first read.
+	 */
+	private class ChannelGroup implements MDFChannelGroup {
+
+		private final DGBLOCK dgBlock;
+		private final List<CGBLOCK> cgBlocks;
+		private final CGBLOCK cgBlock;
+		private final String name;
+		private final List<MDFChannel> channels;
+		private final Map<String, MDFChannel> channelsByName;
+		private final MDFChannel masterChannel;
+
+		private RecordAccessor records;
+
+		private ChannelGroup(DGBLOCK dgBlock, List<CGBLOCK> cgBlocks, CGBLOCK cgBlock) throws IOException {
+			this.dgBlock = dgBlock;
+			this.cgBlocks = cgBlocks;
+			this.cgBlock = cgBlock;
+			TXBLOCK comment = cgBlock.getChannelGroupComment();
+			this.name = comment == null ? null : comment.getText();
+
+			List<MDFChannel> list = new ArrayList<>();
+			Map<String, MDFChannel> map = new LinkedHashMap<>();
+			MDFChannel master = null;
+			CNBLOCK cnBlock = cgBlock.getFirstCnBlock();
+			while (cnBlock != null) {
+				Channel channel = new Channel(this, cnBlock);
+				list.add(channel);
+				if (!map.containsKey(channel.getName())) {
+					map.put(channel.getName(), channel);
+				}
+				if (master == null && channel.isMaster()) {
+					master = channel;
+				}
+				cnBlock = cnBlock.getNextCnBlock();
+			}
+			this.channels = Collections.unmodifiableList(list);
+			this.channelsByName = map;
+			this.masterChannel = master;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public long getRecordCount() {
+			return cgBlock.getNoOfRecords();
+		}
+
+		@Override
+		public List<MDFChannel> getChannels() {
+			return channels;
+		}
+
+		@Override
+		public MDFChannel channel(String name) {
+			MDFChannel channel = channelsByName.get(name);
+			if (channel == null) {
+				throw new IllegalArgumentException(new StringBuilder().append("Channel '").append(name).append("' not found").toString());
+			}
+			return channel;
+		}
+
+		@Override
+		public MDFChannel getMasterChannel() {
+			return masterChannel;
+		}
+
+		@Override
+		public MDFBatchIterator batches(List<MDFChannel> channels, int batchSize) {
+			return new MDFBatchIterator(this, channels, batchSize);
+		}
+
+		private int getRecordIdOffset() {
+			return dgBlock.getNoRecordIds() > 0 ? 1 : 0;
+		}
+
+		/**
+		 * Returns the records, an unsorted data group is sorted by the
+		 * {@link RecordDemultiplexer} on first access. The sorted records keep
+		 * the record ID before the record only.
+		 */
+		private RecordAccessor getRecords() throws IOException {
+			if (records == null) {
+				SeekableByteChannel channel = idBlock.sbc;
+				long pos = dgBlock.getLnkDataRecords();
+				int recordSize = cgBlock.getDataRecordSize() + dgBlock.getNoRecordIds();
+				if (cgBlocks.size() > 1) {
+					if (!sortedRecords.containsKey(cgBlock.getPos())) {
+						if (dgBlock.getNoRecordIds() < 1) {
+							throw new IOException(new StringBuilder().append("Unsorted data group without record IDs! [DGBLOCK=").append(dgBlock).append("]").toString());
+						}
+						if (recordDemultiplexer == null) {
+							recordDemultiplexer = RecordDemultiplexer.openTemp();
+						}
+						sortedRecords.putAll(recordDemultiplexer.demultiplex(idBlock.sbc, pos, dgBlock.getNoRecordIds(),
+								cgBlocks, READ_BUFFER_SIZE));
+					}
+					channel = recordDemultiplexer.getChannel();
+					pos = sortedRecords.get(cgBlock.getPos());
+					recordSize = cgBlock.getDataRecordSize() + 1;
+				}
+				RecordAccessor accessor = new RecordAccessor(recordSize, READ_BUFFER_SIZE);
+				if (pos > 0) {
+					accessor.addSection(channel, pos, cgBlock.getNoOfRecords() * recordSize);
+				}
+				records = accessor;
+			}
+			return records;
+		}
+
+		@Override
+		public String toString() {
+			return new StringBuilder().append("ChannelGroup [name=").append(name).append(", cgBlock=").append(cgBlock).append("]").toString();
+		}
+
+	}
+
+	/**
+	 * A channel of a channel group.
+	 */
+	private class Channel implements MDFChannel {
+
+		private final ChannelGroup channelGroup;
+		private final CNBLOCK cnBlock;
+		private final String name;
+
+		private CCBLOCK ccBlock;
+		private boolean ccBlockRead;
+		private NumericFieldReader values;
+		private LookupConversion lookup;
+
+		private Channel(ChannelGroup channelGroup, CNBLOCK cnBlock) throws IOException {
+			this.channelGroup = channelGroup;
+			this.cnBlock = cnBlock;
+			this.name = cnBlock.getMeqName();
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public boolean isMaster() {
+			return cnBlock.getChannelType() == 1;
+		}
+
+		@Override
+		public boolean isNumeric() {
+			int dt = cnBlock.getSignalDataType();
+			int nb = cnBlock.getNumberOfBits();
+			return isIntegerType(dt) && nb >= 1 && nb <= 64 || isFloatType(dt) && (nb == 32 || nb == 64);
+		}
+
+		@Override
+		public boolean isInteger() {
+			return isNumeric() && isIntegerType(cnBlock.getSignalDataType());
+		}
+
+		// 0, 9, 13 = unsigned integer, 1, 10, 14 = signed integer
+		private boolean isIntegerType(int dt) {
+			return dt == 0 || dt == 1 || dt == 9 || dt == 10 || dt == 13 || dt == 14;
+		}
+
+		// 2, 3, 11, 12, 15, 16 = IEEE 754 floating-point
+		private boolean isFloatType(int dt) {
+			return dt == 2 || dt == 3 || dt == 11 || dt == 12 || dt == 15 || dt == 16;
+		}
+
+		@Override
+		public long getRecordCount() {
+			return channelGroup.getRecordCount();
+		}
+
+		@Override
+		public long[] readLongs(long from, int count) throws IOException {
+			long[] values = new long[count];
+			readLongs(from, count, values, 0);
+			return values;
+		}
+
+		@Override
+		public void readLongs(long from, int count, long[] dst, int offset) throws IOException {
+			if (!isInteger()) {
+				throw new IOException(new StringBuilder().append("Channel '").append(name).append("' has no integer values").toString());
+			}
+			getValues().readLongs(from, count, dst, offset);
+		}
+
+		@Override
+		public double[] readDoubles(long from, int count) throws IOException {
+			double[] values = new double[count];
+			readDoubles(from, count, values, 0);
+			return values;
+		}
+
+		@Override
+		public void readDoubles(long from, int count, double[] dst, int offset) throws IOException {
+			if (!isNumeric()) {
+				throw new IOException(new StringBuilder().append("Channel '").append(name).append("' has no numeric values").toString());
+			}
+			if (!ccBlockRead) {
+				ccBlock = cnBlock.getCcBlock();
+				ccBlockRead = true;
+			}
+			int formula = ccBlock == null ? 65535 : ccBlock.getFormulaIdent();
+			if (formula != 0 && formula != 1 && formula != 2 && formula != 9 && formula != 65535) {
+				throw new IOException(new StringBuilder().append("Conversion formula ").append(formula).append(" of channel '").append(name).append("' is not supported").toString());
+			}
+
+			getValues().readDoubles(from, count, dst, offset);
+
+			// 0 = linear, 1 and 2 = value to value tables, 9 = rational, 65535 =
+			// 1:1
+			if (formula == 0) {
+				double[] p = ccBlock.getValuePairsForFormula();
+				for (int i = offset; i < offset + count; i++) {
+					dst[i] = p[1] * dst[i] + p[0];
+				}
+			} else if (formula == 9) {
+				double[] p = ccBlock.getValuePairsForFormula();
+				for (int i = offset; i < offset + count; i++) {
+					double x = dst[i];
+					dst[i] = (p[0] * x * x + p[1] * x + p[2]) / (p[3] * x * x + p[4] * x + p[5]);
+				}
+			} else if (formula == 1 || formula == 2) {
+				if (lookup == null) {
+					lookup = ccBlock.getLookupConversion(isInteger());
+				}
+				lookup.convert(dst, offset, count);
+			}
+		}
+
+		private NumericFieldReader getValues() throws IOException {
+			if (values == null) {
+				int dt = cnBlock.getSignalDataType();
+				NumericFieldReader.Type type;
+				if (dt == 0 || dt == 9 || dt == 13) {
+					type = NumericFieldReader.Type.UNSIGNED_INTEGER;
+				} else if (dt == 1 || dt == 10 || dt == 14) {
+					type = NumericFieldReader.Type.SIGNED_INTEGER;
+				} else {
+					type = NumericFieldReader.Type.FLOAT;
+				}
+				// 0-3: default byte order of the file, 9-12: big endian, 13-16:
+				// little endian
+				ByteOrder byteOrder;
+				if (dt < 4) {
+					byteOrder = idBlock.getIdByteOrder() == 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+				} else if (dt < 13) {
+					byteOrder = ByteOrder.BIG_ENDIAN;
+				} else {
+					byteOrder = ByteOrder.LITTLE_ENDIAN;
+				}
+				values = new NumericFieldReader(channelGroup.getRecords(),
+						channelGroup.getRecordIdOffset() + cnBlock.getByteOffset(), cnBlock.getNumberOfFirstBits(),
+						cnBlock.getNumberOfBits(), type, byteOrder);
+			}
+			return values;
+		}
+
+		@Override
+		public String toString() {
+			return new StringBuilder().append("Channel [name=").append(name).append(", cnBlock=").append(cnBlock).append("]").toString();
+		}
+
+	}
+
+}
@@ -21,6 +21,8 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
 
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
+
 /**
  * Utility class having methods to read MDF3 file contents.
  *
@@ -30,10 +32,10 @@ abstract class Mdf3Util {
 
 	private static final String CHARSET_ISO8859 = "ISO-8859-1";
 
-	public static String readChars(SeekableByteChannel channel, int length) throws IOException {
+	public static String readChars(SeekableByteChannel channel, long pos, int length) throws IOException {
 		ByteBuffer bb = ByteBuffer.allocate(length);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos);
 		bb.rewind();
 		return readChars(bb, bb.remaining());
 	}
@@ -19,6 +19,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
 
 /**
  * <p>
@@ -82,8 +84,7 @@ class PRBLOCK extends BLOCK {
 		// read block
 		ByteBuffer bb = ByteBuffer.allocate(4);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		sbc.position(pos);
-		sbc.read(bb);
+		FileUtil.readFully(sbc, bb, pos);
 		bb.rewind();
 
 		// CHAR 2 Block type identifier
@@ -96,7 +97,7 @@ class PRBLOCK extends BLOCK {
 		}
 
 		// CHAR variable Program-specific data
-		block.setText(Mdf3Util.readChars(sbc, block.getLength() - 5));
+		block.setText(Mdf3Util.readChars(sbc, pos + 4, block.getLength() - 5));
 
 		return block;
 	}
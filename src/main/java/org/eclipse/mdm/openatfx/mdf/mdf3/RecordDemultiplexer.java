@@ -0,0 +1,289 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf3;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
+
+/**
+ * Sorts the records of unsorted data groups by their record ID into one
+ * contiguous region per channel group of a sidecar file.
+ * <p>
+ * Each record is stored with its leading record ID, a trailing record ID is
+ * dropped. So the records of a channel group have the same layout as the
+ * records of a sorted data group with record IDs and the external components
+ * only have to reference the sidecar file instead of the MDF file.
+ * <p>
+ * The data of a data group is read only once in large sequential chunks. Each
+ * channel group has a write buffer, the buffers share the budget of the read
+ * buffer.
+ */
+class RecordDemultiplexer implements Closeable {
+
+	private static final Log LOG = LogFactory.getLog(RecordDemultiplexer.class);
+
+	/** The suffix appended to the MDF file name */
+	static final String FILE_SUFFIX = ".sorted";
+
+	// minimum write buffer size of a single channel group
+	private static final int MIN_BUFFER_SIZE = 64 * 1024;
+
+	private final Path path;
+	private final FileChannel channel;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param path
+	 *            The sidecar file.
+	 * @param channel
+	 *            The opened sidecar file.
+	 */
+	private RecordDemultiplexer(Path path, FileChannel channel) {
+		this.path = path;
+		this.channel = channel;
+	}
+
+	/**
+	 * Creates the sidecar file of given MDF file. An existing sidecar file may
+	 * be referenced by a previously converted ATFX file, in that case a unique
+	 * file name is chosen.
+	 *
+	 * @param source
+	 *            The MDF file.
+	 * @return The record demultiplexer.
+	 * @throws IOException
+	 *             Error creating the sidecar file.
+	 */
+	static RecordDemultiplexer open(Path source) throws IOException {
+		Path path = source.resolveSibling(source.getFileName() + FILE_SUFFIX);
+		while (Files.exists(path)) {
+			path = source.resolveSibling(new StringBuilder().append(source.getFileName()).append("_")
+					.append(UUID.randomUUID().toString().split("-")[0]).append(FILE_SUFFIX).toString());
+		}
+		return new RecordDemultiplexer(path, FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.READ, StandardOpenOption.WRITE));
+	}
+
+	/**
+	 * Creates a temporary sidecar file in the default temporary-file directory,
+	 * used if the records are not referenced after reading. The caller has to
+	 * delete the file.
+	 *
+	 * @return The record demultiplexer.
+	 * @throws IOException
+	 *             Error creating the sidecar file.
+	 */
+	static RecordDemultiplexer openTemp() throws IOException {
+		Path path = Files.createTempFile("mdf", FILE_SUFFIX);
+		return new RecordDemultiplexer(path, FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+	}
+
+	/**
+	 * @return The sidecar file.
+	 */
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * @return The opened sidecar file.
+	 */
+	public SeekableByteChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * Sorts the records of an unsorted data group into the sidecar file.
+	 *
+	 * @param sbc
+	 *            The byte channel pointing to the MDF file.
+	 * @param pos
+	 *            The position of the first record of the data group.
+	 * @param noRecordIds
+	 *            The number of record IDs of each record, 1 (before the
+	 *            record) or 2 (before and after the record).
+	 * @param cgBlocks
+	 *            All channel groups of the data group.
+	 * @param bufferSize
+	 *            The size of the read buffer, also the budget of all write
+	 *            buffers.
+	 * @return The start position of the records of each channel group within
+	 *         the sidecar file, key is the position of the CGBLOCK.
+	 * @throws IOException
+	 *             Error reading the MDF file, writing the sidecar file or
+	 *             unexpected record data.
+	 */
+	public Map<Long, Long> demultiplex(SeekableByteChannel sbc, long pos, int noRecordIds, List<CGBLOCK> cgBlocks,
+			int bufferSize) throws IOException {
+		if (noRecordIds != 1 && noRecordIds != 2) {
+			throw new IOException(new StringBuilder().append("Unsupported number of record IDs for unsorted data: ").append(noRecordIds).toString());
+		}
+		long start = System.currentTimeMillis();
+
+		// reserve a region for each channel group, the record ID is a UINT8
+		Region[] regions = new Region[256];
+		int writeBufferSize = Math.max(MIN_BUFFER_SIZE, bufferSize / Math.max(1, cgBlocks.size()));
+		int maxRecordLength = 0;
+		long totalRecords = 0;
+		long totalBytes = 0;
+		long regionStart = channel.size();
+		for (CGBLOCK cgBlock : cgBlocks) {
+			int recordId = cgBlock.getRecordId();
+			if (recordId > 255 || regions[recordId] != null) {
+				throw new IOException(new StringBuilder().append("Invalid record ID in unsorted data group: ").append(recordId).toString());
+			}
+			int recordLength = 1 + cgBlock.getDataRecordSize();
+			Region region = new Region(cgBlock, regionStart, recordLength, writeBufferSize);
+			regions[recordId] = region;
+			maxRecordLength = Math.max(maxRecordLength, recordLength + noRecordIds - 1);
+			totalRecords += cgBlock.getNoOfRecords();
+			totalBytes += cgBlock.getNoOfRecords() * (recordLength + noRecordIds - 1);
+			regionStart += region.capacity;
+		}
+
+		ByteBuffer in = ByteBuffer.allocate(Math.max(bufferSize, maxRecordLength));
+		in.flip();
+		long srcPos = pos;
+		long srcRemaining = totalBytes;
+		for (long i = 0; i < totalRecords; i++) {
+			// refill, there is always at least one complete record available
+			if (in.remaining() < maxRecordLength && srcRemaining > 0) {
+				in.compact();
+				int length = (int) Math.min(in.remaining(), srcRemaining);
+				in.limit(in.position() + length);
+				int read = FileUtil.readFully(sbc, in, srcPos);
+				in.flip();
+				if (read < length) {
+					throw new IOException(new StringBuilder().append("Unexpected end of file reading records at position ").append(srcPos).toString());
+				}
+				srcPos += length;
+				srcRemaining -= length;
+			}
+
+			if (!in.hasRemaining()) {
+				throw new IOException("Unexpected end of data reading unsorted records.");
+			}
+			int recordId = in.get(in.position()) & 0xFF;
+			Region region = regions[recordId];
+			if (region == null) {
+				throw new IOException(new StringBuilder().append("Unknown record ID ").append(recordId).append(" in unsorted data group at record ").append(i).toString());
+			}
+			if (in.remaining() < region.recordLength + noRecordIds - 1) {
+				throw new IOException(new StringBuilder().append("Unexpected end of data reading record with ID ").append(recordId).toString());
+			}
+			if (noRecordIds == 2 && (in.get(in.position() + region.recordLength) & 0xFF) != recordId) {
+				throw new IOException(new StringBuilder().append("Record ID after record ").append(i).append(" does not match record ID ").append(recordId).toString());
+			}
+			region.put(in);
+			if (noRecordIds == 2) {
+				in.get();
+			}
+		}
+
+		Map<Long, Long> result = new HashMap<>();
+		for (CGBLOCK cgBlock : cgBlocks) {
+			Region region = regions[cgBlock.getRecordId()];
+			region.flush();
+			result.put(cgBlock.getPos(), region.start);
+		}
+		LOG.info(new StringBuilder().append("Sorted ").append(totalRecords).append(" records of ").append(cgBlocks.size()).append(" channel groups into '").append(path)
+				.append("' in ").append(System.currentTimeMillis() - start).append("ms").toString());
+		return result;
+	}
+
+	/**
+	 * Closes the sidecar file.
+	 *
+	 * @throws IOException
+	 *             Error closing the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * The region of a single channel group within the sidecar file.
+	 */
+	private class Region {
+
+		private final CGBLOCK cgBlock;
+		private final long start;
+		private final int recordLength;
+		private final long capacity;
+		private final ByteBuffer out;
+
+		private long written;
+		private long flushed;
+
+		private Region(CGBLOCK cgBlock, long start, int recordLength, int bufferSize) {
+			this.cgBlock = cgBlock;
+			this.start = start;
+			this.recordLength = recordLength;
+			this.capacity = cgBlock.getNoOfRecords() * recordLength;
+			// whole records, never more than the region
+			int records = (int) Math.min(Math.max(1, bufferSize / recordLength), Math.max(1, cgBlock.getNoOfRecords()));
+			this.out = ByteBuffer.allocate(records * recordLength);
+		}
+
+		/**
+		 * Copies the record at the position of the source buffer into the
+		 * region.
+		 */
+		private void put(ByteBuffer src) throws IOException {
+			if (written + recordLength > capacity) {
+				throw new IOException(new StringBuilder().append("Records exceed the number of records of the channel group [CGBLOCK=").append(cgBlock).append("]").toString());
+			}
+			if (out.remaining() < recordLength) {
+				flush();
+			}
+			int limit = src.limit();
+			src.limit(src.position() + recordLength);
+			out.put(src);
+			src.limit(limit);
+			written += recordLength;
+		}
+
+		/**
+		 * Writes the buffered records to the sidecar file.
+		 */
+		private void flush() throws IOException {
+			out.flip();
+			while (out.hasRemaining()) {
+				flushed += channel.write(out, start + flushed);
+			}
+			out.clear();
+		}
+
+	}
+
+}
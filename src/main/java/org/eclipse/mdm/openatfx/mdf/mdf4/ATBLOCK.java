@@ -19,6 +19,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
 
 /**
  * <p>
@@ -188,8 +190,7 @@ class ATBLOCK extends BLOCK {
 		ByteBuffer bb = ByteBuffer.allocate(24 + 32 + 40); // 24 Head 32 Links
 															// 40 Data
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.position(pos);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos);
 		bb.rewind();
 
 		// CHAR 4: Block type identifier
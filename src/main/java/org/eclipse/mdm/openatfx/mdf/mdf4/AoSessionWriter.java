@@ -18,6 +18,7 @@ package org.eclipse.mdm.openatfx.mdf.mdf4;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -26,29 +27,46 @@ import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.asam.ods.AoException;
-import org.asam.ods.ApplicationElement;
 import org.asam.ods.ApplicationRelation;
 import org.asam.ods.ErrorCode;
 import org.asam.ods.InstanceElement;
 import org.asam.ods.SeverityFlag;
 import org.asam.ods.T_ExternalReference;
 import org.eclipse.mdm.openatfx.mdf.ConvertException;
-import org.eclipse.mdm.openatfx.mdf.util.BitInputStream;
+import org.eclipse.mdm.openatfx.mdf.util.BitFieldDecoder;
 import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
+import org.eclipse.mdm.openatfx.mdf.util.Formula;
+import org.eclipse.mdm.openatfx.mdf.util.FormulaConversion;
+import org.eclipse.mdm.openatfx.mdf.util.InvalidationBitmap;
 import org.eclipse.mdm.openatfx.mdf.util.LookupTableHelper;
 import org.eclipse.mdm.openatfx.mdf.util.ODSHelper;
 import org.eclipse.mdm.openatfx.mdf.util.ODSInsertStatement;
 import org.eclipse.mdm.openatfx.mdf.util.ODSModelCache;
+import org.eclipse.mdm.openatfx.mdf.util.RationalConversion;
+import org.eclipse.mdm.openatfx.mdf.util.RecordAccessor;
+import org.eclipse.mdm.openatfx.mdf.util.RecordReader;
+import org.eclipse.mdm.openatfx.mdf.util.RecordScanner;
+import org.eclipse.mdm.openatfx.mdf.util.ValueConversion;
+import org.eclipse.mdm.openatfx.mdf.util.ValueConversionWriter;
 
 /**
  * Main class for writing the MDF4 file content into an ASAM ODS session backed
@@ -60,6 +78,10 @@ public class AoSessionWriter {
 
 	private static final Log LOG = LogFactory.getLog(AoSessionWriter.class);
 	private static final int FLAGS_BUFFER_SIZE = 1_000_000;
+	// minimum write buffer size of a single channel during extraction
+	private static final int MIN_EXTRACTION_BUFFER_SIZE = 64 * 1024;
+	// reason of skipping a channel with invalidation bit, see getSkipReason()
+	private static final String SKIP_INVALID_VALUES = "invalid values";
 
 	/** The number format having 5 digits used for count formatting */
 	private final NumberFormat countFormat;
@@ -108,6 +130,45 @@ public class AoSessionWriter {
 	// skip empty channels
     private boolean skipEmptyChannels = false;
 
+	// number of threads used to load the metadata graph
+	private int metadataLoaderThreads = Runtime.getRuntime().availableProcessors();
+
+	// size of the buffer used to read records in bulk
+	private int recordBufferSize = RecordReader.DEFAULT_BUFFER_SIZE;
+
+	// number of threads used to inflate zipped data blocks
+	private int inflateThreads = Runtime.getRuntime().availableProcessors();
+
+	// number of threads used to calculate rational and algebraic conversions
+	private int conversionThreads = Runtime.getRuntime().availableProcessors();
+
+	// number of threads used to prepare the data groups
+	private int dataGroupThreads = Runtime.getRuntime().availableProcessors();
+
+	// whether to copy data lists splitting records into a sidecar file,
+	// otherwise such data lists are rejected
+	private boolean stitchSplitRecords = true; // default = true
+
+	// resolves the data links into data sections, inflates zipped blocks and
+	// stitches split records
+	private DataSectionResolver dataSectionResolver;
+
+	// sorts the records of unsorted data groups into a sidecar file
+	private RecordDemultiplexer recordDemultiplexer;
+	// the sorted data sections of the channel groups of the current data
+	// group, key is the position of the CGBLOCK
+	private final Map<Long, DataSection> sortedSections = new HashMap<>();
+	// the data sections of the channel groups of the current data group
+	// resolved by the worker threads, key is the position of the CGBLOCK
+	private final Map<Long, List<DataSection>> preparedSections = new HashMap<>();
+	// the compiled text formulas of algebraic conversions, key is the position
+	// of the CCBLOCK
+	private final Map<Long, Formula> formulas = new ConcurrentHashMap<>();
+	// end of the reserved regions of the flags file and the rational
+	// conversion file, guarded by this
+	private long flagFileReserved;
+	private long customRatConfReserved;
+
 	/**
 	 * Constructor.
 	 */
@@ -198,8 +259,28 @@ public class AoSessionWriter {
 				if (props.containsKey("skip_empty_channels")) {
 	                skipEmptyChannels = Boolean.valueOf(props.getProperty("skip_empty_channels"));
 	            }
+				if (props.containsKey("metadata_loader_threads")) {
+					metadataLoaderThreads = Integer.parseInt(props.getProperty("metadata_loader_threads"));
+				}
+				if (props.containsKey("record_buffer_size")) {
+					recordBufferSize = Integer.parseInt(props.getProperty("record_buffer_size"));
+				}
+				if (props.containsKey("inflate_threads")) {
+					inflateThreads = Integer.parseInt(props.getProperty("inflate_threads"));
+				}
+				if (props.containsKey("conversion_threads")) {
+					conversionThreads = Integer.parseInt(props.getProperty("conversion_threads"));
+				}
+				if (props.containsKey("data_group_threads")) {
+					dataGroupThreads = Integer.parseInt(props.getProperty("data_group_threads"));
+				}
+				if (props.containsKey("stitch_split_records")) {
+					stitchSplitRecords = Boolean.valueOf(props.getProperty("stitch_split_records"));
+				}
 			}
 
+			dataSectionResolver = new DataSectionResolver(idBlock, inflateThreads, stitchSplitRecords);
+
 			ODSInsertStatement ins = new ODSInsertStatement(modelCache, "tst");
 			ins.setStringVal("iname", FileUtil.stripExtension(fileName.toString()));
 
@@ -244,8 +325,44 @@ public class AoSessionWriter {
 				}
 			}
 
+			if (dataSectionResolver != null) {
+				dataSectionResolver.deleteStitchedRecords();
+			}
+
+			if (recordDemultiplexer != null) {
+				try {
+					recordDemultiplexer.close();
+					Files.deleteIfExists(recordDemultiplexer.getPath());
+				} catch (IOException e2) {
+					LOG.warn(new StringBuilder().append("failed to delete file with sorted records: '").append(recordDemultiplexer.getPath()).append("'").toString(), e2);
+				}
+				recordDemultiplexer = null;
+			}
+
 			// preserve origin error
 			throw e;
+		} finally {
+			formulas.clear();
+			BlockCache blockCache = BlockCache.release(idBlock.sbc);
+			if (blockCache != null) {
+				LOG.debug(blockCache);
+			}
+
+			// the inflated data is referenced by the external components
+			if (dataSectionResolver != null) {
+				dataSectionResolver.close();
+				dataSectionResolver = null;
+			}
+			if (recordDemultiplexer != null) {
+				try {
+					recordDemultiplexer.close();
+				} catch (IOException e) {
+					LOG.warn(new StringBuilder().append("failed to close file with sorted records: '").append(recordDemultiplexer.getPath()).append("'").toString(), e);
+				}
+				recordDemultiplexer = null;
+			}
+			sortedSections.clear();
+			preparedSections.clear();
 		}
 	}
 
@@ -489,87 +606,319 @@ public class AoSessionWriter {
 			Map<String, Integer> meqNames) throws AoException, IOException {
 		Map<String, Long> meqInstances = new HashMap<>();
 		Map<String, Long> untInstances = new HashMap<>();
-		// iterate over data group blocks
+
+		// resolve the complete metadata graph before writing to the session
+		MDF4Metadata metadata = new MDF4MetadataLoader(metadataLoaderThreads).load(hdBlock);
+
+		// number the submatrices in data group order, so the names do not
+		// depend on the order the data groups are prepared in
+		List<DataGroupTask> tasks = new ArrayList<>();
 		int grpNo = 1;
-		DGBLOCK dgBlock = hdBlock.getDgFirstBlock();
-		while (dgBlock != null) {
+		for (MDF4Metadata.DataGroup dataGroup : metadata.getDataGroups()) {
+			if (dataGroup.isUnsorted() && recordDemultiplexer == null) {
+				recordDemultiplexer = RecordDemultiplexer.open(idBlock.getMdfFilePath());
+			}
+			tasks.add(new DataGroupTask(modelCache, idBlock, iidMea, dataGroup, grpNo));
+			int cgCount = 0;
+			for (MDF4Metadata.ChannelGroup channelGroup : dataGroup.getChannelGroups()) {
+				if ((channelGroup.getCgBlock().getFlags() & 0x01) == 0) {
+					cgCount++;
+				}
+			}
+			grpNo += Math.max(1, cgCount);
+		}
+
+		// the data groups are prepared by the worker threads, the bundles are
+		// written to the session by this thread in data group order
+		int threads = Math.max(1, Math.min(dataGroupThreads, tasks.size()));
+		ExecutorService executor = null;
+		List<Future<DataGroupBundle>> futures = new ArrayList<>();
+		if (threads > 1) {
+			executor = Executors.newFixedThreadPool(threads);
+			for (DataGroupTask task : tasks) {
+				futures.add(executor.submit(task));
+			}
+		}
+		try {
+			for (int i = 0; i < tasks.size(); i++) {
+				DataGroupBundle bundle = executor == null ? tasks.get(i).call() : getBundle(futures.get(i));
+				sortedSections.putAll(bundle.sortedSections);
+				preparedSections.putAll(bundle.recordSections);
+
+				InstanceElement ieMea = modelCache.getInstanceElement("mea", iidMea);
+				for (SubMatrix subMatrix : bundle.subMatrices) {
+					// create SubMatrix instance
+					ODSInsertStatement ins = subMatrix.ins;
+					ins.setStringVal("iname", "sm_" + countFormat.format(subMatrix.grpNo));
+					long iidSm = ins.execute();
+
+					// write instances of
+					// AoMeasurementQuantity,AoLocalColumn,AoExternalReference
+					Map<String, Integer> mapMeq = new HashMap<>();
+
+					SRBLOCK srBlock = subMatrix.channelGroup.getSrFirstBlock();
+
+					long[] iidPrevSm = previewHelper.createPreviewSubMatrices(ieMea, srBlock);
+					writeLc(modelCache, iidMea, iidSm, iidPrevSm, idBlock, bundle.dataGroup.getDgBlock(), subMatrix,
+							mapMeq, meqInstances, untInstances, srBlock);
+				}
+				sortedSections.clear();
+				preparedSections.clear();
+			}
+		} finally {
+			if (executor != null) {
+				for (Future<DataGroupBundle> future : futures) {
+					future.cancel(false);
+				}
+				// the running tasks still use the sidecar files
+				executor.shutdown();
+				try {
+					while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+						LOG.debug("Waiting for data group preparation to terminate");
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
 
-			// if sorted, only one channel group block is available
-			CGBLOCK cgBlock = dgBlock.getCgFirstBlock();
+	/**
+	 * Waits for the bundle of a data group prepared by a worker thread.
+	 *
+	 * @param future
+	 *            The future of the preparation task.
+	 * @return The prepared bundle.
+	 * @throws AoException
+	 *             Error preparing the instances.
+	 * @throws IOException
+	 *             Error reading from MDF file or interrupted.
+	 */
+	private static DataGroupBundle getBundle(Future<DataGroupBundle> future) throws AoException, IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while preparing data groups", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof AoException) {
+				throw (AoException) cause;
+			} else if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException("Error preparing data groups", cause);
+		}
+	}
 
-			if (cgBlock != null && cgBlock.getLnkCgNext() > 0) {
-				throw new IOException(
-						new StringBuilder().append("Only 'sorted' MDF4 files are supported, found 'unsorted' data! [DGBLOCK=").append(dgBlock).append("]").toString());
+	/**
+	 * Prepares the instances of a data group without accessing the session:
+	 * sorts an unsorted data group into the {@link RecordDemultiplexer} sidecar
+	 * file, resolves the data sections of the channel groups, reads the
+	 * attributes of the 'AoSubMatrix' instances including the parsed XML
+	 * comments and calculates the channel values which cannot be referenced in
+	 * the MDF file, see
+	 * {@link #extractChannels(IDBLOCK, DGBLOCK, CGBLOCK, List, List)}.
+	 *
+	 * @param modelCache
+	 *            The application model cache.
+	 * @param idBlock
+	 *            The IDBLOCK.
+	 * @param iidMea
+	 *            The ID of the Parent Measurement.
+	 * @param dataGroup
+	 *            The data group.
+	 * @param firstGrpNo
+	 *            The number of the first submatrix of the data group.
+	 * @param parser
+	 *            The XML parser used by the current thread.
+	 * @return The prepared bundle.
+	 * @throws AoException
+	 *             Error preparing the instances.
+	 * @throws IOException
+	 *             Error reading from MDF file.
+	 */
+	private DataGroupBundle prepareDataGroup(ODSModelCache modelCache, IDBLOCK idBlock, long iidMea, MDF4Metadata.DataGroup dataGroup,
+			int firstGrpNo, MDF4XMLParser parser) throws AoException, IOException {
+		DGBLOCK dgBlock = dataGroup.getDgBlock();
+		DataGroupBundle bundle = new DataGroupBundle(dataGroup);
+
+		// an unsorted data group is sorted into the sidecar file first, then
+		// each channel group is written like a sorted one
+		if (dataGroup.isUnsorted()) {
+			bundle.sortedSections.putAll(demultiplex(idBlock, dataGroup));
+			for (Map.Entry<Long, DataSection> entry : bundle.sortedSections.entrySet()) {
+				bundle.recordSections.put(entry.getKey(), Collections.singletonList(entry.getValue()));
 			}
+		}
 
-			// skip channel groups having no channels (or optionally no values)
-			boolean skipNoValues = skipEmptyChannels && cgBlock.getCycleCount() < 1;
-			if (cgBlock != null && !skipNoValues) {
+		// iterate over channel group blocks
+		int grpNo = firstGrpNo;
+		int cgCount = 0;
+		for (MDF4Metadata.ChannelGroup channelGroup : dataGroup.getChannelGroups()) {
+			CGBLOCK cgBlock = channelGroup.getCgBlock();
 
-				// check flags (not yet supported)
-				if (cgBlock.isBusEventChannel()) {
-					throw new IOException(new StringBuilder().append("Bus event data currently not supported! [DGBLOCK=").append(dgBlock).append("]").toString());
-				}
+			// the values of a VLSD channel group are read with the VLSD
+			// channel of the referencing channel group
+			if ((cgBlock.getFlags() & 0x01) != 0) {
+				continue;
+			}
+			if (cgCount++ > 0) {
+				grpNo++;
+			}
 
-				// create SubMatrix instance
-				ODSInsertStatement ins = new ODSInsertStatement(modelCache, "sm");
-				ins.setStringVal("iname", "sm_" + countFormat.format(grpNo));
-
-				// write CGComment
-				BLOCK mdblock = cgBlock.getMdCommentBlock();
-				if (mdblock != null) {
-					if (mdblock instanceof MDBLOCK) {
-						xmlParser.writeCGCommentToCg(ins, ((MDBLOCK) mdblock).getMdData());
-					} else if (mdblock instanceof TXBLOCK) {
-						ins.setStringVal("desc", ((TXBLOCK) mdblock).getTxData());
-					}
-				}
+			// skip channel groups having no values (optionally)
+			if (skipEmptyChannels && cgBlock.getCycleCount() < 1) {
+				continue;
+			}
 
-				// write DGComment
-				mdblock = dgBlock.getMdCommentBlock();
-				if (mdblock != null) {
-					if (mdblock instanceof MDBLOCK) {
-						xmlParser.writeDGCommentToCg(ins, ((MDBLOCK) mdblock).getMdData());
-					} else if (mdblock instanceof TXBLOCK) {
-						ins.setStringVal("dg_desc", ((TXBLOCK) mdblock).getTxData());
-					}
+			// check flags (not yet supported)
+			if (cgBlock.isBusEventChannel()) {
+				throw new IOException(new StringBuilder().append("Bus event data currently not supported! [DGBLOCK=").append(dgBlock).append("]").toString());
+			}
+
+			// the values of the SubMatrix instance, the name is set when
+			// written
+			ODSInsertStatement ins = new ODSInsertStatement(modelCache, "sm");
+
+			// write CGComment
+			BLOCK mdblock = channelGroup.getMdCommentBlock();
+			if (mdblock != null) {
+				if (mdblock instanceof MDBLOCK) {
+					parser.writeCGCommentToCg(ins, ((MDBLOCK) mdblock).getMdData());
+				} else if (mdblock instanceof TXBLOCK) {
+					ins.setStringVal("desc", ((TXBLOCK) mdblock).getTxData());
 				}
+			}
 
-				TXBLOCK txAcqName = cgBlock.getTxAcqNameBlock();
-				if (txAcqName != null) {
-					ins.setStringVal("acq_name", txAcqName.getTxData());
+			// write DGComment
+			mdblock = dataGroup.getMdCommentBlock();
+			if (mdblock != null) {
+				if (mdblock instanceof MDBLOCK) {
+					parser.writeDGCommentToCg(ins, ((MDBLOCK) mdblock).getMdData());
+				} else if (mdblock instanceof TXBLOCK) {
+					ins.setStringVal("dg_desc", ((TXBLOCK) mdblock).getTxData());
 				}
-				SIBLOCK siAcqSource = cgBlock.getSiAcqSourceBlock();
-				if (siAcqSource != null) {
-					writeSiBlock(ins, siAcqSource);
+			}
+
+			TXBLOCK txAcqName = channelGroup.getTxAcqNameBlock();
+			if (txAcqName != null) {
+				ins.setStringVal("acq_name", txAcqName.getTxData());
+			}
+			SIBLOCK siAcqSource = channelGroup.getSiAcqSourceBlock();
+			if (siAcqSource != null) {
+				writeSiBlock(ins, siAcqSource, parser);
+			}
+
+			ins.setLongVal("rows", (int) cgBlock.getCycleCount());
+			// Relation to measurement
+			ins.setLongLongVal("mea", iidMea);
+
+			// inflate and stitch the data blocks ahead of the writer
+			List<DataSection> sections = getRecordSections(idBlock, dgBlock, cgBlock, bundle.recordSections);
+			SubMatrix subMatrix = new SubMatrix(channelGroup, grpNo, ins, sections);
+
+			// calculate the values of all channels in a single pass over the
+			// records, the values are written to reserved regions of the
+			// sidecar files, only the 'AoExternalComponent' instances are
+			// left to the writer
+			for (MDF4Metadata.Channel channel : channelGroup.getChannels()) {
+				CNBLOCK cnBlock = channel.getCnBlock();
+				CCBLOCK ccBlock = channel.getCcConversionBlock();
+				if (isExternalComponent(cnBlock, ccBlock)) {
+					subMatrix.extractedChannels.put(cnBlock.getPos(), new ExtractedChannel(cnBlock, ccBlock));
 				}
+			}
+			extractChannels(idBlock, dgBlock, cgBlock, sections,
+					new ArrayList<>(subMatrix.extractedChannels.values()));
 
-				ins.setLongVal("rows", (int) cgBlock.getCycleCount());
-				// Relation to measurement
-				ins.setLongLongVal("mea", iidMea);
-				long iidSm = ins.execute();
+			// resolve the data blocks of the previews ahead of the writer
+			long recordSize = dgBlock.getRecIdSize() + cgBlock.getDataBytes() + cgBlock.getInvalBytes();
+			for (SRBLOCK srBlock = channelGroup.getSrFirstBlock(); srBlock != null; srBlock = srBlock
+					.getSrNextBlock()) {
+				if (srBlock.getLnkRdData() > 0) {
+					getDataSections(idBlock, srBlock.getLnkRdData(), recordSize);
+				}
+			}
 
-				ApplicationElement aeMea = modelCache.getApplicationElement("mea");
-				InstanceElement ieMea = aeMea.getInstanceById(ODSHelper.asODSLongLong(iidMea));
+			bundle.subMatrices.add(subMatrix);
+		}
+		return bundle;
+	}
 
-				// write instances of
-				// AoMeasurementQuantity,AoLocalColumn,AoExternalReference
-				Map<String, Integer> mapMeq = new HashMap<>();
+	/**
+	 * Sorts the records of an unsorted data group by their record ID into the
+	 * {@link RecordDemultiplexer} sidecar file. The data group is read only
+	 * once for all its channel groups.
+	 *
+	 * @param idBlock
+	 *            The IDBLOCK.
+	 * @param dataGroup
+	 *            The unsorted data group.
+	 * @return The data section within the sidecar file of each channel group,
+	 *         key is the position of the CGBLOCK.
+	 * @throws IOException
+	 *             Error reading from MDF file or writing the sidecar file.
+	 */
+	private Map<Long, DataSection> demultiplex(IDBLOCK idBlock, MDF4Metadata.DataGroup dataGroup)
+			throws IOException {
+		DGBLOCK dgBlock = dataGroup.getDgBlock();
+		List<CGBLOCK> cgBlocks = new ArrayList<>();
+		for (MDF4Metadata.ChannelGroup channelGroup : dataGroup.getChannelGroups()) {
+			cgBlocks.add(channelGroup.getCgBlock());
+		}
 
-				SRBLOCK srBlock = cgBlock.getSrFirstBlock();
+		// the records are parsed as one byte stream, so block boundaries
+		// splitting records do not matter
+		List<DataSection> sections = Collections.emptyList();
+		if (dgBlock.getLnkData() > 0) {
+			sections = getDataSections(idBlock, dgBlock.getLnkData(), 1);
+		}
+		return recordDemultiplexer.demultiplex(sections, dgBlock.getRecIdSize(), cgBlocks, recordBufferSize);
+	}
 
-				long[] iidPrevSm = previewHelper.createPreviewSubMatrices(ieMea, srBlock);
-				writeLc(modelCache, iidMea, iidSm, iidPrevSm, idBlock, dgBlock, cgBlock, mapMeq, meqInstances,
-						untInstances, srBlock);
+	/**
+	 * Returns the data sections containing the records of a channel group. If
+	 * the data group is unsorted, this is the region of the channel group
+	 * within the {@link RecordDemultiplexer} sidecar file.
+	 *
+	 * @param idBlock
+	 *            The IDBLOCK.
+	 * @param dgBlock
+	 *            The DGBLOCK.
+	 * @param cgBlock
+	 *            The CGBLOCK.
+	 * @param recordSections
+	 *            The data sections of the channel groups of the data group
+	 *            resolved so far, key is the position of the CGBLOCK. Newly
+	 *            resolved sections are added.
+	 * @return The data sections in record order.
+	 * @throws IOException
+	 *             Error reading from MDF file or unsupported data blocks.
+	 */
+	private List<DataSection> getRecordSections(IDBLOCK idBlock, DGBLOCK dgBlock, CGBLOCK cgBlock,
+			Map<Long, List<DataSection>> recordSections) throws IOException {
+		List<DataSection> sections = recordSections.get(cgBlock.getPos());
+		if (sections == null) {
+			if (dgBlock.getLnkData() > 0) {
+				long recordSize = dgBlock.getRecIdSize() + cgBlock.getDataBytes() + cgBlock.getInvalBytes();
+				sections = getDataSections(idBlock, dgBlock.getLnkData(), recordSize);
+			} else {
+				sections = Collections.emptyList();
 			}
-
-			dgBlock = dgBlock.getDgNextBlock();
-			grpNo++;
+			recordSections.put(cgBlock.getPos(), sections);
 		}
+		return sections;
 	}
 
 	/**
-	 * Write the instances of 'AoLocalColumn' and 'AoMeasurementQuantity'.
+	 * Write the instances of 'AoLocalColumn' and 'AoMeasurementQuantity'. The
+	 * instances of each application element are inserted with a single batch
+	 * for the whole channel group.
 	 *
 	 * @param modelCache
 	 *            The application model cache.
@@ -579,8 +928,9 @@ public class AoSessionWriter {
 	 *            The parent 'AoSubMatrix' instance.
 	 * @param dgBlock
 	 *            The DGBLOCK.
-	 * @param cgBlock
-	 *            The CGBLOCK.
+	 * @param subMatrix
+	 *            The prepared channel group with its resolved channels and
+	 *            extracted values.
 	 * @param srBlock
 	 *            Possible SRBLOCK (can be null)
 	 * @throws AoException
@@ -589,28 +939,38 @@ public class AoSessionWriter {
 	 *             Error reading from MDF file.
 	 */
 	private void writeLc(ODSModelCache modelCache, long iidMea, long iidSm, long[] iidPrevSm, IDBLOCK idBlock,
-			DGBLOCK dgBlock, CGBLOCK cgBlock, Map<String, Integer> meqNames, Map<String, Long> meqInstances,
+			DGBLOCK dgBlock, SubMatrix subMatrix, Map<String, Integer> meqNames, Map<String, Long> meqInstances,
 			Map<String, Long> untInstances, SRBLOCK srBlock) throws AoException, IOException {
+		MDF4Metadata.ChannelGroup channelGroup = subMatrix.channelGroup;
+		CGBLOCK cgBlock = channelGroup.getCgBlock();
 
-		// Performance?
-		ApplicationElement aeMea = modelCache.getApplicationElement("mea");
-		ApplicationElement aeLc = modelCache.getApplicationElement("lc");
-		ApplicationElement aeSm = modelCache.getApplicationElement("sm");
 		ApplicationRelation relLcSmLookup = modelCache.getApplicationRelation("lc", "sm", "LookupTable");
 		ApplicationRelation relLcSmPrev = modelCache.getApplicationRelation("lc", "sm", "Previews");
 
-		// iterate over channel blocks
-		CNBLOCK cnBlock = cgBlock.getCnFirstBlock();
-		while (cnBlock != null) {
+		// the instances of each application element are inserted with a single
+		// batch per channel group
+		List<LocalColumn> localColumns = new ArrayList<>();
+		// new 'AoMeasurementQuantity' instances by name, with their batch and
+		// row; the comment XML may add arbitrary instance attributes, so only
+		// rows with the same attribute names and data types share a batch
+		Map<List<String>, ODSInsertStatement> meqBatches = new LinkedHashMap<>();
+		Map<String, List<String>> meqSignatures = new HashMap<>();
+		Map<String, Integer> meqRows = new HashMap<>();
 
-			if ((cnBlock.getFlags() & 0x02) != 0 && cnBlock.getInvalBitPos() > 0) {
-				if (writeFlagsFile) {
-					// NOTE: flags are exported within writeEc()!
-					LOG.debug(new StringBuilder().append("channel with invalid values found, ").append("export flags into separate file [CNBLOCK=").append(cnBlock).append("]").toString());
-				} else {
-					LOG.debug(new StringBuilder().append("skipping channel with invalid values [CNBLOCK=").append(cnBlock).append("]").toString());
-					continue;
-				}
+		// iterate over channel blocks
+		for (MDF4Metadata.Channel channel : channelGroup.getChannels()) {
+			CNBLOCK cnBlock = channel.getCnBlock();
+			CCBLOCK ccBlock = channel.getCcConversionBlock();
+
+			// channels with invalid values are skipped before their name is
+			// counted
+			String skipReason = getSkipReason(cnBlock, ccBlock);
+			if (SKIP_INVALID_VALUES.equals(skipReason)) {
+				LOG.debug(new StringBuilder().append("skipping channel with invalid values [CNBLOCK=").append(cnBlock).append("]").toString());
+				continue;
+			} else if (hasInvalidationBit(cnBlock)) {
+				// NOTE: flags are extracted within prepareDataGroup()!
+				LOG.debug(new StringBuilder().append("channel with invalid values found, ").append("export flags into separate file [CNBLOCK=").append(cnBlock).append("]").toString());
 			}
 			// check invalidation bits (not yet supported)
 			if (cnBlock.getLnkComposition() != 0) {
@@ -625,7 +985,7 @@ public class AoSessionWriter {
 			}
 
 			// build signal name
-			String meqName = readMeqName(cnBlock).trim();
+			String meqName = readMeqName(channel.getCnTxNameBlock()).trim();
 
 			// replace channel names (concerto invalid characters)
 			if (replaceSquareBrackets) {
@@ -647,84 +1007,110 @@ public class AoSessionWriter {
 				}
 			}
 
-			CCBLOCK ccBlock = cnBlock.getCcConversionBlock();
-
 			// check whether channel has to be or shall be skipped
-			if (skipScaleConversionChannels && ccBlock != null && ccBlock.hasCCRefs()) {
-				LOG.info(new StringBuilder().append("Channel '").append(meqName).append("' with scale conversion rules in CCBlocks skipped: ").append(ccBlock).toString());
-				cnBlock = cnBlock.getCnNextBlock();
-				continue;
-			} else if (skipByteStreamChannels && 10 == cnBlock.getDataType()) {
-				// remove this block once it is save to import channels with
-				// byte stream data
-				LOG.info(new StringBuilder().append("Channel '").append(meqName).append("' with byte stream data skipped: ").append(ccBlock).toString());
-				cnBlock = cnBlock.getCnNextBlock();
+			if (skipReason != null) {
+				LOG.info(new StringBuilder().append("Channel '").append(meqName).append("' with ").append(skipReason).append(" skipped: ").append(cnBlock).toString());
 				continue;
-			} else if (10 == cnBlock.getDataType() && cnBlock.getLnkComposition() != 0) {
-				LOG.info(new StringBuilder().append("Channel '").append(meqName).append("' with composed byte stream data skipped: ").append(ccBlock).toString());
-				cnBlock = cnBlock.getCnNextBlock();
-				continue;
-			} else if (64 == cnBlock.getBitCount() && (0 /* LEO */ == cnBlock.getDataType()
-					|| 1 /* BEO */ == cnBlock.getDataType())) {
-				// UNSIGNED 64 bit: if cnBlock represents a time channel (sync_type == 1)
-				// => it is considered save to interpret data as signed 64 bit
-				// => otherwise either fail or skip
-				if (1 != cnBlock.getSyncType()) {
-					// this is a data channel with 64 bit unsigned data; it is not possible to represent such data
-					// => either throw an error or skip channel
-					if (skipUINT64Channels) {
-						LOG.info(new StringBuilder().append("Channel '").append(meqName).append("' with unsigned 64 bit data skipped: ").append(cnBlock).toString());
-						cnBlock = cnBlock.getCnNextBlock();
-						continue;
-					} else {
-						throw new IOException("unable to write unsigned 64 bit data channel");
-					}
-				}
 			}
 
 			// create instance of 'AoMeasurementQuantity' (if not yet existing)
-			Long iidMeq = meqInstances.get(meqName);
-			if (iidMeq == null) {
-				iidMeq = createMeasurementQuantity(modelCache, cnBlock, ccBlock, meqName, iidMea, null, untInstances);
-				meqInstances.put(meqName, iidMeq);
-			}
-
-			// create 'AoLocalColumn' instance
-			long iidLc = createLocalColumn(modelCache, dgBlock, cgBlock, cnBlock, ccBlock, meqName, iidSm, iidMeq,
-					iidPrevSm, null);
-			// relation to previews
-			if (iidPrevSm != null) {
-				InstanceElement ieLc = aeLc.getInstanceById(ODSHelper.asODSLongLong(iidLc));
-				for (long element : iidPrevSm) {
-					ieLc.createRelation(relLcSmPrev, aeSm.getInstanceById(ODSHelper.asODSLongLong(element)));
+			if (!meqInstances.containsKey(meqName) && !meqRows.containsKey(meqName)) {
+				ODSInsertStatement meqIns = new ODSInsertStatement(modelCache, "meq");
+				meqIns.next();
+				addMeasurementQuantity(meqIns, modelCache, cnBlock, ccBlock, meqName, iidMea, null, untInstances);
+				List<String> signature = meqIns.getSignature();
+				ODSInsertStatement meqBatch = meqBatches.get(signature);
+				if (meqBatch == null) {
+					meqBatch = new ODSInsertStatement(modelCache, "meq");
+					meqBatches.put(signature, meqBatch);
 				}
+				meqRows.put(meqName, meqBatch.append(meqIns));
+				meqSignatures.put(meqName, signature);
 			}
+			localColumns.add(new LocalColumn(cnBlock, ccBlock, meqName));
+		}
+
+		// insert the 'AoMeasurementQuantity' instances
+		Map<List<String>, long[]> iidMeqs = new HashMap<>();
+		for (Map.Entry<List<String>, ODSInsertStatement> entry : meqBatches.entrySet()) {
+			iidMeqs.put(entry.getKey(), entry.getValue().executeBatch());
+		}
+		for (Map.Entry<String, Integer> entry : meqRows.entrySet()) {
+			meqInstances.put(entry.getKey(), iidMeqs.get(meqSignatures.get(entry.getKey()))[entry.getValue()]);
+		}
+
+		// insert the 'AoLocalColumn' instances, columns with values read from
+		// the file are inserted one by one, so the other rows do not get an
+		// empty value sequence
+		ODSInsertStatement lcIns = new ODSInsertStatement(modelCache, "lc");
+		for (LocalColumn localColumn : localColumns) {
+			long iidMeq = meqInstances.get(localColumn.meqName);
+			if (hasLcValues(localColumn.cnBlock)) {
+				ODSInsertStatement ins = new ODSInsertStatement(modelCache, "lc");
+				addLocalColumn(ins, idBlock, dgBlock, cgBlock, localColumn.cnBlock, localColumn.ccBlock,
+						localColumn.meqName, iidSm, iidMeq, null);
+				localColumn.iidLc = ins.execute();
+			} else {
+				localColumn.lcRow = lcIns.next();
+				addLocalColumn(lcIns, idBlock, dgBlock, cgBlock, localColumn.cnBlock, localColumn.ccBlock,
+						localColumn.meqName, iidSm, iidMeq, null);
+			}
+		}
+		long[] iidLcs = lcIns.executeBatch();
+
+		// channels written as external components
+		List<LocalColumn> ecColumns = new ArrayList<>();
+
+		InstanceElement ieMea = modelCache.getInstanceElement("mea", iidMea);
+		long[] iidAllLcs = new long[localColumns.size()];
+		for (int i = 0; i < localColumns.size(); i++) {
+			LocalColumn localColumn = localColumns.get(i);
+			CNBLOCK cnBlock = localColumn.cnBlock;
+			CCBLOCK ccBlock = localColumn.ccBlock;
+			if (localColumn.lcRow >= 0) {
+				localColumn.iidLc = iidLcs[localColumn.lcRow];
+			}
+			long iidLc = localColumn.iidLc;
+			iidAllLcs[i] = iidLc;
 
 			// create 'AoExternalComponent' instance (if not a string data type
 			// (6-9) or VLSD-Channel (Type ==1) or virtual master channel (Type == 3))
 			if (!(cnBlock.getDataType() >= 6 && cnBlock.getDataType() <= 9
 					|| cnBlock.getChannelType() == 1 || cnBlock.getChannelType() == 3)) {
-				writeEc(modelCache, iidLc, idBlock, dgBlock, cgBlock, cnBlock, ccBlock, dgBlock.getLnkData(), 0);
+				ecColumns.add(localColumn);
 			}
 
 			// create Table for Lookup conversion, if conversion type is 4 to 10
-			InstanceElement ieMea = aeMea.getInstanceById(ODSHelper.asODSLongLong(iidMea));
-			InstanceElement ieLc = aeLc.getInstanceById(ODSHelper.asODSLongLong(iidLc));
-
 			if (ccBlock != null && ccBlock.getType() >= 4 && ccBlock.getType() <= 10) {
+				InstanceElement ieLc = modelCache.getInstanceElement("lc", iidLc);
 				long iidLookup = createLookupTable(modelCache, ccBlock, ieMea, ieLc);
-				InstanceElement ieSmLookup = aeSm.getInstanceById(ODSHelper.asODSLongLong(iidLookup));
-				ieLc.createRelation(relLcSmLookup, ieSmLookup);
+				modelCache.appendRelatedInstances("sm", iidLookup, relLcSmLookup.getInverseRelationName(),
+						new long[] { iidLc });
 			}
 
 			// create possible Sample Reduction Measurements
 			if (srBlock != null) {
-				previewHelper.createPreviewChannels(meqName, idBlock, cgBlock, dgBlock, cnBlock, ccBlock, untInstances);
+				previewHelper.createPreviewChannels(localColumn.meqName, idBlock, cgBlock, dgBlock, cnBlock, ccBlock,
+						untInstances);
+			}
+		}
+
+		// relation to previews, all local columns are related to each preview
+		// submatrix at once
+		if (iidPrevSm != null) {
+			for (long element : iidPrevSm) {
+				modelCache.appendRelatedInstances("sm", element, relLcSmPrev.getInverseRelationName(), iidAllLcs);
 			}
+		}
 
-			// jump to next channel
-			cnBlock = cnBlock.getCnNextBlock();
+		// write the 'AoExternalComponent' instances, the values not
+		// referenced in the MDF file have been calculated by the worker
+		ODSInsertStatement ecIns = new ODSInsertStatement(modelCache, "ec");
+		for (LocalColumn localColumn : ecColumns) {
+			addEc(ecIns, localColumn.iidLc, idBlock, dgBlock, cgBlock, localColumn.cnBlock, localColumn.ccBlock,
+					subMatrix.sections, 0, subMatrix.extractedChannels.get(localColumn.cnBlock.getPos()));
 		}
+		ecIns.executeBatch();
 	}
 
 	/**
@@ -754,10 +1140,26 @@ public class AoSessionWriter {
 	 */
 	long createMeasurementQuantity(ODSModelCache modelCache, CNBLOCK cnBlock, CCBLOCK ccBlock, String meqName,
 			long iidMea, String mimeType, Map<String, Long> untInstances) throws IOException, AoException {
+		ODSInsertStatement ins = new ODSInsertStatement(modelCache, "meq");
+		addMeasurementQuantity(ins, modelCache, cnBlock, ccBlock, meqName, iidMea, mimeType, untInstances);
+		return ins.execute();
+	}
+
+	/**
+	 * Sets the values of a MeasurementQuantity to the current position of an
+	 * insert statement, see
+	 * {@link #createMeasurementQuantity(ODSModelCache, CNBLOCK, CCBLOCK, String, long, String, Map)}.
+	 *
+	 * @param ins
+	 *            The insert statement of the 'AoMeasurementQuantity'
+	 *            instances.
+	 */
+	private void addMeasurementQuantity(ODSInsertStatement ins, ODSModelCache modelCache, CNBLOCK cnBlock,
+			CCBLOCK ccBlock, String meqName, long iidMea, String mimeType, Map<String, Long> untInstances)
+			throws IOException, AoException {
 		int seqRep = getSeqRep(cnBlock, ccBlock);
 		double[] genParams = getGenerationParameters(ccBlock);
 
-		ODSInsertStatement ins = new ODSInsertStatement(modelCache, "meq");
 		ins.setStringVal("iname", meqName);
 
 		// Write XML MetaData
@@ -807,9 +1209,6 @@ public class AoSessionWriter {
 		if (uiid != -1) {
 			ins.setLongLongVal("unt", uiid);
 		}
-		long iidMeq = ins.execute();
-
-		return iidMeq;
 	}
 
 	/**
@@ -817,6 +1216,8 @@ public class AoSessionWriter {
 	 * 
 	 * @param modelCache
 	 *            Cache with model Object
+	 * @param idBlock
+	 *            The IDBLOCK.
 	 * @param dgBlock
 	 *            The Data Group Block.
 	 * @param cgBlock
@@ -840,11 +1241,26 @@ public class AoSessionWriter {
 	 *             If an I/O-error occurs.
 	 * @throws AoException
 	 */
-	long createLocalColumn(ODSModelCache modelCache, DGBLOCK dgBlock, CGBLOCK cgBlock, CNBLOCK cnBlock, CCBLOCK ccBlock,
-			String lcName, long iidSm, long iidMeq, long[] iidPrevSm, String mimeType) throws IOException, AoException {
+	long createLocalColumn(ODSModelCache modelCache, IDBLOCK idBlock, DGBLOCK dgBlock, CGBLOCK cgBlock, CNBLOCK cnBlock,
+			CCBLOCK ccBlock, String lcName, long iidSm, long iidMeq, long[] iidPrevSm, String mimeType) throws IOException, AoException {
+		ODSInsertStatement ins = new ODSInsertStatement(modelCache, "lc");
+		addLocalColumn(ins, idBlock, dgBlock, cgBlock, cnBlock, ccBlock, lcName, iidSm, iidMeq, mimeType);
+		return ins.execute();
+	}
+
+	/**
+	 * Sets the values of a LocalColumn to the current position of an insert
+	 * statement, see
+	 * {@link #createLocalColumn(ODSModelCache, IDBLOCK, DGBLOCK, CGBLOCK, CNBLOCK, CCBLOCK, String, long, long, long[], String)}.
+	 *
+	 * @param ins
+	 *            The insert statement of the 'AoLocalColumn' instances.
+	 */
+	private void addLocalColumn(ODSInsertStatement ins, IDBLOCK idBlock, DGBLOCK dgBlock, CGBLOCK cgBlock,
+			CNBLOCK cnBlock, CCBLOCK ccBlock, String lcName, long iidSm, long iidMeq, String mimeType)
+			throws IOException, AoException {
 		int seqRep = getSeqRep(cnBlock, ccBlock);
 		double[] genParams = getGenerationParameters(ccBlock);
-		ODSInsertStatement ins = new ODSInsertStatement(modelCache, "lc");
 		ins.setStringVal("iname", lcName);
 		ins.setLongLongVal("sm", iidSm);
 
@@ -862,7 +1278,7 @@ public class AoSessionWriter {
 																											// 9:
 			// Datatype
 			// String
-			String[] stringDataValues = readStringDataValues(dgBlock, cgBlock, cnBlock);
+			String[] stringDataValues = readStringDataValues(idBlock, dgBlock, cgBlock, cnBlock);
 			ins.setEnumVal("srp", 0);
 			ins.setNameValueUnit(ODSHelper.createStringSeqNVU("val", stringDataValues));
 			LOG.info(new StringBuilder().append("Unable to reference into MDF4, extracting string values. [Channel=").append(lcName).append("]").toString());
@@ -870,7 +1286,7 @@ public class AoSessionWriter {
 			// Read VLSDChannel values.
 			ins.setEnumVal("srp", 0);
 			LOG.info(new StringBuilder().append("Variable Length Channel! [Channel=").append(lcName).append("]").toString());
-			insertVLSDValues(ins, dgBlock, cgBlock, cnBlock);
+			insertVLSDValues(ins, idBlock, dgBlock, cgBlock, cnBlock);
 		} else {
 			ins.setEnumVal("srp", seqRep);
 		}
@@ -899,9 +1315,19 @@ public class AoSessionWriter {
 		// relation to submatrix
 		ins.setLongLongVal("sm", iidSm);
 		ins.setLongLongVal("meq", iidMeq);
+	}
 
-		long iidLc = ins.execute();
-		return iidLc;
+	/**
+	 * Returns whether the values of a channel are written into its
+	 * 'AoLocalColumn' instance, which are string and VLSD channels.
+	 *
+	 * @param cnBlock
+	 *            The CNBLOCK.
+	 * @return True, if the values are read from the file into the local
+	 *         column.
+	 */
+	private static boolean hasLcValues(CNBLOCK cnBlock) {
+		return cnBlock.getDataType() >= 6 && cnBlock.getDataType() <= 9 || cnBlock.getChannelType() == 1;
 	}
 
 	/**
@@ -913,49 +1339,54 @@ public class AoSessionWriter {
 	 *            The VLSD-Channel
 	 * @throws IOException
 	 */
-	private void insertVLSDValues(ODSInsertStatement ins, DGBLOCK dgBlock, CGBLOCK cgBlock, CNBLOCK cnBlock)
-			throws IOException {
+	private void insertVLSDValues(ODSInsertStatement ins, IDBLOCK idBlock, DGBLOCK dgBlock, CGBLOCK cgBlock,
+			CNBLOCK cnBlock) throws IOException {
+		// the values are stored in a SDBLOCK or, within an unsorted data group,
+		// in the sorted records of a VLSD channel group
+		SeekableByteChannel signalChannel;
+		long signalpos;
+		long signalLength;
 		BLOCK blk = cnBlock.getDataBlock();
 		if (blk == null) {
 			// assume empty SDBLOCK
 			ins.setNameValueUnit(ODSHelper.createStringSeqNVU("val", new String[0]));
 			return;
-		} else if (!(blk instanceof SDBLOCK)) {
+		} else if (blk instanceof SDBLOCK) {
+			signalChannel = cnBlock.sbc;
+			signalpos = cnBlock.getLnkData() + 24L;
+			signalLength = blk.getLength() - 24;
+		} else if (blk instanceof CGBLOCK && sortedSections.containsKey(blk.getPos())) {
+			DataSection vlsdSection = sortedSections.get(blk.getPos());
+			signalChannel = vlsdSection.getChannel();
+			signalpos = vlsdSection.getPos();
+			signalLength = vlsdSection.getLength();
+		} else {
 			throw new RuntimeException("Found VLSD Block with no valid signal data.");
 		}
-		SDBLOCK sdBlock = (SDBLOCK) blk;
 
 		// start Reading the values.
 		SeekableByteChannel sbc = cnBlock.sbc;
 		long recordSize = dgBlock.getRecIdSize() + cgBlock.getDataBytes() + cgBlock.getInvalBytes();
-		long recStart = dgBlock.getLnkData() + 24L;
 		long[] offsets = new long[(int) cgBlock.getCycleCount()];
 
-		long valueBitSize = cnBlock.getBitCount() + cnBlock.getBitOffset();
-		int valueByteSize = (int) (valueBitSize % 8 == 0 ? valueBitSize / 8 : valueBitSize / 8 + 1);
-		long offset = cnBlock.getByteOffset();
-		ByteBuffer bb = ByteBuffer.allocate(valueByteSize);
+		int offset = (int) (dgBlock.getRecIdSize() + cnBlock.getByteOffset());
+		RecordReader records = new RecordReader(sbc, (int) recordSize, recordBufferSize);
+		addDataSections(records, getRecordSections(idBlock, dgBlock, cgBlock, preparedSections));
 
 		// iterate over records and read offsets
-		long pos = recStart;
 		for (int i = 0; i < cgBlock.getCycleCount(); i++) {
-			// read offset
-			bb.rewind();
-			sbc.position(pos + offset);
-			sbc.read(bb);
-			bb.rewind();
-			offsets[i] = MDF4Util.readValue(cnBlock.getBitOffset(), (int) cnBlock.getBitCount(), bb);
-			pos += recordSize;
+			ByteBuffer record = records.next();
+			if (record == null) {
+				throw new IOException("Unexpected end of records reading VLSD offsets.");
+			}
+			offsets[i] = BitFieldDecoder.readUnsigned(record, record.position() + offset, cnBlock.getBitOffset(),
+					(int) cnBlock.getBitCount(), ByteOrder.LITTLE_ENDIAN);
 		}
 
 		// read data
 		// iterate over records
-		ByteBuffer signals = ByteBuffer.allocate((int) (sdBlock.getLength() - 24));
-
-		long signalpos = cnBlock.getLnkData() + 24L;
-		sbc.position(signalpos);
-
-		sbc.read(signals);
+		ByteBuffer signals = ByteBuffer.allocate((int) signalLength);
+		FileUtil.readFully(signalChannel, signals, signalpos);
 		signals.rewind();
 
 		LinkedList<String> list = new LinkedList<>();
@@ -1064,46 +1495,49 @@ public class AoSessionWriter {
 	 * @throws IOException
 	 *             If an input error occurs.
 	 */
-	private static String[] readStringDataValues(DGBLOCK dgBlock, CGBLOCK cgBlock, CNBLOCK cnBlock) throws IOException {
+	private String[] readStringDataValues(IDBLOCK idBlock, DGBLOCK dgBlock, CGBLOCK cgBlock, CNBLOCK cnBlock)
+			throws IOException {
 		List<String> list = new ArrayList<>();
 
-		SeekableByteChannel sbc = dgBlock.sbc;
 		int recordIdOffset = dgBlock.getRecIdSize();
-		long mapStart = dgBlock.getLnkData() + 24L;
-		long mapSize = (cgBlock.getDataBytes() + recordIdOffset) * cgBlock.getCycleCount();
-		ByteBuffer bb = ByteBuffer.allocate((int) mapSize);
-		sbc.position(mapStart);
-		sbc.read(bb);
-		bb.rewind();
+		int recordSize = (int) (recordIdOffset + cgBlock.getDataBytes() + cgBlock.getInvalBytes());
+		RecordReader records = new RecordReader(dgBlock.sbc, recordSize, recordBufferSize);
+		addDataSections(records, getRecordSections(idBlock, dgBlock, cgBlock, preparedSections));
+
+		// the value bytes are copied into a single reused buffer
+		int skipBits = (int) (recordIdOffset * 8L + cnBlock.getByteOffset() * 8L + cnBlock.getBitOffset());
+		int bitCount = (int) cnBlock.getBitCount();
+		byte[] b = new byte[(bitCount + 7) >>> 3];
+		ByteBuffer valueBuffer = ByteBuffer.wrap(b);
 
 		// iterate over records
 		for (int i = 0; i < cgBlock.getCycleCount(); i++) {
 
 			// read record
-			byte[] record = new byte[(int) (cgBlock.getDataBytes() + recordIdOffset)];
-			bb.get(record);
+			ByteBuffer bb = records.next();
+			if (bb == null) {
+				throw new IOException("Unexpected end of records reading string values.");
+			}
 
 			// skip first bits and read value
-			BitInputStream bis = new BitInputStream(record);
-			int skipBits = (int) (recordIdOffset * 8L + cnBlock.getByteOffset() * 8L + cnBlock.getBitOffset());
-			bis.skip(skipBits);
-			byte[] b = bis.readByteArray((int) cnBlock.getBitCount());
+			BitFieldDecoder.readBytes(bb, bb.position(), skipBits, bitCount, b);
+			valueBuffer.rewind();
 
 			// build string value and append to list.
 			// Switch for different encodings.
 			String value;
 			switch (cnBlock.getDataType()) {
 			case 6: // ISO-8859
-				value = MDF4Util.readCharsISO8859(ByteBuffer.wrap(b), b.length);
+				value = MDF4Util.readCharsISO8859(valueBuffer, b.length);
 				break;
 			case 7: // UTF-8
-				value = MDF4Util.readCharsUTF8(ByteBuffer.wrap(b), b.length);
+				value = MDF4Util.readCharsUTF8(valueBuffer, b.length);
 				break;
 			case 8: // UFT-16LE
-				value = MDF4Util.readCharsUTF16(ByteBuffer.wrap(b), b.length, true);
+				value = MDF4Util.readCharsUTF16(valueBuffer, b.length, true);
 				break;
 			case 9: // UTF-16BE
-				value = MDF4Util.readCharsUTF16(ByteBuffer.wrap(b), b.length, false);
+				value = MDF4Util.readCharsUTF16(valueBuffer, b.length, false);
 				break;
 			default:
 				throw new IllegalArgumentException("Illegal String encoding.");
@@ -1116,7 +1550,7 @@ public class AoSessionWriter {
 
 	/**
 	 * Write the instances of 'AoExternalComponent'. One instance is written for
-	 * each data block.
+	 * each data block, all of them with a single batch insert.
 	 *
 	 * @param modelCache
 	 *            The application model cache.
@@ -1133,8 +1567,9 @@ public class AoSessionWriter {
 	 * @param ccBlock
 	 *            The CCBLOCK.
 	 * @param sectionstart
-	 *            The link to data, can be a DL, RD or DT Block or HL, DZ, but
-	 *            these are not supported.
+	 *            The link to data, can be a HL, DL, RD, DT or DZ Block. Zipped
+	 *            blocks are referenced in the {@link DZCache} they are inflated
+	 *            into.
 	 * @param parity
 	 *            Used for previews, where only each third record has to be
 	 *            addressed. If every record will be addressed, parity has to be
@@ -1148,47 +1583,52 @@ public class AoSessionWriter {
 	 */
 	void writeEc(ODSModelCache modelCache, long iidLc, IDBLOCK idBlock, DGBLOCK dgBlock, CGBLOCK cgBlock,
 			CNBLOCK cnBlock, CCBLOCK ccBlock, long sectionstart, int parity) throws AoException, IOException {
+		long recordSize = cgBlock.getDataBytes() + dgBlock.getRecIdSize() + cgBlock.getInvalBytes();
+		ODSInsertStatement ins = new ODSInsertStatement(modelCache, "ec");
+		addEc(ins, iidLc, idBlock, dgBlock, cgBlock, cnBlock, ccBlock, getDataSections(idBlock, sectionstart, recordSize),
+				parity, null);
+		ins.executeBatch();
+	}
 
-		if (isRatConv2ExtComp(ccBlock)) {
-			// NOTE: once CCBLOCK is no longer required, it should be removed
-			// from this method's signature!
-			createCustomRatConvEC(modelCache, iidLc, idBlock, dgBlock, cgBlock, cnBlock, ccBlock, sectionstart, parity);
+	/**
+	 * Adds the instances of 'AoExternalComponent' of a channel to an insert
+	 * statement, see
+	 * {@link #writeEc(ODSModelCache, long, IDBLOCK, DGBLOCK, CGBLOCK, CNBLOCK, CCBLOCK, long, int)}.
+	 *
+	 * @param ins
+	 *            The insert statement of the 'AoExternalComponent' instances,
+	 *            each instance is added as a new row.
+	 * @param sections
+	 *            The data sections containing the records.
+	 * @param extracted
+	 *            The channel values already calculated by
+	 *            {@link #extractChannels(IDBLOCK, DGBLOCK, CGBLOCK, List, List)},
+	 *            null to calculate them here.
+	 */
+	private void addEc(ODSInsertStatement ins, long iidLc, IDBLOCK idBlock, DGBLOCK dgBlock, CGBLOCK cgBlock,
+			CNBLOCK cnBlock, CCBLOCK ccBlock, List<DataSection> sections, int parity, ExtractedChannel extracted)
+			throws AoException, IOException {
+		if (isCalculated(ccBlock)) {
+			if (parity != 0) {
+				throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
+						"channel preview with formula == " + ccBlock.getType() + " is currently not supported");
+			}
+			if (extracted == null) {
+				extracted = new ExtractedChannel(cnBlock, ccBlock);
+				extractChannels(idBlock, dgBlock, cgBlock, sections, Collections.singletonList(extracted));
+			}
+			addCustomRatConvEC(ins, iidLc, extracted);
 		} else {
-			ODSInsertStatement ins = new ODSInsertStatement(modelCache, "ec");
-
-			DLBLOCK currdl = null; // current list block
-			int dlindex = 0; // index in data list block.
 			int totalindex = 0; // nuber of blocks read;
-			long currblock = -1;
+			long recordIndex = 0; // index of first record in current block
 
-			switch (BLOCK.getBlockType(idBlock.sbc, sectionstart)) {
-			case "##DT":
-			case "##RD":
-				currblock = sectionstart;
-				break;
-			case "##DL":
-				currdl = DLBLOCK.read(idBlock.sbc, sectionstart);
-				currblock = currdl.getLnkDlData()[0];
-				// perform check for records over blockborders.
-				if (currdl.breaksRecords(cgBlock.getDataBytes() + dgBlock.getRecIdSize() + cgBlock.getInvalBytes())) {
-					throw new IOException("This data list cannot be read because records are splitted.");
-				}
-				break;
-			case "##DZ":
-			case "##HL":
-				throw new IOException("Zipped blocks cannot be parsed into the ODS-Format.");
-			}
-
-			while (currblock != -1) {
+			for (DataSection section : sections) {
+				ins.next();
 				ins.setStringVal("iname", "ec_" + countFormat.format(++totalindex));
-				Path mdfFilePath = idBlock.getMdfFilePath().getFileName();
-				if (mdfFilePath == null) {
-					throw new IOException("mdfFilePath must not be null");
-				}
 
-				long startOffset = currblock + 24L;
+				long startOffset = section.getPos();
 				ins.setLongVal("on", totalindex);
-				ins.setStringVal("fl", mdfFilePath.toString());
+				ins.setStringVal("fl", section.getFileName());
 
 				int vt = getValueType(cnBlock);
 				ins.setEnumVal("vt", vt);
@@ -1216,18 +1656,24 @@ public class AoSessionWriter {
 
 				// get Cycle count from Block size.
 				int cycleCount = -1;
-				if (BLOCK.getBlockType(idBlock.sbc, currblock).equals(DTBLOCK.BLOCK_ID)) {
-					cycleCount = (int) ((DTBLOCK.read(idBlock.sbc, currblock).getLength() - 24) / bytesize);
+				if (section.hasRecords()) {
+					cycleCount = (int) (section.getLength() / bytesize);
 					ins.setLongVal("cl", cycleCount);
-				} else if (BLOCK.getBlockType(idBlock.sbc, currblock).equals(RDBLOCK.BLOCK_ID)) {
-					cycleCount = (int) ((RDBLOCK.read(idBlock.sbc, currblock).getLength() - 24) / bytesize);
-					ins.setLongVal("cl", cycleCount);
-				} else {
-
 				}
 
 				// export flags
-				exportFlags(ins, idBlock, dgBlock, cgBlock, cnBlock, startOffset, cycleCount);
+				if (extracted == null) {
+					RecordReader records = new RecordReader(section.getChannel(),
+							(int) (recSizeWoInval + cgBlock.getInvalBytes()), recordBufferSize);
+					records.addSection(startOffset, cycleCount * (recSizeWoInval + cgBlock.getInvalBytes()));
+					exportFlags(ins, idBlock, dgBlock, cgBlock, cnBlock, records);
+				} else if (extracted.flagsOffset >= 0 && cycleCount > 0) {
+					ins.setStringVal("ffl", flagFile.getFileName().toString());
+					ins.setLongLongVal("fso", extracted.flagsOffset + 2L * recordIndex);
+				}
+				if (cycleCount > 0) {
+					recordIndex += cycleCount;
+				}
 
 				// type spec is of type: dt_bit_* => write bit offset (bo) and bit count (bc)
 				boolean writeBitProps = vt > 26 && vt < 33;
@@ -1237,33 +1683,32 @@ public class AoSessionWriter {
 					ins.setShortVal("bc", (short) cnBlock.getBitCount());
 				}
 
-				// bind to local column and write instance
+				// bind to local column
 				ins.setLongLongVal("lc", iidLc);
-				ins.execute();
-
-				// switch to next block or escape
-				if (currdl == null) {
-					currblock = -1; // just a single data block
-				} else {
-					// search next block in list.
-					dlindex++;
-					if (dlindex < currdl.getCount()) { // more blocks in list
-						currblock = currdl.getLnkDlData()[dlindex];
-					} else {
-						// switch to next list, and start with first block?
-						if (currdl.getLnkDlNext() > 0) {
-							currdl = currdl.getDlNextBlock();
-							dlindex = 0;
-							currblock = currdl.getLnkDlData()[dlindex];
-						} else {
-							currblock = -1;
-						}
-					}
-				}
 			}
 		}
 	}
 
+	/**
+	 * Returns the data sections of all data blocks of a data group, see
+	 * {@link DataSectionResolver#getDataSections(long, long)}.
+	 *
+	 * @param idBlock
+	 *            The IDBLOCK.
+	 * @param sectionstart
+	 *            The link to data, can be a HL, DL, RD, DT or DZ Block.
+	 * @param recordSize
+	 *            The size of a single record, used to check that no record is
+	 *            split over two blocks.
+	 * @return The data sections in record order.
+	 * @throws IOException
+	 *             Error reading from MDF file or unsupported data blocks.
+	 */
+	private List<DataSection> getDataSections(IDBLOCK idBlock, long sectionstart, long recordSize)
+			throws IOException {
+		return dataSectionResolver.getDataSections(sectionstart, recordSize);
+	}
+
 	/**
 	 * Create a new Unit for a channel, if needed.
 	 * 
@@ -1389,6 +1834,25 @@ public class AoSessionWriter {
 	 *             Error reading from MDF file.
 	 */
 	private void writeSiBlock(ODSInsertStatement ins, SIBLOCK siBlock) throws AoException, IOException {
+		writeSiBlock(ins, siBlock, xmlParser);
+	}
+
+	/**
+	 * Write the values of a SIBLOCK with given XML parser.
+	 *
+	 * @param ins
+	 *            The insert statement.
+	 * @param siBlock
+	 *            The SIBLOCK.
+	 * @param parser
+	 *            The XML parser used by the current thread.
+	 * @throws AoException
+	 *             Error writing to session.
+	 * @throws IOException
+	 *             Error reading from MDF file.
+	 */
+	private void writeSiBlock(ODSInsertStatement ins, SIBLOCK siBlock, MDF4XMLParser parser)
+			throws AoException, IOException {
 		// si_tx_name
 		TXBLOCK txName = siBlock.getTxNameBlock();
 		if (txName != null) {
@@ -1404,7 +1868,7 @@ public class AoSessionWriter {
 		if (block instanceof TXBLOCK) {
 			ins.setStringVal("src_cmt", ((TXBLOCK) block).getTxData());
 		} else if (block instanceof MDBLOCK) {
-			xmlParser.writeSICommentToCg(ins, ((MDBLOCK) block).getMdData());
+			parser.writeSICommentToCg(ins, ((MDBLOCK) block).getMdData());
 		}
 
 		ins.setEnumVal("src_type", siBlock.getSourceType());
@@ -1415,13 +1879,11 @@ public class AoSessionWriter {
 	/**
 	 * Read the name of a Channel.
 	 * 
-	 * @param cnBlock
-	 *            The Channel Block
+	 * @param nameblk
+	 *            The name TXBLOCK of the Channel (can be null)
 	 * @return The name.
-	 * @throws IOException
 	 */
-	private static String readMeqName(CNBLOCK cnBlock) throws IOException {
-		TXBLOCK nameblk = cnBlock.getCnTxNameBlock();
+	private static String readMeqName(TXBLOCK nameblk) {
 		String meqName = "default";
 		if (nameblk != null) {
 			meqName = nameblk.getTxData().trim();
@@ -1486,9 +1948,8 @@ public class AoSessionWriter {
 						"unable write channel with rational conversion for ccBlock: " + ccBlock);
 			}
 		}
-		// 'Text formula' => 'external_component'
+		// 'Text formula' => 'external_component', values are calculated
 		else if (formula == 3) {
-			LOG.error("Text formulas are not supported at the moment.");
 			return 7;
 		}
 		// 'ALL lookup conversions' => 'external_component'
@@ -1786,8 +2247,8 @@ public class AoSessionWriter {
 				return 7; // DT_DOUBLE
 			}
 		}
-		// 2 = rational conversion
-		else if (formula == 2) {
+		// 2 = rational conversion, 3 = algebraic conversion
+		else if (formula == 2 || formula == 3) {
 			// values are calculated either way with real (64 bit ieee-754)
 			// double values no matter how many bits are used for internal
 			// values, therefore it is safe to return DT_DOUBLE here
@@ -1917,249 +2378,418 @@ public class AoSessionWriter {
 	}
 
 	/**
-	 * Write the instances of 'AoExternalComponent'.
+	 * Checks whether the physical values of a channel have to be calculated
+	 * and stored in an external file, which is the case for rational
+	 * conversions not representable as 'raw_linear_external' and for
+	 * algebraic conversions (text formulas).
+	 *
+	 * @param ccBlock
+	 *            the conversion block
+	 * @return true if the values must be calculated and stored in an external
+	 *         file
+	 */
+	private static boolean isCalculated(CCBLOCK ccBlock) {
+		return ccBlock != null && (ccBlock.getType() == 3 || isRatConv2ExtComp(ccBlock));
+	}
+
+	/**
+	 * Checks whether a channel has to be or shall be skipped by
+	 * {@link #writeLc(ODSModelCache, long, long, long[], IDBLOCK, DGBLOCK, SubMatrix, Map, Map, Map, SRBLOCK)}.
+	 *
+	 * @param cnBlock
+	 *            the channel block
+	 * @param ccBlock
+	 *            the conversion block
+	 * @return the reason for skipping the channel, null if the channel is
+	 *         written
+	 * @throws IOException
+	 *             Unsigned 64 bit data channel, which is not skipped.
+	 */
+	private String getSkipReason(CNBLOCK cnBlock, CCBLOCK ccBlock) throws IOException {
+		int dt = cnBlock.getDataType();
+		if (hasInvalidationBit(cnBlock) && !writeFlagsFile) {
+			return SKIP_INVALID_VALUES;
+		} else if (skipScaleConversionChannels && ccBlock != null && ccBlock.hasCCRefs()) {
+			return "scale conversion rules in CCBlocks";
+		} else if (skipByteStreamChannels && 10 == dt) {
+			// remove this check once it is save to import channels with
+			// byte stream data
+			return "byte stream data";
+		} else if (10 == dt && cnBlock.getLnkComposition() != 0) {
+			return "composed byte stream data";
+		} else if (64 == cnBlock.getBitCount() && (0 /* LEO */ == dt || 1 /* BEO */ == dt)
+				&& 1 != cnBlock.getSyncType()) {
+			// UNSIGNED 64 bit: a time channel (sync_type == 1) is considered
+			// save to interpret as signed 64 bit, it is not possible to
+			// represent other channels => either skip or fail
+			if (skipUINT64Channels) {
+				return "unsigned 64 bit data";
+			}
+			throw new IOException("unable to write unsigned 64 bit data channel");
+		}
+		return null;
+	}
+
+	/**
+	 * Checks whether the values of a channel are written as
+	 * 'AoExternalComponent' instances by
+	 * {@link #writeLc(ODSModelCache, long, long, long[], IDBLOCK, DGBLOCK, SubMatrix, Map, Map, Map, SRBLOCK)},
+	 * see {@link #getSkipReason(CNBLOCK, CCBLOCK)}.
+	 *
+	 * @param cnBlock
+	 *            the channel block
+	 * @param ccBlock
+	 *            the conversion block
+	 * @return true if the channel is written as external component
+	 * @throws IOException
+	 *             Unsigned 64 bit data channel, which is not skipped.
+	 */
+	private boolean isExternalComponent(CNBLOCK cnBlock, CCBLOCK ccBlock) throws IOException {
+		if (getSkipReason(cnBlock, ccBlock) != null) {
+			return false;
+		}
+		// not a string data type (6-9) or VLSD channel (type 1) or virtual
+		// master channel (type 3)
+		int dt = cnBlock.getDataType();
+		return !(dt >= 6 && dt <= 9 || cnBlock.getChannelType() == 1 || cnBlock.getChannelType() == 3);
+	}
+
+	/**
+	 * Write the instance of 'AoExternalComponent' referencing the values
+	 * calculated by
+	 * {@link #extractChannels(IDBLOCK, DGBLOCK, CGBLOCK, List, List)}.
 	 * <p>
-	 * One instance is written for all calculated vaues.
+	 * One instance is written for all calculated values.
 	 * <p>
-	 * NOTE: This is a workaround to provide channels with formula == 2. Such
-	 * channel values are described with a rational conversion, which can not be
-	 * described in ODS. Therefore the whole value sequence is calculated and
-	 * referenced as an 'external_component'.
+	 * NOTE: This is a workaround to provide channels with formula == 2 or
+	 * formula == 3. Such channel values are described with a rational or
+	 * algebraic conversion, which can not be described in ODS. Therefore the
+	 * whole value sequence is calculated and referenced as an
+	 * 'external_component'.
 	 * <p>
 	 * <b>ATTENTION: THIS IS JUST A WORKAROUND UND HAS TO BE REMOVED AS SOON AS
 	 * IT IS POSSIBLE TO DESCRIBE SUCH CHANNELS IN ODS!</b>
 	 *
-	 * @param modelCache
-	 *            The application model cache.
+	 * @param ins
+	 *            The insert statement of the 'AoExternalComponent' instances,
+	 *            the instance is added as a new row.
 	 * @param iidLc
 	 *            The instance id of the 'AoLocalColumn' instance.
+	 * @param extracted
+	 *            The extracted channel.
+	 */
+	@Deprecated
+	private void addCustomRatConvEC(ODSInsertStatement ins, long iidLc, ExtractedChannel extracted) {
+		if (extracted.ratConvOffset < 0) {
+			// no values
+			return;
+		}
+
+		// values have been calculated and written to an external file
+		ins.next();
+		ins.setStringVal("iname", "ec_custom_rat_conv");
+		ins.setLongVal("cl", (int) extracted.count);
+		ins.setEnumVal("vt", 6); // ieeefloat8 (little endian; 11 would be
+									// big endian)
+		ins.setLongLongVal("so", extracted.ratConvOffset);
+		ins.setLongVal("bs", (int) extracted.count * 8);
+		ins.setLongVal("vb", (int) extracted.count);
+		ins.setLongVal("vo", 0);
+		ins.setStringVal("fl", customRatConfPath.getFileName().toString());
+		ins.setLongLongVal("lc", iidLc);
+
+		// export flags
+		if (extracted.flagsOffset >= 0) {
+			ins.setStringVal("ffl", flagFile.getFileName().toString());
+			ins.setLongLongVal("fso", extracted.flagsOffset);
+		}
+	}
+
+	/**
+	 * Calculates the values of all given channels which cannot be referenced
+	 * in the MDF file directly (rational and algebraic conversions and
+	 * invalidation flags).
+	 * <p>
+	 * The records of the data group are read only once, each record is passed
+	 * to the consumers of all channels. The values are written to the sidecar
+	 * files, their positions are stored in the given channels.
+	 *
 	 * @param idBlock
 	 *            The IDBLOCK.
 	 * @param dgBlock
 	 *            The DGBLOCK.
 	 * @param cgBlock
 	 *            The CGBLOCK.
-	 * @param cnBlock
-	 *            The CNBLOCK.
-	 * @param ccBlock
-	 *            The CCBLOCK.
-	 * @param sectionstart
-	 *            The link to data, can be a DL, RD or DT Block or HL, DZ, but
-	 *            these are not supported.
-	 * @param parity
-	 *            Used for previews, where only each third record has to be
-	 *            addressed. If every record will be addressed, parity has to be
-	 *            set to 0. Otherwise valid values are 1, 2 and 3. (e.g. if
-	 *            parity==1 the first of each three records will be addressed)
-	 *
+	 * @param sections
+	 *            The data sections containing the records.
+	 * @param extractedChannels
+	 *            The channels to extract.
 	 * @throws AoException
-	 *             Error writing to session.
+	 *             Unsupported channel value type.
 	 * @throws IOException
-	 *             Error reading from MDF file.
+	 *             Error reading from MDF file or writing sidecar files.
 	 */
-	@Deprecated
-	private void createCustomRatConvEC(ODSModelCache modelCache, long iidLc, IDBLOCK idBlock, DGBLOCK dgBlock,
-			CGBLOCK cgBlock, CNBLOCK cnBlock, CCBLOCK ccBlock, long sectionstart, int parity)
-			throws AoException, IOException {
-
-		if (parity != 0) {
-			throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
-					"channel preview with formula == 2 (rational conversion) is currently not supported");
-		}
-
-		DLBLOCK currdl = null; // current list block
-		int dlindex = 0; // index in data list block.
-		long currblock = -1;
-
-		switch (BLOCK.getBlockType(idBlock.sbc, sectionstart)) {
-		case "##DT":
-		case "##RD":
-			currblock = sectionstart;
-			break;
-		case "##DL":
-			currdl = DLBLOCK.read(idBlock.sbc, sectionstart);
-			currblock = currdl.getLnkDlData()[0];
-			// perform check for records over blockborders.
-			if (currdl.breaksRecords(cgBlock.getDataBytes() + dgBlock.getRecIdSize() + cgBlock.getInvalBytes())) {
-				throw new IOException("This data list cannot be read because records are splitted.");
+	private void extractChannels(IDBLOCK idBlock, DGBLOCK dgBlock, CGBLOCK cgBlock, List<DataSection> sections,
+			List<ExtractedChannel> extractedChannels) throws AoException, IOException {
+		List<ExtractedChannel> ratConvChannels = new ArrayList<>();
+		List<ExtractedChannel> flagChannels = new ArrayList<>();
+		for (ExtractedChannel extracted : extractedChannels) {
+			if (isCalculated(extracted.ccBlock)) {
+				ratConvChannels.add(extracted);
+			}
+			if (hasInvalidationBit(extracted.cnBlock)) {
+				flagChannels.add(extracted);
 			}
-			break;
-		case "##DZ":
-		case "##HL":
-			throw new IOException("Zipped blocks cannot be parsed into the ODS-Format.");
 		}
-
-		if (currblock < 0) {
+		int consumers = ratConvChannels.size() + flagChannels.size();
+		if (consumers == 0) {
 			return;
 		}
 
-		if (customRatConfPath == null) {
-			customRatConfPath = idBlock.getMdfFilePath().resolveSibling("rational_conversion.calc");
-			if (!Files.exists(customRatConfPath)) {
-				Files.createFile(customRatConfPath);
-			}
+		long start = System.currentTimeMillis();
+		int recordSize = (int) (dgBlock.getRecIdSize() + cgBlock.getDataBytes() + cgBlock.getInvalBytes());
+		RecordReader records = new RecordReader(idBlock.sbc, recordSize, recordBufferSize);
+		addDataSections(records, sections);
+		long count = records.getRecordCount();
+		if (count < 1) {
+			return;
 		}
-
-		try (SeekableByteChannel channel = Files.newByteChannel(customRatConfPath, StandardOpenOption.APPEND)) {
-			ByteBuffer writeBuffer = ByteBuffer.wrap(new byte[8]);
-			writeBuffer.order(ByteOrder.LITTLE_ENDIAN);
-			long startOffset = channel.position();
-			long count = 0;
-			while (currblock != -1) {
-				long vo = dgBlock.getRecIdSize() + cnBlock.getByteOffset() + cnBlock.getBitOffset() / 8;
-				long recSizeWoInval = cgBlock.getDataBytes() + dgBlock.getRecIdSize();
-				long bs = recSizeWoInval + cgBlock.getInvalBytes();
-				long so = currblock + 24L;
-
-				int cl;
-				if (BLOCK.getBlockType(idBlock.sbc, currblock).equals(DTBLOCK.BLOCK_ID)) {
-					cl = (int) ((DTBLOCK.read(idBlock.sbc, currblock).getLength() - 24) / bs);
-				} else if (BLOCK.getBlockType(idBlock.sbc, currblock).equals(RDBLOCK.BLOCK_ID)) {
-					cl = (int) ((RDBLOCK.read(idBlock.sbc, currblock).getLength() - 24) / bs);
-				} else {
-					throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
-							"component length 'cl' is not allowed to be unknown");
+		if (!ratConvChannels.isEmpty() && (count != (int) count || count * 8 > Integer.MAX_VALUE)) {
+			throw new AoException(ErrorCode.AO_IMPLEMENTATION_PROBLEM, SeverityFlag.ERROR, 0,
+					"value count exceeded max supported block size supported by ODS");
+		}
+
+		if (!ratConvChannels.isEmpty()) {
+			try (FileChannel ratConvChannel = FileChannel.open(getCustomRatConfPath(idBlock),
+					StandardOpenOption.WRITE)) {
+				// each channel writes its values into an own region of the
+				// file, the record ranges are converted in parallel
+				int threads = Math.max(1, conversionThreads);
+				RecordAccessor accessor = new RecordAccessor(recordSize,
+						Math.max(MIN_EXTRACTION_BUFFER_SIZE, recordBufferSize / threads));
+				addDataSections(accessor, sections);
+				ValueConversionWriter writer = new ValueConversionWriter(accessor, threads);
+				long pos = reserveCustomRatConv(idBlock, count * 8 * ratConvChannels.size());
+				for (ExtractedChannel extracted : ratConvChannels) {
+					writer.addChannel(createConversion(dgBlock, extracted.cnBlock, extracted.ccBlock), pos);
+					extracted.ratConvOffset = pos;
+					extracted.count = count;
+					pos += count * 8;
 				}
+				writer.write(ratConvChannel);
+			}
+		}
+		if (!flagChannels.isEmpty()) {
+			extractFlags(idBlock, dgBlock, cgBlock, records, flagChannels);
+		}
+		LOG.debug(new StringBuilder().append("Extracted ").append(consumers).append(" value sequences from ").append(count).append(" records in ").append(System.currentTimeMillis() - start).append("ms").toString());
+	}
 
-				short bo = cnBlock.getBitOffset();
-				short bc = bo != 0 && cnBlock.getBitCount() % 8 != 0 ? (short) cnBlock.getBitCount() : 0;
-				double[] p = ccBlock.getVal();
+	/**
+	 * Extracts the invalidation bits of the given channels in a single pass
+	 * over the records and writes them as ASAM ODS flags into the flags file.
+	 * <p>
+	 * Channels sharing an invalidation bit share a bitmap. No flags are
+	 * written for channels without invalid values, identical flags are written
+	 * only once and referenced by all channels.
+	 *
+	 * @param idBlock
+	 *            The IDBLOCK.
+	 * @param dgBlock
+	 *            The DGBLOCK.
+	 * @param cgBlock
+	 *            The CGBLOCK.
+	 * @param records
+	 *            The records of the channel group.
+	 * @param flagChannels
+	 *            The channels with invalidation bit.
+	 * @throws IOException
+	 *             Error reading from MDF file or writing the flags file.
+	 */
+	private void extractFlags(IDBLOCK idBlock, DGBLOCK dgBlock, CGBLOCK cgBlock, RecordReader records,
+			List<ExtractedChannel> flagChannels) throws IOException {
+		long count = records.getRecordCount();
+		RecordScanner scanner = new RecordScanner();
+		Map<Long, InvalidationBitmap> bitmaps = new HashMap<>();
+		for (ExtractedChannel extracted : flagChannels) {
+			long invalBitPos = extracted.cnBlock.getInvalBitPos();
+			if (!bitmaps.containsKey(invalBitPos)) {
+				int flagByteOffset = (int) (dgBlock.getRecIdSize() + cgBlock.getDataBytes() + (invalBitPos >> 3));
+				InvalidationBitmap bitmap = new InvalidationBitmap(flagByteOffset, (int) invalBitPos & 0x07, count);
+				bitmaps.put(invalBitPos, bitmap);
+				scanner.addConsumer(bitmap);
+			}
+		}
+		scanner.scan(records);
 
-				if (bo != 0 || bc != 0 || cnBlock.getBitCount() % 8 != 0) {
-					throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0, new StringBuilder().append("bit count '").append(bc).append("' and bit offset '").append(bo).append("' is not supported for custom ration conversion").toString());
+		List<InvalidationBitmap> written = new ArrayList<>();
+		List<ByteOrder> writtenByteOrders = new ArrayList<>();
+		List<Long> writtenOffsets = new ArrayList<>();
+		FileChannel flagsChannel = null;
+		try {
+			for (ExtractedChannel extracted : flagChannels) {
+				InvalidationBitmap bitmap = bitmaps.get(extracted.cnBlock.getInvalBitPos());
+				if (bitmap.isAllValid()) {
+					// all values are valid, no flags required
+					continue;
 				}
-
-				int bits = (int) cnBlock.getBitCount();
-				int dt = cnBlock.getDataType();
-				boolean isInteger = dt > -1 && dt < 4;
-				boolean isReal = dt > 3 && dt < 6;
-				boolean isUnsigned = dt == 0 || dt == 1;
+				int dt = extracted.cnBlock.getDataType();
 				ByteOrder byteOrder = dt == 1 || dt == 3 || dt == 5 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
-				for (int i = 0; i < cl; i++) {
-					idBlock.sbc.position(so + i * bs + vo);
-					ByteBuffer byteBuffer = ByteBuffer.allocate(bits / 8);
-					byteBuffer.order(byteOrder);
-					idBlock.sbc.read(byteBuffer);
-					byteBuffer.rewind();
-
-					double internal = 0;
-					if (isInteger) {
-						if (bits == 8) {
-							// isUnsigned ? short : byte
-							internal = isUnsigned ? byteBuffer.get() & 0xFF : byteBuffer.get();
-						} else if (bits == 16) {
-							// isUnsigned ? int : short
-							internal = isUnsigned ? byteBuffer.getShort() & 0xFFFF : byteBuffer.getShort();
-						} else if (bits == 32) {
-							// isUnsigned ? long : int
-							internal = isUnsigned ? byteBuffer.getInt() & 0xFFFFFFFF : byteBuffer.getInt();
-						} else if (bits == 64) {
-							if (isUnsigned) {
-								throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
-										"reading unsigned 64 bit integeres is not implemented");
-							}
-							// to support unsigned 64 bit, BigInteger has to be
-							// used -> performance costs
-							internal = byteBuffer.getLong();
-						} else {
-							String unsigned = isUnsigned ? "unsigned" : "signed";
-							throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
-									new StringBuilder().append("customized reading of '").append(bits).append("' bit '").append(unsigned).append("' intergers is not implemented")
-											.toString());
-						}
-					} else if (isReal) {
-						if (bits == 32) {
-							// ieee754 floating point
-							internal = byteBuffer.getFloat();
-						} else if (bits == 64) {
-							// ieee754 floating point
-							internal = byteBuffer.getDouble();
-						} else {
-							String unsigned = isUnsigned ? "unsigned" : "signed";
-							throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
-									new StringBuilder().append("customized reading of '").append(bits).append("' bit '").append(unsigned).append("' real is not implemented")
-											.toString());
-						}
-					} else {
-						throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
-								"given value is neither an integer nor a real number");
+				long offset = -1;
+				for (int i = 0; i < written.size() && offset < 0; i++) {
+					if (writtenByteOrders.get(i) == byteOrder && written.get(i).hasSameFlags(bitmap)) {
+						offset = writtenOffsets.get(i);
 					}
-					double phys = (p[0] * Math.pow(internal, 2) + p[1] * internal + p[2])
-							/ (p[3] * Math.pow(internal, 2) + p[4] * internal + p[5]);
-
-					writeBuffer.putDouble(phys);
-					writeBuffer.rewind();
-					channel.write(writeBuffer);
-					writeBuffer.rewind();
-					count++;
 				}
-
-				// switch to next block or escape
-				if (currdl == null) {
-					currblock = -1; // just a single data block
-				} else {
-					// search next block in list.
-					dlindex++;
-					if (dlindex < currdl.getCount()) { // more blocks in list
-						currblock = currdl.getLnkDlData()[dlindex];
-					} else {
-						// switch to next list, and start with first block?
-						if (currdl.getLnkDlNext() > 0) {
-							currdl = currdl.getDlNextBlock();
-							dlindex = 0;
-							currblock = currdl.getLnkDlData()[dlindex];
-						} else {
-							currblock = -1;
-						}
-					}
-				}
-
-				// switch to next block or escape
-				if (currdl == null) {
-					currblock = -1; // just a single data block
-				} else {
-					// search next block in list.
-					dlindex++;
-					if (dlindex < currdl.getCount()) { // more blocks in list
-						currblock = currdl.getLnkDlData()[dlindex];
-					} else {
-						// switch to next list, and start with first block?
-						if (currdl.getLnkDlNext() > 0) {
-							currdl = currdl.getDlNextBlock();
-							dlindex = 0;
-							currblock = currdl.getLnkDlData()[dlindex];
-						} else {
-							currblock = -1;
-						}
+				if (offset < 0) {
+					if (flagsChannel == null) {
+						flagsChannel = FileChannel.open(getFlagFile(idBlock), StandardOpenOption.WRITE);
 					}
+					offset = reserveFlags(idBlock, 2 * bitmap.getCount());
+					bitmap.writeFlags(flagsChannel, offset, byteOrder, FLAGS_BUFFER_SIZE);
+					written.add(bitmap);
+					writtenByteOrders.add(byteOrder);
+					writtenOffsets.add(offset);
 				}
+				extracted.flagsOffset = offset;
+				extracted.count = count;
+			}
+		} finally {
+			if (flagsChannel != null) {
+				flagsChannel.close();
 			}
+		}
+	}
 
-			if (count < 0 || count != (int) count || count * 8 > Integer.MAX_VALUE) {
-				throw new AoException(ErrorCode.AO_IMPLEMENTATION_PROBLEM, SeverityFlag.ERROR, 0,
-						"value count exceeded max supported block size supported by ODS");
+	/**
+	 * Creates the conversion calculating the physical values of a channel with
+	 * rational or algebraic conversion.
+	 *
+	 * @param dgBlock
+	 *            The DGBLOCK.
+	 * @param cnBlock
+	 *            The CNBLOCK.
+	 * @param ccBlock
+	 *            The CCBLOCK.
+	 * @return The conversion.
+	 * @throws AoException
+	 *             Unsupported channel value type.
+	 */
+	private ValueConversion createConversion(DGBLOCK dgBlock, CNBLOCK cnBlock, CCBLOCK ccBlock)
+			throws AoException, IOException {
+		short bo = cnBlock.getBitOffset();
+		short bc = bo != 0 && cnBlock.getBitCount() % 8 != 0 ? (short) cnBlock.getBitCount() : 0;
+		if (bo != 0 || bc != 0 || cnBlock.getBitCount() % 8 != 0) {
+			throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0, new StringBuilder().append("bit count '").append(bc).append("' and bit offset '").append(bo).append("' is not supported for custom ration conversion").toString());
+		}
+
+		int bits = (int) cnBlock.getBitCount();
+		int dt = cnBlock.getDataType();
+		boolean isInteger = dt > -1 && dt < 4;
+		boolean isReal = dt > 3 && dt < 6;
+		boolean isUnsigned = dt == 0 || dt == 1;
+		if (isInteger) {
+			if (bits == 64 && isUnsigned) {
+				// to support unsigned 64 bit, BigInteger has to be
+				// used -> performance costs
+				throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
+						"reading unsigned 64 bit integeres is not implemented");
+			} else if (bits != 8 && bits != 16 && bits != 32 && bits != 64) {
+				String unsigned = isUnsigned ? "unsigned" : "signed";
+				throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
+						new StringBuilder().append("customized reading of '").append(bits).append("' bit '").append(unsigned).append("' intergers is not implemented")
+								.toString());
+			}
+		} else if (isReal) {
+			if (bits != 32 && bits != 64) {
+				String unsigned = isUnsigned ? "unsigned" : "signed";
+				throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
+						new StringBuilder().append("customized reading of '").append(bits).append("' bit '").append(unsigned).append("' real is not implemented")
+								.toString());
 			}
+		} else {
+			throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
+					"given value is neither an integer nor a real number");
+		}
 
-			// values have been calculated and written to an external file
-			ODSInsertStatement ins = new ODSInsertStatement(modelCache, "ec");
-			ins.setStringVal("iname", "ec_custom_rat_conv");
-			ins.setLongVal("cl", (int) count);
-			ins.setEnumVal("vt", 6); // ieeefloat8 (little endian; 11 would be
-										// big endian)
-			ins.setLongLongVal("so", startOffset);
-			ins.setLongVal("bs", (int) count * 8);
-			ins.setLongVal("vb", (int) count);
-			ins.setLongVal("vo", 0);
-			ins.setStringVal("fl", customRatConfPath.getFileName().toString());
-			ins.setLongLongVal("lc", iidLc);
+		int vo = (int) (dgBlock.getRecIdSize() + cnBlock.getByteOffset() + cnBlock.getBitOffset() / 8);
+		ByteOrder byteOrder = dt == 1 || dt == 3 || dt == 5 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+		if (ccBlock.getType() == 3) {
+			return new FormulaConversion(vo, byteOrder, bits, isInteger, isUnsigned, getFormula(ccBlock));
+		}
+		return new RationalConversion(vo, byteOrder, bits, isInteger, isUnsigned, ccBlock.getVal());
+	}
 
-			// export flags
-			exportFlags(ins, idBlock, dgBlock, cgBlock, cnBlock, startOffset, count);
+	/**
+	 * Returns the compiled formula of an algebraic conversion. Each formula is
+	 * compiled only once, channels sharing a CCBLOCK share the formula.
+	 *
+	 * @param ccBlock
+	 *            The CCBLOCK with conversion type 3.
+	 * @return The compiled formula.
+	 * @throws AoException
+	 *             The formula is not valid.
+	 * @throws IOException
+	 *             Error reading the formula from MDF file.
+	 */
+	private Formula getFormula(CCBLOCK ccBlock) throws AoException, IOException {
+		Formula formula = formulas.get(ccBlock.getPos());
+		if (formula == null) {
+			try {
+				formula = Formula.compile(ccBlock.getFormula());
+			} catch (IllegalArgumentException e) {
+				throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
+						new StringBuilder().append("unable to compile text formula: ").append(e.getMessage()).toString());
+			}
+			formulas.put(ccBlock.getPos(), formula);
+		}
+		return formula;
+	}
 
-			ins.execute();
+	/**
+	 * Adds the data sections containing records to a record reader.
+	 *
+	 * @param records
+	 *            The record reader.
+	 * @param sections
+	 *            The data sections, see
+	 *            {@link #getRecordSections(IDBLOCK, DGBLOCK, CGBLOCK, Map)}.
+	 */
+	private static void addDataSections(RecordReader records, List<DataSection> sections) {
+		for (DataSection section : sections) {
+			if (section.hasRecords()) {
+				records.addSection(section.getChannel(), section.getPos(), section.getLength());
+			}
+		}
+	}
+
+	/**
+	 * Adds the data sections containing records to a record accessor.
+	 *
+	 * @param records
+	 *            The record accessor.
+	 * @param sections
+	 *            The data sections, see
+	 *            {@link #getRecordSections(IDBLOCK, DGBLOCK, CGBLOCK, Map)}.
+	 */
+	private static void addDataSections(RecordAccessor records, List<DataSection> sections) {
+		for (DataSection section : sections) {
+			if (section.hasRecords()) {
+				records.addSection(section.getChannel(), section.getPos(), section.getLength());
+			}
 		}
 	}
 
+	/**
+	 * Checks whether a channel has an active invalidation bit.
+	 *
+	 * @param cnBlock  the {@link CNBLOCK}, not null
+	 * @return  true if invalidation bit is set and activated
+	 */
+	private static boolean hasInvalidationBit(CNBLOCK cnBlock) {
+		return (cnBlock.getFlags() & 0x02) != 0 && cnBlock.getInvalBitPos() > 0;
+	}
+
 	/**
 	 * Exports ODS compliant flags into a separate file.
 	 *
@@ -2168,67 +2798,47 @@ public class AoSessionWriter {
 	 * @param dgBlock  the {@link DGBLOCK}, not null
 	 * @param cgBlock  the {@link CGBLOCK}, not null
 	 * @param cnBlock  the {@link CNBLOCK}, not null
-	 * @param startOffset  start of the next record
-	 * @param count  how many records to read
+	 * @param records  the records to read the flags from, not null
 	 * @throws IOException  in case of errors
 	 */
 	private void exportFlags(ODSInsertStatement ins, IDBLOCK idBlock, DGBLOCK dgBlock, CGBLOCK cgBlock, CNBLOCK cnBlock,
-			long startOffset, long count) throws IOException {
-		if ((cnBlock.getFlags() & 0x02) == 0 || cnBlock.getInvalBitPos() < 1 || count < 1) {
+			RecordReader records) throws IOException {
+		if (!hasInvalidationBit(cnBlock) || records.getRecordCount() < 1) {
 			// either invalidation bit not set or deactivated or no values available -> nothing to do
 			return;
 		}
 
-		try (SeekableByteChannel flagsChannel = loadFlagsFileChannel(idBlock)) {
-			ins.setStringVal("ffl", flagFile.getFileName().toString());
-			ins.setLongLongVal("fso", flagsChannel.position());
+		// collect the invalidation bits in a bitmap first
+		int flagBitsOffset = (int) (dgBlock.getRecIdSize() + cgBlock.getDataBytes());
+		InvalidationBitmap bitmap = new InvalidationBitmap(flagBitsOffset, (int) cnBlock.getInvalBitPos(),
+				records.getRecordCount());
+		ByteBuffer record;
+		while ((record = records.next()) != null) {
+			bitmap.consume(record, record.position());
+		}
+		if (bitmap.isAllValid()) {
+			// all values are valid -> no flags required
+			return;
+		}
 
+		try (FileChannel flagsChannel = FileChannel.open(getFlagFile(idBlock), StandardOpenOption.WRITE)) {
+			long pos = reserveFlags(idBlock, 2 * bitmap.getCount());
 			int dt = cnBlock.getDataType();
 			ByteOrder byteOrder = dt == 1 || dt == 3 || dt == 5 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
-			ByteBuffer flagsBuffer = ByteBuffer.allocate(FLAGS_BUFFER_SIZE);
-			ByteBuffer bb = ByteBuffer.allocate(1);
-			flagsBuffer.order(byteOrder);
-			bb.order(byteOrder);
-
-			long recordSize = dgBlock.getRecIdSize() + cgBlock.getDataBytes() + cgBlock.getInvalBytes();
-			long flabBytesOffset = dgBlock.getRecIdSize() + cgBlock.getDataBytes() + (cnBlock.getInvalBitPos() >> 3);
-			int bitOffset = ((int) cnBlock.getInvalBitPos()) & 0x07;
-			for (int i = 0; i < count; i++) {
-				// read current flag byte
-				bb.rewind();
-				idBlock.sbc.position(startOffset + recordSize * i + flabBytesOffset);
-				idBlock.sbc.read(bb);
-				bb.rewind();
-
-				// convert flag bit to ODS flag and add to write buffer
-				flagsBuffer.putShort((bb.get() & (1 << bitOffset)) != 0 ? 0 : (short) 15);
-
-				// write flags if buffer is full
-				if (flagsBuffer.position() % FLAGS_BUFFER_SIZE == 0) {
-					flagsBuffer.rewind();
-					flagsChannel.write(flagsBuffer);
-					flagsBuffer.rewind();
-				}
-			}
-
-			// write remaining flag bytes
-			if (flagsBuffer.position() > 0) {
-				int pos = flagsBuffer.position();
-				flagsBuffer.rewind();
-				flagsBuffer.limit(pos);
-				flagsChannel.write(flagsBuffer);
-			}
+			bitmap.writeFlags(flagsChannel, pos, byteOrder, FLAGS_BUFFER_SIZE);
+			ins.setStringVal("ffl", flagFile.getFileName().toString());
+			ins.setLongLongVal("fso", pos);
 		}
 	}
 
 	/**
-	 * Creates a {@link SeekableByteChannel} for the flags file.
+	 * Returns the flags file, it is created on first access.
 	 *
 	 * @param idBlock  used to resolve target flags file, not null
-	 * @return  the {@link SeekableByteChannel}, not null
+	 * @return  the flags file, not null
 	 * @throws IOException  if unable to create a flags file
 	 */
-	private SeekableByteChannel loadFlagsFileChannel(IDBLOCK idBlock) throws IOException {
+	private synchronized Path getFlagFile(IDBLOCK idBlock) throws IOException {
 		if (flagFile == null) {
 			flagFile = idBlock.getMdfFilePath().resolveSibling("flags.bin");
 			while (Files.exists(flagFile)) {
@@ -2236,9 +2846,180 @@ public class AoSessionWriter {
 			}
 
 			Files.createFile(flagFile);
+			flagFileReserved = 0;
+		}
+		return flagFile;
+	}
+
+	/**
+	 * Reserves a region at the end of the flags file, so the flags of several
+	 * data groups can be written concurrently.
+	 *
+	 * @param idBlock  used to resolve target flags file, not null
+	 * @param length  the length of the region
+	 * @return  the start position of the region
+	 * @throws IOException  if unable to create a flags file
+	 */
+	private synchronized long reserveFlags(IDBLOCK idBlock, long length) throws IOException {
+		getFlagFile(idBlock);
+		long start = flagFileReserved;
+		flagFileReserved += length;
+		return start;
+	}
+
+	/**
+	 * Returns the file receiving the values of channels with rational
+	 * conversion, it is created on first access.
+	 *
+	 * @param idBlock  used to resolve target file, not null
+	 * @return  the rational conversion file, not null
+	 * @throws IOException  if unable to create the file
+	 */
+	private synchronized Path getCustomRatConfPath(IDBLOCK idBlock) throws IOException {
+		if (customRatConfPath == null) {
+			customRatConfPath = idBlock.getMdfFilePath().resolveSibling("rational_conversion.calc");
+			if (!Files.exists(customRatConfPath)) {
+				Files.createFile(customRatConfPath);
+			}
+			customRatConfReserved = Files.size(customRatConfPath);
+		}
+		return customRatConfPath;
+	}
+
+	/**
+	 * Reserves a region at the end of the rational conversion file, so the
+	 * values of several data groups can be written concurrently.
+	 *
+	 * @param idBlock  used to resolve target file, not null
+	 * @param length  the length of the region
+	 * @return  the start position of the region
+	 * @throws IOException  if unable to create the file
+	 */
+	private synchronized long reserveCustomRatConv(IDBLOCK idBlock, long length) throws IOException {
+		getCustomRatConfPath(idBlock);
+		long start = customRatConfReserved;
+		customRatConfReserved += length;
+		return start;
+	}
+
+	/**
+	 * Prepares a data group in a worker thread.
+	 */
+	private class DataGroupTask implements Callable<DataGroupBundle> {
+
+		private final ODSModelCache modelCache;
+		private final IDBLOCK idBlock;
+		private final long iidMea;
+		private final MDF4Metadata.DataGroup dataGroup;
+		private final int firstGrpNo;
+
+		private DataGroupTask(ODSModelCache modelCache, IDBLOCK idBlock, long iidMea,
+				MDF4Metadata.DataGroup dataGroup, int firstGrpNo) {
+			this.modelCache = modelCache;
+			this.idBlock = idBlock;
+			this.iidMea = iidMea;
+			this.dataGroup = dataGroup;
+			this.firstGrpNo = firstGrpNo;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public DataGroupBundle call() throws AoException, IOException {
+			// the XML parser is not thread-safe
+			return prepareDataGroup(modelCache, idBlock, iidMea, dataGroup, firstGrpNo, new MDF4XMLParser());
+		}
+
+	}
+
+	/**
+	 * The prepared instances of a data group, written to the session in data
+	 * group order.
+	 */
+	private static class DataGroupBundle {
+
+		private final MDF4Metadata.DataGroup dataGroup;
+		private final List<SubMatrix> subMatrices = new ArrayList<>();
+		// key is the position of the CGBLOCK
+		private final Map<Long, DataSection> sortedSections = new HashMap<>();
+		// key is the position of the CGBLOCK
+		private final Map<Long, List<DataSection>> recordSections = new HashMap<>();
+
+		private DataGroupBundle(MDF4Metadata.DataGroup dataGroup) {
+			this.dataGroup = dataGroup;
+		}
+
+	}
+
+	/**
+	 * A channel group written as 'AoSubMatrix', with the values of the
+	 * instance except its name, the data sections of its records and its
+	 * channels written as 'AoExternalComponent'.
+	 */
+	private static class SubMatrix {
+
+		private final MDF4Metadata.ChannelGroup channelGroup;
+		private final int grpNo;
+		private final ODSInsertStatement ins;
+		private final List<DataSection> sections;
+		// key is the position of the CNBLOCK
+		private final Map<Long, ExtractedChannel> extractedChannels = new LinkedHashMap<>();
+
+		private SubMatrix(MDF4Metadata.ChannelGroup channelGroup, int grpNo, ODSInsertStatement ins,
+				List<DataSection> sections) {
+			this.channelGroup = channelGroup;
+			this.grpNo = grpNo;
+			this.ins = ins;
+			this.sections = sections;
+		}
+
+	}
+
+	/**
+	 * A channel written as 'AoLocalColumn', with its row in the batch insert
+	 * of its channel group.
+	 */
+	private static class LocalColumn {
+
+		private final CNBLOCK cnBlock;
+		private final CCBLOCK ccBlock;
+		private final String meqName;
+
+		// row in the batch insert, -1 if inserted on its own
+		private int lcRow = -1;
+		private long iidLc;
+
+		private LocalColumn(CNBLOCK cnBlock, CCBLOCK ccBlock, String meqName) {
+			this.cnBlock = cnBlock;
+			this.ccBlock = ccBlock;
+			this.meqName = meqName;
+		}
+
+	}
+
+	/**
+	 * A channel written as 'AoExternalComponent', with the positions of the
+	 * values calculated by
+	 * {@link AoSessionWriter#extractChannels(IDBLOCK, DGBLOCK, CGBLOCK, List, List)}.
+	 */
+	private static class ExtractedChannel {
+
+		private final CNBLOCK cnBlock;
+		private final CCBLOCK ccBlock;
+
+		// number of extracted values
+		private long count;
+		// position of the values in the rational conversion file, -1 if none
+		private long ratConvOffset = -1;
+		// position of the flags in the flags file, -1 if none
+		private long flagsOffset = -1;
+
+		private ExtractedChannel(CNBLOCK cnBlock, CCBLOCK ccBlock) {
+			this.cnBlock = cnBlock;
+			this.ccBlock = ccBlock;
 		}
 
-		return Files.newByteChannel(flagFile, StandardOpenOption.APPEND);
 	}
 
 }
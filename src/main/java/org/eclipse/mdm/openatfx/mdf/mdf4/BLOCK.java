@@ -19,6 +19,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
 
 /**
  * Base class for all blocks.
@@ -146,11 +148,16 @@ abstract class BLOCK {
 	 *             Error reading block type.
 	 */
 	protected static String getBlockType(SeekableByteChannel channel, long pos) throws IOException {
+		// block already parsed
+		String blockType = BlockCache.get(channel).getBlockType(pos);
+		if (blockType != null) {
+			return blockType;
+		}
+
 		// read block header
 		ByteBuffer bb = ByteBuffer.allocate(4);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.position(pos);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos);
 		bb.rewind();
 		return MDF4Util.readCharsISO8859(bb, 4);
 	}
@@ -0,0 +1,186 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4;
+
+import java.nio.channels.SeekableByteChannel;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per file cache of parsed blocks, keyed by the block position (= the link
+ * value pointing to the block).
+ * <p>
+ * Many channels share the same conversion, source and text blocks and the
+ * writer resolves the links of a single channel several times. The cache makes
+ * sure each of these blocks is parsed only once per file. It is bounded by the
+ * summed length of the cached blocks, least recently used blocks are evicted
+ * first.
+ * <p>
+ * There is one cache per opened MDF file channel. It has to be released with
+ * {@link #release(SeekableByteChannel)} once the file is not read anymore.
+ */
+class BlockCache {
+
+	/** The default budget of the summed block lengths (32 MB) */
+	static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+	// the caches of all currently opened files
+	private static final Map<SeekableByteChannel, BlockCache> CACHES = new IdentityHashMap<>();
+
+	private final long maxBytes;
+	private final LinkedHashMap<Long, BLOCK> blocks;
+
+	private long bytes;
+	private long hits;
+	private long misses;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxBytes
+	 *            The maximum summed length of all cached blocks.
+	 */
+	BlockCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+		this.blocks = new LinkedHashMap<>(256, 0.75f, true);
+	}
+
+	/**
+	 * Returns the block cache for given file channel, a new cache is created
+	 * if not yet existing.
+	 *
+	 * @param sbc
+	 *            The byte channel pointing to the MDF file.
+	 * @return The block cache, never null.
+	 */
+	static BlockCache get(SeekableByteChannel sbc) {
+		synchronized (CACHES) {
+			BlockCache cache = CACHES.get(sbc);
+			if (cache == null) {
+				cache = new BlockCache(DEFAULT_MAX_BYTES);
+				CACHES.put(sbc, cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Removes the block cache of given file channel.
+	 *
+	 * @param sbc
+	 *            The byte channel pointing to the MDF file.
+	 * @return The removed cache, null if none existed.
+	 */
+	static BlockCache release(SeekableByteChannel sbc) {
+		synchronized (CACHES) {
+			return CACHES.remove(sbc);
+		}
+	}
+
+	/**
+	 * Returns the cached block at given position.
+	 *
+	 * @param pos
+	 *            The block position.
+	 * @param type
+	 *            The expected block class.
+	 * @return The block, null if not cached or of another type.
+	 */
+	synchronized <T extends BLOCK> T get(long pos, Class<T> type) {
+		BLOCK block = blocks.get(pos);
+		if (type.isInstance(block)) {
+			hits++;
+			return type.cast(block);
+		}
+		misses++;
+		return null;
+	}
+
+	/**
+	 * Returns the block type identifier of the cached block at given position
+	 * without changing the hit/miss statistics.
+	 *
+	 * @param pos
+	 *            The block position.
+	 * @return The block type identifier, null if not cached.
+	 */
+	synchronized String getBlockType(long pos) {
+		BLOCK block = blocks.get(pos);
+		return block == null ? null : block.getId();
+	}
+
+	/**
+	 * Adds a parsed block to the cache. Least recently used blocks are evicted
+	 * if the size budget is exceeded.
+	 * <p>
+	 * If another thread has already cached a block of the same type at the
+	 * same position, the cached block is kept and returned, so that all readers
+	 * share one instance.
+	 *
+	 * @param block
+	 *            The block.
+	 * @return The cached block.
+	 */
+	synchronized <T extends BLOCK> T put(T block) {
+		BLOCK previous = blocks.get(block.getPos());
+		if (previous != null && previous.getClass() == block.getClass()) {
+			@SuppressWarnings("unchecked")
+			T cached = (T) previous;
+			return cached;
+		}
+		if (block.getLength() > maxBytes) {
+			return block;
+		}
+		blocks.put(block.getPos(), block);
+		if (previous != null) {
+			bytes -= previous.getLength();
+		}
+		bytes += block.getLength();
+
+		Iterator<BLOCK> iter = blocks.values().iterator();
+		while (bytes > maxBytes && iter.hasNext()) {
+			BLOCK eldest = iter.next();
+			iter.remove();
+			bytes -= eldest.getLength();
+		}
+		return block;
+	}
+
+	synchronized long getHits() {
+		return hits;
+	}
+
+	synchronized long getMisses() {
+		return misses;
+	}
+
+	synchronized int size() {
+		return blocks.size();
+	}
+
+	synchronized long getBytes() {
+		return bytes;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return new StringBuilder().append("BlockCache [blocks=").append(blocks.size()).append(", bytes=").append(bytes).append(", hits=").append(hits).append(", misses=")
+				.append(misses).append("]").toString();
+	}
+
+}
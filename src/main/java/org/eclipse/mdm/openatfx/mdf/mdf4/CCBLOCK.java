@@ -21,6 +21,9 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
 import java.util.Arrays;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
+import org.eclipse.mdm.openatfx.mdf.util.LookupConversion;
 
 /**
  * <p>
@@ -376,13 +379,17 @@ class CCBLOCK extends BLOCK {
 	 *             The exception.
 	 */
 	public static CCBLOCK read(SeekableByteChannel channel, long pos) throws IOException {
-		CCBLOCK block = new CCBLOCK(channel, pos);
+		BlockCache cache = BlockCache.get(channel);
+		CCBLOCK block = cache.get(pos, CCBLOCK.class);
+		if (block != null) {
+			return block;
+		}
+		block = new CCBLOCK(channel, pos);
 
 		// read block header
 		ByteBuffer bb = ByteBuffer.allocate(24);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.position(pos);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos);
 		bb.rewind();
 
 		// CHAR 4: Block type identifier
@@ -403,8 +410,7 @@ class CCBLOCK extends BLOCK {
 		// read block content
 		bb = ByteBuffer.allocate((int) block.getLength() + 24);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.position(pos + 24);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos + 24);
 		bb.rewind();
 
 		// read links
@@ -454,7 +460,7 @@ class CCBLOCK extends BLOCK {
 		}
 		block.setLnkCcRef(lnkCcRef);
 
-		return block;
+		return cache.put(block);
 	}
 
 	/**
@@ -494,6 +500,81 @@ class CCBLOCK extends BLOCK {
 		return ret;
 	}
 
+	/**
+	 * Returns the text formula of an algebraic conversion, which is stored in
+	 * the TXBLOCK of the first cc_ref link.
+	 *
+	 * @return The formula, null if this is not an algebraic conversion.
+	 * @throws IOException
+	 *             The formula could not be read.
+	 */
+	public String getFormula() throws IOException {
+		if (type != 3) {
+			return null;
+		}
+		TXBLOCK[] txblks = getCcRefBlocks();
+		if (txblks == null || txblks[0] == null) {
+			throw new IOException("Algebraic conversion without formula: " + this);
+		}
+		return txblks[0].getTxData().trim();
+	}
+
+	/**
+	 * Creates the indexed lookup conversion of a tabular conversion (type 4 to
+	 * 10).
+	 *
+	 * @param integerInput
+	 *            True, if the raw values are integers. The upper limits of
+	 *            value ranges (type 6 and 8) belong to the range for integers
+	 *            only.
+	 * @return The conversion, null if this is not a tabular conversion.
+	 * @throws IOException
+	 *             Error reading the texts of the table or scale conversion.
+	 */
+	public LookupConversion getLookupConversion(boolean integerInput) throws IOException {
+		if (type == 4 || type == 5) {
+			double[] keys = getSecondValues(true);
+			double[] values = getSecondValues(false);
+			return type == 4 ? LookupConversion.interpolated(keys, values) : LookupConversion.nearest(keys, values);
+		} else if (type == 6) {
+			return LookupConversion.valueRangeToValue(getThirdValues(0), getThirdValues(1), getThirdValues(2),
+					getDefaultValueDouble(), integerInput);
+		} else if (type == 7 || type == 8 || type == 10) {
+			String[] texts = getRefTexts();
+			String[] values = Arrays.copyOf(texts, texts.length - 1);
+			String defaultText = texts[texts.length - 1];
+			if (type == 7) {
+				return LookupConversion.valueToText(val, values, defaultText);
+			} else if (type == 8) {
+				return LookupConversion.valueRangeToText(getSecondValues(true), getSecondValues(false), values,
+						defaultText, integerInput);
+			}
+			String[] keys = new String[values.length / 2];
+			String[] targets = new String[values.length / 2];
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = values[2 * i];
+				targets[i] = values[2 * i + 1];
+			}
+			return LookupConversion.textToText(keys, targets, defaultText);
+		} else if (type == 9) {
+			return LookupConversion.textToValue(getRefTexts(), Arrays.copyOf(val, val.length - 1),
+					val[val.length - 1]);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the texts of all cc_ref links, null for empty links.
+	 */
+	private String[] getRefTexts() throws IOException {
+		TXBLOCK[] txblks = getCcRefBlocks();
+		String[] texts = new String[refCount];
+		for (int i = 0; txblks != null && i < texts.length; i++) {
+			texts[i] = txblks[i] == null ? null : txblks[i].getTxData();
+		}
+		return texts;
+	}
+
 	/**
 	 * Returns the values WITHOUT the default value. (only used for text to
 	 * value table)
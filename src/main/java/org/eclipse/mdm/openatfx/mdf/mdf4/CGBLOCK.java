@@ -20,6 +20,8 @@ import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
 
 /**
  * <p>
@@ -313,8 +315,7 @@ class CGBLOCK extends BLOCK {
 		// read block header
 		ByteBuffer bb = ByteBuffer.allocate(104);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.position(pos);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos);
 		bb.rewind();
 
 		// CHAR 4: Block type identifier
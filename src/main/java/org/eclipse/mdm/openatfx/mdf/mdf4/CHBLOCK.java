@@ -19,6 +19,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
 
 /**
  * <p>
@@ -69,8 +71,7 @@ class CHBLOCK extends BLOCK {
 		// read block header
 		ByteBuffer bb = ByteBuffer.allocate(24);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.position(pos);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos);
 		bb.rewind();
 
 		// CHAR 4: Block type identifier
@@ -91,8 +92,7 @@ class CHBLOCK extends BLOCK {
 		// read block content
 		bb = ByteBuffer.allocate((int) block.getLength() + 24);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.position(pos + 24);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos + 24);
 		bb.rewind();
 
 		// TODO: implement reading
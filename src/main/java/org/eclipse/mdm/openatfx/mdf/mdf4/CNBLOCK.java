@@ -20,6 +20,8 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
 import java.util.Arrays;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
 
 /**
  * <p>
@@ -508,6 +510,10 @@ class CNBLOCK extends BLOCK {
 			else if (blockType.equals(SDBLOCK.BLOCK_ID)) {
 				return SDBLOCK.read(sbc, lnkData);
 			}
+			// links points to the VLSD CGBLOCK of an unsorted data group
+			else if (blockType.equals(CGBLOCK.BLOCK_ID)) {
+				return CGBLOCK.read(sbc, lnkData);
+			}
 			// unknown
 			else {
 				throw new IOException("Unsupported block type for Channel Data: " + blockType);
@@ -583,8 +589,7 @@ class CNBLOCK extends BLOCK {
 		// read block header
 		ByteBuffer bb = ByteBuffer.allocate(24);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.position(pos);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos);
 		bb.rewind();
 
 		// CHAR 4: Block type identifier
@@ -605,8 +610,7 @@ class CNBLOCK extends BLOCK {
 		// read block data
 		bb = ByteBuffer.allocate((int) block.getLength() - 24);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.position(pos + 24);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos + 24);
 		bb.rewind();
 
 		// read links
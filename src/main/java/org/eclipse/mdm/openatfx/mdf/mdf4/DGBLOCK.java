@@ -19,6 +19,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
 
 /**
  * <p>
@@ -143,18 +145,16 @@ class DGBLOCK extends BLOCK {
 				return DTBLOCK.read(sbc, lnkData);
 			}
 			// link points to a DZBLOCK
-			else if ("##DZ".equals(blockType)) {
-				// TODO: implement
-				return null;
+			else if (blockType.equals(DZBLOCK.BLOCK_ID)) {
+				return DZBLOCK.read(sbc, lnkData);
 			}
 			// link points to a DLBLOCK
 			else if (blockType.equals(DLBLOCK.BLOCK_ID)) {
 				return DLBLOCK.read(sbc, lnkData);
 			}
 			// link points to a HLBLOCK
-			else if ("##HL".equals(blockType)) {
-				// TODO: implement
-				return null;
+			else if (blockType.equals(HLBLOCK.BLOCK_ID)) {
+				return HLBLOCK.read(sbc, lnkData);
 			}
 			// unknown
 			else {
@@ -209,8 +209,7 @@ class DGBLOCK extends BLOCK {
 		// read block header
 		ByteBuffer bb = ByteBuffer.allocate(64);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.position(pos);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos);
 		bb.rewind();
 
 		// CHAR 4: Block type identifier
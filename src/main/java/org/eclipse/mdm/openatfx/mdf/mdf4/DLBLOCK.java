@@ -21,6 +21,8 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
 import java.util.Arrays;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
 
 /**
  * <p>
@@ -168,6 +170,10 @@ class DLBLOCK extends BLOCK {
 		else if (blockType.equals(RDBLOCK.BLOCK_ID)) {
 			return RDBLOCK.read(sbc, lnkDlData[index]).getLength();
 		}
+		// links points to DZBLOCK, size of the original block
+		else if (blockType.equals(DZBLOCK.BLOCK_ID)) {
+			return DZBLOCK.read(sbc, lnkDlData[index]).getOrgDataLength() + 24;
+		}
 		// unknown
 		else {
 			throw new IOException("Unsupported block type for MdComment: " + blockType);
@@ -191,8 +197,7 @@ class DLBLOCK extends BLOCK {
 		// read block header
 		ByteBuffer bb = ByteBuffer.allocate(24);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.position(pos);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos);
 		bb.rewind();
 
 		// CHAR 4: Block type identifier
@@ -213,8 +218,7 @@ class DLBLOCK extends BLOCK {
 		// read block content
 		bb = ByteBuffer.allocate((int) block.getLength() + 24);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.position(pos + 24);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos + 24);
 		bb.rewind();
 
 		// read links
@@ -264,6 +268,27 @@ class DLBLOCK extends BLOCK {
 	}
 
 	public boolean breaksRecords(long recordsize) throws IOException {
+		if (breaksRecordsInList(recordsize)) {
+			return true;
+		}
+
+		// this list fulfills requirements, but next one?
+		if (getLnkDlNext() > 0) {
+			return getDlNextBlock().breaksRecords(recordsize);
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Checks whether a block boundary of this list splits a record, without
+	 * checking the following lists.
+	 *
+	 * @param recordsize
+	 *            The record size.
+	 * @return True, if a record is split.
+	 */
+	public boolean breaksRecordsInList(long recordsize) {
 		if (isEqualLengthFlag()) {
 			if (equalLength % recordsize != 0) {
 				// if we are the only block in the list, this size doesn't
@@ -280,13 +305,7 @@ class DLBLOCK extends BLOCK {
 				}
 			}
 		}
-
-		// this list fulfills requirements, but next one?
-		if (getLnkDlNext() > 0) {
-			return getDlNextBlock().breaksRecords(recordsize);
-		} else {
-			return false;
-		}
+		return false;
 	}
 
 }
@@ -0,0 +1,270 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
+
+/**
+ * <p>
+ * THE DATA ZIPPED BLOCK <code>DZBLOCK</code>
+ * </p>
+ * The DZBLOCK contains the compressed data section of a DTBLOCK, SDBLOCK or
+ * RDBLOCK. The data is compressed with the deflate algorithm, optionally after
+ * transposing it.
+ */
+class DZBLOCK extends BLOCK {
+
+	public static String BLOCK_ID = "##DZ";
+
+	/** Data section */
+
+	// Block type identifier of the original (replaced) data block without
+	// the "##" prefix, e.g. "DT", "SD" or "RD"
+	// CHAR 2
+	private String orgBlockType;
+
+	// Zip algorithm used to compress the data stored in dz_data
+	// 0 = Deflate
+	// 1 = Transposition + Deflate
+	// UINT8
+	private byte zipType;
+
+	// Parameter for zip algorithm, for transposition + deflate the number of
+	// bytes in a single record (columns of the transposed matrix)
+	// UINT32
+	private long zipParameter;
+
+	// Length of uncompressed data in Bytes
+	// UINT64
+	private long orgDataLength;
+
+	// Length N of compressed data in Bytes
+	// UINT64
+	private long dataLength;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param sbc
+	 *            The byte channel pointing to the MDF file.
+	 * @param pos
+	 *            The position of the block within the MDF file.
+	 */
+	private DZBLOCK(SeekableByteChannel sbc, long pos) {
+		super(sbc, pos);
+	}
+
+	public String getOrgBlockType() {
+		return orgBlockType;
+	}
+
+	public byte getZipType() {
+		return zipType;
+	}
+
+	public long getZipParameter() {
+		return zipParameter;
+	}
+
+	public long getOrgDataLength() {
+		return orgDataLength;
+	}
+
+	public long getDataLength() {
+		return dataLength;
+	}
+
+	private void setOrgBlockType(String orgBlockType) {
+		this.orgBlockType = orgBlockType;
+	}
+
+	private void setZipType(byte zipType) {
+		this.zipType = zipType;
+	}
+
+	private void setZipParameter(long zipParameter) {
+		this.zipParameter = zipParameter;
+	}
+
+	private void setOrgDataLength(long orgDataLength) {
+		this.orgDataLength = orgDataLength;
+	}
+
+	private void setDataLength(long dataLength) {
+		this.dataLength = dataLength;
+	}
+
+	/**
+	 * Decompresses the data section into the given buffer. The buffer must
+	 * have at least {@link #getOrgDataLength()} bytes remaining, its position
+	 * is advanced by the number of uncompressed bytes.
+	 *
+	 * @param target
+	 *            The buffer receiving the uncompressed data.
+	 * @throws IOException
+	 *             Error reading from MDF file or invalid compressed data.
+	 */
+	public void inflate(ByteBuffer target) throws IOException {
+		if (dataLength > Integer.MAX_VALUE || orgDataLength > target.remaining()) {
+			throw new IOException(new StringBuilder().append("Unsupported length of compressed data: ").append(this).toString());
+		}
+
+		// read compressed data
+		ByteBuffer bb = ByteBuffer.allocate((int) dataLength);
+		if (FileUtil.readFully(sbc, bb, getPos() + 48L) < dataLength) {
+			throw new IOException(new StringBuilder().append("Unexpected end of file reading compressed data: ").append(this).toString());
+		}
+
+		// inflate
+		byte[] data = new byte[(int) orgDataLength];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(bb.array());
+			int length = 0;
+			while (length < data.length) {
+				int read = inflater.inflate(data, length, data.length - length);
+				if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				length += read;
+			}
+			if (length < data.length) {
+				throw new IOException(new StringBuilder().append("Compressed data too short, expected ").append(data.length).append(" bytes, got ").append(length).append(": ").append(this).toString());
+			}
+		} catch (DataFormatException e) {
+			throw new IOException(new StringBuilder().append("Invalid compressed data: ").append(this).toString(), e);
+		} finally {
+			inflater.end();
+		}
+
+		if (zipType == 0) {
+			target.put(data);
+		} else if (zipType == 1) {
+			untranspose(data, target);
+		} else {
+			throw new IOException(new StringBuilder().append("Unsupported zip type: ").append(zipType).toString());
+		}
+	}
+
+	/**
+	 * Reverts the transposition of the data. The original data is a matrix
+	 * with {@link #getZipParameter()} columns, the transposed data contains
+	 * the columns one after another. Trailing bytes not forming a complete row
+	 * are not transposed.
+	 */
+	private void untranspose(byte[] data, ByteBuffer target) throws IOException {
+		if (zipParameter < 1 || zipParameter > Integer.MAX_VALUE) {
+			throw new IOException(new StringBuilder().append("Invalid zip parameter for transposition: ").append(zipParameter).toString());
+		}
+		int columns = (int) zipParameter;
+		int rows = data.length / columns;
+		int start = target.position();
+		if (target.hasArray()) {
+			byte[] array = target.array();
+			int offset = target.arrayOffset() + start;
+			for (int column = 0; column < columns; column++) {
+				int src = column * rows;
+				for (int row = 0, dst = offset + column; row < rows; row++, dst += columns) {
+					array[dst] = data[src + row];
+				}
+			}
+		} else {
+			for (int column = 0; column < columns; column++) {
+				int src = column * rows;
+				for (int row = 0; row < rows; row++) {
+					target.put(start + row * columns + column, data[src + row]);
+				}
+			}
+		}
+		target.position(start + rows * columns);
+		target.put(data, rows * columns, data.length - rows * columns);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return new StringBuilder().append("DZBLOCK [pos=").append(getPos()).append(", orgBlockType=").append(orgBlockType).append(", zipType=").append(zipType)
+				.append(", zipParameter=").append(zipParameter).append(", orgDataLength=").append(orgDataLength).append(", dataLength=").append(dataLength)
+				.append("]").toString();
+	}
+
+	/**
+	 * Reads a DZBLOCK from the channel starting at current channel position.
+	 *
+	 * @param channel
+	 *            The channel to read from.
+	 * @param pos
+	 *            The position
+	 * @return The block data.
+	 * @throws IOException
+	 *             The exception.
+	 */
+	public static DZBLOCK read(SeekableByteChannel channel, long pos) throws IOException {
+		DZBLOCK block = new DZBLOCK(channel, pos);
+
+		// read block header and data section without compressed data
+		ByteBuffer bb = ByteBuffer.allocate(48);
+		bb.order(ByteOrder.LITTLE_ENDIAN);
+		FileUtil.readFully(channel, bb, pos);
+		bb.rewind();
+
+		// CHAR 4: Block type identifier
+		block.setId(MDF4Util.readCharsISO8859(bb, 4));
+		if (!block.getId().equals(BLOCK_ID)) {
+			throw new IOException(new StringBuilder().append("Wrong block type - expected '").append(BLOCK_ID).append("', found '").append(block.getId()).append("'").toString());
+		}
+
+		// BYTE 4: Reserved used for 8-Byte alignment
+		bb.get(new byte[4]);
+
+		// UINT64: Length of block
+		block.setLength(MDF4Util.readUInt64(bb));
+
+		// UINT64: Number of links
+		block.setLinkCount(MDF4Util.readUInt64(bb));
+
+		// CHAR 2: Block type identifier of the original data block
+		block.setOrgBlockType(MDF4Util.readCharsISO8859(bb, 2));
+
+		// UINT8: Zip algorithm
+		block.setZipType(MDF4Util.readUInt8(bb));
+
+		// BYTE 1: Reserved
+		bb.get();
+
+		// UINT32: Parameter for zip algorithm
+		block.setZipParameter(MDF4Util.readUInt32(bb));
+
+		// UINT64: Length of uncompressed data
+		block.setOrgDataLength(MDF4Util.readUInt64(bb));
+
+		// UINT64: Length of compressed data
+		block.setDataLength(MDF4Util.readUInt64(bb));
+
+		return block;
+	}
+
+}
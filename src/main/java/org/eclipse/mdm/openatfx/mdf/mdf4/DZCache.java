@@ -0,0 +1,485 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Sidecar file holding the inflated (and un-transposed) data sections of the
+ * DZBLOCKs of a MDF4 file.
+ * <p>
+ * The external components of zipped data blocks reference the inflated data
+ * within this file. The independent DZBLOCKs of a data list are inflated in
+ * parallel and written to pre-reserved regions of the file.
+ * <p>
+ * Several data groups may be inflated concurrently, each call reserves its own
+ * regions of the file.
+ * <p>
+ * The positions of the inflated blocks are stored in an index file next to the
+ * cache file when the cache is closed. If the MDF file has not changed since,
+ * the cache is reused when the file is converted again.
+ * <p>
+ * The cache file is locked while it is open. If another process or instance
+ * holds the lock, a private temporary cache is used instead, which is deleted
+ * when the cache is closed.
+ */
+class DZCache implements Closeable {
+
+	private static final Log LOG = LogFactory.getLog(DZCache.class);
+
+	/** The suffix appended to the MDF file name */
+	static final String FILE_SUFFIX = ".dzcache";
+
+	/** The suffix appended to the cache file name for the index */
+	static final String INDEX_SUFFIX = ".idx";
+
+	// identifies the index file format
+	private static final long INDEX_MAGIC = 0x4D44465A43414331L;
+
+	private final Path source;
+	private final Path path;
+	private final Path indexPath;
+	private final int parallelism;
+	private final FileChannel channel;
+	private final Map<Long, Entry> entries;
+
+	// end of the reserved part of the cache file, guarded by this
+	private long end;
+
+	// guarded by this
+	private ExecutorService executor;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param source
+	 *            The MDF file, null for a temporary cache.
+	 * @param path
+	 *            The cache file.
+	 * @param parallelism
+	 *            The number of threads used to inflate blocks.
+	 * @param channel
+	 *            The opened cache file.
+	 * @param entries
+	 *            The entries loaded from the index.
+	 * @param end
+	 *            The end of the data referenced by the entries.
+	 */
+	private DZCache(Path source, Path path, int parallelism, FileChannel channel, Map<Long, Entry> entries,
+			long end) {
+		this.source = source;
+		this.path = path;
+		this.indexPath = source == null ? null : path.resolveSibling(path.getFileName() + INDEX_SUFFIX);
+		this.parallelism = Math.max(1, parallelism);
+		this.channel = channel;
+		this.entries = new ConcurrentHashMap<>(entries);
+		this.end = end;
+	}
+
+	/**
+	 * Opens the cache of given MDF file. An existing cache is reused if its
+	 * index matches the size and modification time of the MDF file, otherwise
+	 * it is discarded. If the cache file is locked by another process or
+	 * instance, a temporary cache is opened, see {@link #openTemp(int)}.
+	 *
+	 * @param source
+	 *            The MDF file.
+	 * @param parallelism
+	 *            The number of threads used to inflate blocks.
+	 * @return The cache.
+	 * @throws IOException
+	 *             Error opening the cache file.
+	 */
+	static DZCache open(Path source, int parallelism) throws IOException {
+		Path path = source.resolveSibling(source.getFileName() + FILE_SUFFIX);
+		Path indexPath = path.resolveSibling(path.getFileName() + INDEX_SUFFIX);
+
+		// the lock is held until the channel is closed
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			FileLock lock;
+			try {
+				lock = channel.tryLock();
+			} catch (OverlappingFileLockException e) {
+				lock = null;
+			}
+			if (lock == null) {
+				channel.close();
+				LOG.info(new StringBuilder().append("Inflated data cache '").append(path).append("' is in use, a temporary cache is used").toString());
+				return openTemp(parallelism);
+			}
+
+			Map<Long, Entry> entries = new HashMap<>();
+			long end = 0;
+			if (Files.exists(indexPath)) {
+				try {
+					end = readIndex(source, path, indexPath, entries);
+				} catch (IOException e) {
+					LOG.warn(new StringBuilder().append("Unable to read index of inflated data cache '").append(indexPath).append("', cache is discarded").toString(), e);
+					end = -1;
+				}
+				if (end < 0) {
+					entries.clear();
+					end = 0;
+				} else {
+					LOG.info(new StringBuilder().append("Reusing ").append(entries.size()).append(" inflated data blocks from '").append(path).append("'").toString());
+				}
+			}
+
+			// drop data not referenced by the index
+			channel.truncate(end);
+			return new DZCache(source, path, parallelism, channel, entries, end);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens a private cache in the default temporary-file directory. No index
+	 * is written, the file is deleted when the cache is closed.
+	 *
+	 * @param parallelism
+	 *            The number of threads used to inflate blocks.
+	 * @return The cache.
+	 * @throws IOException
+	 *             Error creating the cache file.
+	 */
+	static DZCache openTemp(int parallelism) throws IOException {
+		Path path = Files.createTempFile("mdf", FILE_SUFFIX);
+		try {
+			FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			return new DZCache(null, path, parallelism, channel, new HashMap<Long, Entry>(), 0);
+		} catch (IOException e) {
+			Files.deleteIfExists(path);
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the index file.
+	 *
+	 * @return The end of the referenced data, -1 if the index does not match.
+	 */
+	private static long readIndex(Path source, Path path, Path indexPath, Map<Long, Entry> entries)
+			throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+			if (in.readLong() != INDEX_MAGIC || in.readLong() != Files.size(source)
+					|| in.readLong() != Files.getLastModifiedTime(source).toMillis()) {
+				return -1;
+			}
+			long end = in.readLong();
+			if (Files.size(path) < end) {
+				return -1;
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				long pos = in.readLong();
+				entries.put(pos, new Entry(in.readLong(), in.readLong(), in.readUTF()));
+			}
+			return end;
+		}
+	}
+
+	/**
+	 * Writes the index file. The index is written to a temporary file first
+	 * and then moved into place, so a reader never sees a partial index.
+	 */
+	private void writeIndex() throws IOException {
+		Path tempPath = Files.createTempFile(indexPath.getParent(), indexPath.getFileName().toString(), ".tmp");
+		try {
+			writeIndex(tempPath);
+			try {
+				Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tempPath);
+		}
+	}
+
+	/**
+	 * Writes the index to given file.
+	 */
+	private void writeIndex(Path file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(file)))) {
+			out.writeLong(INDEX_MAGIC);
+			out.writeLong(Files.size(source));
+			out.writeLong(Files.getLastModifiedTime(source).toMillis());
+			out.writeLong(end);
+			out.writeInt(entries.size());
+			for (Map.Entry<Long, Entry> entry : entries.entrySet()) {
+				out.writeLong(entry.getKey());
+				out.writeLong(entry.getValue().offset);
+				out.writeLong(entry.getValue().length);
+				out.writeUTF(entry.getValue().orgBlockType);
+			}
+		}
+	}
+
+	/**
+	 * @return The cache file.
+	 */
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * @return The channel of the cache file, positional reads are thread
+	 *         safe.
+	 */
+	public FileChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * Returns the position of the inflated data of a DZBLOCK within the cache
+	 * file.
+	 *
+	 * @param dzPos
+	 *            The position of the DZBLOCK within the MDF file.
+	 * @return The position, -1 if not cached.
+	 */
+	public long getOffset(long dzPos) {
+		Entry entry = entries.get(dzPos);
+		return entry == null ? -1 : entry.offset;
+	}
+
+	/**
+	 * Returns the length of the inflated data of a DZBLOCK.
+	 *
+	 * @param dzPos
+	 *            The position of the DZBLOCK within the MDF file.
+	 * @return The length, -1 if not cached.
+	 */
+	public long getLength(long dzPos) {
+		Entry entry = entries.get(dzPos);
+		return entry == null ? -1 : entry.length;
+	}
+
+	/**
+	 * Returns the block type of the original data block of a DZBLOCK.
+	 *
+	 * @param dzPos
+	 *            The position of the DZBLOCK within the MDF file.
+	 * @return The block type identifier (e.g. "##DT"), null if not cached.
+	 */
+	public String getOrgBlockType(long dzPos) {
+		Entry entry = entries.get(dzPos);
+		return entry == null ? null : "##" + entry.orgBlockType;
+	}
+
+	/**
+	 * Inflates all given DZBLOCKs not yet cached. If there is more than one
+	 * block, the blocks are inflated in parallel.
+	 *
+	 * @param sbc
+	 *            The byte channel pointing to the MDF file.
+	 * @param dzPositions
+	 *            The positions of the DZBLOCKs within the MDF file.
+	 * @throws IOException
+	 *             Error reading from MDF file, invalid compressed data or
+	 *             error writing the cache file.
+	 */
+	public void inflate(SeekableByteChannel sbc, List<Long> dzPositions) throws IOException {
+		long start = System.currentTimeMillis();
+
+		// reserve the regions of all blocks, a block inflated by another
+		// thread meanwhile is inflated again into its own region
+		Map<Long, Entry> reserved = new LinkedHashMap<>();
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (Long dzPos : dzPositions) {
+			if (entries.containsKey(dzPos) || reserved.containsKey(dzPos)) {
+				continue;
+			}
+			DZBLOCK dzBlock = DZBLOCK.read(sbc, dzPos);
+			Entry entry = new Entry(reserve(dzBlock.getOrgDataLength()), dzBlock.getOrgDataLength(),
+					dzBlock.getOrgBlockType());
+			reserved.put(dzPos, entry);
+			tasks.add(new InflateTask(dzBlock, entry.offset));
+		}
+		if (tasks.isEmpty()) {
+			return;
+		}
+
+		if (tasks.size() == 1 || parallelism == 1) {
+			for (Callable<Void> task : tasks) {
+				call(task);
+			}
+		} else {
+			try {
+				for (Future<Void> future : getExecutor().invokeAll(tasks)) {
+					future.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while inflating data blocks", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new IOException("Error inflating data blocks", e.getCause());
+			}
+		}
+
+		entries.putAll(reserved);
+		LOG.debug(new StringBuilder().append("Inflated ").append(tasks.size()).append(" data blocks in ").append(System.currentTimeMillis() - start).append("ms").toString());
+	}
+
+	/**
+	 * Reserves a region at the end of the cache file.
+	 *
+	 * @param length
+	 *            The length of the region.
+	 * @return The start position of the region.
+	 */
+	private synchronized long reserve(long length) {
+		long start = end;
+		end += length;
+		return start;
+	}
+
+	/**
+	 * Returns the executor inflating the blocks, it is created on first
+	 * access and shared by all calls.
+	 *
+	 * @return The executor.
+	 */
+	private synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(parallelism);
+		}
+		return executor;
+	}
+
+	private static void call(Callable<Void> task) throws IOException {
+		try {
+			task.call();
+		} catch (IOException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Writes the index and closes the cache file, which releases its lock. A
+	 * temporary cache is deleted instead.
+	 *
+	 * @throws IOException
+	 *             Error writing the index file.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+		if (source == null) {
+			try {
+				channel.close();
+			} finally {
+				Files.deleteIfExists(path);
+			}
+			return;
+		}
+		try {
+			writeIndex();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Inflates a single DZBLOCK into its reserved region of the cache file.
+	 */
+	private class InflateTask implements Callable<Void> {
+
+		private final DZBLOCK dzBlock;
+		private final long offset;
+
+		private InflateTask(DZBLOCK dzBlock, long offset) {
+			this.dzBlock = dzBlock;
+			this.offset = offset;
+		}
+
+		@Override
+		public Void call() throws IOException {
+			if (dzBlock.getOrgDataLength() > Integer.MAX_VALUE) {
+				throw new IOException(new StringBuilder().append("Unsupported length of compressed data: ").append(dzBlock).toString());
+			}
+			ByteBuffer bb = ByteBuffer.allocate((int) dzBlock.getOrgDataLength());
+			dzBlock.inflate(bb);
+			bb.flip();
+			long pos = offset;
+			while (bb.hasRemaining()) {
+				pos += channel.write(bb, pos);
+			}
+			return null;
+		}
+
+	}
+
+	/**
+	 * The position and length of the inflated data of a single DZBLOCK.
+	 */
+	private static class Entry {
+
+		private final long offset;
+		private final long length;
+		private final String orgBlockType;
+
+		private Entry(long offset, long length, String orgBlockType) {
+			this.offset = offset;
+			this.length = length;
+			this.orgBlockType = orgBlockType;
+		}
+
+	}
+
+}
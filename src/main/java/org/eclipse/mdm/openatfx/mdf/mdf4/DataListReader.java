@@ -0,0 +1,214 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Reads a chain of data list blocks (DLBLOCK) with read-ahead.
+ * <p>
+ * The data lists are linked lists, each list has to be read before the
+ * position of the next one is known. While the caller processes a list, the
+ * next list and the headers of the data blocks it references are already read
+ * in a background thread, which hides the latency of the serial reads on slow
+ * (network) file systems. This relies on the positional, thread safe block
+ * reads.
+ */
+class DataListReader implements Closeable {
+
+	private final SeekableByteChannel sbc;
+	private final ExecutorService executor;
+
+	// the pending read of the next list, null if there is none
+	private Future<DataList> next;
+
+	/**
+	 * Constructor, starts reading the first data list.
+	 *
+	 * @param sbc
+	 *            The byte channel pointing to the MDF file.
+	 * @param lnkDlFirst
+	 *            The position of the first data list block.
+	 */
+	DataListReader(SeekableByteChannel sbc, long lnkDlFirst) {
+		this.sbc = sbc;
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "mdf4-dl-read-ahead");
+				thread.setDaemon(true);
+				return thread;
+			}
+
+		});
+		this.next = lnkDlFirst > 0 ? submit(lnkDlFirst) : null;
+	}
+
+	/**
+	 * Returns the next data list and starts reading the following one.
+	 *
+	 * @return The data list with its resolved block headers, null if there
+	 *         are no more lists.
+	 * @throws IOException
+	 *             Error reading from MDF file.
+	 */
+	public DataList next() throws IOException {
+		if (next == null) {
+			return null;
+		}
+
+		DataList dataList;
+		try {
+			dataList = next.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading data list", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Error reading data list", e.getCause());
+		}
+
+		long lnkDlNext = dataList.getDlBlock().getLnkDlNext();
+		next = lnkDlNext > 0 ? submit(lnkDlNext) : null;
+		return dataList;
+	}
+
+	private Future<DataList> submit(final long pos) {
+		return executor.submit(new Callable<DataList>() {
+
+			@Override
+			public DataList call() throws IOException {
+				return DataList.read(sbc, pos);
+			}
+
+		});
+	}
+
+	/**
+	 * Stops reading ahead.
+	 */
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Returns the length of the data section of a data block.
+	 *
+	 * @param sbc
+	 *            The byte channel pointing to the MDF file.
+	 * @param pos
+	 *            The position of the data block.
+	 * @param blockType
+	 *            The block type identifier of the data block.
+	 * @return The length of the data section of a DTBLOCK, RDBLOCK or
+	 *         SDBLOCK, -1 for other blocks.
+	 * @throws IOException
+	 *             Error reading from MDF file.
+	 */
+	static long getDataLength(SeekableByteChannel sbc, long pos, String blockType) throws IOException {
+		if (blockType.equals(DTBLOCK.BLOCK_ID)) {
+			return DTBLOCK.read(sbc, pos).getLength() - 24;
+		} else if (blockType.equals(RDBLOCK.BLOCK_ID)) {
+			return RDBLOCK.read(sbc, pos).getLength() - 24;
+		} else if (blockType.equals(SDBLOCK.BLOCK_ID)) {
+			return SDBLOCK.read(sbc, pos).getLength() - 24;
+		}
+		return -1;
+	}
+
+	/**
+	 * A data list block with the resolved headers of the referenced blocks.
+	 */
+	static class DataList {
+
+		private final DLBLOCK dlBlock;
+		private final String[] blockTypes;
+		private final long[] dataLengths;
+
+		private DataList(DLBLOCK dlBlock, String[] blockTypes, long[] dataLengths) {
+			this.dlBlock = dlBlock;
+			this.blockTypes = blockTypes;
+			this.dataLengths = dataLengths;
+		}
+
+		private static DataList read(SeekableByteChannel sbc, long pos) throws IOException {
+			DLBLOCK dlBlock = DLBLOCK.read(sbc, pos);
+			int count = (int) dlBlock.getCount();
+			String[] blockTypes = new String[count];
+			long[] dataLengths = new long[count];
+			for (int i = 0; i < count; i++) {
+				long lnk = dlBlock.getLnkDlData()[i];
+				blockTypes[i] = BLOCK.getBlockType(sbc, lnk);
+				dataLengths[i] = DataListReader.getDataLength(sbc, lnk, blockTypes[i]);
+			}
+			return new DataList(dlBlock, blockTypes, dataLengths);
+		}
+
+		public DLBLOCK getDlBlock() {
+			return dlBlock;
+		}
+
+		/**
+		 * @return The number of referenced data blocks.
+		 */
+		public int getCount() {
+			return blockTypes.length;
+		}
+
+		/**
+		 * @param index
+		 *            The index within the list.
+		 * @return The position of the data block.
+		 */
+		public long getLnkData(int index) {
+			return dlBlock.getLnkDlData()[index];
+		}
+
+		/**
+		 * @param index
+		 *            The index within the list.
+		 * @return The block type identifier of the data block.
+		 */
+		public String getBlockType(int index) {
+			return blockTypes[index];
+		}
+
+		/**
+		 * @param index
+		 *            The index within the list.
+		 * @return The length of the data section of the data block, -1 if
+		 *         not a DTBLOCK, RDBLOCK or SDBLOCK.
+		 */
+		public long getDataLength(int index) {
+			return dataLengths[index];
+		}
+
+	}
+
+}
@@ -0,0 +1,93 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4;
+
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * The data section of a single data block of a data group, i.e. the record
+ * data of a DTBLOCK or RDBLOCK. For zipped blocks the section is located in the
+ * inflated data cache instead of the MDF file.
+ */
+class DataSection {
+
+	private final SeekableByteChannel channel;
+	private final String fileName;
+	private final String blockType;
+	private final long pos;
+	private final long length;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param channel
+	 *            The channel of the file containing the data section.
+	 * @param fileName
+	 *            The name of the file containing the data section.
+	 * @param blockType
+	 *            The block type identifier of the (original) data block.
+	 * @param pos
+	 *            The start position of the data section within the file.
+	 * @param length
+	 *            The length of the data section, -1 if unknown.
+	 */
+	DataSection(SeekableByteChannel channel, String fileName, String blockType, long pos, long length) {
+		this.channel = channel;
+		this.fileName = fileName;
+		this.blockType = blockType;
+		this.pos = pos;
+		this.length = length;
+	}
+
+	public SeekableByteChannel getChannel() {
+		return channel;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public String getBlockType() {
+		return blockType;
+	}
+
+	public long getPos() {
+		return pos;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return True, if the section contains records, i.e. it is the data
+	 *         section of a DTBLOCK or RDBLOCK with known length.
+	 */
+	public boolean hasRecords() {
+		return length >= 0 && (DTBLOCK.BLOCK_ID.equals(blockType) || RDBLOCK.BLOCK_ID.equals(blockType));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return new StringBuilder().append("DataSection [fileName=").append(fileName).append(", blockType=").append(blockType).append(", pos=").append(pos)
+				.append(", length=").append(length).append("]").toString();
+	}
+
+}
@@ -0,0 +1,326 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Resolves the data link of a data group (or sample reduction) into the data
+ * sections of its data blocks.
+ * <p>
+ * Zipped blocks are inflated into the {@link DZCache}. Data lists whose block
+ * boundaries split records are copied into the {@link RecordStitcher} sidecar
+ * file. Both files are opened on first use and have to be released with
+ * {@link #close()}.
+ * <p>
+ * The resolver may be shared by the threads preparing the data groups. The
+ * data groups are resolved concurrently, a data group requested by several
+ * threads is resolved only once.
+ */
+class DataSectionResolver implements Closeable {
+
+	private static final Log LOG = LogFactory.getLog(DataSectionResolver.class);
+
+	private final IDBLOCK idBlock;
+	private final int inflateThreads;
+	private final boolean stitchSplitRecords;
+	private final boolean temporaryFiles;
+
+	// opened on first use, guarded by this
+	private DZCache dzCache;
+	private RecordStitcher recordStitcher;
+
+	// the data sections of the data groups and sample reductions, key is the
+	// data link and the record size; a data group is resolved by the first
+	// thread requesting it, the other threads wait for its result
+	private final ConcurrentMap<List<Long>, FutureTask<List<DataSection>>> dataSections = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param idBlock
+	 *            The IDBLOCK of the MDF file.
+	 * @param inflateThreads
+	 *            The number of threads used to inflate zipped data blocks.
+	 * @param stitchSplitRecords
+	 *            Whether to copy data lists splitting records into a sidecar
+	 *            file, otherwise such data lists are rejected.
+	 */
+	DataSectionResolver(IDBLOCK idBlock, int inflateThreads, boolean stitchSplitRecords) {
+		this(idBlock, inflateThreads, stitchSplitRecords, false);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param idBlock
+	 *            The IDBLOCK of the MDF file.
+	 * @param inflateThreads
+	 *            The number of threads used to inflate zipped data blocks.
+	 * @param stitchSplitRecords
+	 *            Whether to copy data lists splitting records into a sidecar
+	 *            file, otherwise such data lists are rejected.
+	 * @param temporaryFiles
+	 *            Whether to inflate zipped blocks and stitch records into
+	 *            temporary files deleted on {@link #close()}, instead of the
+	 *            sidecar files next to the MDF file, which may be referenced
+	 *            by a converted ATFX file.
+	 */
+	DataSectionResolver(IDBLOCK idBlock, int inflateThreads, boolean stitchSplitRecords, boolean temporaryFiles) {
+		this.idBlock = idBlock;
+		this.inflateThreads = inflateThreads;
+		this.stitchSplitRecords = stitchSplitRecords;
+		this.temporaryFiles = temporaryFiles;
+	}
+
+	/**
+	 * Returns the data sections of all data blocks of a data group. Zipped
+	 * blocks are inflated into the {@link DZCache}, all zipped blocks of a data
+	 * list are inflated in parallel while the next data list is read ahead.
+	 * <p>
+	 * If the block boundaries of a data list split records, the records are
+	 * copied into a single section of the {@link RecordStitcher} sidecar file.
+	 * <p>
+	 * The sections are cached until the resolver is closed, since they are
+	 * needed for each channel of the data group.
+	 *
+	 * @param sectionstart
+	 *            The link to data, can be a HL, DL, RD, DT or DZ Block.
+	 * @param recordSize
+	 *            The size of a single record, used to check that no record is
+	 *            split over two blocks.
+	 * @return The data sections in record order.
+	 * @throws IOException
+	 *             Error reading from MDF file or unsupported data blocks.
+	 */
+	public List<DataSection> getDataSections(final long sectionstart, final long recordSize) throws IOException {
+		List<Long> key = Arrays.asList(sectionstart, recordSize);
+		FutureTask<List<DataSection>> task = dataSections.get(key);
+		if (task == null) {
+			FutureTask<List<DataSection>> created = new FutureTask<>(new Callable<List<DataSection>>() {
+
+				@Override
+				public List<DataSection> call() throws IOException {
+					return resolve(sectionstart, recordSize);
+				}
+
+			});
+			task = dataSections.putIfAbsent(key, created);
+			if (task == null) {
+				task = created;
+				created.run();
+			}
+		}
+
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while resolving data sections", e);
+		} catch (ExecutionException e) {
+			// a failed data group is resolved again on the next request
+			dataSections.remove(key, task);
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException("Error resolving data sections", cause);
+		}
+	}
+
+	/**
+	 * Resolves the data sections of a data group, see
+	 * {@link #getDataSections(long, long)}.
+	 */
+	private List<DataSection> resolve(long sectionstart, long recordSize) throws IOException {
+		Path mdfFilePath = idBlock.getMdfFilePath().getFileName();
+		if (mdfFilePath == null) {
+			throw new IOException("mdfFilePath must not be null");
+		}
+
+		// collect data blocks
+		List<Long> blocks = new ArrayList<>();
+		List<String> blockTypes = new ArrayList<>();
+		List<Long> dataLengths = new ArrayList<>();
+		long lnkDlFirst = 0;
+		String blockType = BLOCK.getBlockType(idBlock.sbc, sectionstart);
+		switch (blockType) {
+		case "##DT":
+		case "##RD":
+		case "##DZ":
+			blocks.add(sectionstart);
+			blockTypes.add(blockType);
+			dataLengths.add(DataListReader.getDataLength(idBlock.sbc, sectionstart, blockType));
+			if (blockType.equals(DZBLOCK.BLOCK_ID)) {
+				getDZCache().inflate(idBlock.sbc, blocks);
+			}
+			break;
+		case "##DL":
+			lnkDlFirst = sectionstart;
+			break;
+		case "##HL":
+			lnkDlFirst = HLBLOCK.read(idBlock.sbc, sectionstart).getLnkDlFirst();
+			break;
+		}
+
+		// iterate over the data lists, the next list is read meanwhile
+		boolean splitRecords = false;
+		try (DataListReader dataListReader = new DataListReader(idBlock.sbc, lnkDlFirst)) {
+			DataListReader.DataList dataList;
+			while ((dataList = dataListReader.next()) != null) {
+				// perform check for records over blockborders.
+				if (dataList.getDlBlock().breaksRecordsInList(recordSize)) {
+					if (!stitchSplitRecords) {
+						throw new IOException("This data list cannot be read because records are splitted.");
+					}
+					splitRecords = true;
+				}
+
+				List<Long> zipped = new ArrayList<>();
+				for (int i = 0; i < dataList.getCount(); i++) {
+					blocks.add(dataList.getLnkData(i));
+					blockTypes.add(dataList.getBlockType(i));
+					dataLengths.add(dataList.getDataLength(i));
+					if (dataList.getBlockType(i).equals(DZBLOCK.BLOCK_ID)) {
+						zipped.add(dataList.getLnkData(i));
+					}
+				}
+				if (!zipped.isEmpty()) {
+					getDZCache().inflate(idBlock.sbc, zipped);
+				}
+			}
+		}
+
+		List<DataSection> sections = new ArrayList<>(blocks.size());
+		for (int i = 0; i < blocks.size(); i++) {
+			long block = blocks.get(i);
+			blockType = blockTypes.get(i);
+			if (blockType.equals(DZBLOCK.BLOCK_ID)) {
+				DZCache dzCache = getDZCache();
+				sections.add(new DataSection(dzCache.getChannel(), dzCache.getPath().getFileName().toString(),
+						dzCache.getOrgBlockType(block), dzCache.getOffset(block), dzCache.getLength(block)));
+			} else {
+				sections.add(new DataSection(idBlock.sbc, mdfFilePath.toString(), blockType, block + 24L,
+						dataLengths.get(i)));
+			}
+		}
+
+		if (splitRecords) {
+			RecordStitcher recordStitcher = getRecordStitcher();
+			long start = System.currentTimeMillis();
+			DataSection stitched = recordStitcher.stitch(sections, (int) recordSize);
+			LOG.info(new StringBuilder().append("Records are split by the blocks of the data list, copied ").append(stitched.getLength()).append(" bytes to '")
+					.append(recordStitcher.getPath()).append("' in ").append(System.currentTimeMillis() - start).append("ms").toString());
+			sections = Collections.singletonList(stitched);
+		}
+
+		return Collections.unmodifiableList(sections);
+	}
+
+	/**
+	 * Returns the cache of inflated zipped blocks, it is opened on first
+	 * access. With temporary files the blocks are inflated into a temporary
+	 * cache, so the directory of the MDF file may be read-only.
+	 *
+	 * @return the cache, not null
+	 * @throws IOException
+	 *             if unable to open the cache file
+	 */
+	private synchronized DZCache getDZCache() throws IOException {
+		if (dzCache == null) {
+			dzCache = temporaryFiles ? DZCache.openTemp(inflateThreads) : DZCache.open(idBlock.getMdfFilePath(), inflateThreads);
+		}
+		return dzCache;
+	}
+
+	/**
+	 * Returns the sidecar file of stitched records, it is opened on first
+	 * access.
+	 *
+	 * @return the record stitcher, not null
+	 * @throws IOException
+	 *             if unable to create the sidecar file
+	 */
+	private synchronized RecordStitcher getRecordStitcher() throws IOException {
+		if (recordStitcher == null) {
+			recordStitcher = temporaryFiles ? RecordStitcher.openTemp() : RecordStitcher.open(idBlock.getMdfFilePath());
+		}
+		return recordStitcher;
+	}
+
+	/**
+	 * Closes and deletes the {@link RecordStitcher} sidecar file, if any
+	 * records have been stitched. Errors are logged only.
+	 */
+	public synchronized void deleteStitchedRecords() {
+		if (recordStitcher != null) {
+			try {
+				recordStitcher.close();
+				Files.deleteIfExists(recordStitcher.getPath());
+			} catch (IOException e) {
+				LOG.warn(new StringBuilder().append("failed to delete file with stitched records: '").append(recordStitcher.getPath()).append("'").toString(), e);
+			}
+			recordStitcher = null;
+		}
+		dataSections.clear();
+	}
+
+	/**
+	 * Closes the sidecar files, the files itself are kept since they are
+	 * referenced by the external components. Errors are logged only.
+	 */
+	@Override
+	public synchronized void close() {
+		if (dzCache != null) {
+			try {
+				dzCache.close();
+			} catch (IOException e) {
+				LOG.warn(new StringBuilder().append("failed to close cache of inflated data: '").append(dzCache.getPath()).append("'").toString(), e);
+			}
+			dzCache = null;
+		}
+		if (recordStitcher != null) {
+			try {
+				recordStitcher.close();
+			} catch (IOException e) {
+				LOG.warn(new StringBuilder().append("failed to close file with stitched records: '").append(recordStitcher.getPath()).append("'").toString(), e);
+			}
+			recordStitcher = null;
+		}
+		dataSections.clear();
+	}
+
+}
@@ -20,6 +20,8 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
 import java.util.Arrays;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
 
 /**
  * <p>
@@ -347,8 +349,7 @@ class EVBLOCK extends BLOCK {
 		// read block header
 		ByteBuffer bb = ByteBuffer.allocate(24);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.position(pos);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos);
 		bb.rewind();
 
 		// CHAR 4: Block type identifier
@@ -369,7 +370,7 @@ class EVBLOCK extends BLOCK {
 		// Read link section
 		bb = ByteBuffer.allocate((int) (8 * block.getLinkCount()));
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos + 24);
 		bb.rewind();
 		// LINK: Pointer to next EVBLOCK (can be NIL)
 		block.setLnkEvNext(MDF4Util.readLink(bb));
@@ -396,7 +397,7 @@ class EVBLOCK extends BLOCK {
 		// Read data section
 		bb = ByteBuffer.allocate(32);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos + 24 + 8 * block.getLinkCount());
 		bb.rewind();
 
 		// UINT8: Type
@@ -20,6 +20,8 @@ import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
 
 /**
  * <p>
@@ -351,8 +353,7 @@ class HDBLOCK extends BLOCK {
 		// read block header
 		ByteBuffer bb = ByteBuffer.allocate(112);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		sbc.position(64);
-		sbc.read(bb);
+		FileUtil.readFully(sbc, bb, 64);
 		bb.rewind();
 
 		// CHAR 4: Block type identifier
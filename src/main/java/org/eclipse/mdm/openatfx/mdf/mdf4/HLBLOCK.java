@@ -0,0 +1,156 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
+
+/**
+ * <p>
+ * THE HEADER LIST BLOCK <code>HLBLOCK</code>
+ * </p>
+ * The HLBLOCK is the start of a list of data list blocks (DLBLOCK) referencing
+ * zipped data blocks (DZBLOCK). It is only used to mark that the data has been
+ * compressed.
+ */
+class HLBLOCK extends BLOCK {
+
+	public static String BLOCK_ID = "##HL";
+
+	/** Link section */
+
+	// Pointer to the first data list block (DLBLOCK)
+	// LINK
+	private long lnkDlFirst;
+
+	/** Data section */
+
+	// Flags
+	// Bit 0: Equal length flag (same meaning as in the DLBLOCKs)
+	// UINT16
+	private int flags;
+
+	// Zip algorithm used by the DZBLOCKs of the list
+	// 0 = Deflate
+	// 1 = Transposition + Deflate
+	// UINT8
+	private byte zipType;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param sbc
+	 *            The byte channel pointing to the MDF file.
+	 * @param pos
+	 *            The position of the block within the MDF file.
+	 */
+	private HLBLOCK(SeekableByteChannel sbc, long pos) {
+		super(sbc, pos);
+	}
+
+	public long getLnkDlFirst() {
+		return lnkDlFirst;
+	}
+
+	public int getFlags() {
+		return flags;
+	}
+
+	public byte getZipType() {
+		return zipType;
+	}
+
+	private void setLnkDlFirst(long lnkDlFirst) {
+		this.lnkDlFirst = lnkDlFirst;
+	}
+
+	private void setFlags(int flags) {
+		this.flags = flags;
+	}
+
+	private void setZipType(byte zipType) {
+		this.zipType = zipType;
+	}
+
+	public DLBLOCK getDlFirstBlock() throws IOException {
+		if (lnkDlFirst > 0) {
+			return DLBLOCK.read(sbc, lnkDlFirst);
+		}
+		return null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return new StringBuilder().append("HLBLOCK [lnkDlFirst=").append(lnkDlFirst).append(", flags=").append(flags).append(", zipType=").append(zipType)
+				.append("]").toString();
+	}
+
+	/**
+	 * Reads a HLBLOCK from the channel starting at current channel position.
+	 *
+	 * @param channel
+	 *            The channel to read from.
+	 * @param pos
+	 *            The position
+	 * @return The block data.
+	 * @throws IOException
+	 *             The exception.
+	 */
+	public static HLBLOCK read(SeekableByteChannel channel, long pos) throws IOException {
+		HLBLOCK block = new HLBLOCK(channel, pos);
+
+		// read block header, link and data section
+		ByteBuffer bb = ByteBuffer.allocate(40);
+		bb.order(ByteOrder.LITTLE_ENDIAN);
+		FileUtil.readFully(channel, bb, pos);
+		bb.rewind();
+
+		// CHAR 4: Block type identifier
+		block.setId(MDF4Util.readCharsISO8859(bb, 4));
+		if (!block.getId().equals(BLOCK_ID)) {
+			throw new IOException(new StringBuilder().append("Wrong block type - expected '").append(BLOCK_ID).append("', found '").append(block.getId()).append("'").toString());
+		}
+
+		// BYTE 4: Reserved used for 8-Byte alignment
+		bb.get(new byte[4]);
+
+		// UINT64: Length of block
+		block.setLength(MDF4Util.readUInt64(bb));
+
+		// UINT64: Number of links
+		block.setLinkCount(MDF4Util.readUInt64(bb));
+
+		// LINK: Pointer to the first data list block
+		block.setLnkDlFirst(MDF4Util.readLink(bb));
+
+		// UINT16: Flags
+		block.setFlags(MDF4Util.readUInt16(bb));
+
+		// UINT8: Zip algorithm
+		block.setZipType(MDF4Util.readUInt8(bb));
+
+		return block;
+	}
+
+}
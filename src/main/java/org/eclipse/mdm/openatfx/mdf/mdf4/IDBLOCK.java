@@ -20,6 +20,8 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Path;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
 
 /**
  * <p>
@@ -184,8 +186,7 @@ public class IDBLOCK extends BLOCK {
 		// read block
 		ByteBuffer bb = ByteBuffer.allocate(64);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		sbc.position(0);
-		sbc.read(bb);
+		FileUtil.readFully(sbc, bb, 0);
 		bb.rewind();
 
 		// CHAR 8: File identifier
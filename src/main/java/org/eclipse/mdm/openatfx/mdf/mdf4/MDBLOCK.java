@@ -19,6 +19,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
 
 /**
  * <p>
@@ -84,13 +86,17 @@ class MDBLOCK extends BLOCK {
 	 *             The exception.
 	 */
 	public static MDBLOCK read(SeekableByteChannel channel, long pos) throws IOException {
-		MDBLOCK block = new MDBLOCK(channel, pos);
+		BlockCache cache = BlockCache.get(channel);
+		MDBLOCK block = cache.get(pos, MDBLOCK.class);
+		if (block != null) {
+			return block;
+		}
+		block = new MDBLOCK(channel, pos);
 
 		// read block header
 		ByteBuffer bb = ByteBuffer.allocate(24);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.position(pos);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos);
 		bb.rewind();
 
 		// CHAR 4: Block type identifier
@@ -111,14 +117,13 @@ class MDBLOCK extends BLOCK {
 		// read block content
 		bb = ByteBuffer.allocate((int) block.getLength() + 24);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.position(pos + 24);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos + 24);
 		bb.rewind();
 
 		// XML String
 		block.setMdData(MDF4Util.readCharsUTF8(bb, (int) (block.getLength() - 24)));
 
-		return block;
+		return cache.put(block);
 	}
 
 }
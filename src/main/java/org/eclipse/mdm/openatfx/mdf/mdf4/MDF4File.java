@@ -0,0 +1,461 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.mdm.openatfx.mdf.MDFBatchIterator;
+import org.eclipse.mdm.openatfx.mdf.MDFChannel;
+import org.eclipse.mdm.openatfx.mdf.MDFChannelGroup;
+import org.eclipse.mdm.openatfx.mdf.MDFFile;
+import org.eclipse.mdm.openatfx.mdf.util.Formula;
+import org.eclipse.mdm.openatfx.mdf.util.LookupConversion;
+import org.eclipse.mdm.openatfx.mdf.util.NumericFieldReader;
+import org.eclipse.mdm.openatfx.mdf.util.RecordAccessor;
+
+/**
+ * {@link MDFFile} implementation for MDF4 files.
+ * <p>
+ * The records of a channel group are accessed through the data sections of its
+ * data group. Zipped blocks are inflated into a temporary {@link DZCache},
+ * split records and unsorted data groups are copied into temporary files on
+ * first access. Nothing is written next to the MDF file, the temporary files
+ * are deleted when the file is closed.
+ */
+public class MDF4File extends MDFFile {
+
+	private static final Log LOG = LogFactory.getLog(MDF4File.class);
+
+	// size of the read buffer of a channel group
+	private static final int READ_BUFFER_SIZE = 1024 * 1024;
+
+	private final IDBLOCK idBlock;
+	private final DataSectionResolver dataSectionResolver;
+	private final List<MDFChannelGroup> channelGroups;
+
+	// sorts the records of unsorted data groups into a temporary file
+	private RecordDemultiplexer recordDemultiplexer;
+	// the sorted data sections of the channel groups of unsorted data groups,
+	// key is the position of the CGBLOCK
+	private final Map<Long, DataSection> sortedSections = new HashMap<>();
+	// the compiled text formulas of algebraic conversions, key is the position
+	// of the CCBLOCK
+	private final Map<Long, Formula> formulas = new HashMap<>();
+
+	/**
+	 * Constructor, loads the channel metadata.
+	 *
+	 * @param idBlock
+	 *            The IDBLOCK of the opened MDF file. The file is closed by
+	 *            {@link #close()}.
+	 * @throws IOException
+	 *             Error reading from MDF file.
+	 */
+	public MDF4File(IDBLOCK idBlock) throws IOException {
+		this.idBlock = idBlock;
+		int threads = Runtime.getRuntime().availableProcessors();
+		this.dataSectionResolver = new DataSectionResolver(idBlock, threads, true, true);
+
+		List<MDFChannelGroup> groups = new ArrayList<>();
+		for (MDF4Metadata.DataGroup dataGroup : new MDF4MetadataLoader(threads).load(idBlock.getHDBlock())
+				.getDataGroups()) {
+			for (MDF4Metadata.ChannelGroup channelGroup : dataGroup.getChannelGroups()) {
+				// the values of a VLSD channel group belong to the referencing
+				// channel
+				if ((channelGroup.getCgBlock().getFlags() & 0x01) == 0) {
+					groups.add(new ChannelGroup(dataGroup, channelGroup));
+				}
+			}
+		}
+		this.channelGroups = Collections.unmodifiableList(groups);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<MDFChannelGroup> getChannelGroups() {
+		return channelGroups;
+	}
+
+	/**
+	 * Returns the data sections containing the records of a channel group. An
+	 * unsorted data group is sorted by the {@link RecordDemultiplexer} on first
+	 * access.
+	 *
+	 * @param dataGroup
+	 *            The data group.
+	 * @param cgBlock
+	 *            The CGBLOCK.
+	 * @return The data sections in record order.
+	 * @throws IOException
+	 *             Error reading from MDF file or writing the temporary file.
+	 */
+	private List<DataSection> getRecordSections(MDF4Metadata.DataGroup dataGroup, CGBLOCK cgBlock)
+			throws IOException {
+		DGBLOCK dgBlock = dataGroup.getDgBlock();
+		if (dgBlock.getLnkData() == 0) {
+			return Collections.emptyList();
+		}
+		if (!dataGroup.isUnsorted()) {
+			long recordSize = dgBlock.getRecIdSize() + cgBlock.getDataBytes() + cgBlock.getInvalBytes();
+			return dataSectionResolver.getDataSections(dgBlock.getLnkData(), recordSize);
+		}
+
+		DataSection sorted = sortedSections.get(cgBlock.getPos());
+		if (sorted == null) {
+			List<CGBLOCK> cgBlocks = new ArrayList<>();
+			for (MDF4Metadata.ChannelGroup channelGroup : dataGroup.getChannelGroups()) {
+				cgBlocks.add(channelGroup.getCgBlock());
+			}
+			if (recordDemultiplexer == null) {
+				recordDemultiplexer = RecordDemultiplexer.openTemp();
+			}
+			sortedSections.putAll(recordDemultiplexer.demultiplex(
+					dataSectionResolver.getDataSections(dgBlock.getLnkData(), 1), dgBlock.getRecIdSize(), cgBlocks,
+					READ_BUFFER_SIZE));
+			sorted = sortedSections.get(cgBlock.getPos());
+		}
+		return Collections.singletonList(sorted);
+	}
+
+	/**
+	 * Returns the compiled formula of an algebraic conversion, channels
+	 * sharing a CCBLOCK share the formula.
+	 *
+	 * @param ccBlock
+	 *            The CCBLOCK with conversion type 3.
+	 * @return The compiled formula.
+	 * @throws IOException
+	 *             The formula could not be read or is not valid.
+	 */
+	private Formula getFormula(CCBLOCK ccBlock) throws IOException {
+		synchronized (formulas) {
+			Formula formula = formulas.get(ccBlock.getPos());
+			if (formula == null) {
+				try {
+					formula = Formula.compile(ccBlock.getFormula());
+				} catch (IllegalArgumentException e) {
+					throw new IOException(e.getMessage(), e);
+				}
+				formulas.put(ccBlock.getPos(), formula);
+			}
+			return formula;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			dataSectionResolver.deleteStitchedRecords();
+			dataSectionResolver.close();
+			if (recordDemultiplexer != null) {
+				try {
+					recordDemultiplexer.close();
+					Files.deleteIfExists(recordDemultiplexer.getPath());
+				} catch (IOException e) {
+					LOG.warn(new StringBuilder().append("failed to delete file with sorted records: '").append(recordDemultiplexer.getPath()).append("'").toString(), e);
+				}
+				recordDemultiplexer = null;
+			}
+			sortedSections.clear();
+		} finally {
+			BlockCache.release(idBlock.sbc);
+			idBlock.sbc.close();
+		}
+	}
+
+	/**
+	 * A channel group, the records are located on first read.
+	 */
+	private class ChannelGroup implements MDFChannelGroup {
+
+		private final MDF4Metadata.DataGroup dataGroup;
+		private final CGBLOCK cgBlock;
+		private final String name;
+		private final List<MDFChannel> channels;
+		private final Map<String, MDFChannel> channelsByName;
+		private final MDFChannel masterChannel;
+
+		private RecordAccessor records;
+
+		private ChannelGroup(MDF4Metadata.DataGroup dataGroup, MDF4Metadata.ChannelGroup channelGroup) {
+			this.dataGroup = dataGroup;
+			this.cgBlock = channelGroup.getCgBlock();
+			TXBLOCK txAcqName = channelGroup.getTxAcqNameBlock();
+			this.name = txAcqName == null ? null : txAcqName.getTxData();
+
+			List<MDFChannel> list = new ArrayList<>();
+			Map<String, MDFChannel> map = new LinkedHashMap<>();
+			MDFChannel master = null;
+			for (MDF4Metadata.Channel metadata : channelGroup.getChannels()) {
+				Channel channel = new Channel(this, metadata);
+				list.add(channel);
+				if (!map.containsKey(channel.getName())) {
+					map.put(channel.getName(), channel);
+				}
+				if (master == null && channel.isMaster()) {
+					master = channel;
+				}
+			}
+			this.channels = Collections.unmodifiableList(list);
+			this.channelsByName = map;
+			this.masterChannel = master;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public long getRecordCount() {
+			return cgBlock.getCycleCount();
+		}
+
+		@Override
+		public List<MDFChannel> getChannels() {
+			return channels;
+		}
+
+		@Override
+		public MDFChannel channel(String name) {
+			MDFChannel channel = channelsByName.get(name);
+			if (channel == null) {
+				throw new IllegalArgumentException(new StringBuilder().append("Channel '").append(name).append("' not found").toString());
+			}
+			return channel;
+		}
+
+		@Override
+		public MDFChannel getMasterChannel() {
+			return masterChannel;
+		}
+
+		@Override
+		public MDFBatchIterator batches(List<MDFChannel> channels, int batchSize) {
+			return new MDFBatchIterator(this, channels, batchSize);
+		}
+
+		private Formula getFormula(CCBLOCK ccBlock) throws IOException {
+			return MDF4File.this.getFormula(ccBlock);
+		}
+
+		private int getRecIdSize() {
+			return dataGroup.getDgBlock().getRecIdSize();
+		}
+
+		private RecordAccessor getRecords() throws IOException {
+			if (records == null) {
+				int recordSize = (int) (getRecIdSize() + cgBlock.getDataBytes() + cgBlock.getInvalBytes());
+				RecordAccessor accessor = new RecordAccessor(recordSize, READ_BUFFER_SIZE);
+				for (DataSection section : getRecordSections(dataGroup, cgBlock)) {
+					if (section.hasRecords()) {
+						accessor.addSection(section.getChannel(), section.getPos(), section.getLength());
+					}
+				}
+				records = accessor;
+			}
+			return records;
+		}
+
+		@Override
+		public String toString() {
+			return new StringBuilder().append("ChannelGroup [name=").append(name).append(", cgBlock=").append(cgBlock).append("]").toString();
+		}
+
+	}
+
+	/**
+	 * A channel of a channel group.
+	 */
+	private static class Channel implements MDFChannel {
+
+		private final ChannelGroup channelGroup;
+		private final CNBLOCK cnBlock;
+		private final CCBLOCK ccBlock;
+		private final String name;
+
+		private NumericFieldReader values;
+		private LookupConversion lookup;
+
+		private Channel(ChannelGroup channelGroup, MDF4Metadata.Channel metadata) {
+			this.channelGroup = channelGroup;
+			this.cnBlock = metadata.getCnBlock();
+			this.ccBlock = metadata.getCcConversionBlock();
+			TXBLOCK txName = metadata.getCnTxNameBlock();
+			this.name = txName == null ? "" : txName.getTxData().trim();
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public boolean isMaster() {
+			return cnBlock.getChannelType() == 2 || cnBlock.getChannelType() == 3;
+		}
+
+		/**
+		 * @return True, if the values are the record indices (virtual master
+		 *         or virtual data channel).
+		 */
+		private boolean isVirtual() {
+			return cnBlock.getChannelType() == 3 || cnBlock.getChannelType() == 6;
+		}
+
+		@Override
+		public boolean isNumeric() {
+			if (isVirtual()) {
+				return true;
+			}
+			int dt = cnBlock.getDataType();
+			long nb = cnBlock.getBitCount();
+			// 0-3: integer, 4-5: IEEE 754 floating-point
+			return cnBlock.getChannelType() != 1
+					&& (dt <= 3 && nb >= 1 && nb <= 64 || (dt == 4 || dt == 5) && (nb == 32 || nb == 64));
+		}
+
+		@Override
+		public boolean isInteger() {
+			return isVirtual() || isNumeric() && cnBlock.getDataType() <= 3;
+		}
+
+		@Override
+		public long getRecordCount() {
+			return channelGroup.getRecordCount();
+		}
+
+		@Override
+		public long[] readLongs(long from, int count) throws IOException {
+			long[] values = new long[count];
+			readLongs(from, count, values, 0);
+			return values;
+		}
+
+		@Override
+		public void readLongs(long from, int count, long[] dst, int offset) throws IOException {
+			if (!isInteger()) {
+				throw new IOException(new StringBuilder().append("Channel '").append(name).append("' has no integer values").toString());
+			}
+			if (isVirtual()) {
+				checkRange(from, count, dst.length, offset);
+				for (int i = 0; i < count; i++) {
+					dst[offset + i] = from + i;
+				}
+			} else {
+				getValues().readLongs(from, count, dst, offset);
+			}
+		}
+
+		@Override
+		public double[] readDoubles(long from, int count) throws IOException {
+			double[] values = new double[count];
+			readDoubles(from, count, values, 0);
+			return values;
+		}
+
+		@Override
+		public void readDoubles(long from, int count, double[] dst, int offset) throws IOException {
+			if (!isNumeric()) {
+				throw new IOException(new StringBuilder().append("Channel '").append(name).append("' has no numeric values").toString());
+			}
+			int type = ccBlock == null ? 0 : ccBlock.getType();
+			if (type > 6) {
+				throw new IOException(new StringBuilder().append("Conversion type ").append(type).append(" of channel '").append(name).append("' is not supported").toString());
+			}
+
+			if (isVirtual()) {
+				checkRange(from, count, dst.length, offset);
+				for (int i = 0; i < count; i++) {
+					dst[offset + i] = from + i;
+				}
+			} else {
+				getValues().readDoubles(from, count, dst, offset);
+			}
+
+			// 1 = linear, 2 = rational, 3 = algebraic, 4-6 = value to value
+			// tables
+			if (type == 1) {
+				double[] p = ccBlock.getVal();
+				for (int i = offset; i < offset + count; i++) {
+					dst[i] = p[1] * dst[i] + p[0];
+				}
+			} else if (type == 2) {
+				double[] p = ccBlock.getVal();
+				for (int i = offset; i < offset + count; i++) {
+					double x = dst[i];
+					dst[i] = (p[0] * x * x + p[1] * x + p[2]) / (p[3] * x * x + p[4] * x + p[5]);
+				}
+			} else if (type == 3) {
+				channelGroup.getFormula(ccBlock).evaluate(dst, offset, count);
+			} else if (type > 3) {
+				if (lookup == null) {
+					lookup = ccBlock.getLookupConversion(isInteger());
+				}
+				lookup.convert(dst, offset, count);
+			}
+		}
+
+		private NumericFieldReader getValues() throws IOException {
+			if (values == null) {
+				int dt = cnBlock.getDataType();
+				NumericFieldReader.Type type;
+				if (dt == 0 || dt == 1) {
+					type = NumericFieldReader.Type.UNSIGNED_INTEGER;
+				} else if (dt == 2 || dt == 3) {
+					type = NumericFieldReader.Type.SIGNED_INTEGER;
+				} else {
+					type = NumericFieldReader.Type.FLOAT;
+				}
+				ByteOrder byteOrder = dt % 2 == 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+				values = new NumericFieldReader(channelGroup.getRecords(),
+						(int) (channelGroup.getRecIdSize() + cnBlock.getByteOffset()), cnBlock.getBitOffset(),
+						(int) cnBlock.getBitCount(), type, byteOrder);
+			}
+			return values;
+		}
+
+		private void checkRange(long from, int count, int length, int offset) {
+			if (from < 0 || count < 0 || from + count > getRecordCount() || offset < 0 || offset + count > length) {
+				throw new IndexOutOfBoundsException(new StringBuilder().append("Invalid value range: from=").append(from).append(", count=").append(count)
+						.append(", values=").append(getRecordCount()).append(", offset=").append(offset).append(", length=").append(length).toString());
+			}
+		}
+
+		@Override
+		public String toString() {
+			return new StringBuilder().append("Channel [name=").append(name).append(", cnBlock=").append(cnBlock).append("]").toString();
+		}
+
+	}
+
+}
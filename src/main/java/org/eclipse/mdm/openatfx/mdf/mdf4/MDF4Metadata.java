@@ -0,0 +1,189 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable in-memory model of the MDF4 metadata graph (DG-&gt;CG-&gt;CN and
+ * the linked CC/TX/SI/MD blocks), created by {@link MDF4MetadataLoader}.
+ * <p>
+ * All links are resolved when the model is created, so the ODS writing phase
+ * does not have to touch the MDF file for the metadata anymore.
+ */
+class MDF4Metadata {
+
+	private final List<DataGroup> dataGroups;
+
+	MDF4Metadata(List<DataGroup> dataGroups) {
+		this.dataGroups = Collections.unmodifiableList(new ArrayList<>(dataGroups));
+	}
+
+	/**
+	 * @return All data groups in file order.
+	 */
+	public List<DataGroup> getDataGroups() {
+		return dataGroups;
+	}
+
+	/**
+	 * @return The total number of channels of all data groups.
+	 */
+	public int getChannelCount() {
+		int count = 0;
+		for (DataGroup dataGroup : dataGroups) {
+			for (ChannelGroup channelGroup : dataGroup.getChannelGroups()) {
+				count += channelGroup.getChannels().size();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * A data group with its resolved channel groups.
+	 */
+	static class DataGroup {
+
+		private final DGBLOCK dgBlock;
+		private final BLOCK mdCommentBlock;
+		private final List<ChannelGroup> channelGroups;
+
+		DataGroup(DGBLOCK dgBlock, BLOCK mdCommentBlock, List<ChannelGroup> channelGroups) {
+			this.dgBlock = dgBlock;
+			this.mdCommentBlock = mdCommentBlock;
+			this.channelGroups = Collections.unmodifiableList(new ArrayList<>(channelGroups));
+		}
+
+		public DGBLOCK getDgBlock() {
+			return dgBlock;
+		}
+
+		public BLOCK getMdCommentBlock() {
+			return mdCommentBlock;
+		}
+
+		public List<ChannelGroup> getChannelGroups() {
+			return channelGroups;
+		}
+
+		/**
+		 * @return True, if the data group contains more than one channel group.
+		 */
+		public boolean isUnsorted() {
+			return channelGroups.size() > 1;
+		}
+
+	}
+
+	/**
+	 * A channel group with its resolved channels.
+	 */
+	static class ChannelGroup {
+
+		private final CGBLOCK cgBlock;
+		private final BLOCK mdCommentBlock;
+		private final TXBLOCK txAcqNameBlock;
+		private final SIBLOCK siAcqSourceBlock;
+		private final SRBLOCK srFirstBlock;
+		private final List<Channel> channels;
+
+		ChannelGroup(CGBLOCK cgBlock, BLOCK mdCommentBlock, TXBLOCK txAcqNameBlock, SIBLOCK siAcqSourceBlock,
+				SRBLOCK srFirstBlock, List<Channel> channels) {
+			this.cgBlock = cgBlock;
+			this.mdCommentBlock = mdCommentBlock;
+			this.txAcqNameBlock = txAcqNameBlock;
+			this.siAcqSourceBlock = siAcqSourceBlock;
+			this.srFirstBlock = srFirstBlock;
+			this.channels = Collections.unmodifiableList(new ArrayList<>(channels));
+		}
+
+		public CGBLOCK getCgBlock() {
+			return cgBlock;
+		}
+
+		public BLOCK getMdCommentBlock() {
+			return mdCommentBlock;
+		}
+
+		public TXBLOCK getTxAcqNameBlock() {
+			return txAcqNameBlock;
+		}
+
+		public SIBLOCK getSiAcqSourceBlock() {
+			return siAcqSourceBlock;
+		}
+
+		public SRBLOCK getSrFirstBlock() {
+			return srFirstBlock;
+		}
+
+		public List<Channel> getChannels() {
+			return channels;
+		}
+
+	}
+
+	/**
+	 * A channel with all its resolved metadata links.
+	 */
+	static class Channel {
+
+		private final CNBLOCK cnBlock;
+		private final TXBLOCK cnTxNameBlock;
+		private final CCBLOCK ccConversionBlock;
+		private final SIBLOCK siSourceBlock;
+		private final BLOCK mdUnitBlock;
+		private final BLOCK mdCommentBlock;
+
+		Channel(CNBLOCK cnBlock, TXBLOCK cnTxNameBlock, CCBLOCK ccConversionBlock, SIBLOCK siSourceBlock,
+				BLOCK mdUnitBlock, BLOCK mdCommentBlock) {
+			this.cnBlock = cnBlock;
+			this.cnTxNameBlock = cnTxNameBlock;
+			this.ccConversionBlock = ccConversionBlock;
+			this.siSourceBlock = siSourceBlock;
+			this.mdUnitBlock = mdUnitBlock;
+			this.mdCommentBlock = mdCommentBlock;
+		}
+
+		public CNBLOCK getCnBlock() {
+			return cnBlock;
+		}
+
+		public TXBLOCK getCnTxNameBlock() {
+			return cnTxNameBlock;
+		}
+
+		public CCBLOCK getCcConversionBlock() {
+			return ccConversionBlock;
+		}
+
+		public SIBLOCK getSiSourceBlock() {
+			return siSourceBlock;
+		}
+
+		public BLOCK getMdUnitBlock() {
+			return mdUnitBlock;
+		}
+
+		public BLOCK getMdCommentBlock() {
+			return mdCommentBlock;
+		}
+
+	}
+
+}
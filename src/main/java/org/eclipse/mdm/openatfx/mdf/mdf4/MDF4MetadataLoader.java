@@ -0,0 +1,233 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Loads the complete metadata graph of a MDF4 file into a
+ * {@link MDF4Metadata} model.
+ * <p>
+ * The DG, CG and CN chains are linked lists and have to be followed one block
+ * after the other, but the data groups and the link resolution of the channels
+ * (name, conversion, source, unit and comment) are independent of each other
+ * and are processed in parallel on a fork/join pool. This relies on the
+ * positional, thread safe block reads.
+ */
+class MDF4MetadataLoader {
+
+	private static final Log LOG = LogFactory.getLog(MDF4MetadataLoader.class);
+
+	// number of channels resolved by a single task
+	private static final int CHANNEL_BATCH_SIZE = 64;
+
+	private final int parallelism;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param parallelism
+	 *            The number of worker threads, 1 loads the graph in a single
+	 *            worker thread.
+	 */
+	MDF4MetadataLoader(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Loads the metadata graph starting at the first data group of the
+	 * HDBLOCK.
+	 *
+	 * @param hdBlock
+	 *            The HDBLOCK.
+	 * @return The metadata model.
+	 * @throws IOException
+	 *             Error reading from MDF file.
+	 */
+	public MDF4Metadata load(HDBLOCK hdBlock) throws IOException {
+		long start = System.currentTimeMillis();
+
+		List<DGBLOCK> dgBlocks = new ArrayList<>();
+		DGBLOCK dgBlock = hdBlock.getDgFirstBlock();
+		while (dgBlock != null) {
+			dgBlocks.add(dgBlock);
+			dgBlock = dgBlock.getDgNextBlock();
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			MDF4Metadata metadata = new MDF4Metadata(pool.invoke(new DataGroupsTask(dgBlocks)));
+			LOG.info(new StringBuilder().append("Loaded metadata of ").append(dgBlocks.size()).append(" data groups and ").append(metadata.getChannelCount())
+					.append(" channels in ").append(System.currentTimeMillis() - start).append("ms").toString());
+			return metadata;
+		} catch (LoadException e) {
+			throw e.getCause();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Loads all data groups in parallel.
+	 */
+	private static class DataGroupsTask extends RecursiveTask<List<MDF4Metadata.DataGroup>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<DGBLOCK> dgBlocks;
+
+		private DataGroupsTask(List<DGBLOCK> dgBlocks) {
+			this.dgBlocks = dgBlocks;
+		}
+
+		@Override
+		protected List<MDF4Metadata.DataGroup> compute() {
+			List<DataGroupTask> tasks = new ArrayList<>();
+			for (DGBLOCK dgBlock : dgBlocks) {
+				tasks.add(new DataGroupTask(dgBlock));
+			}
+			invokeAll(tasks);
+
+			List<MDF4Metadata.DataGroup> dataGroups = new ArrayList<>();
+			for (DataGroupTask task : tasks) {
+				dataGroups.add(task.join());
+			}
+			return dataGroups;
+		}
+
+	}
+
+	/**
+	 * Loads a single data group including all its channel groups.
+	 */
+	private static class DataGroupTask extends RecursiveTask<MDF4Metadata.DataGroup> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final DGBLOCK dgBlock;
+
+		private DataGroupTask(DGBLOCK dgBlock) {
+			this.dgBlock = dgBlock;
+		}
+
+		@Override
+		protected MDF4Metadata.DataGroup compute() {
+			try {
+				List<MDF4Metadata.ChannelGroup> channelGroups = new ArrayList<>();
+				CGBLOCK cgBlock = dgBlock.getCgFirstBlock();
+				while (cgBlock != null) {
+					channelGroups.add(loadChannelGroup(cgBlock));
+					cgBlock = cgBlock.getCgNextBlock();
+				}
+				return new MDF4Metadata.DataGroup(dgBlock, dgBlock.getMdCommentBlock(), channelGroups);
+			} catch (IOException e) {
+				throw new LoadException(e);
+			}
+		}
+
+		private MDF4Metadata.ChannelGroup loadChannelGroup(CGBLOCK cgBlock) throws IOException {
+			// collect channel chain, resolve links in batches
+			List<ChannelsTask> tasks = new ArrayList<>();
+			List<CNBLOCK> batch = new ArrayList<>();
+			CNBLOCK cnBlock = cgBlock.getCnFirstBlock();
+			while (cnBlock != null) {
+				batch.add(cnBlock);
+				if (batch.size() == CHANNEL_BATCH_SIZE) {
+					ChannelsTask task = new ChannelsTask(batch);
+					task.fork();
+					tasks.add(task);
+					batch = new ArrayList<>();
+				}
+				cnBlock = cnBlock.getCnNextBlock();
+			}
+			if (!batch.isEmpty()) {
+				ChannelsTask task = new ChannelsTask(batch);
+				task.fork();
+				tasks.add(task);
+			}
+
+			// resolve channel group links meanwhile
+			BLOCK mdCommentBlock = cgBlock.getMdCommentBlock();
+			TXBLOCK txAcqNameBlock = cgBlock.getTxAcqNameBlock();
+			SIBLOCK siAcqSourceBlock = cgBlock.getSiAcqSourceBlock();
+			SRBLOCK srFirstBlock = cgBlock.getSrFirstBlock();
+
+			List<MDF4Metadata.Channel> channels = new ArrayList<>();
+			for (ChannelsTask task : tasks) {
+				channels.addAll(task.join());
+			}
+			return new MDF4Metadata.ChannelGroup(cgBlock, mdCommentBlock, txAcqNameBlock, siAcqSourceBlock,
+					srFirstBlock, channels);
+		}
+
+	}
+
+	/**
+	 * Resolves the links of a batch of channels.
+	 */
+	private static class ChannelsTask extends RecursiveTask<List<MDF4Metadata.Channel>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<CNBLOCK> cnBlocks;
+
+		private ChannelsTask(List<CNBLOCK> cnBlocks) {
+			this.cnBlocks = cnBlocks;
+		}
+
+		@Override
+		protected List<MDF4Metadata.Channel> compute() {
+			try {
+				List<MDF4Metadata.Channel> channels = new ArrayList<>(cnBlocks.size());
+				for (CNBLOCK cnBlock : cnBlocks) {
+					channels.add(new MDF4Metadata.Channel(cnBlock, cnBlock.getCnTxNameBlock(),
+							cnBlock.getCcConversionBlock(), cnBlock.getSiSourceBlock(), cnBlock.getMdUnitBlock(),
+							cnBlock.getMdCommentBlock()));
+				}
+				return channels;
+			} catch (IOException e) {
+				throw new LoadException(e);
+			}
+		}
+
+	}
+
+	/**
+	 * Transports an IOException out of a fork/join task.
+	 */
+	private static class LoadException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private LoadException(IOException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized IOException getCause() {
+			return (IOException) super.getCause();
+		}
+
+	}
+
+}
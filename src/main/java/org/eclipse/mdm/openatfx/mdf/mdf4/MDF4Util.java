@@ -217,7 +217,11 @@ public abstract class MDF4Util {
 	 * @param bb
 	 *            The ByteBuffer. Reading starts a its current position.
 	 * @return The Value (as Long)
+	 * @deprecated allocates per value, use
+	 *             {@link org.eclipse.mdm.openatfx.mdf.util.BitFieldDecoder#readUnsigned(ByteBuffer, int, int, int, ByteOrder)}
+	 *             instead
 	 */
+	@Deprecated
 	public static long readValue(int bitOffset, int bitSize, ByteBuffer bb) {
 		if (bitSize % 8 != 0) {
 			throw new IllegalArgumentException(new StringBuilder().append("Cannot read value with ").append(bitSize).append("bits").toString());
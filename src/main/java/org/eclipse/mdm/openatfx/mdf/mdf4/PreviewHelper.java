@@ -31,6 +31,9 @@ import org.eclipse.mdm.openatfx.mdf.util.ODSModelCache;
 /**
  * Helper class to convert Sample Reduction blocks to a ASAM ODS
  * 'AoMeasurement'.
+ * <p>
+ * The helper writes to the session, so it is used by the writing thread only
+ * and is not thread-safe.
  *
  * @author Tobias Leemann
  */
@@ -51,11 +54,11 @@ class PreviewHelper {
 
 	private int generationCount = 0;
 
-	public synchronized void setCache(ODSModelCache cache) {
+	public void setCache(ODSModelCache cache) {
 		this.cache = cache;
 	}
 
-	public synchronized void setWriter(AoSessionWriter writer) {
+	public void setWriter(AoSessionWriter writer) {
 		this.writer = writer;
 	}
 
@@ -67,7 +70,7 @@ class PreviewHelper {
 	 * @throws AoException
 	 *             If an ASAM ODS error occurs.
 	 */
-	private synchronized void createMeasurementIfNeeded(InstanceElement ieMea) throws AoException {
+	private void createMeasurementIfNeeded(InstanceElement ieMea) throws AoException {
 		// create 'AoMeasurement' instance (if not yet existing)
 		if (previewMeaiid != Long.MIN_VALUE) {
 			return;
@@ -109,7 +112,7 @@ class PreviewHelper {
 	 * @throws AoException
 	 * @throws IOException
 	 */
-	public synchronized void createPreviewChannels(String channelName, IDBLOCK idBlock, CGBLOCK cgBlock,
+	public void createPreviewChannels(String channelName, IDBLOCK idBlock, CGBLOCK cgBlock,
 			DGBLOCK dgBlock, CNBLOCK cnBlock, CCBLOCK ccBlock, Map<String, Long> untInstances)
 			throws AoException, IOException {
 		if (smIids == null) {
@@ -133,7 +136,7 @@ class PreviewHelper {
 					meqInstances.put(extendedName, iidMeq);
 				}
 				// create AoLocalColumns
-				long iidLc = writer.createLocalColumn(cache, dgBlock, cgBlock, cnBlock, ccBlock, extendedName,
+				long iidLc = writer.createLocalColumn(cache, idBlock, dgBlock, cgBlock, cnBlock, ccBlock, extendedName,
 						smIids[reductionNo], iidMeq, null,
 						"application/x-asam.aolocalcolumn.mdf_preview." + nameExtensions[i]);
 
@@ -157,7 +160,7 @@ class PreviewHelper {
 	 * @throws AoException
 	 * @throws IOException
 	 */
-	public synchronized long[] createPreviewSubMatrices(InstanceElement ieMea, SRBLOCK srBlock)
+	public long[] createPreviewSubMatrices(InstanceElement ieMea, SRBLOCK srBlock)
 			throws AoException, IOException {
 		if (srBlock == null) {
 			return null;
@@ -0,0 +1,394 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
+
+/**
+ * Sorts the records of unsorted data groups by their record ID into one
+ * contiguous region per channel group of a sidecar file, which can be
+ * referenced by the external components like the data of a sorted data group.
+ * <p>
+ * The data of a data group is read only once, in large sequential chunks. The
+ * records of a normal channel group are copied including their record ID, so
+ * the value offsets of the channels stay valid. The values of a VLSD channel
+ * group are stored without record ID in the layout of a SDBLOCK (UINT32 length
+ * followed by the value bytes), so the offsets stored in the records of the
+ * referencing channel address them directly.
+ * <p>
+ * The regions are reserved using the cycle counts of the channel groups. Each
+ * channel group has a small write buffer, the buffers share the budget of the
+ * read buffer, so memory usage does not depend on the file size.
+ * <p>
+ * Several data groups may be sorted concurrently, each call reserves its own
+ * regions of the sidecar file.
+ */
+class RecordDemultiplexer implements Closeable {
+
+	private static final Log LOG = LogFactory.getLog(RecordDemultiplexer.class);
+
+	/** The suffix appended to the MDF file name */
+	static final String FILE_SUFFIX = ".sorted";
+
+	// minimum write buffer size of a single channel group
+	private static final int MIN_BUFFER_SIZE = 64 * 1024;
+
+	private final Path path;
+	private final FileChannel channel;
+
+	// end of the reserved regions, guarded by this
+	private long reserved;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param path
+	 *            The sidecar file.
+	 * @param channel
+	 *            The opened sidecar file.
+	 */
+	private RecordDemultiplexer(Path path, FileChannel channel) {
+		this.path = path;
+		this.channel = channel;
+	}
+
+	/**
+	 * Creates the sidecar file of given MDF file. An existing sidecar file may
+	 * be referenced by a previously converted ATFX file, in that case a unique
+	 * file name is chosen.
+	 *
+	 * @param source
+	 *            The MDF file.
+	 * @return The record demultiplexer.
+	 * @throws IOException
+	 *             Error creating the sidecar file.
+	 */
+	static RecordDemultiplexer open(Path source) throws IOException {
+		Path path = source.resolveSibling(source.getFileName() + FILE_SUFFIX);
+		while (Files.exists(path)) {
+			path = source.resolveSibling(new StringBuilder().append(source.getFileName()).append("_")
+					.append(UUID.randomUUID().toString().split("-")[0]).append(FILE_SUFFIX).toString());
+		}
+		return new RecordDemultiplexer(path, FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.READ, StandardOpenOption.WRITE));
+	}
+
+	/**
+	 * Creates a temporary sidecar file in the default temporary-file directory,
+	 * used if the records are not referenced after reading. The caller has to
+	 * delete the file.
+	 *
+	 * @return The record demultiplexer.
+	 * @throws IOException
+	 *             Error creating the sidecar file.
+	 */
+	static RecordDemultiplexer openTemp() throws IOException {
+		Path path = Files.createTempFile("mdf", FILE_SUFFIX);
+		return new RecordDemultiplexer(path, FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+	}
+
+	/**
+	 * @return The sidecar file.
+	 */
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Sorts the records of an unsorted data group into the sidecar file.
+	 *
+	 * @param sections
+	 *            The data sections of the data group in record order, records
+	 *            may be split by section boundaries.
+	 * @param recIdSize
+	 *            The size of the record ID (1, 2, 4 or 8 bytes).
+	 * @param cgBlocks
+	 *            All channel groups of the data group.
+	 * @param bufferSize
+	 *            The size of the read buffer, also the budget of all write
+	 *            buffers.
+	 * @return The data section within the sidecar file of each channel group,
+	 *         key is the position of the CGBLOCK.
+	 * @throws IOException
+	 *             Error reading a data section, writing the sidecar file or
+	 *             unexpected record data.
+	 */
+	public Map<Long, DataSection> demultiplex(List<DataSection> sections, int recIdSize, List<CGBLOCK> cgBlocks,
+			int bufferSize) throws IOException {
+		if (recIdSize != 1 && recIdSize != 2 && recIdSize != 4 && recIdSize != 8) {
+			throw new IOException(new StringBuilder().append("Unsupported record ID size for unsorted data: ").append(recIdSize).toString());
+		}
+		long start = System.currentTimeMillis();
+
+		// compute the region size of each channel group
+		int[] recordLengths = new int[cgBlocks.size()];
+		long[] capacities = new long[cgBlocks.size()];
+		long total = 0;
+		int maxRecordLength = recIdSize + 4;
+		for (int i = 0; i < cgBlocks.size(); i++) {
+			CGBLOCK cgBlock = cgBlocks.get(i);
+			if ((cgBlock.getFlags() & 0x01) != 0) {
+				// VLSD: total value size plus the length of each value
+				recordLengths[i] = -1;
+				capacities[i] = cgBlock.getDataBytes() + (cgBlock.getInvalBytes() << 32) + 4L * cgBlock.getCycleCount();
+			} else {
+				recordLengths[i] = (int) (recIdSize + cgBlock.getDataBytes() + cgBlock.getInvalBytes());
+				maxRecordLength = Math.max(maxRecordLength, recordLengths[i]);
+				capacities[i] = cgBlock.getCycleCount() * recordLengths[i];
+			}
+			total += capacities[i];
+		}
+
+		// reserve a region for each channel group
+		Map<Long, Region> regions = new LinkedHashMap<>();
+		int writeBufferSize = Math.max(MIN_BUFFER_SIZE, bufferSize / Math.max(1, cgBlocks.size()));
+		long pos = reserve(total);
+		for (int i = 0; i < cgBlocks.size(); i++) {
+			CGBLOCK cgBlock = cgBlocks.get(i);
+			Region region = new Region(cgBlock, pos, capacities[i], recordLengths[i], writeBufferSize);
+			if (regions.put(cgBlock.getRecordId(), region) != null) {
+				throw new IOException(new StringBuilder().append("Duplicate record ID in unsorted data group: ").append(cgBlock.getRecordId()).toString());
+			}
+			pos += region.capacity;
+		}
+
+		Input input = new Input(sections.iterator(), Math.max(bufferSize, maxRecordLength));
+		ByteBuffer buffer = input.buffer;
+		long records = 0;
+		while (input.ensure(recIdSize)) {
+			long recordId = readRecordId(buffer, recIdSize);
+			Region region = regions.get(recordId);
+			if (region == null) {
+				throw new IOException(new StringBuilder().append("Unknown record ID ").append(recordId).append(" in unsorted data group at record ").append(records).toString());
+			}
+
+			if (region.recordLength < 0) {
+				// VLSD: skip record ID, copy length and value
+				if (!input.ensure(recIdSize + 4)) {
+					throw new IOException("Unexpected end of data reading VLSD record.");
+				}
+				buffer.position(buffer.position() + recIdSize);
+				long length = buffer.getInt(buffer.position()) & 0xFFFFFFFFL;
+				region.put(buffer, 4);
+				while (length > 0) {
+					if (!buffer.hasRemaining() && !input.ensure(1)) {
+						throw new IOException("Unexpected end of data reading VLSD record.");
+					}
+					int n = (int) Math.min(buffer.remaining(), length);
+					region.put(buffer, n);
+					length -= n;
+				}
+			} else {
+				if (!input.ensure(region.recordLength)) {
+					throw new IOException(new StringBuilder().append("Unexpected end of data reading record with ID ").append(recordId).toString());
+				}
+				region.put(buffer, region.recordLength);
+			}
+			records++;
+		}
+
+		Map<Long, DataSection> result = new HashMap<>();
+		String fileName = path.getFileName().toString();
+		for (Region region : regions.values()) {
+			region.flush();
+			String blockType = region.recordLength < 0 ? SDBLOCK.BLOCK_ID : DTBLOCK.BLOCK_ID;
+			result.put(region.cgBlock.getPos(), new DataSection(channel, fileName, blockType, region.start, region.written));
+		}
+		LOG.info(new StringBuilder().append("Sorted ").append(records).append(" records of ").append(regions.size()).append(" channel groups into '").append(path)
+				.append("' in ").append(System.currentTimeMillis() - start).append("ms").toString());
+		return result;
+	}
+
+	/**
+	 * Reserves a region at the end of the sidecar file.
+	 *
+	 * @param length
+	 *            The length of the region.
+	 * @return The start position of the region.
+	 */
+	private synchronized long reserve(long length) {
+		long start = reserved;
+		reserved += length;
+		return start;
+	}
+
+	/**
+	 * Reads the unsigned little endian record ID at the buffer position
+	 * without moving the position.
+	 */
+	private static long readRecordId(ByteBuffer buffer, int recIdSize) {
+		int pos = buffer.position();
+		switch (recIdSize) {
+		case 1:
+			return buffer.get(pos) & 0xFFL;
+		case 2:
+			return buffer.getShort(pos) & 0xFFFFL;
+		case 4:
+			return buffer.getInt(pos) & 0xFFFFFFFFL;
+		default:
+			return buffer.getLong(pos);
+		}
+	}
+
+	/**
+	 * Closes the sidecar file.
+	 *
+	 * @throws IOException
+	 *             Error closing the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Sequential reader over the bytes of all data sections.
+	 */
+	private static class Input {
+
+		private final Iterator<DataSection> sections;
+		private final ByteBuffer buffer;
+
+		private SeekableByteChannel sectionChannel;
+		private long sectionPos;
+		private long sectionRemaining;
+
+		private Input(Iterator<DataSection> sections, int bufferSize) {
+			this.sections = sections;
+			this.buffer = ByteBuffer.allocate(bufferSize);
+			this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+			this.buffer.flip();
+		}
+
+		/**
+		 * Makes sure at least given number of bytes are available in the
+		 * buffer.
+		 *
+		 * @return False if the end of the data is reached before.
+		 */
+		private boolean ensure(int bytes) throws IOException {
+			while (buffer.remaining() < bytes) {
+				while (sectionRemaining == 0) {
+					if (!sections.hasNext()) {
+						return false;
+					}
+					DataSection section = sections.next();
+					if (section.hasRecords()) {
+						sectionChannel = section.getChannel();
+						sectionPos = section.getPos();
+						sectionRemaining = section.getLength();
+					}
+				}
+				buffer.compact();
+				int length = (int) Math.min(buffer.remaining(), sectionRemaining);
+				buffer.limit(buffer.position() + length);
+				int read = FileUtil.readFully(sectionChannel, buffer, sectionPos);
+				buffer.flip();
+				if (read < length) {
+					throw new IOException(new StringBuilder().append("Unexpected end of file reading records at position ").append(sectionPos).toString());
+				}
+				sectionPos += length;
+				sectionRemaining -= length;
+			}
+			return true;
+		}
+
+	}
+
+	/**
+	 * The region of a single channel group within the sidecar file.
+	 */
+	private class Region {
+
+		private final CGBLOCK cgBlock;
+		private final long start;
+		private final long capacity;
+		private final int recordLength;
+		private final int bufferSize;
+
+		private ByteBuffer out;
+		private long written;
+		private long flushed;
+
+		private Region(CGBLOCK cgBlock, long start, long capacity, int recordLength, int bufferSize) {
+			this.cgBlock = cgBlock;
+			this.start = start;
+			this.capacity = capacity;
+			this.recordLength = recordLength;
+			this.bufferSize = (int) Math.max(1, Math.min(bufferSize, capacity));
+		}
+
+		/**
+		 * Copies length bytes from the source buffer into the region.
+		 */
+		private void put(ByteBuffer src, int length) throws IOException {
+			if (written + length > capacity) {
+				throw new IOException(new StringBuilder().append("Records exceed the cycle count of the channel group [CGBLOCK=").append(cgBlock).append("]").toString());
+			}
+			if (out == null) {
+				// allocate lazily, channel groups may have no records at all
+				out = ByteBuffer.allocate(bufferSize);
+			}
+			int limit = src.limit();
+			while (length > 0) {
+				if (!out.hasRemaining()) {
+					flush();
+				}
+				int n = Math.min(out.remaining(), length);
+				src.limit(src.position() + n);
+				out.put(src);
+				src.limit(limit);
+				length -= n;
+				written += n;
+			}
+		}
+
+		/**
+		 * Writes the buffered bytes to the sidecar file.
+		 */
+		private void flush() throws IOException {
+			if (out == null) {
+				return;
+			}
+			out.flip();
+			while (out.hasRemaining()) {
+				flushed += channel.write(out, start + flushed);
+			}
+			out.clear();
+		}
+
+	}
+
+}
@@ -0,0 +1,284 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
+
+/**
+ * Copies the data sections of data lists whose block boundaries split records
+ * into one contiguous, record aligned region of a sidecar file, which can be
+ * referenced by the external components.
+ * <p>
+ * The complete records of a data section are copied with
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+ * so the data does not pass through the Java heap. Only a record split by a
+ * block boundary is assembled in a small carry-over buffer.
+ * <p>
+ * Several data lists may be stitched concurrently, each call reserves its own
+ * region of the file.
+ */
+class RecordStitcher implements Closeable {
+
+	private static final Log LOG = LogFactory.getLog(RecordStitcher.class);
+
+	/** The suffix appended to the MDF file name */
+	static final String FILE_SUFFIX = ".stitched";
+
+	// buffer size used to copy from channels not supporting transferTo
+	private static final int COPY_BUFFER_SIZE = 1024 * 1024;
+
+	private final Path path;
+	private final FileChannel channel;
+
+	// end of the reserved regions, guarded by this
+	private long reserved;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param path
+	 *            The sidecar file.
+	 * @param channel
+	 *            The opened sidecar file.
+	 */
+	private RecordStitcher(Path path, FileChannel channel) {
+		this.path = path;
+		this.channel = channel;
+	}
+
+	/**
+	 * Creates the sidecar file of given MDF file. An existing sidecar file may
+	 * be referenced by a previously converted ATFX file, in that case a unique
+	 * file name is chosen.
+	 *
+	 * @param source
+	 *            The MDF file.
+	 * @return The record stitcher.
+	 * @throws IOException
+	 *             Error creating the sidecar file.
+	 */
+	static RecordStitcher open(Path source) throws IOException {
+		Path path = source.resolveSibling(source.getFileName() + FILE_SUFFIX);
+		while (Files.exists(path)) {
+			path = source.resolveSibling(new StringBuilder().append(source.getFileName()).append("_")
+					.append(UUID.randomUUID().toString().split("-")[0]).append(FILE_SUFFIX).toString());
+		}
+		return new RecordStitcher(path, FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.READ, StandardOpenOption.WRITE));
+	}
+
+	/**
+	 * Creates a temporary sidecar file in the default temporary-file directory,
+	 * used if the records are not referenced after reading. The caller has to
+	 * delete the file.
+	 *
+	 * @return The record stitcher.
+	 * @throws IOException
+	 *             Error creating the sidecar file.
+	 */
+	static RecordStitcher openTemp() throws IOException {
+		Path path = Files.createTempFile("mdf", FILE_SUFFIX);
+		return new RecordStitcher(path, FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+	}
+
+	/**
+	 * @return The sidecar file.
+	 */
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Appends the records of given data sections to the sidecar file.
+	 * Sections without records are skipped, an incomplete record at the end of
+	 * the last section is dropped.
+	 *
+	 * @param sections
+	 *            The data sections in record order.
+	 * @param recordSize
+	 *            The size of a single record.
+	 * @return The data section within the sidecar file containing all
+	 *         records.
+	 * @throws IOException
+	 *             Error reading a data section or writing the sidecar file.
+	 */
+	public DataSection stitch(List<DataSection> sections, int recordSize) throws IOException {
+		long total = 0;
+		for (DataSection section : sections) {
+			if (section.hasRecords()) {
+				total += section.getLength();
+			}
+		}
+		long start = reserve(total - total % recordSize);
+		ByteBuffer carry = ByteBuffer.allocate(recordSize);
+
+		// the zero-copy transfer writes at the channel position, so each call
+		// uses its own channel
+		long pos;
+		try (FileChannel out = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			pos = stitch(sections, carry, out, start);
+		}
+
+		if (carry.position() > 0) {
+			LOG.warn(new StringBuilder().append("Dropped incomplete record of ").append(carry.position()).append(" bytes at the end of the data list").toString());
+		}
+		return new DataSection(channel, path.getFileName().toString(), getBlockType(sections), start, pos - start);
+	}
+
+	/**
+	 * Copies the records of the data sections into the reserved region.
+	 *
+	 * @return The end position of the copied records.
+	 */
+	private static long stitch(List<DataSection> sections, ByteBuffer carry, FileChannel out, long pos)
+			throws IOException {
+		int recordSize = carry.capacity();
+		for (DataSection section : sections) {
+			if (!section.hasRecords()) {
+				continue;
+			}
+			long src = section.getPos();
+			long remaining = section.getLength();
+
+			// complete the record started in the previous section
+			if (carry.position() > 0) {
+				int head = (int) Math.min(carry.remaining(), remaining);
+				read(section.getChannel(), carry, src, head);
+				src += head;
+				remaining -= head;
+				if (!carry.hasRemaining()) {
+					carry.flip();
+					while (carry.hasRemaining()) {
+						pos += out.write(carry, pos);
+					}
+					carry.clear();
+				}
+			}
+
+			// copy complete records
+			long aligned = remaining - remaining % recordSize;
+			copy(section.getChannel(), src, aligned, out, pos);
+			src += aligned;
+			remaining -= aligned;
+			pos += aligned;
+
+			// keep the start of the split record
+			if (remaining > 0) {
+				read(section.getChannel(), carry, src, (int) remaining);
+			}
+		}
+
+		return pos;
+	}
+
+	/**
+	 * Returns the block type of the last data section with records.
+	 */
+	private static String getBlockType(List<DataSection> sections) {
+		String blockType = DTBLOCK.BLOCK_ID;
+		for (DataSection section : sections) {
+			if (section.hasRecords()) {
+				blockType = section.getBlockType();
+			}
+		}
+		return blockType;
+	}
+
+	/**
+	 * Reserves a region at the end of the sidecar file.
+	 *
+	 * @param length
+	 *            The length of the region.
+	 * @return The start position of the region.
+	 */
+	private synchronized long reserve(long length) {
+		long start = reserved;
+		reserved += length;
+		return start;
+	}
+
+	/**
+	 * Reads exactly length bytes into the buffer.
+	 */
+	private static void read(SeekableByteChannel source, ByteBuffer bb, long pos, int length) throws IOException {
+		int limit = bb.limit();
+		bb.limit(bb.position() + length);
+		int read = FileUtil.readFully(source, bb, pos);
+		bb.limit(limit);
+		if (read < length) {
+			throw new IOException(new StringBuilder().append("Unexpected end of file reading records at position ").append(pos).toString());
+		}
+	}
+
+	/**
+	 * Copies count bytes from the source channel to the sidecar file.
+	 */
+	private static void copy(SeekableByteChannel source, long srcPos, long count, FileChannel out, long pos)
+			throws IOException {
+		if (source instanceof FileChannel) {
+			// zero-copy
+			FileChannel fc = (FileChannel) source;
+			out.position(pos);
+			long copied = 0;
+			while (copied < count) {
+				long transferred = fc.transferTo(srcPos + copied, count - copied, out);
+				if (transferred <= 0) {
+					throw new IOException(new StringBuilder().append("Unexpected end of file reading records at position ").append(srcPos + copied).toString());
+				}
+				copied += transferred;
+			}
+			return;
+		}
+
+		ByteBuffer copyBuffer = ByteBuffer.allocate((int) Math.min(COPY_BUFFER_SIZE, count));
+		long copied = 0;
+		while (copied < count) {
+			int length = (int) Math.min(copyBuffer.capacity(), count - copied);
+			copyBuffer.clear();
+			read(source, copyBuffer, srcPos + copied, length);
+			copyBuffer.flip();
+			while (copyBuffer.hasRemaining()) {
+				copied += out.write(copyBuffer, pos + copied);
+			}
+		}
+	}
+
+	/**
+	 * Closes the sidecar file.
+	 *
+	 * @throws IOException
+	 *             Error closing the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+}
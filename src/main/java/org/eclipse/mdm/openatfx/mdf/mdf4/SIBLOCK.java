@@ -19,6 +19,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
 
 /**
  * <p>
@@ -199,13 +201,17 @@ class SIBLOCK extends BLOCK {
 	 *             The exception.
 	 */
 	public static SIBLOCK read(SeekableByteChannel channel, long pos) throws IOException {
-		SIBLOCK block = new SIBLOCK(channel, pos);
+		BlockCache cache = BlockCache.get(channel);
+		SIBLOCK block = cache.get(pos, SIBLOCK.class);
+		if (block != null) {
+			return block;
+		}
+		block = new SIBLOCK(channel, pos);
 
 		// read block header
 		ByteBuffer bb = ByteBuffer.allocate(56);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.position(pos);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos);
 		bb.rewind();
 
 		// CHAR 4: Block type identifier
@@ -245,7 +251,7 @@ class SIBLOCK extends BLOCK {
 		// UINT8: Flags
 		block.setFlags(MDF4Util.readUInt8(bb));
 
-		return block;
+		return cache.put(block);
 	}
 
 	public String getSrcTypeString() {
@@ -19,6 +19,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
 
 /**
  * <p>
@@ -82,13 +84,17 @@ class TXBLOCK extends BLOCK {
 	 *             The exception.
 	 */
 	public static TXBLOCK read(SeekableByteChannel channel, long pos) throws IOException {
-		TXBLOCK block = new TXBLOCK(channel, pos);
+		BlockCache cache = BlockCache.get(channel);
+		TXBLOCK block = cache.get(pos, TXBLOCK.class);
+		if (block != null) {
+			return block;
+		}
+		block = new TXBLOCK(channel, pos);
 
 		// read block header
 		ByteBuffer bb = ByteBuffer.allocate(24);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.position(pos);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos);
 		bb.rewind();
 
 		// CHAR 4: Block type identifier
@@ -109,14 +115,13 @@ class TXBLOCK extends BLOCK {
 		// read block content
 		bb = ByteBuffer.allocate((int) block.getLength() + 24);
 		bb.order(ByteOrder.LITTLE_ENDIAN);
-		channel.position(pos + 24);
-		channel.read(bb);
+		FileUtil.readFully(channel, bb, pos + 24);
 		bb.rewind();
 
 		// XML String
 		block.setTxData(MDF4Util.readCharsUTF8(bb, (int) (block.getLength() - 24)));
 
-		return block;
+		return cache.put(block);
 	}
 
 }
@@ -0,0 +1,192 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Decodes bit fields of a record without allocating objects.
+ * <p>
+ * The field is addressed by the index of its first byte within the buffer and
+ * a bit offset. Integer fields follow the MDF convention: the bytes of the
+ * field are combined in the byte order of the field, the bit offset is counted
+ * from the least significant bit. Byte aligned 8, 16, 32 and 64 bit fields are
+ * read with a single absolute get, all other fields with a single 64 bit word
+ * load if the buffer has enough remaining bytes.
+ * <p>
+ * All reads are absolute, the position of the buffer is not changed.
+ */
+public final class BitFieldDecoder {
+
+	/**
+	 * Constructor, no instances.
+	 */
+	private BitFieldDecoder() {
+	}
+
+	/**
+	 * Reads an unsigned integer field.
+	 *
+	 * @param bb
+	 *            The buffer containing the record.
+	 * @param index
+	 *            The index of the first byte of the field.
+	 * @param bitOffset
+	 *            The offset of the first bit, may exceed 7.
+	 * @param bitCount
+	 *            The number of bits (1-64).
+	 * @param byteOrder
+	 *            The byte order of the field.
+	 * @return The value, a 64 bit field may be negative.
+	 */
+	public static long readUnsigned(ByteBuffer bb, int index, int bitOffset, int bitCount, ByteOrder byteOrder) {
+		index += bitOffset >>> 3;
+		bitOffset &= 0x07;
+
+		// byte aligned fast paths
+		if (bitOffset == 0) {
+			boolean swap = bb.order() != byteOrder;
+			switch (bitCount) {
+			case 8:
+				return bb.get(index) & 0xFFL;
+			case 16:
+				short s = bb.getShort(index);
+				return (swap ? Short.reverseBytes(s) : s) & 0xFFFFL;
+			case 32:
+				int i = bb.getInt(index);
+				return (swap ? Integer.reverseBytes(i) : i) & 0xFFFFFFFFL;
+			case 64:
+				long l = bb.getLong(index);
+				return swap ? Long.reverseBytes(l) : l;
+			default:
+				break;
+			}
+		}
+
+		int bytes = (bitOffset + bitCount + 7) >>> 3;
+		long value;
+		if (bytes <= 8 && index + 8 <= bb.limit()) {
+			// single word load, the surplus bytes are shifted out
+			long word = bb.getLong(index);
+			if (byteOrder == ByteOrder.LITTLE_ENDIAN) {
+				if (bb.order() != ByteOrder.LITTLE_ENDIAN) {
+					word = Long.reverseBytes(word);
+				}
+				value = word >>> bitOffset;
+			} else {
+				if (bb.order() != ByteOrder.BIG_ENDIAN) {
+					word = Long.reverseBytes(word);
+				}
+				value = word >>> (64 - (bytes << 3)) + bitOffset;
+			}
+		} else {
+			// end of buffer or field spanning 9 bytes, combine byte by byte
+			value = 0;
+			for (int j = 0; j < bytes; j++) {
+				int b = bb.get(byteOrder == ByteOrder.LITTLE_ENDIAN ? index + j : index + bytes - 1 - j) & 0xFF;
+				value |= j == 0 ? b >>> bitOffset : (long) b << (j << 3) - bitOffset;
+			}
+		}
+		return bitCount == 64 ? value : value & (1L << bitCount) - 1;
+	}
+
+	/**
+	 * Reads a two's complement signed integer field, see
+	 * {@link #readUnsigned(ByteBuffer, int, int, int, ByteOrder)}.
+	 *
+	 * @param bb
+	 *            The buffer containing the record.
+	 * @param index
+	 *            The index of the first byte of the field.
+	 * @param bitOffset
+	 *            The offset of the first bit, may exceed 7.
+	 * @param bitCount
+	 *            The number of bits (1-64).
+	 * @param byteOrder
+	 *            The byte order of the field.
+	 * @return The sign extended value.
+	 */
+	public static long readSigned(ByteBuffer bb, int index, int bitOffset, int bitCount, ByteOrder byteOrder) {
+		int shift = 64 - bitCount;
+		return readUnsigned(bb, index, bitOffset, bitCount, byteOrder) << shift >> shift;
+	}
+
+	/**
+	 * Reads a single bit.
+	 *
+	 * @param bb
+	 *            The buffer containing the record.
+	 * @param index
+	 *            The index of the byte containing the bit.
+	 * @param bitOffset
+	 *            The offset of the bit counted from the least significant bit,
+	 *            may exceed 7.
+	 * @return True if the bit is set.
+	 */
+	public static boolean isSet(ByteBuffer bb, int index, int bitOffset) {
+		return (bb.get(index + (bitOffset >>> 3)) & 1 << (bitOffset & 0x07)) != 0;
+	}
+
+	/**
+	 * Copies a bit field into a byte array. In contrast to integer fields, the
+	 * bits are counted from the most significant bit of the first byte, like
+	 * {@link BitInputStream#readByteArray(int)} does. A trailing partial byte
+	 * is left aligned.
+	 *
+	 * @param bb
+	 *            The buffer containing the record.
+	 * @param index
+	 *            The index of the first byte of the field.
+	 * @param bitOffset
+	 *            The offset of the first bit, may exceed 7.
+	 * @param bitCount
+	 *            The number of bits.
+	 * @param dst
+	 *            The target array, at least (bitCount + 7) / 8 bytes.
+	 * @return The number of bytes written to the target array.
+	 */
+	public static int readBytes(ByteBuffer bb, int index, int bitOffset, int bitCount, byte[] dst) {
+		index += bitOffset >>> 3;
+		int shift = bitOffset & 0x07;
+		int bytes = (bitCount + 7) >>> 3;
+		int tail = bitCount & 0x07;
+
+		if (shift == 0) {
+			// byte aligned: bulk copy
+			int position = bb.position();
+			bb.position(index);
+			bb.get(dst, 0, bytes);
+			bb.position(position);
+		} else {
+			int end = index + ((shift + bitCount + 7) >>> 3);
+			for (int i = 0; i < bytes; i++) {
+				int k = index + i;
+				int b = bb.get(k) << shift;
+				if (k + 1 < end) {
+					b |= (bb.get(k + 1) & 0xFF) >>> 8 - shift;
+				}
+				dst[i] = (byte) b;
+			}
+		}
+		if (tail != 0) {
+			dst[bytes - 1] &= 0xFF << 8 - tail;
+		}
+		return bytes;
+	}
+
+}
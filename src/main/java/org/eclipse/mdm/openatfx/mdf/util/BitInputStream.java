@@ -21,7 +21,10 @@ import java.io.IOException;
  * A bit-wise input stream.
  *
  * @author Christian Rechner
+ * @deprecated reads at most 8 bits per call and allocates the read data, use
+ *             {@link BitFieldDecoder} instead
  */
+@Deprecated
 public class BitInputStream {
 
 	// The byte array being read from.
@@ -0,0 +1,122 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.nio.ByteOrder;
+
+/**
+ * Exponential and logarithmic conversion of the raw values of a channel (MDF3
+ * formula 7 and 8) with the seven parameters <code>p1</code> to
+ * <code>p7</code>. One of <code>p1</code> and <code>p4</code> has to be zero:
+ * <ul>
+ * <li><code>p4 == 0: phys = f(((x - p7) * p6 - p3) / p1) / p2</code></li>
+ * <li><code>p1 == 0: phys = f((p3 / (x - p7) - p6) / p4) / p5</code></li>
+ * </ul>
+ * where <code>f</code> is the natural logarithm for the exponential and the
+ * exponential function for the logarithmic conversion.
+ */
+public class ExponentialConversion extends ValueConversion {
+
+	private final boolean logarithmic;
+	private final boolean reciprocal;
+	private final double p1;
+	private final double p2;
+	private final double p3;
+	private final double p4;
+	private final double p5;
+	private final double p6;
+	private final double p7;
+	// p2, or p5 for the reciprocal conversion
+	private final double divisor;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param valueOffset
+	 *            The byte offset of the raw value within the record.
+	 * @param byteOrder
+	 *            The byte order of the raw value.
+	 * @param bits
+	 *            The number of bits of the raw value.
+	 * @param isInteger
+	 *            True, if the raw value is an integer, otherwise a floating
+	 *            point number.
+	 * @param isUnsigned
+	 *            True, if the raw value is an unsigned integer.
+	 * @param logarithmic
+	 *            True for the logarithmic (formula 8), false for the
+	 *            exponential conversion (formula 7).
+	 * @param p
+	 *            The seven parameters of the conversion.
+	 * @throws IllegalArgumentException
+	 *             Neither p1 nor p4 is zero.
+	 */
+	public ExponentialConversion(int valueOffset, ByteOrder byteOrder, int bits, boolean isInteger,
+			boolean isUnsigned, boolean logarithmic, double[] p) {
+		super(valueOffset, byteOrder, bits, isInteger, isUnsigned);
+		if (Double.compare(p[3], 0) != 0 && Double.compare(p[0], 0) != 0) {
+			throw new IllegalArgumentException("either p1 or p4 has to be zero");
+		}
+		this.logarithmic = logarithmic;
+		this.reciprocal = Double.compare(p[3], 0) != 0;
+		this.p1 = p[0];
+		this.p2 = p[1];
+		this.p3 = p[2];
+		this.p4 = p[3];
+		this.p5 = p[4];
+		this.p6 = p[5];
+		this.p7 = p[6];
+		this.divisor = reciprocal ? p5 : p2;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double convert(double x) {
+		double y = reciprocal ? (p3 / (x - p7) - p6) / p4 : ((x - p7) * p6 - p3) / p1;
+		return (logarithmic ? Math.exp(y) : Math.log(y)) / divisor;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void convert(double[] values, int count) {
+		// the argument is calculated in a first pass, the function applied in
+		// a second one, both loops are free of branches
+		if (reciprocal) {
+			for (int i = 0; i < count; i++) {
+				values[i] = (p3 / (values[i] - p7) - p6) / p4;
+			}
+		} else {
+			for (int i = 0; i < count; i++) {
+				values[i] = ((values[i] - p7) * p6 - p3) / p1;
+			}
+		}
+		if (logarithmic) {
+			for (int i = 0; i < count; i++) {
+				values[i] = Math.exp(values[i]) / divisor;
+			}
+		} else {
+			for (int i = 0; i < count; i++) {
+				values[i] = Math.log(values[i]) / divisor;
+			}
+		}
+	}
+
+}
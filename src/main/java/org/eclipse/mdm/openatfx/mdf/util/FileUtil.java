@@ -1,20 +1,30 @@
-/********************************************************************************
- * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
- *
- * See the NOTICE file(s) distributed with this work for additional
- * information regarding copyright ownership.
- *
- * This program and the accompanying materials are made available under the
- * terms of the Eclipse Public License v. 2.0 which is available at
- * http://www.eclipse.org/legal/epl-2.0.
- *
- * SPDX-License-Identifier: EPL-2.0
- *
- ********************************************************************************/
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
 
 
 package org.eclipse.mdm.openatfx.mdf.util;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
 /**
  * Utility class for file handling.
  *
@@ -63,4 +73,103 @@ public abstract class FileUtil {
 		return ext;
 	}
 
+	/**
+	 * Reads bytes from the channel at the given position until the buffer is
+	 * full or the end of the channel is reached.
+	 * <p>
+	 * For file channels and memory mapped channels the read is positional,
+	 * i.e. the channel position is neither used nor modified, which allows
+	 * several threads to read from the same channel concurrently. Other
+	 * channels are positioned and read while holding the channel's monitor.
+	 *
+	 * @param channel
+	 *            The channel to read from.
+	 * @param bb
+	 *            The buffer to read into.
+	 * @param pos
+	 *            The position within the channel.
+	 * @return The number of bytes read, -1 if the position is at or after the
+	 *         end of the channel.
+	 * @throws IOException
+	 *             Error reading from channel.
+	 */
+	public static int readFully(SeekableByteChannel channel, ByteBuffer bb, long pos) throws IOException {
+		int total = 0;
+		if (channel instanceof FileChannel) {
+			FileChannel fc = (FileChannel) channel;
+			while (bb.hasRemaining()) {
+				int read = fc.read(bb, pos + total);
+				if (read < 0) {
+					break;
+				}
+				total += read;
+			}
+		} else if (channel instanceof MappedByteChannel) {
+			return ((MappedByteChannel) channel).read(bb, pos);
+		} else {
+			synchronized (channel) {
+				channel.position(pos);
+				while (bb.hasRemaining()) {
+					int read = channel.read(bb);
+					if (read < 0) {
+						break;
+					}
+					total += read;
+				}
+			}
+		}
+		return total == 0 && bb.hasRemaining() ? -1 : total;
+	}
+
+	/**
+	 * Opens the MDF file for reading. If the property
+	 * 'use_memory_mapped_reader' is set to true, the file is read through
+	 * memory mapped windows instead of the default byte channel.
+	 *
+	 * @param mdfPath
+	 *            The MDF file.
+	 * @param properties
+	 *            The properties (can be null).
+	 * @return The opened byte channel.
+	 * @throws IOException
+	 *             Error opening the file.
+	 */
+	public static SeekableByteChannel openMDFFile(Path mdfPath, Properties properties) throws IOException {
+		if (properties != null && properties.containsKey("use_memory_mapped_reader")
+				&& Boolean.valueOf(properties.getProperty("use_memory_mapped_reader"))) {
+			return MappedByteChannel.open(mdfPath);
+		}
+		return Files.newByteChannel(mdfPath, StandardOpenOption.READ);
+	}
+
+	/**
+	 * Reads the MDF version string from the byte channel.
+	 *
+	 * @param sbc
+	 *            The byte channel.
+	 * @return The MDF version string.
+	 * @throws IOException
+	 *             Error reading from channel.
+	 */
+	public static String readMDFVersion(SeekableByteChannel sbc) throws IOException {
+		// read block
+		ByteBuffer bb = ByteBuffer.allocate(64);
+		bb.order(ByteOrder.LITTLE_ENDIAN);
+		readFully(sbc, bb, 0);
+		bb.rewind();
+
+		// CHAR 8: File identifier
+		byte[] b = new byte[8];
+		bb.get(b);
+		String fileIdent = new String(b, "ISO-8859-1");
+		if (!"MDF     ".equals(fileIdent)) {
+			throw new IOException("Invalid or corrupt MDF file: " + fileIdent);
+		}
+
+		// CHAR 8: Format identifier
+		b = new byte[8];
+		bb.get(b);
+		return new String(b, "ISO-8859-1");
+	}
+
 }
@@ -0,0 +1,69 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Extracts the invalidation bit of a channel from each record and writes it as
+ * ASAM ODS flag (short): 15 for a valid value, 0 for an invalid value.
+ */
+public class FlagConsumer extends SidecarConsumer {
+
+	private static final short VALID = 15;
+	private static final short INVALID = 0;
+
+	private final int flagByteOffset;
+	private final int bitOffset;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param channel
+	 *            The file channel of the flags file.
+	 * @param pos
+	 *            The start position of the region to write.
+	 * @param bufferSize
+	 *            The size of the write buffer.
+	 * @param byteOrder
+	 *            The byte order of the written flags.
+	 * @param flagByteOffset
+	 *            The offset of the byte containing the invalidation bit
+	 *            within the record.
+	 * @param bitOffset
+	 *            The offset of the invalidation bit within this byte.
+	 */
+	public FlagConsumer(FileChannel channel, long pos, int bufferSize, ByteOrder byteOrder, int flagByteOffset,
+			int bitOffset) {
+		super(channel, pos, Math.max(2, bufferSize & ~1), byteOrder);
+		this.flagByteOffset = flagByteOffset;
+		this.bitOffset = bitOffset;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void consume(ByteBuffer record, int offset) throws IOException {
+		out.putShort(BitFieldDecoder.isSet(record, offset + flagByteOffset, bitOffset) ? INVALID : VALID);
+		flushIfFull();
+	}
+
+}
@@ -0,0 +1,766 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A compiled ASAM MCD-2 MC text formula with the single input variable
+ * <code>X</code> (also written as <code>x</code> or <code>X1</code>), as used
+ * by MDF4 algebraic conversions and MDF3 text formulas.
+ * <p>
+ * Supported are decimal and hexadecimal constants, the arithmetic operators
+ * <code>+ - * / %</code>, the bitwise operators <code>&amp; | ^ ~ &lt;&lt;
+ * &gt;&gt;</code>, the logical operators <code>&amp;&amp; || !</code>, the
+ * comparison operators <code>&lt; &lt;= &gt; &gt;= == !=</code> with C
+ * precedence and the functions <code>abs, sqrt, exp, ln/log, log10, sin, cos,
+ * tan, arcsin/asin, arccos/acos, arctan/atan, sinh, cosh, tanh, ceil, floor
+ * and pow(x, y)</code>. Bitwise operators work on the 64 bit integer part of
+ * their operands, logical and comparison operators return 1 or 0.
+ * <p>
+ * The formula is parsed once into an expression tree, constant sub
+ * expressions are folded and the tree is flattened into a postfix program.
+ * {@link #evaluate(double[], int, int)} runs the program column wise: each
+ * instruction is applied to a whole chunk of values before the next one, so
+ * the instruction dispatch costs once per chunk instead of once per value.
+ * <p>
+ * Instances are immutable and may be shared by several threads.
+ */
+public final class Formula {
+
+	// number of values evaluated per instruction
+	private static final int CHUNK_SIZE = 256;
+
+	// operations
+	private static final int CONST = 0;
+	private static final int VAR = 1;
+	private static final int NEG = 2;
+	private static final int NOT = 3;
+	private static final int BIT_NOT = 4;
+	private static final int ADD = 5;
+	private static final int SUB = 6;
+	private static final int MUL = 7;
+	private static final int DIV = 8;
+	private static final int MOD = 9;
+	private static final int BIT_AND = 10;
+	private static final int BIT_OR = 11;
+	private static final int BIT_XOR = 12;
+	private static final int SHL = 13;
+	private static final int SHR = 14;
+	private static final int LT = 15;
+	private static final int LE = 16;
+	private static final int GT = 17;
+	private static final int GE = 18;
+	private static final int EQ = 19;
+	private static final int NE = 20;
+	private static final int AND = 21;
+	private static final int OR = 22;
+	private static final int POW = 23;
+	private static final int ABS = 24;
+	private static final int SQRT = 25;
+	private static final int EXP = 26;
+	private static final int LN = 27;
+	private static final int LOG10 = 28;
+	private static final int SIN = 29;
+	private static final int COS = 30;
+	private static final int TAN = 31;
+	private static final int ASIN = 32;
+	private static final int ACOS = 33;
+	private static final int ATAN = 34;
+	private static final int SINH = 35;
+	private static final int COSH = 36;
+	private static final int TANH = 37;
+	private static final int CEIL = 38;
+	private static final int FLOOR = 39;
+
+	// the functions with their operation, key is the lower case name
+	private static final Map<String, Integer> FUNCTIONS = new HashMap<>();
+	static {
+		FUNCTIONS.put("abs", ABS);
+		FUNCTIONS.put("sqrt", SQRT);
+		FUNCTIONS.put("exp", EXP);
+		FUNCTIONS.put("ln", LN);
+		FUNCTIONS.put("log", LN);
+		FUNCTIONS.put("log10", LOG10);
+		FUNCTIONS.put("sin", SIN);
+		FUNCTIONS.put("cos", COS);
+		FUNCTIONS.put("tan", TAN);
+		FUNCTIONS.put("asin", ASIN);
+		FUNCTIONS.put("arcsin", ASIN);
+		FUNCTIONS.put("acos", ACOS);
+		FUNCTIONS.put("arccos", ACOS);
+		FUNCTIONS.put("atan", ATAN);
+		FUNCTIONS.put("arctan", ATAN);
+		FUNCTIONS.put("sinh", SINH);
+		FUNCTIONS.put("cosh", COSH);
+		FUNCTIONS.put("tanh", TANH);
+		FUNCTIONS.put("ceil", CEIL);
+		FUNCTIONS.put("floor", FLOOR);
+		FUNCTIONS.put("pow", POW);
+	}
+
+	private final String text;
+
+	// the postfix program: operation and, for CONST, the value; a binary
+	// operation with a constant right operand is stored as a single
+	// instruction with the constant in 'operands' and 'constRight' set
+	private final int[] ops;
+	private final double[] operands;
+	private final boolean[] constRight;
+	private final int maxDepth;
+
+	private Formula(String text, Node root) {
+		this.text = text;
+		List<Node> program = new ArrayList<>();
+		int depth = flatten(root, program, 0);
+		this.ops = new int[program.size()];
+		this.operands = new double[program.size()];
+		this.constRight = new boolean[program.size()];
+		for (int i = 0; i < ops.length; i++) {
+			Node node = program.get(i);
+			ops[i] = node.op;
+			operands[i] = node.value;
+			constRight[i] = node.right != null && node.right.op == CONST;
+		}
+		this.maxDepth = Math.max(1, depth);
+	}
+
+	/**
+	 * Compiles a formula.
+	 *
+	 * @param text
+	 *            The formula text.
+	 * @return The compiled formula.
+	 * @throws IllegalArgumentException
+	 *             The formula is not valid.
+	 */
+	public static Formula compile(String text) {
+		if (text == null) {
+			throw new IllegalArgumentException("No formula given");
+		}
+		Parser parser = new Parser(text);
+		Node root = parser.parseExpression();
+		parser.skipWhitespace();
+		if (parser.pos < text.length()) {
+			throw parser.error("Unexpected character '" + text.charAt(parser.pos) + "'");
+		}
+		return new Formula(text, root);
+	}
+
+	/**
+	 * @return The formula text.
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * @return True, if the formula does not depend on <code>X</code>.
+	 */
+	public boolean isConstant() {
+		return ops.length == 1 && ops[0] == CONST;
+	}
+
+	/**
+	 * Evaluates the formula for a single value.
+	 *
+	 * @param x
+	 *            The value of <code>X</code>.
+	 * @return The result.
+	 */
+	public double evaluate(double x) {
+		double[] stack = new double[maxDepth];
+		int sp = 0;
+		for (int i = 0; i < ops.length; i++) {
+			int op = ops[i];
+			if (op == CONST) {
+				stack[sp++] = operands[i];
+			} else if (op == VAR) {
+				stack[sp++] = x;
+			} else if (op < ADD) {
+				stack[sp - 1] = unary(op, stack[sp - 1]);
+			} else if (op < ABS && constRight[i]) {
+				stack[sp - 1] = binary(op, stack[sp - 1], operands[i]);
+			} else if (op < ABS) {
+				sp--;
+				stack[sp - 1] = binary(op, stack[sp - 1], stack[sp]);
+			} else {
+				stack[sp - 1] = unary(op, stack[sp - 1]);
+			}
+		}
+		return stack[0];
+	}
+
+	/**
+	 * Evaluates the formula for the values of an array in place.
+	 *
+	 * @param values
+	 *            The values of <code>X</code>, replaced by the results.
+	 * @param offset
+	 *            The index of the first value.
+	 * @param count
+	 *            The number of values.
+	 */
+	public void evaluate(double[] values, int offset, int count) {
+		if (isConstant()) {
+			for (int i = offset; i < offset + count; i++) {
+				values[i] = operands[0];
+			}
+			return;
+		}
+
+		double[][] stack = new double[maxDepth][CHUNK_SIZE];
+		for (int start = offset; start < offset + count; start += CHUNK_SIZE) {
+			int n = Math.min(CHUNK_SIZE, offset + count - start);
+			int sp = 0;
+			for (int i = 0; i < ops.length; i++) {
+				int op = ops[i];
+				if (op == CONST) {
+					double[] dst = stack[sp++];
+					double c = operands[i];
+					for (int j = 0; j < n; j++) {
+						dst[j] = c;
+					}
+				} else if (op == VAR) {
+					System.arraycopy(values, start, stack[sp++], 0, n);
+				} else if (op >= ADD && op < ABS && constRight[i]) {
+					applyConst(op, stack[sp - 1], operands[i], n);
+				} else if (op >= ADD && op < ABS) {
+					sp--;
+					apply(op, stack[sp - 1], stack[sp], n);
+				} else {
+					apply(op, stack[sp - 1], n);
+				}
+			}
+			System.arraycopy(stack[0], 0, values, start, n);
+		}
+	}
+
+	/**
+	 * Applies a unary operation to a chunk.
+	 */
+	private static void apply(int op, double[] a, int n) {
+		switch (op) {
+		case NEG:
+			for (int j = 0; j < n; j++) {
+				a[j] = -a[j];
+			}
+			break;
+		case ABS:
+			for (int j = 0; j < n; j++) {
+				a[j] = Math.abs(a[j]);
+			}
+			break;
+		case SQRT:
+			for (int j = 0; j < n; j++) {
+				a[j] = Math.sqrt(a[j]);
+			}
+			break;
+		case EXP:
+			for (int j = 0; j < n; j++) {
+				a[j] = Math.exp(a[j]);
+			}
+			break;
+		case LN:
+			for (int j = 0; j < n; j++) {
+				a[j] = Math.log(a[j]);
+			}
+			break;
+		default:
+			for (int j = 0; j < n; j++) {
+				a[j] = unary(op, a[j]);
+			}
+		}
+	}
+
+	/**
+	 * Applies a binary operation to two chunks, the result replaces the left
+	 * operand.
+	 */
+	private static void apply(int op, double[] a, double[] b, int n) {
+		switch (op) {
+		case ADD:
+			for (int j = 0; j < n; j++) {
+				a[j] += b[j];
+			}
+			break;
+		case SUB:
+			for (int j = 0; j < n; j++) {
+				a[j] -= b[j];
+			}
+			break;
+		case MUL:
+			for (int j = 0; j < n; j++) {
+				a[j] *= b[j];
+			}
+			break;
+		case DIV:
+			for (int j = 0; j < n; j++) {
+				a[j] /= b[j];
+			}
+			break;
+		default:
+			for (int j = 0; j < n; j++) {
+				a[j] = binary(op, a[j], b[j]);
+			}
+		}
+	}
+
+	/**
+	 * Applies a binary operation with a constant right operand to a chunk.
+	 */
+	private static void applyConst(int op, double[] a, double b, int n) {
+		switch (op) {
+		case ADD:
+			for (int j = 0; j < n; j++) {
+				a[j] += b;
+			}
+			break;
+		case SUB:
+			for (int j = 0; j < n; j++) {
+				a[j] -= b;
+			}
+			break;
+		case MUL:
+			for (int j = 0; j < n; j++) {
+				a[j] *= b;
+			}
+			break;
+		case DIV:
+			for (int j = 0; j < n; j++) {
+				a[j] /= b;
+			}
+			break;
+		default:
+			for (int j = 0; j < n; j++) {
+				a[j] = binary(op, a[j], b);
+			}
+		}
+	}
+
+	private static double unary(int op, double a) {
+		switch (op) {
+		case NEG:
+			return -a;
+		case NOT:
+			return a == 0 ? 1 : 0;
+		case BIT_NOT:
+			return ~(long) a;
+		case ABS:
+			return Math.abs(a);
+		case SQRT:
+			return Math.sqrt(a);
+		case EXP:
+			return Math.exp(a);
+		case LN:
+			return Math.log(a);
+		case LOG10:
+			return Math.log10(a);
+		case SIN:
+			return Math.sin(a);
+		case COS:
+			return Math.cos(a);
+		case TAN:
+			return Math.tan(a);
+		case ASIN:
+			return Math.asin(a);
+		case ACOS:
+			return Math.acos(a);
+		case ATAN:
+			return Math.atan(a);
+		case SINH:
+			return Math.sinh(a);
+		case COSH:
+			return Math.cosh(a);
+		case TANH:
+			return Math.tanh(a);
+		case CEIL:
+			return Math.ceil(a);
+		case FLOOR:
+			return Math.floor(a);
+		default:
+			throw new IllegalStateException("Unknown unary operation " + op);
+		}
+	}
+
+	private static double binary(int op, double a, double b) {
+		switch (op) {
+		case ADD:
+			return a + b;
+		case SUB:
+			return a - b;
+		case MUL:
+			return a * b;
+		case DIV:
+			return a / b;
+		case MOD:
+			return a % b;
+		case BIT_AND:
+			return (long) a & (long) b;
+		case BIT_OR:
+			return (long) a | (long) b;
+		case BIT_XOR:
+			return (long) a ^ (long) b;
+		case SHL:
+			return (long) a << (long) b;
+		case SHR:
+			return (long) a >> (long) b;
+		case LT:
+			return a < b ? 1 : 0;
+		case LE:
+			return a <= b ? 1 : 0;
+		case GT:
+			return a > b ? 1 : 0;
+		case GE:
+			return a >= b ? 1 : 0;
+		case EQ:
+			return a == b ? 1 : 0;
+		case NE:
+			return a != b ? 1 : 0;
+		case AND:
+			return a != 0 && b != 0 ? 1 : 0;
+		case OR:
+			return a != 0 || b != 0 ? 1 : 0;
+		case POW:
+			return Math.pow(a, b);
+		default:
+			throw new IllegalStateException("Unknown binary operation " + op);
+		}
+	}
+
+	/**
+	 * Appends the postfix program of a node.
+	 *
+	 * @return The stack depth needed by the node.
+	 */
+	private static int flatten(Node node, List<Node> program, int depth) {
+		if (node.op == CONST || node.op == VAR) {
+			program.add(node);
+			return depth + 1;
+		}
+		int max = flatten(node.left, program, depth);
+		if (node.right != null && node.right.op != CONST) {
+			max = Math.max(max, flatten(node.right, program, depth + 1));
+		}
+		program.add(node);
+		return max;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return new StringBuilder().append("Formula [").append(text).append("]").toString();
+	}
+
+	/**
+	 * A node of the expression tree.
+	 */
+	private static class Node {
+
+		private final int op;
+		private final double value;
+		private final Node left;
+		private final Node right;
+
+		private Node(double value) {
+			this.op = CONST;
+			this.value = value;
+			this.left = null;
+			this.right = null;
+		}
+
+		private Node(int op, Node left, Node right) {
+			this.op = op;
+			this.left = left;
+			this.right = right;
+			this.value = right != null && right.op == CONST ? right.value : 0;
+		}
+
+		/**
+		 * Creates an operation node, the operation is applied at once if all
+		 * operands are constant.
+		 */
+		private static Node create(int op, Node left, Node right) {
+			if (left.op == CONST && (right == null || right.op == CONST)) {
+				return new Node(right == null ? unary(op, left.value) : binary(op, left.value, right.value));
+			}
+			return new Node(op, left, right);
+		}
+
+	}
+
+	/**
+	 * Recursive descent parser with C operator precedence.
+	 */
+	private static class Parser {
+
+		private final String text;
+		private int pos;
+
+		private Parser(String text) {
+			this.text = text;
+		}
+
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(new StringBuilder().append(message).append(" at position ").append(pos).append(" of formula '").append(text).append("'").toString());
+		}
+
+		private void skipWhitespace() {
+			while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+				pos++;
+			}
+		}
+
+		/**
+		 * Consumes the given operator, if it is next and not the prefix of a
+		 * longer operator given in 'unless'.
+		 */
+		private boolean accept(String operator, String... unless) {
+			skipWhitespace();
+			if (!text.startsWith(operator, pos)) {
+				return false;
+			}
+			for (String longer : unless) {
+				if (text.startsWith(longer, pos)) {
+					return false;
+				}
+			}
+			pos += operator.length();
+			return true;
+		}
+
+		private void expect(char c) {
+			skipWhitespace();
+			if (pos >= text.length() || text.charAt(pos) != c) {
+				throw error("Expected '" + c + "'");
+			}
+			pos++;
+		}
+
+		private Node parseExpression() {
+			Node node = parseAnd();
+			while (accept("||")) {
+				node = Node.create(OR, node, parseAnd());
+			}
+			return node;
+		}
+
+		private Node parseAnd() {
+			Node node = parseBitOr();
+			while (accept("&&")) {
+				node = Node.create(AND, node, parseBitOr());
+			}
+			return node;
+		}
+
+		private Node parseBitOr() {
+			Node node = parseBitXor();
+			while (accept("|", "||")) {
+				node = Node.create(BIT_OR, node, parseBitXor());
+			}
+			return node;
+		}
+
+		private Node parseBitXor() {
+			Node node = parseBitAnd();
+			while (accept("^")) {
+				node = Node.create(BIT_XOR, node, parseBitAnd());
+			}
+			return node;
+		}
+
+		private Node parseBitAnd() {
+			Node node = parseEquality();
+			while (accept("&", "&&")) {
+				node = Node.create(BIT_AND, node, parseEquality());
+			}
+			return node;
+		}
+
+		private Node parseEquality() {
+			Node node = parseRelational();
+			while (true) {
+				if (accept("==")) {
+					node = Node.create(EQ, node, parseRelational());
+				} else if (accept("!=")) {
+					node = Node.create(NE, node, parseRelational());
+				} else {
+					return node;
+				}
+			}
+		}
+
+		private Node parseRelational() {
+			Node node = parseShift();
+			while (true) {
+				if (accept("<=")) {
+					node = Node.create(LE, node, parseShift());
+				} else if (accept(">=")) {
+					node = Node.create(GE, node, parseShift());
+				} else if (accept("<", "<<")) {
+					node = Node.create(LT, node, parseShift());
+				} else if (accept(">", ">>")) {
+					node = Node.create(GT, node, parseShift());
+				} else {
+					return node;
+				}
+			}
+		}
+
+		private Node parseShift() {
+			Node node = parseAdditive();
+			while (true) {
+				if (accept("<<")) {
+					node = Node.create(SHL, node, parseAdditive());
+				} else if (accept(">>")) {
+					node = Node.create(SHR, node, parseAdditive());
+				} else {
+					return node;
+				}
+			}
+		}
+
+		private Node parseAdditive() {
+			Node node = parseMultiplicative();
+			while (true) {
+				if (accept("+")) {
+					node = Node.create(ADD, node, parseMultiplicative());
+				} else if (accept("-")) {
+					node = Node.create(SUB, node, parseMultiplicative());
+				} else {
+					return node;
+				}
+			}
+		}
+
+		private Node parseMultiplicative() {
+			Node node = parseUnary();
+			while (true) {
+				if (accept("*")) {
+					node = Node.create(MUL, node, parseUnary());
+				} else if (accept("/")) {
+					node = Node.create(DIV, node, parseUnary());
+				} else if (accept("%")) {
+					node = Node.create(MOD, node, parseUnary());
+				} else {
+					return node;
+				}
+			}
+		}
+
+		private Node parseUnary() {
+			if (accept("-")) {
+				return Node.create(NEG, parseUnary(), null);
+			} else if (accept("+")) {
+				return parseUnary();
+			} else if (accept("!", "!=")) {
+				return Node.create(NOT, parseUnary(), null);
+			} else if (accept("~")) {
+				return Node.create(BIT_NOT, parseUnary(), null);
+			}
+			return parsePrimary();
+		}
+
+		private Node parsePrimary() {
+			skipWhitespace();
+			if (pos >= text.length()) {
+				throw error("Unexpected end");
+			}
+
+			char c = text.charAt(pos);
+			if (c == '(') {
+				pos++;
+				Node node = parseExpression();
+				expect(')');
+				return node;
+			} else if (Character.isDigit(c) || c == '.') {
+				return new Node(parseNumber());
+			} else if (Character.isLetter(c) || c == '_') {
+				int start = pos;
+				while (pos < text.length()
+						&& (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '_')) {
+					pos++;
+				}
+				String name = text.substring(start, pos).toLowerCase(Locale.ROOT);
+				if (name.equals("x") || name.equals("x1")) {
+					return new Node(VAR, null, null);
+				}
+				Integer op = FUNCTIONS.get(name);
+				if (op == null) {
+					pos = start;
+					throw error("Unknown identifier '" + name + "'");
+				}
+				expect('(');
+				Node arg = parseExpression();
+				Node node;
+				if (op == POW) {
+					expect(',');
+					node = Node.create(POW, arg, parseExpression());
+				} else {
+					node = Node.create(op, arg, null);
+				}
+				expect(')');
+				return node;
+			}
+			throw error("Unexpected character '" + c + "'");
+		}
+
+		private double parseNumber() {
+			int start = pos;
+			if (text.startsWith("0x", pos) || text.startsWith("0X", pos)) {
+				pos += 2;
+				while (pos < text.length() && Character.digit(text.charAt(pos), 16) >= 0) {
+					pos++;
+				}
+				if (pos == start + 2) {
+					throw error("Invalid hexadecimal number");
+				}
+				return Long.parseLong(text.substring(start + 2, pos), 16);
+			}
+
+			while (pos < text.length() && (Character.isDigit(text.charAt(pos)) || text.charAt(pos) == '.')) {
+				pos++;
+			}
+			if (pos < text.length() && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E')) {
+				int exponent = pos++;
+				if (pos < text.length() && (text.charAt(pos) == '+' || text.charAt(pos) == '-')) {
+					pos++;
+				}
+				if (pos >= text.length() || !Character.isDigit(text.charAt(pos))) {
+					pos = exponent;
+				}
+				while (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+					pos++;
+				}
+			}
+			try {
+				return Double.parseDouble(text.substring(start, pos));
+			} catch (NumberFormatException e) {
+				pos = start;
+				throw error("Invalid number");
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,68 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.nio.ByteOrder;
+
+/**
+ * Algebraic conversion of the raw values of a channel with a compiled text
+ * {@link Formula}.
+ */
+public class FormulaConversion extends ValueConversion {
+
+	private final Formula formula;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param valueOffset
+	 *            The byte offset of the raw value within the record.
+	 * @param byteOrder
+	 *            The byte order of the raw value.
+	 * @param bits
+	 *            The number of bits of the raw value.
+	 * @param isInteger
+	 *            True, if the raw value is an integer, otherwise a floating
+	 *            point number.
+	 * @param isUnsigned
+	 *            True, if the raw value is an unsigned integer.
+	 * @param formula
+	 *            The compiled formula, may be shared with other conversions.
+	 */
+	public FormulaConversion(int valueOffset, ByteOrder byteOrder, int bits, boolean isInteger, boolean isUnsigned,
+			Formula formula) {
+		super(valueOffset, byteOrder, bits, isInteger, isUnsigned);
+		this.formula = formula;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double convert(double x) {
+		return formula.evaluate(x);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void convert(double[] values, int count) {
+		formula.evaluate(values, 0, count);
+	}
+
+}
@@ -0,0 +1,178 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Extracts the invalidation bit of a channel from each record into a bitmap
+ * with one bit per record, a set bit marks an invalid value.
+ * <p>
+ * The bitmap is allocated on the first invalid value, channels without invalid
+ * values therefore need no memory and no flags have to be written for them.
+ * Otherwise the bitmap is written as ASAM ODS flags (short) with
+ * {@link #writeFlags(FileChannel, long, ByteOrder, int)}: 15 for a valid value,
+ * 0 for an invalid value.
+ */
+public class InvalidationBitmap implements RecordConsumer {
+
+	private static final short VALID = 15;
+	private static final short INVALID = 0;
+
+	private final int flagByteOffset;
+	private final int bitOffset;
+	private final long expectedCount;
+
+	// bit i of word i >>> 6 is set, if the value of record i is invalid
+	private long[] words;
+	private long count;
+	private long invalidCount;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param flagByteOffset
+	 *            The offset of the byte containing the invalidation bit
+	 *            within the record.
+	 * @param bitOffset
+	 *            The offset of the invalidation bit within this byte.
+	 * @param expectedCount
+	 *            The expected number of records, used to size the bitmap.
+	 */
+	public InvalidationBitmap(int flagByteOffset, int bitOffset, long expectedCount) {
+		this.flagByteOffset = flagByteOffset;
+		this.bitOffset = bitOffset;
+		this.expectedCount = expectedCount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void consume(ByteBuffer record, int offset) throws IOException {
+		if (BitFieldDecoder.isSet(record, offset + flagByteOffset, bitOffset)) {
+			int word = (int) (count >>> 6);
+			if (words == null) {
+				words = new long[Math.max(word + 1, (int) ((expectedCount + 63) >>> 6))];
+			} else if (word >= words.length) {
+				words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+			}
+			words[word] |= 1L << count;
+			invalidCount++;
+		}
+		count++;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void finish() {
+		// nothing to flush, the flags are written on demand
+	}
+
+	/**
+	 * @return The number of consumed records.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return The number of invalid values.
+	 */
+	public long getInvalidCount() {
+		return invalidCount;
+	}
+
+	/**
+	 * @return True, if all consumed values are valid.
+	 */
+	public boolean isAllValid() {
+		return invalidCount == 0;
+	}
+
+	/**
+	 * Checks whether another bitmap marks the same values as invalid.
+	 *
+	 * @param other
+	 *            The other bitmap.
+	 * @return True, if both bitmaps would write identical flags.
+	 */
+	public boolean hasSameFlags(InvalidationBitmap other) {
+		if (count != other.count || invalidCount != other.invalidCount) {
+			return false;
+		} else if (invalidCount == 0) {
+			return true;
+		}
+		int length = (int) ((count + 63) >>> 6);
+		for (int i = 0; i < length; i++) {
+			if (getWord(i) != other.getWord(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the ASAM ODS flags of all consumed records.
+	 *
+	 * @param channel
+	 *            The file channel of the flags file.
+	 * @param pos
+	 *            The position to write the flags to.
+	 * @param byteOrder
+	 *            The byte order of the written flags.
+	 * @param bufferSize
+	 *            The size of the write buffer.
+	 * @return The number of written bytes.
+	 * @throws IOException
+	 *             Error writing to the flags file.
+	 */
+	public long writeFlags(FileChannel channel, long pos, ByteOrder byteOrder, int bufferSize) throws IOException {
+		ByteBuffer out = ByteBuffer.allocate((int) Math.max(2, Math.min(bufferSize, count * 2)) & ~1);
+		out.order(byteOrder);
+		long start = pos;
+		for (long i = 0; i < count; i++) {
+			long word = getWord((int) (i >>> 6));
+			out.putShort((word & 1L << i) != 0 ? INVALID : VALID);
+			if (!out.hasRemaining()) {
+				pos = flush(channel, out, pos);
+			}
+		}
+		return flush(channel, out, pos) - start;
+	}
+
+	private long getWord(int index) {
+		// the bitmap is not allocated beyond the last invalid value
+		return words == null || index >= words.length ? 0 : words[index];
+	}
+
+	private static long flush(FileChannel channel, ByteBuffer out, long pos) throws IOException {
+		out.flip();
+		while (out.hasRemaining()) {
+			pos += channel.write(out, pos);
+		}
+		out.clear();
+		return pos;
+	}
+
+}
@@ -0,0 +1,679 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tabular lookup conversion of the raw values of a channel, as described by
+ * the MDF4 CCBLOCK types 4 to 10 and the MDF3 conversion formulas 1, 2, 11 and
+ * 12.
+ * <p>
+ * The table is indexed once on creation: numeric keys are sorted into
+ * primitive arrays and searched binary, text keys are put into a hash map.
+ * A lookup costs O(log n) for numeric and O(1) for text keys, independent of
+ * the order of the table entries in the file. The bulk methods convert whole
+ * arrays of raw values.
+ * <p>
+ * Depending on the table, the input is numeric or text and the output is
+ * numeric or text. The methods not matching the table throw an
+ * {@link UnsupportedOperationException}, see {@link #hasNumericInput()} and
+ * {@link #hasNumericOutput()}.
+ * <p>
+ * Instances are immutable and may be shared by several threads.
+ */
+public abstract class LookupConversion {
+
+	/**
+	 * Creates a value to value table with linear interpolation (MDF4 type 4,
+	 * MDF3 formula 1). Raw values outside the table range get the value of the
+	 * first or last entry.
+	 *
+	 * @param keys
+	 *            The raw values.
+	 * @param values
+	 *            The physical values.
+	 * @return The conversion.
+	 */
+	public static LookupConversion interpolated(double[] keys, double[] values) {
+		return new ValueToValue(keys, values, ValueToValue.INTERPOLATE);
+	}
+
+	/**
+	 * Creates a value to value table without interpolation (MDF4 type 5).
+	 * Raw values between two keys get the value of the nearest key, the lower
+	 * one for equal distance. Raw values outside the table range get the value
+	 * of the first or last entry.
+	 *
+	 * @param keys
+	 *            The raw values.
+	 * @param values
+	 *            The physical values.
+	 * @return The conversion.
+	 */
+	public static LookupConversion nearest(double[] keys, double[] values) {
+		return new ValueToValue(keys, values, ValueToValue.NEAREST);
+	}
+
+	/**
+	 * Creates a value to value table without interpolation (MDF3 formula 2).
+	 * Raw values between two keys get the value of the lower key. Raw values
+	 * outside the table range get the value of the first or last entry.
+	 *
+	 * @param keys
+	 *            The raw values.
+	 * @param values
+	 *            The physical values.
+	 * @return The conversion.
+	 */
+	public static LookupConversion lower(double[] keys, double[] values) {
+		return new ValueToValue(keys, values, ValueToValue.LOWER);
+	}
+
+	/**
+	 * Creates a value range to value table (MDF4 type 6).
+	 *
+	 * @param lowerKeys
+	 *            The lower limits of the ranges.
+	 * @param upperKeys
+	 *            The upper limits of the ranges.
+	 * @param values
+	 *            The physical values.
+	 * @param defaultValue
+	 *            The physical value of raw values not within any range.
+	 *            Overlapping ranges are resolved to the first one in table
+	 *            order.
+	 * @param includeUpper
+	 *            True, if the upper limit belongs to the range (integer raw
+	 *            values), otherwise it is excluded (floating point raw values).
+	 * @return The conversion.
+	 */
+	public static LookupConversion valueRangeToValue(double[] lowerKeys, double[] upperKeys, double[] values,
+			double defaultValue, boolean includeUpper) {
+		return new ValueRangeToValue(new RangeIndex(lowerKeys, upperKeys, includeUpper), values, defaultValue);
+	}
+
+	/**
+	 * Creates a value to text table (MDF4 type 7, MDF3 formula 11).
+	 *
+	 * @param keys
+	 *            The raw values.
+	 * @param texts
+	 *            The texts.
+	 * @param defaultText
+	 *            The text of raw values not in the table, may be null.
+	 * @return The conversion.
+	 */
+	public static LookupConversion valueToText(double[] keys, String[] texts, String defaultText) {
+		return new ValueToText(keys, texts, defaultText);
+	}
+
+	/**
+	 * Creates a value range to text table (MDF4 type 8, MDF3 formula 12).
+	 *
+	 * @param lowerKeys
+	 *            The lower limits of the ranges.
+	 * @param upperKeys
+	 *            The upper limits of the ranges.
+	 * @param texts
+	 *            The texts.
+	 * @param defaultText
+	 *            The text of raw values not within any range, may be null.
+	 *            Overlapping ranges are resolved to the first one in table
+	 *            order.
+	 * @param includeUpper
+	 *            True, if the upper limit belongs to the range (integer raw
+	 *            values), otherwise it is excluded (floating point raw values).
+	 * @return The conversion.
+	 */
+	public static LookupConversion valueRangeToText(double[] lowerKeys, double[] upperKeys, String[] texts,
+			String defaultText, boolean includeUpper) {
+		return new ValueRangeToText(new RangeIndex(lowerKeys, upperKeys, includeUpper), texts, defaultText);
+	}
+
+	/**
+	 * Creates a text to value table (MDF4 type 9).
+	 *
+	 * @param keys
+	 *            The raw texts.
+	 * @param values
+	 *            The physical values.
+	 * @param defaultValue
+	 *            The physical value of texts not in the table.
+	 * @return The conversion.
+	 */
+	public static LookupConversion textToValue(String[] keys, double[] values, double defaultValue) {
+		return new TextToValue(keys, values, defaultValue);
+	}
+
+	/**
+	 * Creates a text to text table (MDF4 type 10).
+	 *
+	 * @param keys
+	 *            The raw texts.
+	 * @param texts
+	 *            The physical texts.
+	 * @param defaultText
+	 *            The text of raw texts not in the table, null to keep the raw
+	 *            text.
+	 * @return The conversion.
+	 */
+	public static LookupConversion textToText(String[] keys, String[] texts, String defaultText) {
+		return new TextToText(keys, texts, defaultText);
+	}
+
+	/**
+	 * @return True, if the raw values are numbers, false if they are texts.
+	 */
+	public abstract boolean hasNumericInput();
+
+	/**
+	 * @return True, if the physical values are numbers, false if they are
+	 *         texts.
+	 */
+	public abstract boolean hasNumericOutput();
+
+	/**
+	 * Converts a numeric raw value into a numeric physical value.
+	 *
+	 * @param x
+	 *            The raw value.
+	 * @return The physical value.
+	 */
+	public double convert(double x) {
+		throw unsupported();
+	}
+
+	/**
+	 * Converts numeric raw values into numeric physical values in place.
+	 *
+	 * @param values
+	 *            The raw values, replaced by the physical values.
+	 * @param offset
+	 *            The index of the first value.
+	 * @param count
+	 *            The number of values.
+	 */
+	public void convert(double[] values, int offset, int count) {
+		for (int i = offset; i < offset + count; i++) {
+			values[i] = convert(values[i]);
+		}
+	}
+
+	/**
+	 * Converts a numeric raw value into a text.
+	 *
+	 * @param x
+	 *            The raw value.
+	 * @return The text, may be null if there is no default text.
+	 */
+	public String convertToText(double x) {
+		throw unsupported();
+	}
+
+	/**
+	 * Converts numeric raw values into texts.
+	 *
+	 * @param values
+	 *            The raw values.
+	 * @param offset
+	 *            The index of the first raw value.
+	 * @param count
+	 *            The number of values.
+	 * @param dst
+	 *            The array receiving the texts.
+	 * @param dstOffset
+	 *            The index of the first text.
+	 */
+	public void convertToText(double[] values, int offset, int count, String[] dst, int dstOffset) {
+		for (int i = 0; i < count; i++) {
+			dst[dstOffset + i] = convertToText(values[offset + i]);
+		}
+	}
+
+	/**
+	 * Converts a raw text into a numeric physical value.
+	 *
+	 * @param text
+	 *            The raw text.
+	 * @return The physical value.
+	 */
+	public double convert(String text) {
+		throw unsupported();
+	}
+
+	/**
+	 * Converts a raw text into a text.
+	 *
+	 * @param text
+	 *            The raw text.
+	 * @return The text.
+	 */
+	public String convertToText(String text) {
+		throw unsupported();
+	}
+
+	private UnsupportedOperationException unsupported() {
+		return new UnsupportedOperationException(new StringBuilder().append("Conversion not supported by ").append(getClass().getSimpleName()).append(" table").toString());
+	}
+
+	/**
+	 * Returns the index permutation sorting the given keys ascending, null if
+	 * they are sorted already. Equal keys keep their order.
+	 */
+	private static Integer[] sortIndex(final double[] keys) {
+		boolean sorted = true;
+		for (int i = 1; i < keys.length && sorted; i++) {
+			sorted = keys[i - 1] <= keys[i];
+		}
+		if (sorted) {
+			return null;
+		}
+		Integer[] index = new Integer[keys.length];
+		for (int i = 0; i < index.length; i++) {
+			index[i] = i;
+		}
+		Arrays.sort(index, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(keys[a], keys[b]);
+			}
+		});
+		return index;
+	}
+
+	private static double[] permute(double[] values, Integer[] index) {
+		if (index == null) {
+			return values.clone();
+		}
+		double[] result = new double[index.length];
+		for (int i = 0; i < index.length; i++) {
+			result[i] = values[index[i]];
+		}
+		return result;
+	}
+
+	private static String[] permute(String[] values, Integer[] index) {
+		if (index == null) {
+			return values.clone();
+		}
+		String[] result = new String[index.length];
+		for (int i = 0; i < index.length; i++) {
+			result[i] = values[index[i]];
+		}
+		return result;
+	}
+
+	private static void checkLength(int keys, int values) {
+		if (keys != values) {
+			throw new IllegalArgumentException(new StringBuilder().append("Number of keys (").append(keys).append(") and values (").append(values).append(") differ").toString());
+		}
+	}
+
+	/**
+	 * Returns the index of the last key lower than or equal to x, -1 if x is
+	 * lower than all keys.
+	 */
+	private static int floorIndex(double[] keys, double x) {
+		int low = 0;
+		int high = keys.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (keys[mid] <= x) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return high;
+	}
+
+	/**
+	 * Value to value tables (MDF4 type 4 and 5, MDF3 formula 1 and 2).
+	 */
+	private static class ValueToValue extends LookupConversion {
+
+		private static final int INTERPOLATE = 0;
+		private static final int NEAREST = 1;
+		private static final int LOWER = 2;
+
+		private final double[] keys;
+		private final double[] values;
+		private final int mode;
+
+		private ValueToValue(double[] keys, double[] values, int mode) {
+			checkLength(keys.length, values.length);
+			if (keys.length == 0) {
+				throw new IllegalArgumentException("Empty value to value table");
+			}
+			Integer[] index = sortIndex(keys);
+			this.keys = permute(keys, index);
+			this.values = permute(values, index);
+			this.mode = mode;
+		}
+
+		@Override
+		public boolean hasNumericInput() {
+			return true;
+		}
+
+		@Override
+		public boolean hasNumericOutput() {
+			return true;
+		}
+
+		@Override
+		public double convert(double x) {
+			int i = floorIndex(keys, x);
+			if (i < 0) {
+				return values[0];
+			} else if (i >= keys.length - 1) {
+				return values[keys.length - 1];
+			} else if (x == keys[i]) {
+				return values[i];
+			}
+
+			double x0 = keys[i];
+			double x1 = keys[i + 1];
+			if (mode == INTERPOLATE) {
+				return values[i] + (values[i + 1] - values[i]) * (x - x0) / (x1 - x0);
+			} else if (mode == NEAREST) {
+				return x - x0 <= x1 - x ? values[i] : values[i + 1];
+			}
+			return values[i];
+		}
+
+		@Override
+		public void convert(double[] values, int offset, int count) {
+			if (count < 1) {
+				return;
+			}
+			// consecutive raw values are often close to each other, start with
+			// the interval of the previous value before searching the table
+			double[] k = keys;
+			int last = k.length - 1;
+			int i = floorIndex(k, values[offset]);
+			for (int j = offset; j < offset + count; j++) {
+				double x = values[j];
+				if (i < 0 || i >= last || !(x >= k[i] && x < k[i + 1])) {
+					i = floorIndex(k, x);
+				}
+				if (i < 0) {
+					values[j] = this.values[0];
+				} else if (i >= last) {
+					values[j] = this.values[last];
+				} else if (mode == INTERPOLATE) {
+					values[j] = this.values[i] + (this.values[i + 1] - this.values[i]) * (x - k[i]) / (k[i + 1] - k[i]);
+				} else if (mode == NEAREST) {
+					values[j] = x - k[i] <= k[i + 1] - x ? this.values[i] : this.values[i + 1];
+				} else {
+					values[j] = this.values[i];
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Index of value ranges, sorted by their lower limit.
+	 */
+	private static class RangeIndex {
+
+		private final double[] lower;
+		private final double[] upper;
+		// maximum upper limit of all ranges up to an index, allows to skip
+		// the backward search for overlapping ranges
+		private final double[] maxUpper;
+		private final Integer[] index;
+		private final boolean includeUpper;
+		// whether any ranges overlap, otherwise the first match is unique
+		private final boolean overlapping;
+
+		private RangeIndex(double[] lowerKeys, double[] upperKeys, boolean includeUpper) {
+			checkLength(lowerKeys.length, upperKeys.length);
+			this.index = sortIndex(lowerKeys);
+			this.lower = permute(lowerKeys, index);
+			this.upper = permute(upperKeys, index);
+			this.maxUpper = new double[upper.length];
+			boolean overlaps = false;
+			for (int i = 0; i < upper.length; i++) {
+				if (i > 0 && (lower[i] < maxUpper[i - 1] || includeUpper && lower[i] == maxUpper[i - 1])) {
+					overlaps = true;
+				}
+				maxUpper[i] = i == 0 ? upper[0] : Math.max(maxUpper[i - 1], upper[i]);
+			}
+			this.includeUpper = includeUpper;
+			this.overlapping = overlaps;
+		}
+
+		/**
+		 * Returns the position of the range containing x in the sorted order,
+		 * -1 if there is none. For overlapping ranges, the first one in table
+		 * order is returned, like a scan over the table entries would do.
+		 */
+		private int find(double x) {
+			int found = -1;
+			for (int i = floorIndex(lower, x); i >= 0 && (x < maxUpper[i] || includeUpper && x == maxUpper[i]); i--) {
+				if (x < upper[i] || includeUpper && x == upper[i]) {
+					if (!overlapping) {
+						return i;
+					}
+					if (found < 0 || tableOrder(i) < tableOrder(found)) {
+						found = i;
+					}
+				}
+			}
+			return found;
+		}
+
+		/**
+		 * Returns the position in the table of the range at given position in
+		 * the sorted order.
+		 */
+		private int tableOrder(int i) {
+			return index == null ? i : index[i];
+		}
+
+	}
+
+	/**
+	 * Value range to value table (MDF4 type 6).
+	 */
+	private static class ValueRangeToValue extends LookupConversion {
+
+		private final RangeIndex ranges;
+		private final double[] values;
+		private final double defaultValue;
+
+		private ValueRangeToValue(RangeIndex ranges, double[] values, double defaultValue) {
+			checkLength(ranges.lower.length, values.length);
+			this.ranges = ranges;
+			this.values = permute(values, ranges.index);
+			this.defaultValue = defaultValue;
+		}
+
+		@Override
+		public boolean hasNumericInput() {
+			return true;
+		}
+
+		@Override
+		public boolean hasNumericOutput() {
+			return true;
+		}
+
+		@Override
+		public double convert(double x) {
+			int i = ranges.find(x);
+			return i < 0 ? defaultValue : values[i];
+		}
+
+	}
+
+	/**
+	 * Value to text table (MDF4 type 7, MDF3 formula 11).
+	 */
+	private static class ValueToText extends LookupConversion {
+
+		private final double[] keys;
+		private final String[] texts;
+		private final String defaultText;
+
+		private ValueToText(double[] keys, String[] texts, String defaultText) {
+			checkLength(keys.length, texts.length);
+			Integer[] index = sortIndex(keys);
+			this.keys = permute(keys, index);
+			this.texts = permute(texts, index);
+			this.defaultText = defaultText;
+		}
+
+		@Override
+		public boolean hasNumericInput() {
+			return true;
+		}
+
+		@Override
+		public boolean hasNumericOutput() {
+			return false;
+		}
+
+		@Override
+		public String convertToText(double x) {
+			int i = floorIndex(keys, x);
+			// for duplicate keys the first one in table order wins
+			while (i > 0 && keys[i - 1] == x) {
+				i--;
+			}
+			return i >= 0 && keys[i] == x ? texts[i] : defaultText;
+		}
+
+	}
+
+	/**
+	 * Value range to text table (MDF4 type 8, MDF3 formula 12).
+	 */
+	private static class ValueRangeToText extends LookupConversion {
+
+		private final RangeIndex ranges;
+		private final String[] texts;
+		private final String defaultText;
+
+		private ValueRangeToText(RangeIndex ranges, String[] texts, String defaultText) {
+			checkLength(ranges.lower.length, texts.length);
+			this.ranges = ranges;
+			this.texts = permute(texts, ranges.index);
+			this.defaultText = defaultText;
+		}
+
+		@Override
+		public boolean hasNumericInput() {
+			return true;
+		}
+
+		@Override
+		public boolean hasNumericOutput() {
+			return false;
+		}
+
+		@Override
+		public String convertToText(double x) {
+			int i = ranges.find(x);
+			return i < 0 ? defaultText : texts[i];
+		}
+
+	}
+
+	/**
+	 * Text to value table (MDF4 type 9).
+	 */
+	private static class TextToValue extends LookupConversion {
+
+		private final Map<String, Integer> index;
+		private final double[] values;
+		private final double defaultValue;
+
+		private TextToValue(String[] keys, double[] values, double defaultValue) {
+			checkLength(keys.length, values.length);
+			this.index = new HashMap<>(keys.length * 2);
+			for (int i = keys.length - 1; i >= 0; i--) {
+				// for duplicate keys the first one in table order wins
+				index.put(keys[i], i);
+			}
+			this.values = values.clone();
+			this.defaultValue = defaultValue;
+		}
+
+		@Override
+		public boolean hasNumericInput() {
+			return false;
+		}
+
+		@Override
+		public boolean hasNumericOutput() {
+			return true;
+		}
+
+		@Override
+		public double convert(String text) {
+			Integer i = index.get(text);
+			return i == null ? defaultValue : values[i];
+		}
+
+	}
+
+	/**
+	 * Text to text table (MDF4 type 10).
+	 */
+	private static class TextToText extends LookupConversion {
+
+		private final Map<String, String> texts;
+		private final String defaultText;
+
+		private TextToText(String[] keys, String[] texts, String defaultText) {
+			checkLength(keys.length, texts.length);
+			this.texts = new HashMap<>(keys.length * 2);
+			for (int i = keys.length - 1; i >= 0; i--) {
+				// for duplicate keys the first one in table order wins
+				this.texts.put(keys[i], texts[i]);
+			}
+			this.defaultText = defaultText;
+		}
+
+		@Override
+		public boolean hasNumericInput() {
+			return false;
+		}
+
+		@Override
+		public boolean hasNumericOutput() {
+			return false;
+		}
+
+		@Override
+		public String convertToText(String text) {
+			if (texts.containsKey(text)) {
+				return texts.get(text);
+			}
+			return defaultText == null ? text : defaultText;
+		}
+
+	}
+
+}
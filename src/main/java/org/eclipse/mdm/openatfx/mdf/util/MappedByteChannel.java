@@ -0,0 +1,252 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read only <code>SeekableByteChannel</code> backed by memory mapped windows
+ * over a file.
+ * <p>
+ * The block parsers do a <code>position()</code> followed by a small
+ * <code>read()</code> for every block. On this channel both calls are served
+ * from the mapped memory without any system call. Files larger than one window
+ * (a mapping is limited to 2 GB) are covered by several windows which are
+ * remapped on demand.
+ */
+public class MappedByteChannel implements SeekableByteChannel {
+
+	/** The default size of a single mapped window (256 MB) */
+	public static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+
+	// number of windows kept mapped at the same time
+	private static final int MAX_WINDOWS = 4;
+
+	// window start positions are aligned to this value
+	private static final long WINDOW_ALIGNMENT = 64 * 1024;
+
+	private final FileChannel fileChannel;
+	private final long size;
+	private final int windowSize;
+
+	private final MappedByteBuffer[] windows;
+	private final long[] windowStarts;
+	private int nextWindow;
+
+	private long position;
+	private boolean open;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param fileChannel
+	 *            The file channel to map, will be closed together with this
+	 *            channel.
+	 * @param windowSize
+	 *            The maximum size of a single mapped window in bytes.
+	 * @throws IOException
+	 *             Error obtaining the file size.
+	 */
+	public MappedByteChannel(FileChannel fileChannel, int windowSize) throws IOException {
+		if (windowSize < WINDOW_ALIGNMENT) {
+			throw new IllegalArgumentException("window size must be at least " + WINDOW_ALIGNMENT + " bytes");
+		}
+		this.fileChannel = fileChannel;
+		this.size = fileChannel.size();
+		this.windowSize = windowSize;
+		this.windows = new MappedByteBuffer[MAX_WINDOWS];
+		this.windowStarts = new long[MAX_WINDOWS];
+		this.position = 0;
+		this.open = true;
+	}
+
+	/**
+	 * Opens given file as memory mapped channel using the default window size.
+	 *
+	 * @param path
+	 *            The file to open.
+	 * @return The channel.
+	 * @throws IOException
+	 *             Error opening the file.
+	 */
+	public static MappedByteChannel open(Path path) throws IOException {
+		return new MappedByteChannel(FileChannel.open(path, StandardOpenOption.READ), DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized int read(ByteBuffer dst) throws IOException {
+		int read = read(dst, position);
+		if (read > 0) {
+			position += read;
+		}
+		return read;
+	}
+
+	/**
+	 * Reads a sequence of bytes from this channel into the given buffer,
+	 * starting at the given file position. The channel position is not
+	 * modified.
+	 *
+	 * @param dst
+	 *            The buffer into which bytes are to be transferred.
+	 * @param pos
+	 *            The file position at which the transfer is to begin.
+	 * @return The number of bytes read, possibly zero, or -1 if the given
+	 *         position is greater than or equal to the file's current size.
+	 * @throws IOException
+	 *             Error mapping the file.
+	 */
+	public int read(ByteBuffer dst, long pos) throws IOException {
+		ensureOpen();
+		if (pos >= size) {
+			return -1;
+		}
+		int total = 0;
+		while (dst.hasRemaining() && pos < size) {
+			ByteBuffer src = window(pos);
+			int n = Math.min(dst.remaining(), src.remaining());
+			src.limit(src.position() + n);
+			dst.put(src);
+			pos += n;
+			total += n;
+		}
+		return total;
+	}
+
+	/**
+	 * Returns a view of the mapped window containing given position. The
+	 * returned buffer is private to the caller and positioned at
+	 * <code>pos</code>.
+	 *
+	 * @param pos
+	 *            The file position.
+	 * @return The buffer.
+	 * @throws IOException
+	 *             Error mapping the file.
+	 */
+	private synchronized ByteBuffer window(long pos) throws IOException {
+		for (int i = 0; i < MAX_WINDOWS; i++) {
+			MappedByteBuffer w = windows[i];
+			if (w != null && pos >= windowStarts[i] && pos < windowStarts[i] + w.capacity()) {
+				return slice(w, pos - windowStarts[i]);
+			}
+		}
+
+		// map new window, replacing the oldest one
+		long start = pos - (pos % WINDOW_ALIGNMENT);
+		long length = Math.min(windowSize, size - start);
+		MappedByteBuffer w = fileChannel.map(FileChannel.MapMode.READ_ONLY, start, length);
+		int idx = nextWindow;
+		windows[idx] = w;
+		windowStarts[idx] = start;
+		nextWindow = (nextWindow + 1) % MAX_WINDOWS;
+		return slice(w, pos - start);
+	}
+
+	private static ByteBuffer slice(MappedByteBuffer w, long offset) {
+		ByteBuffer bb = w.duplicate();
+		bb.position((int) offset);
+		return bb;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		throw new NonWritableChannelException();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized long position() throws IOException {
+		ensureOpen();
+		return position;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+		ensureOpen();
+		if (newPosition < 0) {
+			throw new IllegalArgumentException("Negative position: " + newPosition);
+		}
+		this.position = newPosition;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long size() throws IOException {
+		ensureOpen();
+		return size;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public SeekableByteChannel truncate(long size) throws IOException {
+		throw new NonWritableChannelException();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized boolean isOpen() {
+		return open;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (!open) {
+			return;
+		}
+		open = false;
+		for (int i = 0; i < MAX_WINDOWS; i++) {
+			windows[i] = null;
+		}
+		fileChannel.close();
+	}
+
+	private synchronized void ensureOpen() throws ClosedChannelException {
+		if (!open) {
+			throw new ClosedChannelException();
+		}
+	}
+
+}
@@ -0,0 +1,184 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads the raw values of a numeric channel, i.e. an integer or IEEE 754
+ * floating point bit field at a fixed position of each record, into primitive
+ * arrays.
+ * <p>
+ * The records are read through a {@link RecordAccessor}, so any range of
+ * values can be read without reading the preceding records. The bit fields are
+ * decoded with the {@link BitFieldDecoder}.
+ */
+public class NumericFieldReader {
+
+	/**
+	 * The type of the raw value.
+	 */
+	public enum Type {
+		UNSIGNED_INTEGER, SIGNED_INTEGER, FLOAT
+	}
+
+	private final RecordAccessor records;
+	private final int byteOffset;
+	private final int bitOffset;
+	private final int bitCount;
+	private final Type type;
+	private final ByteOrder byteOrder;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param records
+	 *            The records containing the values.
+	 * @param byteOffset
+	 *            The offset of the first byte of the value within the record.
+	 * @param bitOffset
+	 *            The offset of the first bit, may exceed 7.
+	 * @param bitCount
+	 *            The number of bits (1-64), 32 or 64 for floating point
+	 *            values.
+	 * @param type
+	 *            The type of the value.
+	 * @param byteOrder
+	 *            The byte order of the value.
+	 */
+	public NumericFieldReader(RecordAccessor records, int byteOffset, int bitOffset, int bitCount, Type type,
+			ByteOrder byteOrder) {
+		this.byteOffset = byteOffset + (bitOffset >>> 3);
+		this.bitOffset = bitOffset & 0x07;
+		if (bitCount < 1 || bitCount > 64 || (type == Type.FLOAT && bitCount != 32 && bitCount != 64)) {
+			throw new IllegalArgumentException(new StringBuilder().append("Unsupported bit count ").append(bitCount).append(" for type ").append(type).toString());
+		}
+		if (this.byteOffset < 0 || this.byteOffset + ((this.bitOffset + bitCount + 7) >>> 3) > records.getRecordSize()) {
+			throw new IllegalArgumentException(new StringBuilder().append("Value at byte offset ").append(byteOffset).append(" and bit offset ").append(bitOffset)
+					.append(" exceeds the record size ").append(records.getRecordSize()).toString());
+		}
+		this.records = records;
+		this.bitCount = bitCount;
+		this.type = type;
+		this.byteOrder = byteOrder;
+	}
+
+	/**
+	 * @return The type of the raw value.
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return The number of values.
+	 */
+	public long getRecordCount() {
+		return records.getRecordCount();
+	}
+
+	/**
+	 * Reads a range of integer values. 64 bit unsigned values exceeding
+	 * {@link Long#MAX_VALUE} are returned as negative numbers.
+	 *
+	 * @param from
+	 *            The index of the first value.
+	 * @param count
+	 *            The number of values to read.
+	 * @param dst
+	 *            The array receiving the values.
+	 * @param offset
+	 *            The index within the array of the first value.
+	 * @throws IOException
+	 *             Error reading from MDF file.
+	 */
+	public void readLongs(long from, int count, long[] dst, int offset) throws IOException {
+		if (type == Type.FLOAT) {
+			throw new IllegalStateException("Floating point values cannot be read as integers");
+		}
+		checkRange(from, count, dst.length, offset);
+		boolean signed = type == Type.SIGNED_INTEGER;
+		int recordSize = records.getRecordSize();
+		while (count > 0) {
+			ByteBuffer bb = records.read(from, count);
+			int n = bb.remaining() / recordSize;
+			int index = bb.position() + byteOffset;
+			for (int i = 0; i < n; i++, index += recordSize) {
+				dst[offset + i] = signed ? BitFieldDecoder.readSigned(bb, index, bitOffset, bitCount, byteOrder)
+						: BitFieldDecoder.readUnsigned(bb, index, bitOffset, bitCount, byteOrder);
+			}
+			from += n;
+			offset += n;
+			count -= n;
+		}
+	}
+
+	/**
+	 * Reads a range of values converted to double.
+	 *
+	 * @param from
+	 *            The index of the first value.
+	 * @param count
+	 *            The number of values to read.
+	 * @param dst
+	 *            The array receiving the values.
+	 * @param offset
+	 *            The index within the array of the first value.
+	 * @throws IOException
+	 *             Error reading from MDF file.
+	 */
+	public void readDoubles(long from, int count, double[] dst, int offset) throws IOException {
+		checkRange(from, count, dst.length, offset);
+		int recordSize = records.getRecordSize();
+		while (count > 0) {
+			ByteBuffer bb = records.read(from, count);
+			int n = bb.remaining() / recordSize;
+			int index = bb.position() + byteOffset;
+			for (int i = 0; i < n; i++, index += recordSize) {
+				dst[offset + i] = readDouble(bb, index);
+			}
+			from += n;
+			offset += n;
+			count -= n;
+		}
+	}
+
+	private double readDouble(ByteBuffer bb, int index) {
+		switch (type) {
+		case SIGNED_INTEGER:
+			return BitFieldDecoder.readSigned(bb, index, bitOffset, bitCount, byteOrder);
+		case FLOAT:
+			long bits = BitFieldDecoder.readUnsigned(bb, index, bitOffset, bitCount, byteOrder);
+			return bitCount == 32 ? Float.intBitsToFloat((int) bits) : Double.longBitsToDouble(bits);
+		default:
+			long value = BitFieldDecoder.readUnsigned(bb, index, bitOffset, bitCount, byteOrder);
+			// unsigned 64 bit values exceeding the signed range
+			return value >= 0 ? value : (double) (value >>> 1) * 2.0 + (value & 1);
+		}
+	}
+
+	private void checkRange(long from, int count, int length, int offset) {
+		if (from < 0 || count < 0 || from + count > records.getRecordCount() || offset < 0
+				|| offset + count > length) {
+			throw new IndexOutOfBoundsException(new StringBuilder().append("Invalid value range: from=").append(from).append(", count=").append(count)
+					.append(", values=").append(records.getRecordCount()).append(", offset=").append(offset).append(", length=").append(length).toString());
+		}
+	}
+
+}
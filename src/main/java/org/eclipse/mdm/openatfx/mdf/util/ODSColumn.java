@@ -0,0 +1,525 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.util.Arrays;
+
+import org.asam.ods.AoException;
+import org.asam.ods.AoSession;
+import org.asam.ods.Blob;
+import org.asam.ods.DataType;
+import org.asam.ods.TS_Union;
+import org.asam.ods.TS_UnionSeq;
+import org.asam.ods.TS_ValueSeq;
+import org.asam.ods.T_COMPLEX;
+import org.asam.ods.T_DCOMPLEX;
+import org.asam.ods.T_ExternalReference;
+import org.asam.ods.T_LONGLONG;
+
+/**
+ * The values of one application attribute of an {@link ODSInsertStatement}.
+ * The values are stored in a growable array of the attribute's data type,
+ * together with the value flags, so no <code>TS_Value</code> is created per
+ * value. Rows without a value have the flag 0.
+ */
+class ODSColumn {
+
+	private final DataType dataType;
+
+	private short[] flags;
+
+	// DT_LONG, DT_ENUM
+	private int[] ints;
+	// DT_LONGLONG
+	private long[] longs;
+	// DT_DOUBLE
+	private double[] doubles;
+	// DT_SHORT
+	private short[] shorts;
+	// DT_STRING, DT_DATE
+	private String[] strings;
+	// any other data type, the value of the union
+	private Object[] objects;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param dataType
+	 *            The data type of the values.
+	 * @param capacity
+	 *            The initial number of rows.
+	 */
+	ODSColumn(DataType dataType, int capacity) {
+		this.dataType = dataType;
+		flags = new short[capacity];
+		if (dataType == DataType.DT_LONG || dataType == DataType.DT_ENUM) {
+			ints = new int[capacity];
+		} else if (dataType == DataType.DT_LONGLONG) {
+			longs = new long[capacity];
+		} else if (dataType == DataType.DT_DOUBLE) {
+			doubles = new double[capacity];
+		} else if (dataType == DataType.DT_SHORT) {
+			shorts = new short[capacity];
+		} else if (dataType == DataType.DT_STRING || dataType == DataType.DT_DATE) {
+			strings = new String[capacity];
+		} else {
+			objects = new Object[capacity];
+		}
+	}
+
+	/**
+	 * Returns the data type of the values.
+	 *
+	 * @return The data type.
+	 */
+	DataType getDataType() {
+		return dataType;
+	}
+
+	/**
+	 * Grows the column to hold at least the given number of rows.
+	 *
+	 * @param capacity
+	 *            The number of rows.
+	 */
+	void ensureCapacity(int capacity) {
+		if (capacity <= flags.length) {
+			return;
+		}
+		flags = Arrays.copyOf(flags, capacity);
+		if (ints != null) {
+			ints = Arrays.copyOf(ints, capacity);
+		} else if (longs != null) {
+			longs = Arrays.copyOf(longs, capacity);
+		} else if (doubles != null) {
+			doubles = Arrays.copyOf(doubles, capacity);
+		} else if (shorts != null) {
+			shorts = Arrays.copyOf(shorts, capacity);
+		} else if (strings != null) {
+			strings = Arrays.copyOf(strings, capacity);
+		} else {
+			objects = Arrays.copyOf(objects, capacity);
+		}
+	}
+
+	/**
+	 * Sets a DT_LONG or DT_ENUM value.
+	 *
+	 * @param row
+	 *            The row.
+	 * @param value
+	 *            The value.
+	 */
+	void setInt(int row, int value) {
+		ints[row] = value;
+		flags[row] = 15;
+	}
+
+	/**
+	 * Sets a DT_LONGLONG value.
+	 *
+	 * @param row
+	 *            The row.
+	 * @param value
+	 *            The value.
+	 */
+	void setLong(int row, long value) {
+		longs[row] = value;
+		flags[row] = 15;
+	}
+
+	/**
+	 * Sets a DT_DOUBLE value.
+	 *
+	 * @param row
+	 *            The row.
+	 * @param value
+	 *            The value.
+	 */
+	void setDouble(int row, double value) {
+		doubles[row] = value;
+		flags[row] = 15;
+	}
+
+	/**
+	 * Sets a DT_SHORT value.
+	 *
+	 * @param row
+	 *            The row.
+	 * @param value
+	 *            The value.
+	 */
+	void setShort(int row, short value) {
+		shorts[row] = value;
+		flags[row] = 15;
+	}
+
+	/**
+	 * Sets a DT_STRING or DT_DATE value.
+	 *
+	 * @param row
+	 *            The row.
+	 * @param value
+	 *            The value, null for no value.
+	 * @param flag
+	 *            The value flag.
+	 */
+	void setString(int row, String value, short flag) {
+		strings[row] = value;
+		flags[row] = flag;
+	}
+
+	/**
+	 * Sets a value of any other data type.
+	 *
+	 * @param row
+	 *            The row.
+	 * @param value
+	 *            The value as it is stored in a <code>TS_Union</code>, e.g. a
+	 *            <code>double[]</code> for DS_DOUBLE.
+	 */
+	void setObject(int row, Object value) {
+		objects[row] = value;
+		flags[row] = 15;
+	}
+
+	/**
+	 * Sets a value of the data type of this column.
+	 *
+	 * @param row
+	 *            The row.
+	 * @param u
+	 *            The value.
+	 * @param flag
+	 *            The value flag.
+	 */
+	void set(int row, TS_Union u, short flag) {
+		if (dataType == DataType.DT_LONG) {
+			ints[row] = u.longVal();
+		} else if (dataType == DataType.DT_ENUM) {
+			ints[row] = u.enumVal();
+		} else if (dataType == DataType.DT_LONGLONG) {
+			longs[row] = ODSHelper.asJLong(u.longlongVal());
+		} else if (dataType == DataType.DT_DOUBLE) {
+			doubles[row] = u.doubleVal();
+		} else if (dataType == DataType.DT_SHORT) {
+			shorts[row] = u.shortVal();
+		} else if (dataType == DataType.DT_STRING) {
+			strings[row] = u.stringVal();
+		} else if (dataType == DataType.DT_DATE) {
+			strings[row] = u.dateVal();
+		} else {
+			objects[row] = getObject(u);
+		}
+		flags[row] = flag;
+	}
+
+	/**
+	 * Copies the value and flag of a row to a row of another column with the
+	 * same data type.
+	 *
+	 * @param row
+	 *            The row.
+	 * @param target
+	 *            The target column.
+	 * @param targetRow
+	 *            The row of the target column.
+	 */
+	void copyTo(int row, ODSColumn target, int targetRow) {
+		if (ints != null) {
+			target.ints[targetRow] = ints[row];
+		} else if (longs != null) {
+			target.longs[targetRow] = longs[row];
+		} else if (doubles != null) {
+			target.doubles[targetRow] = doubles[row];
+		} else if (shorts != null) {
+			target.shorts[targetRow] = shorts[row];
+		} else if (strings != null) {
+			target.strings[targetRow] = strings[row];
+		} else {
+			target.objects[targetRow] = objects[row];
+		}
+		target.flags[targetRow] = flags[row];
+	}
+
+	/**
+	 * Returns the value of a union with a data type stored as object.
+	 *
+	 * @param u
+	 *            The union.
+	 * @return The value.
+	 */
+	private Object getObject(TS_Union u) {
+		if (dataType == DataType.DT_BLOB) {
+			return u.blobVal();
+		} else if (dataType == DataType.DT_BOOLEAN) {
+			return u.booleanVal();
+		} else if (dataType == DataType.DS_BOOLEAN) {
+			return u.booleanSeq();
+		} else if (dataType == DataType.DT_BYTE) {
+			return u.byteVal();
+		} else if (dataType == DataType.DS_BYTE) {
+			return u.byteSeq();
+		} else if (dataType == DataType.DT_BYTESTR) {
+			return u.bytestrVal();
+		} else if (dataType == DataType.DS_BYTESTR) {
+			return u.bytestrSeq();
+		} else if (dataType == DataType.DT_COMPLEX) {
+			return u.complexVal();
+		} else if (dataType == DataType.DS_COMPLEX) {
+			return u.complexSeq();
+		} else if (dataType == DataType.DS_DATE) {
+			return u.dateSeq();
+		} else if (dataType == DataType.DT_DCOMPLEX) {
+			return u.dcomplexVal();
+		} else if (dataType == DataType.DS_DCOMPLEX) {
+			return u.dcomplexSeq();
+		} else if (dataType == DataType.DS_DOUBLE) {
+			return u.doubleSeq();
+		} else if (dataType == DataType.DS_ENUM) {
+			return u.enumSeq();
+		} else if (dataType == DataType.DT_EXTERNALREFERENCE) {
+			return u.extRefVal();
+		} else if (dataType == DataType.DS_EXTERNALREFERENCE) {
+			return u.extRefSeq();
+		} else if (dataType == DataType.DT_FLOAT) {
+			return u.floatVal();
+		} else if (dataType == DataType.DS_FLOAT) {
+			return u.floatSeq();
+		} else if (dataType == DataType.DS_LONG) {
+			return u.longSeq();
+		} else if (dataType == DataType.DS_LONGLONG) {
+			return u.longlongSeq();
+		} else if (dataType == DataType.DS_SHORT) {
+			return u.shortSeq();
+		} else if (dataType == DataType.DS_STRING) {
+			return u.stringSeq();
+		}
+		throw new IllegalArgumentException("unsupported datatype: " + dataType);
+	}
+
+	/**
+	 * Determines if all values are null.
+	 *
+	 * @param size
+	 *            The number of rows.
+	 * @return true, if all values are null (flag=0), otherwise false
+	 */
+	boolean isAllValuesNull(int size) {
+		for (int i = 0; i < size; i++) {
+			if (flags[i] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Copies the values to the CORBA structure needed by the ODS interface.
+	 * Rows without a value get an empty default value.
+	 *
+	 * @param size
+	 *            The number of rows.
+	 * @param aoSession
+	 *            The session, used to create empty blobs.
+	 * @return The values.
+	 * @throws AoException
+	 *             Unable to create a blob.
+	 */
+	TS_ValueSeq toValueSeq(int size, AoSession aoSession) throws AoException {
+		TS_ValueSeq seq = new TS_ValueSeq();
+		seq.flag = Arrays.copyOf(flags, size);
+		seq.u = new TS_UnionSeq();
+		TS_UnionSeq u = seq.u;
+
+		if (dataType == DataType.DT_LONG) {
+			u.longVal(Arrays.copyOf(ints, size));
+		} else if (dataType == DataType.DT_ENUM) {
+			u.enumVal(Arrays.copyOf(ints, size));
+		} else if (dataType == DataType.DT_LONGLONG) {
+			u.longlongVal(ODSHelper.asODSLongLong(Arrays.copyOf(longs, size)));
+		} else if (dataType == DataType.DT_DOUBLE) {
+			u.doubleVal(Arrays.copyOf(doubles, size));
+		} else if (dataType == DataType.DT_SHORT) {
+			u.shortVal(Arrays.copyOf(shorts, size));
+		} else if (dataType == DataType.DT_STRING) {
+			u.stringVal(toStrings(size));
+		} else if (dataType == DataType.DT_DATE) {
+			u.dateVal(toStrings(size));
+		} else if (dataType == DataType.DT_BLOB) {
+			Blob[] ar = new Blob[size];
+			for (int i = 0; i < size; i++) {
+				if (objects[i] == null) {
+					ar[i] = aoSession.createBlob();
+					ar[i].setHeader("");
+					ar[i].set(new byte[0]);
+				} else {
+					ar[i] = (Blob) objects[i];
+				}
+			}
+			u.blobVal(ar);
+		} else if (dataType == DataType.DT_BOOLEAN) {
+			boolean[] ar = new boolean[size];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] != null && (Boolean) objects[i];
+			}
+			u.booleanVal(ar);
+		} else if (dataType == DataType.DS_BOOLEAN) {
+			boolean[][] ar = new boolean[size][];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] == null ? new boolean[0] : (boolean[]) objects[i];
+			}
+			u.booleanSeq(ar);
+		} else if (dataType == DataType.DT_BYTE) {
+			byte[] ar = new byte[size];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] == null ? 0 : (Byte) objects[i];
+			}
+			u.byteVal(ar);
+		} else if (dataType == DataType.DS_BYTE) {
+			byte[][] ar = new byte[size][];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] == null ? new byte[0] : (byte[]) objects[i];
+			}
+			u.byteSeq(ar);
+		} else if (dataType == DataType.DT_BYTESTR) {
+			byte[][] ar = new byte[size][];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] == null ? new byte[0] : (byte[]) objects[i];
+			}
+			u.bytestrVal(ar);
+		} else if (dataType == DataType.DS_BYTESTR) {
+			byte[][][] ar = new byte[size][][];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] == null ? new byte[0][0] : (byte[][]) objects[i];
+			}
+			u.bytestrSeq(ar);
+		} else if (dataType == DataType.DT_COMPLEX) {
+			T_COMPLEX[] ar = new T_COMPLEX[size];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] == null ? new T_COMPLEX(0, 0) : (T_COMPLEX) objects[i];
+			}
+			u.complexVal(ar);
+		} else if (dataType == DataType.DS_COMPLEX) {
+			T_COMPLEX[][] ar = new T_COMPLEX[size][];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] == null ? new T_COMPLEX[0] : (T_COMPLEX[]) objects[i];
+			}
+			u.complexSeq(ar);
+		} else if (dataType == DataType.DS_DATE) {
+			String[][] ar = new String[size][];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] == null ? new String[0] : (String[]) objects[i];
+			}
+			u.dateSeq(ar);
+		} else if (dataType == DataType.DT_DCOMPLEX) {
+			T_DCOMPLEX[] ar = new T_DCOMPLEX[size];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] == null ? new T_DCOMPLEX(0, 0) : (T_DCOMPLEX) objects[i];
+			}
+			u.dcomplexVal(ar);
+		} else if (dataType == DataType.DS_DCOMPLEX) {
+			T_DCOMPLEX[][] ar = new T_DCOMPLEX[size][];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] == null ? new T_DCOMPLEX[0] : (T_DCOMPLEX[]) objects[i];
+			}
+			u.dcomplexSeq(ar);
+		} else if (dataType == DataType.DS_DOUBLE) {
+			double[][] ar = new double[size][];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] == null ? new double[0] : (double[]) objects[i];
+			}
+			u.doubleSeq(ar);
+		} else if (dataType == DataType.DS_ENUM) {
+			int[][] ar = new int[size][];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] == null ? new int[0] : (int[]) objects[i];
+			}
+			u.enumSeq(ar);
+		} else if (dataType == DataType.DT_EXTERNALREFERENCE) {
+			T_ExternalReference[] ar = new T_ExternalReference[size];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] == null ? new T_ExternalReference("", "", "") : (T_ExternalReference) objects[i];
+			}
+			u.extRefVal(ar);
+		} else if (dataType == DataType.DS_EXTERNALREFERENCE) {
+			T_ExternalReference[][] ar = new T_ExternalReference[size][];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] == null ? new T_ExternalReference[0] : (T_ExternalReference[]) objects[i];
+			}
+			u.extRefSeq(ar);
+		} else if (dataType == DataType.DT_FLOAT) {
+			float[] ar = new float[size];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] == null ? 0 : (Float) objects[i];
+			}
+			u.floatVal(ar);
+		} else if (dataType == DataType.DS_FLOAT) {
+			float[][] ar = new float[size][];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] == null ? new float[0] : (float[]) objects[i];
+			}
+			u.floatSeq(ar);
+		} else if (dataType == DataType.DS_LONG) {
+			int[][] ar = new int[size][];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] == null ? new int[0] : (int[]) objects[i];
+			}
+			u.longSeq(ar);
+		} else if (dataType == DataType.DS_LONGLONG) {
+			T_LONGLONG[][] ar = new T_LONGLONG[size][];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] == null ? new T_LONGLONG[0] : (T_LONGLONG[]) objects[i];
+			}
+			u.longlongSeq(ar);
+		} else if (dataType == DataType.DS_SHORT) {
+			short[][] ar = new short[size][];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] == null ? new short[0] : (short[]) objects[i];
+			}
+			u.shortSeq(ar);
+		} else if (dataType == DataType.DS_STRING) {
+			String[][] ar = new String[size][];
+			for (int i = 0; i < size; i++) {
+				ar[i] = objects[i] == null ? new String[0] : (String[]) objects[i];
+			}
+			u.stringSeq(ar);
+		} else {
+			throw new IllegalArgumentException("unsupported datatype: " + dataType);
+		}
+		return seq;
+	}
+
+	/**
+	 * Returns the DT_STRING or DT_DATE values, rows without a value are
+	 * empty.
+	 *
+	 * @param size
+	 *            The number of rows.
+	 * @return The values.
+	 */
+	private String[] toStrings(int size) {
+		String[] ar = Arrays.copyOf(strings, size);
+		for (int i = 0; i < size; i++) {
+			if (ar[i] == null) {
+				ar[i] = "";
+			}
+		}
+		return ar;
+	}
+
+}
@@ -0,0 +1,135 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.asam.ods.AIDName;
+import org.asam.ods.AIDNameValueSeqUnitId;
+import org.asam.ods.AoException;
+import org.asam.ods.AoSession;
+import org.asam.ods.ApplAttr;
+import org.asam.ods.ApplElem;
+import org.asam.ods.DataType;
+import org.asam.ods.ErrorCode;
+import org.asam.ods.SeverityFlag;
+import org.asam.ods.T_LONGLONG;
+
+/**
+ * Prepared insert of the instances of an application element with a fixed set
+ * of attributes. The attribute identifiers are resolved once, so executing an
+ * {@link ODSInsertStatement} only binds the values. Plans are cached by
+ * {@link ODSModelCache#getInsertPlan(String, String[], DataType[])}.
+ */
+public final class ODSInsertPlan {
+
+	private static final T_LONGLONG NO_UNIT = ODSHelper.asODSLongLong(0);
+
+	private final String aeName;
+
+	private final DataType[] dataTypes;
+
+	// the attribute identifiers, null for attributes not to insert
+	private final AIDName[] aidNames;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param applElem
+	 *            The application element.
+	 * @param aaNames
+	 *            The application attribute names.
+	 * @param dataTypes
+	 *            The data types of the values of each attribute.
+	 */
+	ODSInsertPlan(ApplElem applElem, String[] aaNames, DataType[] dataTypes) {
+		this.aeName = applElem.aeName;
+		this.dataTypes = dataTypes.clone();
+		aidNames = new AIDName[aaNames.length];
+		for (int i = 0; i < aaNames.length; i++) {
+			// do not insert if attribute is "id"
+			if (!isIdAttribute(applElem, aaNames[i])) {
+				aidNames[i] = new AIDName(applElem.aid, aaNames[i]);
+			}
+		}
+	}
+
+	/**
+	 * Checks whether an attribute is the instance id.
+	 *
+	 * @param applElem
+	 *            The application element.
+	 * @param aaName
+	 *            The application attribute name.
+	 * @return True, if the attribute is derived from the base attribute "id".
+	 */
+	private static boolean isIdAttribute(ApplElem applElem, String aaName) {
+		for (ApplAttr applAttr : applElem.attributes) {
+			if (applAttr.aaName.equals(aaName)) {
+				return "id".equals(applAttr.baName);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the name of the application element.
+	 *
+	 * @return The application element name.
+	 */
+	public String getAeName() {
+		return aeName;
+	}
+
+	/**
+	 * Binds the values of the attributes to the CORBA structure needed by the
+	 * ODS interface. Attributes without any value are left out.
+	 *
+	 * @param columns
+	 *            The values of each attribute, in the order of the plan.
+	 * @param size
+	 *            The number of instances.
+	 * @param aoSession
+	 *            The session, used to create empty blobs.
+	 * @return The values to insert.
+	 * @throws AoException
+	 *             The columns do not match the plan.
+	 */
+	AIDNameValueSeqUnitId[] bind(ODSColumn[] columns, int size, AoSession aoSession) throws AoException {
+		if (columns.length != aidNames.length) {
+			throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
+					new StringBuilder().append("Insert plan expects ").append(aidNames.length)
+							.append(" attributes [aeName=").append(aeName).append("]").toString());
+		}
+		List<AIDNameValueSeqUnitId> list = new ArrayList<>(columns.length);
+		for (int i = 0; i < columns.length; i++) {
+			if (columns[i].getDataType() != dataTypes[i]) {
+				throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0,
+						new StringBuilder().append("Datatype of attribute '").append(aidNames[i] == null ? "id" : aidNames[i].aaName)
+								.append("' does not match the insert plan [aeName=").append(aeName).append("]").toString());
+			}
+			// check if all values of columns are null
+			if (aidNames[i] == null || columns[i].isAllValuesNull(size)) {
+				continue;
+			}
+			list.add(new AIDNameValueSeqUnitId(aidNames[i], NO_UNIT, columns[i].toValueSeq(size, aoSession)));
+		}
+		return list.toArray(new AIDNameValueSeqUnitId[list.size()]);
+	}
+
+}
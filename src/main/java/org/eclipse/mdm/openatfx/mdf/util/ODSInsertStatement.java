@@ -15,32 +15,24 @@
 
 package org.eclipse.mdm.openatfx.mdf.util;
 
-import java.util.ArrayList;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.asam.ods.AIDName;
 import org.asam.ods.AIDNameValueSeqUnitId;
 import org.asam.ods.AoException;
-import org.asam.ods.ApplElem;
 import org.asam.ods.ApplElemAccess;
-import org.asam.ods.Blob;
 import org.asam.ods.DataType;
 import org.asam.ods.ElemId;
 import org.asam.ods.ErrorCode;
 import org.asam.ods.NameValue;
 import org.asam.ods.NameValueUnit;
 import org.asam.ods.SeverityFlag;
-import org.asam.ods.TS_UnionSeq;
 import org.asam.ods.TS_Value;
-import org.asam.ods.TS_ValueSeq;
-import org.asam.ods.T_COMPLEX;
 import org.asam.ods.T_DCOMPLEX;
 import org.asam.ods.T_ExternalReference;
 import org.asam.ods.T_LONGLONG;
@@ -54,15 +46,17 @@ public class ODSInsertStatement {
 
 	private static final Log LOG = LogFactory.getLog(ODSInsertStatement.class);
 
+	// initial number of rows of the columns
+	private static final int INITIAL_CAPACITY = 16;
+
 	private final ODSModelCache cache;
 
 	private final String aeName;
 
-	// overall attrs
-	private final Set<String> attrs;
+	// the values by attribute name
+	private final Map<String, ODSColumn> columns;
 
-	// the data
-	private final List<Map<String, TS_Value>> rows;
+	private int capacity;
 
 	private int pos = -1;
 
@@ -85,8 +79,7 @@ public class ODSInsertStatement {
 		}
 		this.cache = cache;
 		this.aeName = aeName;
-		attrs = new LinkedHashSet<>();
-		rows = new ArrayList<>();
+		columns = new LinkedHashMap<>();
 	}
 
 	/**
@@ -95,9 +88,13 @@ public class ODSInsertStatement {
 	 * @return The current position.
 	 */
 	public int next() {
-		Map<String, TS_Value> map = new LinkedHashMap<>();
-		rows.add(map);
 		pos++;
+		if (pos == capacity) {
+			capacity = Math.max(INITIAL_CAPACITY, capacity * 2);
+			for (ODSColumn column : columns.values()) {
+				column.ensureCapacity(capacity);
+			}
+		}
 		return pos;
 	}
 
@@ -107,7 +104,34 @@ public class ODSInsertStatement {
 	 * @return number of statements
 	 */
 	public int size() {
-		return rows.size();
+		return pos + 1;
+	}
+
+	/**
+	 * Returns the column of an attribute to set a value at the current batch
+	 * position.
+	 *
+	 * @param aaName
+	 *            The application attribute name.
+	 * @param dataType
+	 *            The data type of the value.
+	 * @return The column.
+	 */
+	private ODSColumn getColumn(String aaName, DataType dataType) {
+		if (pos < 0) {
+			next();
+		}
+		ODSColumn column = columns.get(aaName);
+		if (column == null || column.getDataType() != dataType && size() == 1) {
+			// a single statement may set an attribute again with another data
+			// type, the last value wins
+			column = new ODSColumn(dataType, capacity);
+			columns.put(aaName, column);
+		} else if (column.getDataType() != dataType) {
+			throw new IllegalArgumentException(new StringBuilder().append("datatype of attribute '").append(aaName)
+					.append("' must not change [aeName=").append(aeName).append("]").toString());
+		}
+		return column;
 	}
 
 	/**
@@ -119,11 +143,7 @@ public class ODSInsertStatement {
 	 *            The value as <code>org.asam.ods.TS_Value</code>.
 	 */
 	public void setTS_Value(String aaName, TS_Value value) {
-		if (pos < 0) {
-			next();
-		}
-		rows.get(pos).put(aaName, value);
-		attrs.add(aaName);
+		getColumn(aaName, value.u.discriminator()).set(pos, value.u, value.flag);
 	}
 
 	/**
@@ -169,7 +189,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setBooleanSeq(String aaName, boolean[] value) {
-		setNameValue(ODSHelper.createBooleanSeqNV(aaName, value));
+		getColumn(aaName, DataType.DS_BOOLEAN).setObject(pos, value);
 	}
 
 	/**
@@ -193,7 +213,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setByteSeq(String aaName, byte[] value) {
-		setNameValue(ODSHelper.createByteSeqNV(aaName, value));
+		getColumn(aaName, DataType.DS_BYTE).setObject(pos, value);
 	}
 
 	/**
@@ -205,7 +225,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setBytestrVal(String aaName, byte[] value) {
-		setNameValue(ODSHelper.createBytestrNV(aaName, value));
+		getColumn(aaName, DataType.DT_BYTESTR).setObject(pos, value);
 	}
 
 	/**
@@ -217,7 +237,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setBytestrSeq(String aaName, byte[][] value) {
-		setNameValue(ODSHelper.createBytestrSeqNV(aaName, value));
+		getColumn(aaName, DataType.DS_BYTESTR).setObject(pos, value);
 	}
 
 	/**
@@ -229,7 +249,8 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setDateVal(String aaName, String value) {
-		setNameValue(ODSHelper.createDateNV(aaName, value));
+		getColumn(aaName, DataType.DT_DATE).setString(pos, value,
+				value == null || value.length() < 1 ? (short) 0 : (short) 15);
 	}
 
 	/**
@@ -241,7 +262,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setDateSeq(String aaName, String[] value) {
-		setNameValue(ODSHelper.createDateSeqNV(aaName, value));
+		getColumn(aaName, DataType.DS_DATE).setObject(pos, value);
 	}
 
 	/**
@@ -265,7 +286,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setDComplexVal(String aaName, T_DCOMPLEX value) {
-		setNameValue(ODSHelper.createDComplexNV(aaName, value));
+		getColumn(aaName, DataType.DT_DCOMPLEX).setObject(pos, value);
 	}
 
 	/**
@@ -277,7 +298,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setDComplexSeq(String aaName, T_DCOMPLEX[] value) {
-		setNameValue(ODSHelper.createDComplexSeqNV(aaName, value));
+		getColumn(aaName, DataType.DS_DCOMPLEX).setObject(pos, value);
 	}
 
 	/**
@@ -289,7 +310,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setDoubleVal(String aaName, double value) {
-		setNameValue(ODSHelper.createDoubleNV(aaName, value));
+		getColumn(aaName, DataType.DT_DOUBLE).setDouble(pos, value);
 	}
 
 	/**
@@ -301,7 +322,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setDoubleSeq(String aaName, double[] value) {
-		setNameValue(ODSHelper.createDoubleSeqNV(aaName, value));
+		getColumn(aaName, DataType.DS_DOUBLE).setObject(pos, value);
 	}
 
 	/**
@@ -328,7 +349,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setEnumVal(String aaName, int value) {
-		setNameValue(ODSHelper.createEnumNV(aaName, value));
+		getColumn(aaName, DataType.DT_ENUM).setInt(pos, value);
 	}
 
 	/**
@@ -340,7 +361,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setEnumSeq(String aaName, int[] value) {
-		setNameValue(ODSHelper.createEnumSeqNV(aaName, value));
+		getColumn(aaName, DataType.DS_ENUM).setObject(pos, value);
 	}
 
 	/**
@@ -352,7 +373,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setExtRefVal(String aaName, T_ExternalReference value) {
-		setNameValue(ODSHelper.createExtRefNV(aaName, value));
+		getColumn(aaName, DataType.DT_EXTERNALREFERENCE).setObject(pos, value);
 	}
 
 	/**
@@ -364,7 +385,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setExtRefSeq(String aaName, T_ExternalReference[] value) {
-		setNameValue(ODSHelper.createExtRefSeqNV(aaName, value));
+		getColumn(aaName, DataType.DS_EXTERNALREFERENCE).setObject(pos, value);
 	}
 
 	/**
@@ -388,7 +409,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setFloatSeq(String aaName, float[] value) {
-		setNameValue(ODSHelper.createFloatSeqNV(aaName, value));
+		getColumn(aaName, DataType.DS_FLOAT).setObject(pos, value);
 	}
 
 	/**
@@ -415,7 +436,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setLongVal(String aaName, int value) {
-		setNameValue(ODSHelper.createLongNV(aaName, value));
+		getColumn(aaName, DataType.DT_LONG).setInt(pos, value);
 	}
 
 	/**
@@ -427,7 +448,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setLongSeq(String aaName, int[] value) {
-		setNameValue(ODSHelper.createLongSeqNV(aaName, value));
+		getColumn(aaName, DataType.DS_LONG).setObject(pos, value);
 	}
 
 	/**
@@ -454,7 +475,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setLongLongVal(String aaName, T_LONGLONG value) {
-		setNameValue(ODSHelper.createLongLongNV(aaName, value));
+		getColumn(aaName, DataType.DT_LONGLONG).setLong(pos, ODSHelper.asJLong(value));
 	}
 
 	/**
@@ -466,7 +487,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setLongLongVal(String aaName, long value) {
-		setNameValue(ODSHelper.createLongLongNV(aaName, value));
+		getColumn(aaName, DataType.DT_LONGLONG).setLong(pos, value);
 	}
 
 	/**
@@ -478,7 +499,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setLongLongSeq(String aaName, T_LONGLONG[] value) {
-		setNameValue(ODSHelper.createLongLongSeqNV(aaName, value));
+		getColumn(aaName, DataType.DS_LONGLONG).setObject(pos, value);
 	}
 
 	/**
@@ -502,7 +523,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setShortVal(String aaName, short value) {
-		setNameValue(ODSHelper.createShortNV(aaName, value));
+		getColumn(aaName, DataType.DT_SHORT).setShort(pos, value);
 	}
 
 	/**
@@ -529,7 +550,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setShortSeq(String aaName, short[] value) {
-		setNameValue(ODSHelper.createShortSeqNV(aaName, value));
+		getColumn(aaName, DataType.DS_SHORT).setObject(pos, value);
 	}
 
 	/**
@@ -541,7 +562,7 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setStringVal(String aaName, String value) {
-		setNameValue(ODSHelper.createStringNV(aaName, value));
+		getColumn(aaName, DataType.DT_STRING).setString(pos, value, value == null ? (short) 0 : (short) 15);
 	}
 
 	/**
@@ -553,24 +574,46 @@ public class ODSInsertStatement {
 	 *            The value.
 	 */
 	public void setStringSeq(String aaName, String[] value) {
-		setNameValue(ODSHelper.createStringSeqNV(aaName, value));
+		getColumn(aaName, DataType.DS_STRING).setObject(pos, value);
 	}
 
 	/**
-	 * Determines if all values of an attribute are null.
+	 * Returns the signature of the attributes set so far, the names and data
+	 * types in the order they have been set. Statements with equal signatures
+	 * can be appended to the same batch.
 	 *
-	 * @param attrName
-	 *            The attribute name.
-	 * @return true, if all values are null (flag=0), otherwise false
+	 * @return The signature.
 	 */
-	private boolean isAllValuesNull(String attrName) {
-		for (Map<String, TS_Value> value : rows) {
-			TS_Value v = value.get(attrName);
-			if (v != null && v.flag != 0) {
-				return false;
+	public List<String> getSignature() {
+		List<String> signature = new ArrayList<>(columns.size() * 2);
+		for (Map.Entry<String, ODSColumn> entry : columns.entrySet()) {
+			signature.add(entry.getKey());
+			signature.add(String.valueOf(entry.getValue().getDataType().value()));
+		}
+		return signature;
+	}
+
+	/**
+	 * Appends all statements of another insert statement to this batch. The
+	 * attributes of both statements should be the same, see
+	 * {@link #getSignature()}, otherwise the missing values are undefined.
+	 *
+	 * @param other
+	 *            The insert statement to append.
+	 * @return The position of the first appended statement.
+	 * @throws IllegalArgumentException
+	 *             The data type of an attribute differs.
+	 */
+	public int append(ODSInsertStatement other) {
+		int first = size();
+		for (int row = 0; row < other.size(); row++) {
+			next();
+			for (Map.Entry<String, ODSColumn> entry : other.columns.entrySet()) {
+				ODSColumn column = entry.getValue();
+				column.copyTo(row, getColumn(entry.getKey(), column.getDataType()), pos);
 			}
 		}
-		return true;
+		return first;
 	}
 
 	/**
@@ -583,342 +626,26 @@ public class ODSInsertStatement {
 	 */
 	public long[] executeBatch() throws AoException {
 		// check if rows to insert are given
-		if (rows.isEmpty() || attrs.isEmpty()) {
+		if (size() < 1 || columns.isEmpty()) {
 			return new long[0];
 		}
 
-		// copy values to the CORBA structure needed by the ODS interface
-		List<AIDNameValueSeqUnitId> list = new ArrayList<>();
-		ApplElem applElem = cache.getApplElem(aeName);
-
-		for (String attr : attrs) {
-			// check if all values of columns are null
-			if (isAllValuesNull(attr)) {
-				continue;
-			}
-
-			// do not insert if attribute is "id"
-			if (cache.applAttrExists(aeName, attr) && "id".equals(cache.getApplAttr(aeName, attr).baName)) {
-				continue;
-			}
-
-			DataType dt = rows.iterator().next().get(attr).u.discriminator();
-
-			AIDNameValueSeqUnitId anvsu = new AIDNameValueSeqUnitId();
-			anvsu.unitId = ODSHelper.asODSLongLong(0);
-			anvsu.attr = new AIDName();
-			anvsu.attr.aaName = attr;
-			anvsu.attr.aid = applElem.aid;
-			anvsu.values = new TS_ValueSeq();
-			anvsu.values.flag = new short[rows.size()];
-			anvsu.values.u = new TS_UnionSeq();
-
-			// DT_BLOB
-			if (dt == DataType.DT_BLOB) {
-				Blob[] ar = new Blob[rows.size()];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					if (v == null) {
-						ar[i] = cache.getAoSession().createBlob();
-						ar[i].setHeader("");
-						ar[i].set(new byte[0]);
-					} else {
-						ar[i] = v.u.blobVal();
-					}
-					anvsu.values.u.blobVal(ar);
-				}
-			}
-			// DT_BOOLEAN
-			else if (dt == DataType.DT_BOOLEAN) {
-				boolean[] ar = new boolean[rows.size()];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? false : v.u.booleanVal();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.booleanVal(ar);
-				}
-			}
-			// DS_BOOLEAN
-			else if (dt == DataType.DS_BOOLEAN) {
-				boolean[][] ar = new boolean[rows.size()][];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? new boolean[0] : v.u.booleanSeq();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.booleanSeq(ar);
-				}
-			}
-			// DT_BYTE
-			else if (dt == DataType.DT_BYTE) {
-				byte[] ar = new byte[rows.size()];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? 0 : v.u.byteVal();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.byteVal(ar);
-				}
-			}
-			// DS_BYTE
-			else if (dt == DataType.DS_BYTE) {
-				byte[][] ar = new byte[rows.size()][];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? new byte[0] : v.u.byteSeq();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.byteSeq(ar);
-				}
-			}
-			// DT_BYTESTR
-			else if (dt == DataType.DT_BYTESTR) {
-				byte[][] ar = new byte[rows.size()][];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? new byte[0] : v.u.bytestrVal();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.bytestrVal(ar);
-				}
-			}
-			// DS_BYTESTR
-			else if (dt == DataType.DS_BYTESTR) {
-				byte[][][] ar = new byte[rows.size()][][];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? new byte[0][0] : v.u.bytestrSeq();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.bytestrSeq(ar);
-				}
-			}
-			// DT_COMPLEX
-			else if (dt == DataType.DT_COMPLEX) {
-				T_COMPLEX[] ar = new T_COMPLEX[rows.size()];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? new T_COMPLEX(0, 0) : v.u.complexVal();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.complexVal(ar);
-				}
-			}
-			// DS_COMPLEX
-			else if (dt == DataType.DS_COMPLEX) {
-				T_COMPLEX[][] ar = new T_COMPLEX[rows.size()][];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? new T_COMPLEX[0] : v.u.complexSeq();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.complexSeq(ar);
-				}
-			}
-			// DT_DATE
-			else if (dt == DataType.DT_DATE) {
-				String[] ar = new String[rows.size()];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? "" : v.u.dateVal();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.dateVal(ar);
-				}
-			}
-			// DS_DATE
-			else if (dt == DataType.DS_DATE) {
-				String[][] ar = new String[rows.size()][];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? new String[0] : v.u.dateSeq();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.dateSeq(ar);
-				}
-			}
-			// DT_DCOMPLEX
-			else if (dt == DataType.DT_DCOMPLEX) {
-				T_DCOMPLEX[] ar = new T_DCOMPLEX[rows.size()];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? new T_DCOMPLEX(0, 0) : v.u.dcomplexVal();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.dcomplexVal(ar);
-				}
-			}
-			// DS_DCOMPLEX
-			else if (dt == DataType.DS_DCOMPLEX) {
-				T_DCOMPLEX[][] ar = new T_DCOMPLEX[rows.size()][];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? new T_DCOMPLEX[0] : v.u.dcomplexSeq();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.dcomplexSeq(ar);
-				}
-			}
-			// DT_DOUBLE
-			else if (dt == DataType.DT_DOUBLE) {
-				double[] ar = new double[rows.size()];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? 0 : v.u.doubleVal();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.doubleVal(ar);
-				}
-			}
-			// DS_DOUBLE
-			else if (dt == DataType.DS_DOUBLE) {
-				double[][] ar = new double[rows.size()][];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? new double[0] : v.u.doubleSeq();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.doubleSeq(ar);
-				}
-			}
-			// DT_ENUM
-			else if (dt == DataType.DT_ENUM) {
-				int[] ar = new int[rows.size()];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? 0 : v.u.enumVal();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.enumVal(ar);
-				}
-			}
-			// DS_ENUM
-			else if (dt == DataType.DS_ENUM) {
-				int[][] ar = new int[rows.size()][];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? new int[0] : v.u.enumSeq();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.enumSeq(ar);
-				}
-			}
-			// DT_EXTERNALREFERENCE
-			else if (dt == DataType.DT_EXTERNALREFERENCE) {
-				T_ExternalReference[] ar = new T_ExternalReference[rows.size()];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? new T_ExternalReference("", "", "") : v.u.extRefVal();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.extRefVal(ar);
-				}
-			}
-			// DS_EXTERNALREFERENCE
-			else if (dt == DataType.DS_EXTERNALREFERENCE) {
-				T_ExternalReference[][] ar = new T_ExternalReference[rows.size()][];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? new T_ExternalReference[0] : v.u.extRefSeq();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.extRefSeq(ar);
-				}
-			}
-			// DT_FLOAT
-			else if (dt == DataType.DT_FLOAT) {
-				float[] ar = new float[rows.size()];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? 0 : v.u.floatVal();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.floatVal(ar);
-				}
-			}
-			// DS_FLOAT
-			else if (dt == DataType.DS_FLOAT) {
-				float[][] ar = new float[rows.size()][];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? new float[0] : v.u.floatSeq();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.floatSeq(ar);
-				}
-			}
-			// DT_LONG
-			else if (dt == DataType.DT_LONG) {
-				int[] ar = new int[rows.size()];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? 0 : v.u.longVal();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.longVal(ar);
-				}
-			}
-			// DS_LONG
-			else if (dt == DataType.DS_LONG) {
-				int[][] ar = new int[rows.size()][];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? new int[0] : v.u.longSeq();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.longSeq(ar);
-				}
-			}
-			// DT_LONGLONG
-			else if (dt == DataType.DT_LONGLONG) {
-				T_LONGLONG[] ar = new T_LONGLONG[rows.size()];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? new T_LONGLONG(0, 0) : v.u.longlongVal();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.longlongVal(ar);
-				}
-			}
-			// DS_LONGLONG
-			else if (dt == DataType.DS_LONGLONG) {
-				T_LONGLONG[][] ar = new T_LONGLONG[rows.size()][];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? new T_LONGLONG[0] : v.u.longlongSeq();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.longlongSeq(ar);
-				}
-			}
-			// DT_SHORT
-			else if (dt == DataType.DT_SHORT) {
-				short[] ar = new short[rows.size()];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? (short) 0 : v.u.shortVal();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.shortVal(ar);
-				}
-			}
-			// DS_SHORT
-			else if (dt == DataType.DS_SHORT) {
-				short[][] ar = new short[rows.size()][];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? new short[0] : v.u.shortSeq();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.shortSeq(ar);
-				}
-			}
-			// DT_STRING
-			else if (dt == DataType.DT_STRING) {
-				String[] ar = new String[rows.size()];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? "" : v.u.stringVal();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.stringVal(ar);
-				}
-			}
-			// DS_STRING
-			else if (dt == DataType.DS_STRING) {
-				String[][] ar = new String[rows.size()][];
-				for (int i = 0; i < rows.size(); i++) {
-					TS_Value v = rows.get(i).get(attr);
-					ar[i] = v == null ? new String[0] : v.u.stringSeq();
-					anvsu.values.flag[i] = v == null ? 0 : v.flag;
-					anvsu.values.u.stringSeq(ar);
-				}
-			}
-			// unsupported DataType
-			else {
-				throw new AoException(ErrorCode.AO_BAD_PARAMETER, SeverityFlag.ERROR, 0, "unsupported datatype: " + dt);
-			}
-
-			list.add(anvsu);
+		// copy values to the CORBA structure needed by the ODS interface, the
+		// attributes are resolved once per attribute set by the insert plan
+		String[] aaNames = new String[columns.size()];
+		DataType[] dataTypes = new DataType[columns.size()];
+		ODSColumn[] values = new ODSColumn[columns.size()];
+		int col = 0;
+		for (Map.Entry<String, ODSColumn> entry : columns.entrySet()) {
+			aaNames[col] = entry.getKey();
+			dataTypes[col] = entry.getValue().getDataType();
+			values[col++] = entry.getValue();
 		}
+		ODSInsertPlan plan = cache.getInsertPlan(aeName, aaNames, dataTypes);
+		AIDNameValueSeqUnitId[] ar = plan.bind(values, size(), cache.getAoSession());
 
 		// execute
 		ApplElemAccess applElemAccess = cache.getApplElemAccess();
-		AIDNameValueSeqUnitId[] ar = list.toArray(new AIDNameValueSeqUnitId[list.size()]);
 
 		long start = System.currentTimeMillis();
 		ElemId[] elemIds = applElemAccess.insertInstances(ar);
@@ -15,10 +15,14 @@
 
 package org.eclipse.mdm.openatfx.mdf.util;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -36,19 +40,27 @@ import org.asam.ods.ApplicationStructureValue;
 import org.asam.ods.BaseElement;
 import org.asam.ods.BaseRelation;
 import org.asam.ods.BaseStructure;
+import org.asam.ods.DataType;
 import org.asam.ods.ElemId;
 import org.asam.ods.EnumerationAttributeStructure;
 import org.asam.ods.EnumerationDefinition;
 import org.asam.ods.EnumerationItemStructure;
 import org.asam.ods.EnumerationStructure;
 import org.asam.ods.ErrorCode;
+import org.asam.ods.InstanceElement;
 import org.asam.ods.NameValue;
 import org.asam.ods.NameValueIterator;
+import org.asam.ods.SetType;
 import org.asam.ods.SeverityFlag;
 import org.asam.ods.T_LONGLONG;
 
 /**
  * Cache for the ASAM-ODS application model.
+ * <p>
+ * The cache may be shared by concurrent writer threads. The application
+ * structure and the enumerations are loaded once into immutable snapshots,
+ * which are read without locking. The ODS interface objects are cached in
+ * concurrent maps.
  *
  * @author Christian Rechner
  */
@@ -57,57 +69,55 @@ public class ODSModelCache {
 	private static final Log LOG = LogFactory.getLog(ODSModelCache.class);
 
 	// cached ODS AoSession (ODS interface)
-	private AoSession aoSession = null;
+	private final AoSession aoSession;
+
+	// lock for loading the snapshots
+	private final Object snapshotLock = new Object();
 
 	// cached ODS context parameter
-	private NameValue[] context = null;
+	private volatile NameValue[] context = null;
 
 	// cached ODS BaseStructure (ODS interface)
-	private BaseStructure baseStructure = null;
+	private volatile BaseStructure baseStructure = null;
 
 	// cached ODS ApplicationStructure (ODS interface)
-	private ApplicationStructure applicationStructure = null;
+	private volatile ApplicationStructure applicationStructure = null;
 
 	// cached application elements (ODS interface)
-	private Map<String, ApplicationElement> applicationElemCache;
+	private final ConcurrentMap<String, ApplicationElement> applicationElemCache;
 
 	// cached application attributes (ODS interface)
-	private Map<String, ApplicationAttribute[]> applicationAttrCache;
+	private final ConcurrentMap<String, ApplicationAttribute[]> applicationAttrCache;
 
 	// cached application relations (ODS interface)
-	private Map<ApplicationRelKey, ApplicationRelation> applicationRelCache;
+	private final ConcurrentMap<ApplicationRelKey, ApplicationRelation> applicationRelCache;
 
 	// cached enumeration definitions (ODS interface)
-	private Map<String, EnumerationDefinition> enumDefCache;
-
-	// cached applElemAccess (ODS interface)
-	private ApplElemAccess applElemAccess = null;
+	private final ConcurrentMap<String, EnumerationDefinition> enumDefCache;
 
-	// cached applicationStructureValue (ODS interface)
-	private ApplicationStructureValue applicationStructureValue = null;
+	// cached insert plans
+	private final ConcurrentMap<InsertPlanKey, ODSInsertPlan> insertPlanCache;
 
-	// cached applElemns (ODS struct)
-	private ApplElem[] applElems = null;
+	// cached instance elements (ODS interface)
+	private final ConcurrentMap<InstanceKey, InstanceElement> instanceCache;
 
-	private Map<String, ApplElem> aeName2applElemMap = null;
+	// cached applElemAccess (ODS interface)
+	private volatile ApplElemAccess applElemAccess = null;
 
-	private Map<Long, ApplElem> aid2applElemMap = null;
+	// cached applicationStructureValue (ODS interface)
+	private volatile ApplicationStructureValue applicationStructureValue = null;
 
-	// cached applRels (ODS struct)
-	private ApplRel[] applRels = null;
+	// snapshot of the application elements and relations (ODS structs)
+	private volatile StructureSnapshot structureSnapshot = null;
 
 	// cached enumeration values
-	private EnumerationStructure[] enumerationStructure = null;
+	private volatile EnumerationStructure[] enumerationStructure = null;
 
 	// cached enumeration attributes
-	private EnumerationAttributeStructure[] enumerationAttributes = null;
+	private volatile EnumerationAttributeStructure[] enumerationAttributes = null;
 
-	// map containing the enum definition <aid,aaName,enumName>
-	private Map<Long, Map<String, String>> enumerationAttributeMap = null;
-
-	private Map<String, Map<Integer, String>> enumIndexToValueMap = null;
-
-	private Map<String, Map<String, Integer>> enumValueToIndexMap = null;
+	// snapshot of the enumeration items and enumeration attributes
+	private volatile EnumSnapshot enumSnapshot = null;
 
 	/**
 	 * Constructor.
@@ -119,10 +129,12 @@ public class ODSModelCache {
 		if (aoSession == null) {
 			throw new IllegalArgumentException("Parameter aoSession must not be null");
 		}
-		applicationElemCache = new HashMap<>();
-		applicationAttrCache = new HashMap<>();
-		applicationRelCache = new HashMap<>();
-		enumDefCache = new HashMap<>();
+		applicationElemCache = new ConcurrentHashMap<>();
+		applicationAttrCache = new ConcurrentHashMap<>();
+		applicationRelCache = new ConcurrentHashMap<>();
+		enumDefCache = new ConcurrentHashMap<>();
+		insertPlanCache = new ConcurrentHashMap<>();
+		instanceCache = new ConcurrentHashMap<>();
 		this.aoSession = aoSession;
 	}
 
@@ -154,6 +166,23 @@ public class ODSModelCache {
 		return new T_LONGLONG((int) (v >> 32 & 0xffffffffL), (int) (v & 0xffffffffL));
 	}
 
+	/**
+	 * Puts a value to a concurrent cache, unless another thread has put a
+	 * value for the same key before.
+	 *
+	 * @param cache
+	 *            the cache
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the loaded value
+	 * @return the cached value
+	 */
+	private static <K, V> V putIfAbsent(ConcurrentMap<K, V> cache, K key, V value) {
+		V cached = cache.putIfAbsent(key, value);
+		return cached == null ? value : cached;
+	}
+
 	/*******************************************************************************************************************
 	 * Methods for accessing cached ODS objects.
 	 ******************************************************************************************************************/
@@ -175,16 +204,18 @@ public class ODSModelCache {
 	 *             if something went wrong
 	 */
 	public final NameValue[] getContext() throws AoException {
-		if (context == null) {
+		NameValue[] nvs = context;
+		if (nvs == null) {
 			NameValueIterator iter = getAoSession().getContext("*");
 			int cnt = iter.getCount();
-			context = new NameValue[cnt];
+			nvs = new NameValue[cnt];
 			for (int i = 0; i < cnt; i++) {
-				context[i] = iter.nextOne();
+				nvs[i] = iter.nextOne();
 			}
+			context = nvs;
 			LOG.debug("Context loaded");
 		}
-		return context;
+		return nvs;
 	}
 
 	/**
@@ -195,11 +226,13 @@ public class ODSModelCache {
 	 *             if something went wrong
 	 */
 	public final BaseStructure getBaseStructure() throws AoException {
-		if (baseStructure == null) {
-			baseStructure = getAoSession().getBaseStructure();
+		BaseStructure bs = baseStructure;
+		if (bs == null) {
+			bs = getAoSession().getBaseStructure();
+			baseStructure = bs;
 			LOG.debug("BaseStructure loaded");
 		}
-		return baseStructure;
+		return bs;
 	}
 
 	/**
@@ -240,11 +273,13 @@ public class ODSModelCache {
 	 *             if something went wrong
 	 */
 	public final ApplicationStructure getApplicationStructure() throws AoException {
-		if (applicationStructure == null) {
-			applicationStructure = getAoSession().getApplicationStructure();
+		ApplicationStructure as = applicationStructure;
+		if (as == null) {
+			as = getAoSession().getApplicationStructure();
+			applicationStructure = as;
 			LOG.debug("ApplicationStructure loaded");
 		}
-		return applicationStructure;
+		return as;
 	}
 
 	/**
@@ -255,11 +290,13 @@ public class ODSModelCache {
 	 *             if something went wrong
 	 */
 	public final ApplicationStructureValue getApplicationStructureValue() throws AoException {
-		if (applicationStructureValue == null) {
-			applicationStructureValue = getAoSession().getApplicationStructureValue();
+		ApplicationStructureValue asv = applicationStructureValue;
+		if (asv == null) {
+			asv = getAoSession().getApplicationStructureValue();
+			applicationStructureValue = asv;
 			LOG.debug("ApplicationStructureValue loaded");
 		}
-		return applicationStructureValue;
+		return asv;
 	}
 
 	/**
@@ -275,13 +312,58 @@ public class ODSModelCache {
 		ApplicationElement ae = applicationElemCache.get(aeName);
 		if (ae == null) {
 			ApplicationStructure as = getApplicationStructure();
-			ae = as.getElementByName(aeName);
-			applicationElemCache.put(aeName, ae);
+			ae = putIfAbsent(applicationElemCache, aeName, as.getElementByName(aeName));
 			LOG.debug(new StringBuilder().append("ApplicationElement [name=").append(aeName).append("] loaded").toString());
 		}
 		return ae;
 	}
 
+	/**
+	 * Returns an instance element by given application element name and
+	 * instance id. The instance element is looked up once and then cached.
+	 *
+	 * @param aeName
+	 *            the application element name
+	 * @param iid
+	 *            the instance id
+	 * @return the cached instance element
+	 * @throws AoException
+	 *             application element or instance not found
+	 */
+	public final InstanceElement getInstanceElement(String aeName, long iid) throws AoException {
+		InstanceKey key = new InstanceKey(asJLong(getApplElem(aeName).aid), iid);
+		InstanceElement ie = instanceCache.get(key);
+		if (ie == null) {
+			ie = putIfAbsent(instanceCache, key, getApplicationElement(aeName).getInstanceById(asODSLongLong(iid)));
+		}
+		return ie;
+	}
+
+	/**
+	 * Appends related instances to an instance with a single call of
+	 * <code>ApplElemAccess.setRelInst</code>.
+	 *
+	 * @param aeName
+	 *            the application element name of the instance
+	 * @param iid
+	 *            the instance id
+	 * @param relName
+	 *            the name of the relation from the instance to the related
+	 *            instances
+	 * @param relatedIids
+	 *            the ids of the related instances
+	 * @throws AoException
+	 *             if something went wrong
+	 */
+	public final void appendRelatedInstances(String aeName, long iid, String relName, long[] relatedIids)
+			throws AoException {
+		if (relatedIids.length < 1) {
+			return;
+		}
+		getApplElemAccess().setRelInst(createElemId(aeName, iid), relName, ODSHelper.asODSLongLong(relatedIids),
+				SetType.APPEND);
+	}
+
 	/**
 	 * Returns an array containing all application attributes for an application
 	 * element.
@@ -295,8 +377,7 @@ public class ODSModelCache {
 	public final ApplicationAttribute[] getApplicationAttributes(String aeName) throws AoException {
 		ApplicationAttribute[] attrs = applicationAttrCache.get(aeName);
 		if (attrs == null) {
-			attrs = getApplicationElement(aeName).getAttributes("*");
-			applicationAttrCache.put(aeName, attrs);
+			attrs = putIfAbsent(applicationAttrCache, aeName, getApplicationElement(aeName).getAttributes("*"));
 			LOG.debug(new StringBuilder().append("ApplicationAttributes [aeName=").append(aeName).append("] loaded").toString());
 		}
 		return attrs;
@@ -444,8 +525,7 @@ public class ODSModelCache {
 		if (enumDef == null) {
 			ApplicationStructure as = getApplicationStructure();
 			try {
-				enumDef = as.getEnumerationDefinition(enumName);
-				enumDefCache.put(enumName, enumDef);
+				enumDef = putIfAbsent(enumDefCache, enumName, as.getEnumerationDefinition(enumName));
 			} catch (AoException aoe) {
 				LOG.debug(new StringBuilder().append("EnumerationDefinition [name=").append(enumName).append("] not found!").toString());
 				return null;
@@ -464,11 +544,13 @@ public class ODSModelCache {
 	 *             if something went wrong
 	 */
 	public final ApplElemAccess getApplElemAccess() throws AoException {
-		if (applElemAccess == null) {
-			applElemAccess = getAoSession().getApplElemAccess();
+		ApplElemAccess aea = applElemAccess;
+		if (aea == null) {
+			aea = getAoSession().getApplElemAccess();
+			applElemAccess = aea;
 			LOG.debug("ApplElemAccess loaded");
 		}
-		return applElemAccess;
+		return aea;
 	}
 
 	/*******************************************************************************************************************
@@ -483,46 +565,53 @@ public class ODSModelCache {
 	 *             if something went wrong
 	 */
 	public final ApplElem[] getApplElems() throws AoException {
-		if (applElems == null) {
-			applElems = getApplicationStructureValue().applElems;
-		}
-		return applElems;
+		return getStructureSnapshot().applElems;
 	}
 
 	/**
-	 * Returns the map between application element name and application element
-	 * structure.
+	 * Returns the snapshot of the application structure. The snapshot is
+	 * loaded by the first caller, all other threads read it without locking.
 	 *
-	 * @return The map.
+	 * @return The snapshot.
 	 * @throws AoException
-	 *             Error loading application element mapping.
+	 *             Error loading the application structure.
 	 */
-	private Map<String, ApplElem> getAeName2applElemMap() throws AoException {
-		if (aeName2applElemMap == null) {
-			aeName2applElemMap = new HashMap<>();
-			for (ApplElem applElem : getApplElems()) {
-				aeName2applElemMap.put(applElem.aeName, applElem);
+	private StructureSnapshot getStructureSnapshot() throws AoException {
+		StructureSnapshot snapshot = structureSnapshot;
+		if (snapshot == null) {
+			synchronized (snapshotLock) {
+				snapshot = structureSnapshot;
+				if (snapshot == null) {
+					snapshot = new StructureSnapshot(getApplicationStructureValue());
+					structureSnapshot = snapshot;
+					LOG.debug("StructureSnapshot loaded");
+				}
 			}
 		}
-		return aeName2applElemMap;
+		return snapshot;
 	}
 
 	/**
-	 * Returns the map between application element id and application element
-	 * structure.
+	 * Returns the snapshot of the enumerations. The snapshot is loaded by the
+	 * first caller, all other threads read it without locking.
 	 *
-	 * @return The map.
+	 * @return The snapshot.
 	 * @throws AoException
-	 *             Error loading application element mapping.
+	 *             Error loading the enumerations.
 	 */
-	private Map<Long, ApplElem> getAid2applElemMap() throws AoException {
-		if (aid2applElemMap == null) {
-			aid2applElemMap = new HashMap<>();
-			for (ApplElem applElem : getApplElems()) {
-				aid2applElemMap.put(asJLong(applElem.aid), applElem);
+	private EnumSnapshot getEnumSnapshot() throws AoException {
+		EnumSnapshot snapshot = enumSnapshot;
+		if (snapshot == null) {
+			synchronized (snapshotLock) {
+				snapshot = enumSnapshot;
+				if (snapshot == null) {
+					snapshot = new EnumSnapshot(getEnumerationStructure(), getEnumerationAttributes());
+					enumSnapshot = snapshot;
+					LOG.debug("EnumSnapshot loaded");
+				}
 			}
 		}
-		return aid2applElemMap;
+		return snapshot;
 	}
 
 	/**
@@ -594,7 +683,7 @@ public class ODSModelCache {
 	 *             application element by given id not found
 	 */
 	public final ApplElem getApplElem(long aid) throws AoException {
-		ApplElem applElem = getAid2applElemMap().get(aid);
+		ApplElem applElem = getStructureSnapshot().aid2applElem.get(aid);
 		if (applElem != null) {
 			return applElem;
 		}
@@ -625,7 +714,7 @@ public class ODSModelCache {
 	 *             application element with given name not found
 	 */
 	public final ApplElem getApplElem(String aeName) throws AoException {
-		ApplElem applElem = getAeName2applElemMap().get(aeName);
+		ApplElem applElem = getStructureSnapshot().aeName2applElem.get(aeName);
 		if (applElem != null) {
 			return applElem;
 		}
@@ -642,7 +731,7 @@ public class ODSModelCache {
 	 *             if something went wrong
 	 */
 	public final boolean applElemExists(String aeName) throws AoException {
-		return getAeName2applElemMap().containsKey(aeName);
+		return getStructureSnapshot().aeName2applElem.containsKey(aeName);
 	}
 
 	/**
@@ -675,16 +764,40 @@ public class ODSModelCache {
 	 *             application attribute not found
 	 */
 	public final ApplAttr getApplAttr(String aeName, String aaName) throws AoException {
-		ApplElem applElem = getApplElem(aeName);
-		for (ApplAttr applAttr : applElem.attributes) {
-			if (applAttr.aaName.equals(aaName)) {
-				return applAttr;
-			}
+		ApplAttr applAttr = getStructureSnapshot().getApplAttr(getApplElem(aeName), aaName);
+		if (applAttr != null) {
+			return applAttr;
 		}
 		throw new AoException(ErrorCode.AO_NOT_FOUND, SeverityFlag.ERROR, 0,
 				new StringBuilder().append("ApplicationAttribute [aeName=").append(aeName).append(",aaName=").append(aaName).append("] not found!").toString());
 	}
 
+	/**
+	 * Returns the insert plan for the instances of an application element with
+	 * given attributes. The plan is created once for each application element,
+	 * attribute names and data types.
+	 *
+	 * @param aeName
+	 *            the name of the application element
+	 * @param aaNames
+	 *            the names of the application attributes
+	 * @param dataTypes
+	 *            the data types of the values of each attribute
+	 * @return the insert plan
+	 * @throws AoException
+	 *             application element not found
+	 */
+	public final ODSInsertPlan getInsertPlan(String aeName, String[] aaNames, DataType[] dataTypes)
+			throws AoException {
+		InsertPlanKey key = new InsertPlanKey(aeName, aaNames, dataTypes);
+		ODSInsertPlan plan = insertPlanCache.get(key);
+		if (plan == null) {
+			plan = putIfAbsent(insertPlanCache, key, new ODSInsertPlan(getApplElem(aeName), aaNames, dataTypes));
+			LOG.debug(new StringBuilder().append("InsertPlan [aeName=").append(aeName).append(",aaNames=").append(Arrays.toString(aaNames)).append("] created").toString());
+		}
+		return plan;
+	}
+
 	/**
 	 * Checks whether an application attribute exists.
 	 *
@@ -700,13 +813,8 @@ public class ODSModelCache {
 		if (!applElemExists(aeName)) {
 			return false;
 		}
-		ApplElem applElem = getApplElem(aeName);
-		for (ApplAttr applAttr : applElem.attributes) {
-			if (applAttr.aaName.equals(aaName)) {
-				return true;
-			}
-		}
-		return false;
+		StructureSnapshot snapshot = getStructureSnapshot();
+		return snapshot.getApplAttr(getApplElem(aeName), aaName) != null;
 	}
 
 	/**
@@ -740,10 +848,7 @@ public class ODSModelCache {
 	 *             error accessing the application structure
 	 */
 	public final ApplRel[] getApplRels() throws AoException {
-		if (applRels == null) {
-			applRels = getApplicationStructureValue().applRels;
-		}
-		return applRels;
+		return getStructureSnapshot().applRels;
 	}
 
 	/**
@@ -853,10 +958,12 @@ public class ODSModelCache {
 	 *             Error getting enumeration structure.
 	 */
 	public EnumerationStructure[] getEnumerationStructure() throws AoException {
-		if (enumerationStructure == null) {
-			enumerationStructure = getAoSession().getEnumerationStructure();
+		EnumerationStructure[] ess = enumerationStructure;
+		if (ess == null) {
+			ess = getAoSession().getEnumerationStructure();
+			enumerationStructure = ess;
 		}
-		return enumerationStructure;
+		return ess;
 	}
 
 	/**
@@ -867,10 +974,12 @@ public class ODSModelCache {
 	 *             Error getting enumeration attributes.
 	 */
 	public EnumerationAttributeStructure[] getEnumerationAttributes() throws AoException {
-		if (enumerationAttributes == null) {
-			enumerationAttributes = getAoSession().getEnumerationAttributes();
+		EnumerationAttributeStructure[] eas = enumerationAttributes;
+		if (eas == null) {
+			eas = getAoSession().getEnumerationAttributes();
+			enumerationAttributes = eas;
 		}
-		return enumerationAttributes;
+		return eas;
 	}
 
 	/**
@@ -887,20 +996,7 @@ public class ODSModelCache {
 	 */
 	public String getEnumName(String aeName, String aaName) throws AoException {
 		long aid = asJLong(getApplElem(aeName).aid);
-		// fill cache
-		if (enumerationAttributeMap == null) {
-			enumerationAttributeMap = new HashMap<>();
-			for (EnumerationAttributeStructure eas : getEnumerationAttributes()) {
-				Map<String, String> attrMap = enumerationAttributeMap.get(aid);
-				if (attrMap == null) {
-					attrMap = new HashMap<>();
-					enumerationAttributeMap.put(aid, attrMap);
-				}
-				attrMap.put(eas.aaName, eas.enumName);
-			}
-		}
-		// lookup
-		Map<String, String> attrMap = enumerationAttributeMap.get(aid);
+		Map<String, String> attrMap = getEnumSnapshot().enumerationAttributeMap.get(aid);
 		if (attrMap != null) {
 			String enumName = attrMap.get(aaName);
 			if (enumName != null) {
@@ -923,20 +1019,7 @@ public class ODSModelCache {
 	 *             Enumeration definition or value not found.
 	 */
 	public final int getEnumItem(String enumName, String enumValue) throws AoException {
-		// fill cache
-		if (enumValueToIndexMap == null) {
-			enumValueToIndexMap = new HashMap<>();
-			for (EnumerationStructure es : getEnumerationStructure()) {
-				Map<String, Integer> map = new HashMap<>();
-				for (EnumerationItemStructure item : es.items) {
-					map.put(item.itemName, item.index);
-				}
-				enumValueToIndexMap.put(es.enumName, map);
-			}
-		}
-
-		// lookup
-		Map<String, Integer> map = enumValueToIndexMap.get(enumName);
+		Map<String, Integer> map = getEnumSnapshot().enumValueToIndexMap.get(enumName);
 		if (map != null) {
 			Integer item = map.get(enumValue);
 			if (item != null) {
@@ -960,20 +1043,7 @@ public class ODSModelCache {
 	 *             Enumeration definition or item not found.
 	 */
 	public final String getEnumValue(String enumName, int enumItem) throws AoException {
-		// fill cache
-		if (enumIndexToValueMap == null) {
-			enumIndexToValueMap = new HashMap<>();
-			for (EnumerationStructure es : getEnumerationStructure()) {
-				Map<Integer, String> map = new HashMap<>();
-				for (EnumerationItemStructure item : es.items) {
-					map.put(item.index, item.itemName);
-				}
-				enumIndexToValueMap.put(es.enumName, map);
-			}
-		}
-
-		// lookup
-		Map<Integer, String> map = enumIndexToValueMap.get(enumName);
+		Map<Integer, String> map = getEnumSnapshot().enumIndexToValueMap.get(enumName);
 		if (map != null) {
 			String value = map.get(enumItem);
 			if (value != null) {
@@ -985,6 +1055,233 @@ public class ODSModelCache {
 				new StringBuilder().append("Enumeration value not found for [enumName=").append(enumName).append(",enumItem=").append(enumItem).append("]").toString());
 	}
 
+	/**
+	 * Immutable snapshot of the application elements and relations.
+	 */
+	private static final class StructureSnapshot {
+
+		private final ApplElem[] applElems;
+
+		private final ApplRel[] applRels;
+
+		private final Map<String, ApplElem> aeName2applElem;
+
+		private final Map<Long, ApplElem> aid2applElem;
+
+		// application attributes by aid and attribute name
+		private final Map<Long, Map<String, ApplAttr>> aid2applAttrs;
+
+		/**
+		 * Creates a new StructureSnapshot.
+		 *
+		 * @param asv
+		 *            the application structure value
+		 */
+		public StructureSnapshot(ApplicationStructureValue asv) {
+			this.applElems = asv.applElems;
+			this.applRels = asv.applRels;
+			Map<String, ApplElem> byName = new HashMap<>();
+			Map<Long, ApplElem> byAid = new HashMap<>();
+			Map<Long, Map<String, ApplAttr>> attrs = new HashMap<>();
+			for (ApplElem applElem : applElems) {
+				long aid = asJLong(applElem.aid);
+				byName.put(applElem.aeName, applElem);
+				byAid.put(aid, applElem);
+				Map<String, ApplAttr> attrMap = new HashMap<>();
+				for (ApplAttr applAttr : applElem.attributes) {
+					attrMap.put(applAttr.aaName, applAttr);
+				}
+				attrs.put(aid, Collections.unmodifiableMap(attrMap));
+			}
+			this.aeName2applElem = Collections.unmodifiableMap(byName);
+			this.aid2applElem = Collections.unmodifiableMap(byAid);
+			this.aid2applAttrs = Collections.unmodifiableMap(attrs);
+		}
+
+		/**
+		 * Returns an application attribute of an application element.
+		 *
+		 * @param applElem
+		 *            the application element
+		 * @param aaName
+		 *            the application attribute name
+		 * @return the application attribute, null if not found
+		 */
+		public ApplAttr getApplAttr(ApplElem applElem, String aaName) {
+			Map<String, ApplAttr> attrMap = aid2applAttrs.get(asJLong(applElem.aid));
+			return attrMap == null ? null : attrMap.get(aaName);
+		}
+
+	}
+
+	/**
+	 * Immutable snapshot of the enumeration items and enumeration attributes.
+	 */
+	private static final class EnumSnapshot {
+
+		// map containing the enum definition <aid,aaName,enumName>
+		private final Map<Long, Map<String, String>> enumerationAttributeMap;
+
+		private final Map<String, Map<Integer, String>> enumIndexToValueMap;
+
+		private final Map<String, Map<String, Integer>> enumValueToIndexMap;
+
+		/**
+		 * Creates a new EnumSnapshot.
+		 *
+		 * @param enumerationStructure
+		 *            the enumeration structure
+		 * @param enumerationAttributes
+		 *            the enumeration attributes
+		 */
+		public EnumSnapshot(EnumerationStructure[] enumerationStructure,
+				EnumerationAttributeStructure[] enumerationAttributes) {
+			Map<String, Map<Integer, String>> indexToValue = new HashMap<>();
+			Map<String, Map<String, Integer>> valueToIndex = new HashMap<>();
+			for (EnumerationStructure es : enumerationStructure) {
+				Map<Integer, String> values = new HashMap<>();
+				Map<String, Integer> indices = new HashMap<>();
+				for (EnumerationItemStructure item : es.items) {
+					values.put(item.index, item.itemName);
+					indices.put(item.itemName, item.index);
+				}
+				indexToValue.put(es.enumName, Collections.unmodifiableMap(values));
+				valueToIndex.put(es.enumName, Collections.unmodifiableMap(indices));
+			}
+
+			Map<Long, Map<String, String>> attributes = new HashMap<>();
+			for (EnumerationAttributeStructure eas : enumerationAttributes) {
+				long aid = asJLong(eas.aid);
+				Map<String, String> attrMap = attributes.get(aid);
+				if (attrMap == null) {
+					attrMap = new HashMap<>();
+					attributes.put(aid, attrMap);
+				}
+				attrMap.put(eas.aaName, eas.enumName);
+			}
+			for (Map.Entry<Long, Map<String, String>> entry : attributes.entrySet()) {
+				entry.setValue(Collections.unmodifiableMap(entry.getValue()));
+			}
+
+			this.enumIndexToValueMap = Collections.unmodifiableMap(indexToValue);
+			this.enumValueToIndexMap = Collections.unmodifiableMap(valueToIndex);
+			this.enumerationAttributeMap = Collections.unmodifiableMap(attributes);
+		}
+
+	}
+
+	/**
+	 * Unique key for an instance element.
+	 */
+	private static class InstanceKey {
+
+		private final long aid;
+
+		private final long iid;
+
+		/**
+		 * Creates a new InstanceKey.
+		 *
+		 * @param aid
+		 *            the application element id
+		 * @param iid
+		 *            the instance id
+		 */
+		public InstanceKey(long aid, long iid) {
+			this.aid = aid;
+			this.iid = iid;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + (int) (aid ^ aid >>> 32);
+			result = prime * result + (int) (iid ^ iid >>> 32);
+			return result;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			final InstanceKey other = (InstanceKey) obj;
+			return aid == other.aid && iid == other.iid;
+		}
+
+	}
+
+	/**
+	 * Unique key for an insert plan.
+	 */
+	private static class InsertPlanKey {
+
+		private final String aeName;
+
+		private final String[] aaNames;
+
+		private final int[] dataTypes;
+
+		/**
+		 * Creates a new InsertPlanKey.
+		 *
+		 * @param aeName
+		 *            the application element name
+		 * @param aaNames
+		 *            the application attribute names
+		 * @param dataTypes
+		 *            the data types of the attributes
+		 */
+		public InsertPlanKey(String aeName, String[] aaNames, DataType[] dataTypes) {
+			this.aeName = aeName;
+			this.aaNames = aaNames.clone();
+			this.dataTypes = new int[dataTypes.length];
+			for (int i = 0; i < dataTypes.length; i++) {
+				this.dataTypes[i] = dataTypes[i].value();
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + aeName.hashCode();
+			result = prime * result + Arrays.hashCode(aaNames);
+			result = prime * result + Arrays.hashCode(dataTypes);
+			return result;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			final InsertPlanKey other = (InsertPlanKey) obj;
+			return aeName.equals(other.aeName) && Arrays.equals(aaNames, other.aaNames)
+					&& Arrays.equals(dataTypes, other.dataTypes);
+		}
+
+	}
+
 	/**
 	 * Unique key for an application relation.
 	 */
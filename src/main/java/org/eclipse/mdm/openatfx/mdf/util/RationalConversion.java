@@ -0,0 +1,84 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.nio.ByteOrder;
+
+/**
+ * Rational conversion of the raw values of a channel:
+ * <code>phys = (p0*x^2 + p1*x + p2) / (p3*x^2 + p4*x + p5)</code>
+ * <p>
+ * Both polynomials are evaluated in Horner form over the whole array of
+ * decoded raw values in a tight loop.
+ */
+public class RationalConversion extends ValueConversion {
+
+	private final double p0;
+	private final double p1;
+	private final double p2;
+	private final double p3;
+	private final double p4;
+	private final double p5;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param valueOffset
+	 *            The byte offset of the raw value within the record.
+	 * @param byteOrder
+	 *            The byte order of the raw value.
+	 * @param bits
+	 *            The number of bits of the raw value.
+	 * @param isInteger
+	 *            True, if the raw value is an integer, otherwise a floating
+	 *            point number.
+	 * @param isUnsigned
+	 *            True, if the raw value is an unsigned integer.
+	 * @param p
+	 *            The six parameters of the rational conversion.
+	 */
+	public RationalConversion(int valueOffset, ByteOrder byteOrder, int bits, boolean isInteger, boolean isUnsigned,
+			double[] p) {
+		super(valueOffset, byteOrder, bits, isInteger, isUnsigned);
+		this.p0 = p[0];
+		this.p1 = p[1];
+		this.p2 = p[2];
+		this.p3 = p[3];
+		this.p4 = p[4];
+		this.p5 = p[5];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double convert(double x) {
+		return ((p0 * x + p1) * x + p2) / ((p3 * x + p4) * x + p5);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void convert(double[] values, int count) {
+		for (int i = 0; i < count; i++) {
+			double x = values[i];
+			values[i] = ((p0 * x + p1) * x + p2) / ((p3 * x + p4) * x + p5);
+		}
+	}
+
+}
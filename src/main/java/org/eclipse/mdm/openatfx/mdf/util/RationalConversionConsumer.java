@@ -0,0 +1,77 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Applies a rational conversion to the values of a channel and writes the
+ * physical values as 8 byte little endian IEEE 754 floating point numbers.
+ * <p>
+ * Supported raw values are signed and unsigned integers with 8, 16 and 32 bits,
+ * signed integers with 64 bits and floating point numbers with 32 and 64 bits.
+ * The caller has to validate the value type before creating the consumer.
+ * <p>
+ * Record-major counterpart of {@link RationalConversionWriter}, which converts
+ * blocks of records in parallel.
+ */
+public class RationalConversionConsumer extends SidecarConsumer {
+
+	private final RationalConversion conversion;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param channel
+	 *            The file channel of the file receiving the physical values.
+	 * @param pos
+	 *            The start position of the region to write.
+	 * @param bufferSize
+	 *            The size of the write buffer.
+	 * @param valueOffset
+	 *            The byte offset of the raw value within the record.
+	 * @param byteOrder
+	 *            The byte order of the raw value.
+	 * @param bits
+	 *            The number of bits of the raw value.
+	 * @param isInteger
+	 *            True, if the raw value is an integer, otherwise a floating
+	 *            point number.
+	 * @param isUnsigned
+	 *            True, if the raw value is an unsigned integer.
+	 * @param p
+	 *            The six parameters of the rational conversion.
+	 */
+	public RationalConversionConsumer(FileChannel channel, long pos, int bufferSize, int valueOffset,
+			ByteOrder byteOrder, int bits, boolean isInteger, boolean isUnsigned, double[] p) {
+		super(channel, pos, Math.max(8, bufferSize & ~7), ByteOrder.LITTLE_ENDIAN);
+		this.conversion = new RationalConversion(valueOffset, byteOrder, bits, isInteger, isUnsigned, p);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void consume(ByteBuffer record, int offset) throws IOException {
+		out.putDouble(conversion.convert(conversion.read(record, offset)));
+		flushIfFull();
+	}
+
+}
@@ -0,0 +1,228 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Random access reader for fixed size records stored in one or more data
+ * sections of a MDF file, the counterpart of the sequential
+ * {@link RecordReader}.
+ * <p>
+ * The file position of a record is computed from its index, the section
+ * containing the record is found by binary search over the record counts of
+ * the sections. A range of records is read with a single read call per
+ * section into a shared buffer, a range already held by the buffer is
+ * returned without reading again.
+ */
+public class RecordAccessor {
+
+	private final int recordSize;
+	private final int bufferSize;
+	private final List<Section> sections;
+
+	private ByteOrder byteOrder;
+	private ByteBuffer buffer;
+	private long recordCount;
+
+	// index of the first record and number of records held by the buffer
+	private long bufferFirst;
+	private int bufferCount;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param recordSize
+	 *            The size of a single record in bytes.
+	 * @param bufferSize
+	 *            The maximum size of the read buffer in bytes, it is rounded
+	 *            down to full records.
+	 */
+	public RecordAccessor(int recordSize, int bufferSize) {
+		if (recordSize < 1) {
+			throw new IllegalArgumentException(new StringBuilder().append("Invalid record size: ").append(recordSize).toString());
+		}
+		this.recordSize = recordSize;
+		this.bufferSize = Math.max(1, bufferSize / recordSize) * recordSize;
+		this.sections = new ArrayList<>();
+		this.byteOrder = ByteOrder.LITTLE_ENDIAN;
+	}
+
+	private RecordAccessor(RecordAccessor source) {
+		this.recordSize = source.recordSize;
+		this.bufferSize = source.bufferSize;
+		this.sections = source.sections;
+		this.byteOrder = source.byteOrder;
+		this.recordCount = source.recordCount;
+	}
+
+	/**
+	 * Creates a new accessor for the same records with an own read buffer,
+	 * e.g. to read different ranges of records in parallel. Sections must not
+	 * be added after duplicating.
+	 *
+	 * @return The new accessor.
+	 */
+	public RecordAccessor duplicate() {
+		return new RecordAccessor(this);
+	}
+
+	/**
+	 * Appends a data section. Sections are indexed in the order they have
+	 * been added. Trailing bytes not forming a complete record are ignored.
+	 *
+	 * @param channel
+	 *            The channel to read the section from.
+	 * @param pos
+	 *            The start position of the first record.
+	 * @param length
+	 *            The length of the section in bytes.
+	 */
+	public void addSection(SeekableByteChannel channel, long pos, long length) {
+		long count = length / recordSize;
+		if (count > 0) {
+			sections.add(new Section(channel, pos, recordCount, count));
+			recordCount += count;
+		}
+	}
+
+	/**
+	 * Sets the byte order of the returned record buffer.
+	 *
+	 * @param byteOrder
+	 *            The byte order.
+	 */
+	public void setByteOrder(ByteOrder byteOrder) {
+		this.byteOrder = byteOrder;
+		if (buffer != null) {
+			buffer.order(byteOrder);
+		}
+	}
+
+	/**
+	 * @return The size of a single record in bytes.
+	 */
+	public int getRecordSize() {
+		return recordSize;
+	}
+
+	/**
+	 * @return The total number of records of all added sections.
+	 */
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * Reads a range of consecutive records. Fewer records than requested are
+	 * returned if the range exceeds the buffer size or the end of a section,
+	 * the remaining records have to be read by further calls.
+	 *
+	 * @param index
+	 *            The zero based index of the first record.
+	 * @param maxCount
+	 *            The maximum number of records to read, at least 1.
+	 * @return The shared read buffer, positioned at the first record. The
+	 *         limit is set to the end of the last record read. The buffer must
+	 *         not be kept after the next call.
+	 * @throws IOException
+	 *             Error reading from MDF file.
+	 */
+	public ByteBuffer read(long index, int maxCount) throws IOException {
+		if (index < 0 || index >= recordCount || maxCount < 1) {
+			throw new IndexOutOfBoundsException(new StringBuilder().append("Invalid record range: index=").append(index).append(", count=").append(maxCount)
+					.append(", records=").append(recordCount).toString());
+		}
+
+		// already in buffer
+		if (buffer != null && index >= bufferFirst && index < bufferFirst + bufferCount) {
+			int first = (int) (index - bufferFirst);
+			int count = Math.min(maxCount, bufferCount - first);
+			buffer.limit((first + count) * recordSize);
+			buffer.position(first * recordSize);
+			return buffer;
+		}
+
+		// allocate lazily, never more than the data to read
+		if (buffer == null) {
+			buffer = ByteBuffer.allocate((int) Math.min(bufferSize, recordCount * recordSize));
+			buffer.order(byteOrder);
+		}
+
+		Section section = sections.get(findSection(index));
+		long first = index - section.firstRecord;
+		int count = (int) Math.min(Math.min(maxCount, buffer.capacity() / recordSize), section.count - first);
+		long pos = section.pos + first * recordSize;
+		buffer.clear();
+		buffer.limit(count * recordSize);
+		bufferCount = 0;
+		int read = FileUtil.readFully(section.channel, buffer, pos);
+		if (read < buffer.limit()) {
+			throw new IOException(new StringBuilder().append("Unexpected end of file reading records at position ").append(pos).toString());
+		}
+		bufferFirst = index;
+		bufferCount = count;
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Returns the index of the section containing given record.
+	 *
+	 * @param index
+	 *            The record index.
+	 * @return The section index.
+	 */
+	private int findSection(long index) {
+		int low = 0;
+		int high = sections.size() - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (sections.get(mid).firstRecord <= index) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * A data section to read.
+	 */
+	private static class Section {
+
+		private final SeekableByteChannel channel;
+		private final long pos;
+		private final long firstRecord;
+		private final long count;
+
+		private Section(SeekableByteChannel channel, long pos, long firstRecord, long count) {
+			this.channel = channel;
+			this.pos = pos;
+			this.firstRecord = firstRecord;
+			this.count = count;
+		}
+
+	}
+
+}
@@ -0,0 +1,52 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Consumer of the records of a channel group, registered at a
+ * {@link RecordScanner}.
+ * <p>
+ * All consumers of a scanner share the same record buffer, a consumer must
+ * therefore only use absolute get methods and must neither change the
+ * position nor the limit of the buffer.
+ */
+public interface RecordConsumer {
+
+	/**
+	 * Consumes a single record.
+	 *
+	 * @param record
+	 *            The buffer containing the record.
+	 * @param offset
+	 *            The index of the first record byte within the buffer.
+	 * @throws IOException
+	 *             Error writing the extracted values.
+	 */
+	void consume(ByteBuffer record, int offset) throws IOException;
+
+	/**
+	 * Called once after the last record has been consumed.
+	 *
+	 * @throws IOException
+	 *             Error writing the extracted values.
+	 */
+	void finish() throws IOException;
+
+}
@@ -0,0 +1,232 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sequential reader for fixed size records stored in one or more data
+ * sections of a MDF file (e.g. the data of DT/RD blocks of a data list). A
+ * section may also be located in another file, e.g. the inflated data of a
+ * zipped block.
+ * <p>
+ * The record data is read in large chunks into a single buffer, so a record
+ * costs no system call. Each call to {@link #next()} returns the shared buffer
+ * with position and limit set to the bounds of the next record, the buffer
+ * must therefore not be kept after the next call. The record bytes have to be
+ * read with relative or absolute get methods based on the buffer position.
+ */
+public class RecordReader {
+
+	/** The default read buffer size (8 MB) */
+	public static final int DEFAULT_BUFFER_SIZE = 8 * 1024 * 1024;
+
+	private final SeekableByteChannel channel;
+	private final int recordSize;
+	private final int bufferSize;
+	private final List<Section> sections;
+
+	private ByteOrder byteOrder;
+	private ByteBuffer buffer;
+	private long totalBytes;
+
+	// current data section
+	private int nextSection;
+	private SeekableByteChannel sectionChannel;
+	private long sectionPos;
+	private long sectionRemaining;
+
+	// start of next record and end of valid data within buffer
+	private int offset;
+	private int filled;
+
+	private long recordIndex;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param channel
+	 *            The byte channel pointing to the MDF file.
+	 * @param recordSize
+	 *            The size of a single record in bytes.
+	 * @param bufferSize
+	 *            The maximum size of the read buffer in bytes, it is rounded
+	 *            down to full records.
+	 */
+	public RecordReader(SeekableByteChannel channel, int recordSize, int bufferSize) {
+		if (recordSize < 1) {
+			throw new IllegalArgumentException(new StringBuilder().append("Invalid record size: ").append(recordSize).toString());
+		}
+		this.channel = channel;
+		this.recordSize = recordSize;
+		this.bufferSize = Math.max(1, bufferSize / recordSize) * recordSize;
+		this.sections = new ArrayList<>();
+		this.byteOrder = ByteOrder.BIG_ENDIAN;
+		this.recordIndex = -1;
+	}
+
+	/**
+	 * Appends a data section to read. Sections are read in the order they have
+	 * been added. Trailing bytes not forming a complete record are ignored.
+	 *
+	 * @param pos
+	 *            The start position of the first record.
+	 * @param length
+	 *            The length of the section in bytes.
+	 */
+	public void addSection(long pos, long length) {
+		addSection(channel, pos, length);
+	}
+
+	/**
+	 * Appends a data section located in given channel, see
+	 * {@link #addSection(long, long)}.
+	 *
+	 * @param sectionChannel
+	 *            The channel to read the section from.
+	 * @param pos
+	 *            The start position of the first record.
+	 * @param length
+	 *            The length of the section in bytes.
+	 */
+	public void addSection(SeekableByteChannel sectionChannel, long pos, long length) {
+		long bytes = length - length % recordSize;
+		if (bytes > 0) {
+			sections.add(new Section(sectionChannel, pos, bytes));
+			totalBytes += bytes;
+		}
+	}
+
+	/**
+	 * Sets the byte order of the returned record buffer.
+	 *
+	 * @param byteOrder
+	 *            The byte order.
+	 */
+	public void setByteOrder(ByteOrder byteOrder) {
+		this.byteOrder = byteOrder;
+		if (buffer != null) {
+			buffer.order(byteOrder);
+		}
+	}
+
+	/**
+	 * @return The size of a single record in bytes.
+	 */
+	public int getRecordSize() {
+		return recordSize;
+	}
+
+	/**
+	 * @return The total number of records of all added sections.
+	 */
+	public long getRecordCount() {
+		return totalBytes / recordSize;
+	}
+
+	/**
+	 * @return The zero based index of the record returned by the last call of
+	 *         {@link #next()}, -1 if not yet called.
+	 */
+	public long getRecordIndex() {
+		return recordIndex;
+	}
+
+	/**
+	 * Moves to the next record.
+	 *
+	 * @return The shared read buffer positioned at the start of the record,
+	 *         the limit is set to the end of the record. Null if there are no
+	 *         more records.
+	 * @throws IOException
+	 *             Error reading from MDF file.
+	 */
+	public ByteBuffer next() throws IOException {
+		if (offset + recordSize > filled && !fill()) {
+			return null;
+		}
+		buffer.limit(offset + recordSize);
+		buffer.position(offset);
+		offset += recordSize;
+		recordIndex++;
+		return buffer;
+	}
+
+	/**
+	 * Restarts reading at the first record of the first section.
+	 */
+	public void rewind() {
+		nextSection = 0;
+		sectionRemaining = 0;
+		offset = 0;
+		filled = 0;
+		recordIndex = -1;
+	}
+
+	private boolean fill() throws IOException {
+		while (sectionRemaining == 0) {
+			if (nextSection == sections.size()) {
+				return false;
+			}
+			Section section = sections.get(nextSection++);
+			sectionChannel = section.channel;
+			sectionPos = section.pos;
+			sectionRemaining = section.length;
+		}
+
+		// allocate lazily, never more than the data to read
+		if (buffer == null) {
+			buffer = ByteBuffer.allocate((int) Math.min(bufferSize, totalBytes));
+			buffer.order(byteOrder);
+		}
+
+		int length = (int) Math.min(buffer.capacity(), sectionRemaining);
+		buffer.clear();
+		buffer.limit(length);
+		int read = FileUtil.readFully(sectionChannel, buffer, sectionPos);
+		if (read < length) {
+			throw new IOException(new StringBuilder().append("Unexpected end of file reading records at position ").append(sectionPos).toString());
+		}
+		sectionPos += length;
+		sectionRemaining -= length;
+		offset = 0;
+		filled = length;
+		return true;
+	}
+
+	/**
+	 * A data section to read.
+	 */
+	private static class Section {
+
+		private final SeekableByteChannel channel;
+		private final long pos;
+		private final long length;
+
+		private Section(SeekableByteChannel channel, long pos, long length) {
+			this.channel = channel;
+			this.pos = pos;
+			this.length = length;
+		}
+
+	}
+
+}
@@ -0,0 +1,90 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Record-major extraction engine: reads the records of a data section once and
+ * hands every record to all registered {@link RecordConsumer}s.
+ * <p>
+ * Channels requiring computed output (e.g. rational conversion or
+ * invalidation flags) register a consumer each, so the data is read once per
+ * channel group and not once per channel.
+ */
+public class RecordScanner {
+
+	private final List<RecordConsumer> consumers;
+
+	/**
+	 * Constructor.
+	 */
+	public RecordScanner() {
+		this.consumers = new ArrayList<>();
+	}
+
+	/**
+	 * Registers a record consumer.
+	 *
+	 * @param consumer
+	 *            The consumer.
+	 */
+	public void addConsumer(RecordConsumer consumer) {
+		consumers.add(consumer);
+	}
+
+	/**
+	 * @return The number of registered consumers.
+	 */
+	public int getConsumerCount() {
+		return consumers.size();
+	}
+
+	/**
+	 * Reads all records and passes them to the registered consumers. Nothing is
+	 * read if there are no consumers.
+	 *
+	 * @param records
+	 *            The records to read.
+	 * @return The number of records read.
+	 * @throws IOException
+	 *             Error reading from MDF file or writing extracted values.
+	 */
+	public long scan(RecordReader records) throws IOException {
+		if (consumers.isEmpty()) {
+			return 0;
+		}
+		RecordConsumer[] array = consumers.toArray(new RecordConsumer[consumers.size()]);
+		long count = 0;
+		ByteBuffer record;
+		while ((record = records.next()) != null) {
+			int offset = record.position();
+			for (RecordConsumer consumer : array) {
+				consumer.consume(record, offset);
+			}
+			count++;
+		}
+		for (RecordConsumer consumer : array) {
+			consumer.finish();
+		}
+		return count;
+	}
+
+}
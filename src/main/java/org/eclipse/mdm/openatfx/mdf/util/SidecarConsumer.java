@@ -0,0 +1,87 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Base class of record consumers writing one value per record into a reserved
+ * region of a sidecar file.
+ * <p>
+ * The values are buffered and written with positional writes, so several
+ * consumers may write their regions of the same file within one scan.
+ */
+public abstract class SidecarConsumer implements RecordConsumer {
+
+	private final FileChannel channel;
+	private long pos;
+
+	/** The write buffer, values are appended with relative put methods */
+	protected final ByteBuffer out;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param channel
+	 *            The file channel of the sidecar file.
+	 * @param pos
+	 *            The start position of the region to write.
+	 * @param bufferSize
+	 *            The size of the write buffer, has to be a multiple of the
+	 *            value size.
+	 * @param byteOrder
+	 *            The byte order of the written values.
+	 */
+	protected SidecarConsumer(FileChannel channel, long pos, int bufferSize, ByteOrder byteOrder) {
+		this.channel = channel;
+		this.pos = pos;
+		this.out = ByteBuffer.allocate(bufferSize);
+		this.out.order(byteOrder);
+	}
+
+	/**
+	 * Writes the buffer to the file if it is full.
+	 *
+	 * @throws IOException
+	 *             Error writing to sidecar file.
+	 */
+	protected void flushIfFull() throws IOException {
+		if (!out.hasRemaining()) {
+			flush();
+		}
+	}
+
+	private void flush() throws IOException {
+		out.flip();
+		while (out.hasRemaining()) {
+			pos += channel.write(out, pos);
+		}
+		out.clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void finish() throws IOException {
+		flush();
+	}
+
+}
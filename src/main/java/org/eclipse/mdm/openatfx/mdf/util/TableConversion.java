@@ -0,0 +1,72 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.nio.ByteOrder;
+
+/**
+ * Tabular conversion of the raw values of a channel, which looks up the
+ * physical values with a numeric {@link LookupConversion}.
+ */
+public class TableConversion extends ValueConversion {
+
+	private final LookupConversion lookup;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param valueOffset
+	 *            The byte offset of the raw value within the record.
+	 * @param byteOrder
+	 *            The byte order of the raw value.
+	 * @param bits
+	 *            The number of bits of the raw value.
+	 * @param isInteger
+	 *            True, if the raw value is an integer, otherwise a floating
+	 *            point number.
+	 * @param isUnsigned
+	 *            True, if the raw value is an unsigned integer.
+	 * @param lookup
+	 *            The lookup conversion with numeric input and output, may be
+	 *            shared with other conversions.
+	 */
+	public TableConversion(int valueOffset, ByteOrder byteOrder, int bits, boolean isInteger, boolean isUnsigned,
+			LookupConversion lookup) {
+		super(valueOffset, byteOrder, bits, isInteger, isUnsigned);
+		if (!lookup.hasNumericInput() || !lookup.hasNumericOutput()) {
+			throw new IllegalArgumentException("lookup conversion has to map values to values");
+		}
+		this.lookup = lookup;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double convert(double x) {
+		return lookup.convert(x);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void convert(double[] values, int count) {
+		lookup.convert(values, 0, count);
+	}
+
+}
@@ -0,0 +1,165 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Conversion of the raw values of a channel into physical values, which cannot
+ * be described in ASAM ODS and therefore has to be calculated.
+ * <p>
+ * The raw values of a range of records are decoded into a primitive array
+ * first, the conversion is then applied to the whole array.
+ * <p>
+ * Supported raw values are signed and unsigned integers with 8, 16 and 32 bits,
+ * signed integers with 64 bits and floating point numbers with 32 and 64 bits.
+ * The caller has to validate the value type before creating the conversion.
+ */
+public abstract class ValueConversion {
+
+	private final int valueOffset;
+	private final ByteOrder byteOrder;
+	private final int bits;
+	private final boolean isInteger;
+	private final boolean isUnsigned;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param valueOffset
+	 *            The byte offset of the raw value within the record.
+	 * @param byteOrder
+	 *            The byte order of the raw value.
+	 * @param bits
+	 *            The number of bits of the raw value.
+	 * @param isInteger
+	 *            True, if the raw value is an integer, otherwise a floating
+	 *            point number.
+	 * @param isUnsigned
+	 *            True, if the raw value is an unsigned integer.
+	 */
+	protected ValueConversion(int valueOffset, ByteOrder byteOrder, int bits, boolean isInteger,
+			boolean isUnsigned) {
+		this.valueOffset = valueOffset;
+		this.byteOrder = byteOrder;
+		this.bits = bits;
+		this.isInteger = isInteger;
+		this.isUnsigned = isUnsigned;
+	}
+
+	/**
+	 * Converts a single raw value.
+	 *
+	 * @param x
+	 *            The raw value.
+	 * @return The physical value.
+	 */
+	public abstract double convert(double x);
+
+	/**
+	 * Converts the raw values of an array in place. Implementations may be
+	 * called concurrently for different arrays.
+	 *
+	 * @param values
+	 *            The raw values, replaced by the physical values.
+	 * @param count
+	 *            The number of values to convert.
+	 */
+	public abstract void convert(double[] values, int count);
+
+	/**
+	 * Reads the raw value of a single record.
+	 *
+	 * @param record
+	 *            The buffer containing the record.
+	 * @param offset
+	 *            The index of the first record byte within the buffer.
+	 * @return The raw value.
+	 */
+	public double read(ByteBuffer record, int offset) {
+		int index = offset + valueOffset;
+		boolean swap = record.order() != byteOrder;
+		if (isInteger) {
+			switch (bits) {
+			case 8:
+				return isUnsigned ? record.get(index) & 0xFF : record.get(index);
+			case 16:
+				short s = swap ? Short.reverseBytes(record.getShort(index)) : record.getShort(index);
+				return isUnsigned ? s & 0xFFFF : s;
+			case 32:
+				int i = swap ? Integer.reverseBytes(record.getInt(index)) : record.getInt(index);
+				return isUnsigned ? i & 0xFFFFFFFFL : i;
+			default:
+				return swap ? Long.reverseBytes(record.getLong(index)) : record.getLong(index);
+			}
+		} else if (bits == 32) {
+			int i = swap ? Integer.reverseBytes(record.getInt(index)) : record.getInt(index);
+			return Float.intBitsToFloat(i);
+		}
+		long l = swap ? Long.reverseBytes(record.getLong(index)) : record.getLong(index);
+		return Double.longBitsToDouble(l);
+	}
+
+	/**
+	 * Decodes the raw values of consecutive records. The value type is
+	 * resolved once per call, not once per value.
+	 *
+	 * @param records
+	 *            The buffer containing the records, starting at its position.
+	 * @param recordSize
+	 *            The size of a single record in bytes.
+	 * @param count
+	 *            The number of records to decode.
+	 * @param dst
+	 *            The array receiving the raw values, starting at index 0.
+	 */
+	public void decode(ByteBuffer records, int recordSize, int count, double[] dst) {
+		int index = records.position() + valueOffset;
+		boolean swap = records.order() != byteOrder;
+		if (isInteger && bits == 8) {
+			for (int i = 0; i < count; i++, index += recordSize) {
+				dst[i] = isUnsigned ? records.get(index) & 0xFF : records.get(index);
+			}
+		} else if (isInteger && bits == 16) {
+			for (int i = 0; i < count; i++, index += recordSize) {
+				short s = swap ? Short.reverseBytes(records.getShort(index)) : records.getShort(index);
+				dst[i] = isUnsigned ? s & 0xFFFF : s;
+			}
+		} else if (isInteger && bits == 32) {
+			for (int i = 0; i < count; i++, index += recordSize) {
+				int v = swap ? Integer.reverseBytes(records.getInt(index)) : records.getInt(index);
+				dst[i] = isUnsigned ? v & 0xFFFFFFFFL : v;
+			}
+		} else if (isInteger) {
+			for (int i = 0; i < count; i++, index += recordSize) {
+				dst[i] = swap ? Long.reverseBytes(records.getLong(index)) : records.getLong(index);
+			}
+		} else if (bits == 32) {
+			for (int i = 0; i < count; i++, index += recordSize) {
+				int v = swap ? Integer.reverseBytes(records.getInt(index)) : records.getInt(index);
+				dst[i] = Float.intBitsToFloat(v);
+			}
+		} else {
+			for (int i = 0; i < count; i++, index += recordSize) {
+				long v = swap ? Long.reverseBytes(records.getLong(index)) : records.getLong(index);
+				dst[i] = Double.longBitsToDouble(v);
+			}
+		}
+	}
+
+}
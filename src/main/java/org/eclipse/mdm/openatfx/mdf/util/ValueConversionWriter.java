@@ -0,0 +1,202 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes the physical values of channels with a {@link ValueConversion} as 8
+ * byte little endian IEEE 754 floating point numbers into reserved regions of
+ * a sidecar file.
+ * <p>
+ * The records are split into contiguous ranges, which are converted in
+ * parallel. Each range is read block by block, the raw values of a block are
+ * decoded into a primitive array, converted in place and written with a single
+ * positional write per channel. The position of a value within the file is
+ * given by the region start of its channel and the record index, so the
+ * ranges can be written in any order.
+ */
+public class ValueConversionWriter {
+
+	// ranges smaller than this are not worth a thread of their own
+	private static final long MIN_RECORDS_PER_TASK = 64 * 1024;
+
+	private final RecordAccessor records;
+	private final int threads;
+	private final List<Target> targets;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param records
+	 *            The records to convert, each parallel range reads with an own
+	 *            buffer of the size of the accessor buffer.
+	 * @param threads
+	 *            The maximum number of threads.
+	 */
+	public ValueConversionWriter(RecordAccessor records, int threads) {
+		this.records = records;
+		this.threads = Math.max(1, threads);
+		this.targets = new ArrayList<>();
+	}
+
+	/**
+	 * Adds a channel to convert.
+	 *
+	 * @param conversion
+	 *            The conversion of the channel.
+	 * @param pos
+	 *            The start position of the region receiving the values of all
+	 *            records.
+	 */
+	public void addChannel(ValueConversion conversion, long pos) {
+		targets.add(new Target(conversion, pos));
+	}
+
+	/**
+	 * Converts all records and writes the values of all added channels.
+	 *
+	 * @param channel
+	 *            The file channel of the sidecar file.
+	 * @throws IOException
+	 *             Error reading from MDF file or writing sidecar file.
+	 */
+	public void write(FileChannel channel) throws IOException {
+		long count = records.getRecordCount();
+		if (count < 1 || targets.isEmpty()) {
+			return;
+		}
+
+		int parts = (int) Math.max(1, Math.min(threads, count / MIN_RECORDS_PER_TASK));
+		List<Callable<Void>> tasks = new ArrayList<>(parts);
+		for (int i = 0; i < parts; i++) {
+			long first = count * i / parts;
+			long last = count * (i + 1) / parts;
+			tasks.add(new RangeTask(i == 0 ? records : records.duplicate(), first, last - first, channel));
+		}
+
+		if (parts == 1) {
+			try {
+				tasks.get(0).call();
+			} catch (IOException | RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IOException(e);
+			}
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(parts);
+		try {
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while converting values", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Error converting values", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Converts a range of records.
+	 */
+	private class RangeTask implements Callable<Void> {
+
+		private final RecordAccessor accessor;
+		private final long first;
+		private final long count;
+		private final FileChannel channel;
+
+		private RangeTask(RecordAccessor accessor, long first, long count, FileChannel channel) {
+			this.accessor = accessor;
+			this.first = first;
+			this.count = count;
+			this.channel = channel;
+		}
+
+		@Override
+		public Void call() throws IOException {
+			int recordSize = accessor.getRecordSize();
+			long end = first + count;
+			double[] values = null;
+			ByteBuffer out = null;
+			DoubleBuffer outValues = null;
+
+			long index = first;
+			while (index < end) {
+				ByteBuffer block = accessor.read(index, (int) Math.min(Integer.MAX_VALUE, end - index));
+				int n = block.remaining() / recordSize;
+				if (values == null || values.length < n) {
+					values = new double[n];
+					out = ByteBuffer.allocate(n * 8);
+					out.order(ByteOrder.LITTLE_ENDIAN);
+					outValues = out.asDoubleBuffer();
+				}
+				for (Target target : targets) {
+					target.conversion.decode(block, recordSize, n, values);
+					target.conversion.convert(values, n);
+
+					outValues.clear();
+					outValues.put(values, 0, n);
+					out.clear();
+					out.limit(n * 8);
+					long pos = target.pos + index * 8;
+					while (out.hasRemaining()) {
+						pos += channel.write(out, pos);
+					}
+				}
+				index += n;
+			}
+			return null;
+		}
+
+	}
+
+	/**
+	 * A channel to convert.
+	 */
+	private static class Target {
+
+		private final ValueConversion conversion;
+		private final long pos;
+
+		private Target(ValueConversion conversion, long pos) {
+			this.conversion = conversion;
+			this.pos = pos;
+		}
+
+	}
+
+}
@@ -0,0 +1,200 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MDFFileTest {
+
+	private static final String mdf4IntegerTypes = "org/eclipse/mdm/openatfx/mdf/mdf4/datatypes/integer_types/Vector_IntegerTypes.MF4";
+	private static final String mdf4LinearConversion = "org/eclipse/mdm/openatfx/mdf/mdf4/conversion/linear_conversion/Vector_LinearConversion.mf4";
+	private static final String mdf4CANape = "org/eclipse/mdm/openatfx/mdf/mdf4/simple/Vector_CANape.MF4";
+	private static final String mdf3RealTypes = "org/eclipse/mdm/openatfx/mdf/mdf3/NI_RealTypes.mdf";
+	private static final String mdf4SingleDZ = "org/eclipse/mdm/openatfx/mdf/mdf4/compressed_data/simple/Vector_SingleDZ_Deflate.mf4";
+
+	@Test
+	public void testReadIntegerTypes() throws Exception {
+		try (MDFFile mdfFile = MDFFile.open(getPath(mdf4IntegerTypes))) {
+			assertEquals(1, mdfFile.getChannelGroups().size());
+			MDFChannelGroup channelGroup = mdfFile.channelGroup(0);
+			assertEquals(201, channelGroup.getRecordCount());
+			assertEquals("t", channelGroup.getMasterChannel().getName());
+
+			// all byte orders and sizes
+			for (String type : new String[] { "UINT16_LE", "UINT16_BE", "UINT32_LE", "UINT32_BE", "UINT64_LE", "UINT64_BE" }) {
+				assertArrayEquals(new long[] { 0, 1, 2, 3 }, channelGroup.channel("Counter_" + type).readLongs(0, 4));
+			}
+			for (String type : new String[] { "INT16_LE", "INT16_BE", "INT32_LE", "INT32_BE", "INT64_LE", "INT64_BE" }) {
+				assertArrayEquals(new long[] { 100, 99, 98, 97 }, channelGroup.channel("Counter_" + type).readLongs(0, 4));
+			}
+			assertArrayEquals(new long[] { 0, 1, 0, 1 }, channelGroup.channel("Bit_Signal").readLongs(0, 4));
+
+			// caller provided buffer
+			double[] values = new double[6];
+			channelGroup.channel("Counter_INT32_LE").readDoubles(10, 4, values, 1);
+			assertArrayEquals(new double[] { 0, 90, 89, 88, 87, 0 }, values, 0);
+		}
+	}
+
+	@Test
+	public void testLinearConversion() throws Exception {
+		try (MDFFile mdfFile = MDFFile.open(getPath(mdf4LinearConversion))) {
+			MDFChannel channel = mdfFile.channelGroup(0).channel("Data channel");
+			assertTrue(channel.isNumeric());
+			double[] values = channel.readDoubles(0, 4);
+			assertEquals(-4.8, values[0], 1e-9);
+			assertEquals(-8.0, values[1], 1e-9);
+			assertEquals(-11.2, values[2], 1e-9);
+			assertEquals(-14.4, values[3], 1e-9);
+		}
+	}
+
+	@Test
+	public void testRandomAccess() throws Exception {
+		try (MDFFile mdfFile = MDFFile.open(getPath(mdf4CANape))) {
+			assertEquals(2, mdfFile.getChannelGroups().size());
+			for (MDFChannelGroup channelGroup : mdfFile.getChannelGroups()) {
+				int count = (int) channelGroup.getRecordCount();
+				for (MDFChannel channel : channelGroup.getChannels()) {
+					double[] all = channel.readDoubles(0, count);
+
+					// ranges in reverse order must match the complete read
+					for (int from = count - 7; from > -7; from -= 7) {
+						int start = Math.max(0, from);
+						double[] range = channel.readDoubles(start, from + 7 - start);
+						for (int i = 0; i < range.length; i++) {
+							assertEquals(all[start + i], range[i], 0);
+						}
+					}
+				}
+			}
+
+			MDFChannel channel = mdfFile.channelGroup(0).channel("dwordCounter");
+			try {
+				channel.readLongs(channel.getRecordCount() - 1, 2);
+				fail("IndexOutOfBoundsException expected");
+			} catch (IndexOutOfBoundsException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testBatches() throws Exception {
+		try (MDFFile mdfFile = MDFFile.open(getPath(mdf4CANape))) {
+			MDFChannelGroup channelGroup = mdfFile.channelGroup(0);
+			List<MDFChannel> channels = channelGroup.getChannels();
+			int count = (int) channelGroup.getRecordCount();
+			try (MDFBatchIterator batches = channelGroup.batches(channels, 7)) {
+				long expectedFirst = 0;
+				while (batches.next()) {
+					assertEquals(expectedFirst, batches.getFirstRecord());
+					assertEquals(Math.min(7, count - expectedFirst), batches.getSize());
+					for (int column = 0; column < channels.size(); column++) {
+						double[] expected = channels.get(column).readDoubles(expectedFirst, batches.getSize());
+						for (int i = 0; i < expected.length; i++) {
+							assertEquals(expected[i], batches.getValues(column)[i], 0);
+						}
+					}
+					expectedFirst += batches.getSize();
+				}
+				assertEquals(count, expectedFirst);
+			}
+
+			// cancel mid-stream, buffers are reused between batches
+			MDFBatchIterator batches = channelGroup.batches(channels.subList(0, 1), 5);
+			assertTrue(batches.next());
+			double[] values = batches.getValues(0);
+			assertTrue(batches.next());
+			assertSame(values, batches.getValues(0));
+			batches.cancel();
+			assertFalse(batches.next());
+			assertEquals(0, batches.getSize());
+		}
+	}
+
+	@Test
+	public void testReadMDF3() throws Exception {
+		try (MDFFile mdfFile = MDFFile.open(getPath(mdf3RealTypes))) {
+			MDFChannelGroup channelGroup = mdfFile.channelGroup(0);
+			assertEquals(202, channelGroup.getRecordCount());
+			assertEquals("t", channelGroup.getMasterChannel().getName());
+			for (String type : new String[] { "FLOAT_LE", "FLOAT_BE", "DOUBLE_LE", "DOUBLE_BE" }) {
+				MDFChannel channel = channelGroup.channel("Counter_" + type);
+				assertFalse(channel.isInteger());
+				assertArrayEquals(new double[] { -10.0, -9.9, -9.8, -9.7 }, channel.readDoubles(0, 4), 1e-6);
+				try {
+					channel.readLongs(0, 1);
+					fail("IOException expected");
+				} catch (IOException e) {
+					// expected
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNoSidecarFiles() throws Exception {
+		Path dir = Files.createTempDirectory("mdffile");
+		Path mdfFile = Files.copy(getPath(mdf4SingleDZ), dir.resolve("Vector_SingleDZ_Deflate.mf4"));
+		try {
+			try (MDFFile file = MDFFile.open(mdfFile)) {
+				MDFChannelGroup channelGroup = file.channelGroup(0);
+				assertEquals(10000, channelGroup.getRecordCount());
+				assertArrayEquals(new double[] { 0, 1, 2 }, channelGroup.channel("Sawtooth data").readDoubles(0, 3), 0);
+				assertArrayEquals(new double[] { 100, 90, 80 }, channelGroup.channel("Triangle data").readDoubles(0, 3), 0);
+			}
+
+			// zipped blocks are inflated into a temporary cache
+			List<Path> files = new ArrayList<>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+				for (Path path : stream) {
+					files.add(path);
+				}
+			}
+			assertEquals(1, files.size());
+			assertEquals(mdfFile, files.get(0));
+		} finally {
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+				for (Path path : stream) {
+					Files.delete(path);
+				}
+			}
+			Files.delete(dir);
+		}
+	}
+
+	private static Path getPath(String resource) throws Exception {
+		return Paths.get(ClassLoader.getSystemResource(resource).toURI());
+	}
+
+}
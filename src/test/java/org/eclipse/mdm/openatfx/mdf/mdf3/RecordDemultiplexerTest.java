@@ -0,0 +1,157 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf3;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
+import org.junit.After;
+import org.junit.Test;
+
+public class RecordDemultiplexerTest {
+
+	private static final int CG_BLOCK_SIZE = 26;
+
+	private static final int[] RECORD_IDS = { 1, 2, 7 };
+	private static final int[] DATA_RECORD_SIZES = { 3, 8, 1 };
+	private static final int[] RECORDS = { 100, 37, 250 };
+
+	private Path file;
+	private long dataStart;
+	private ByteArrayOutputStream[] expected;
+	private Path existing;
+
+	@After
+	public void tearDown() throws Exception {
+		if (file != null) {
+			Files.deleteIfExists(file);
+			Files.deleteIfExists(file.resolveSibling(file.getFileName() + RecordDemultiplexer.FILE_SUFFIX));
+		}
+		if (existing != null) {
+			Files.deleteIfExists(existing);
+		}
+	}
+
+	@Test
+	public void testLeadingRecordId() throws IOException {
+		createFile(1, false);
+		assertDemultiplexed(1);
+	}
+
+	@Test
+	public void testLeadingAndTrailingRecordId() throws IOException {
+		createFile(2, false);
+		assertDemultiplexed(2);
+	}
+
+	@Test(expected = IOException.class)
+	public void testTrailingRecordIdMismatch() throws IOException {
+		createFile(2, true);
+		assertDemultiplexed(2);
+	}
+
+	@Test
+	public void testExistingSidecarFile() throws IOException {
+		createFile(1, false);
+
+		// the existing sidecar file may be referenced, it is left untouched
+		Path sidecarFile = file.resolveSibling(file.getFileName() + RecordDemultiplexer.FILE_SUFFIX);
+		byte[] content = { 1, 2, 3, 4, 5 };
+		Files.write(sidecarFile, content);
+		existing = assertDemultiplexed(1);
+		assertFalse(sidecarFile.equals(existing));
+		assertArrayEquals(content, Files.readAllBytes(sidecarFile));
+	}
+
+	private Path assertDemultiplexed(int noRecordIds) throws IOException {
+		try (SeekableByteChannel sbc = Files.newByteChannel(file, StandardOpenOption.READ);
+				RecordDemultiplexer demultiplexer = RecordDemultiplexer.open(file)) {
+			List<CGBLOCK> cgBlocks = new ArrayList<>();
+			for (int cg = 0; cg < RECORD_IDS.length; cg++) {
+				cgBlocks.add(CGBLOCK.read(sbc, cg * CG_BLOCK_SIZE));
+			}
+
+			// small read buffer, forces many refills
+			Map<Long, Long> sorted = demultiplexer.demultiplex(sbc, dataStart, noRecordIds, cgBlocks, 32);
+			for (int cg = 0; cg < cgBlocks.size(); cg++) {
+				ByteBuffer bb = ByteBuffer.allocate(expected[cg].size());
+				FileUtil.readFully(demultiplexer.getChannel(), bb, sorted.get(cgBlocks.get(cg).getPos()));
+				assertArrayEquals(expected[cg].toByteArray(), bb.array());
+			}
+			assertEquals(cgBlocks.size(), sorted.size());
+			return demultiplexer.getPath();
+		}
+	}
+
+	private void createFile(int noRecordIds, boolean corruptTrailingId) throws IOException {
+		expected = new ByteArrayOutputStream[RECORD_IDS.length];
+		for (int cg = 0; cg < expected.length; cg++) {
+			expected[cg] = new ByteArrayOutputStream();
+		}
+
+		// interleave the records of the channel groups
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		int[] written = new int[RECORD_IDS.length];
+		for (int i = 0; written[0] + written[1] + written[2] < RECORDS[0] + RECORDS[1] + RECORDS[2]; i++) {
+			int cg = i % 5 % RECORD_IDS.length;
+			if (written[cg] == RECORDS[cg]) {
+				continue;
+			}
+			byte[] record = new byte[1 + DATA_RECORD_SIZES[cg]];
+			Arrays.fill(record, (byte) (written[cg]++ + cg));
+			record[0] = (byte) RECORD_IDS[cg];
+			data.write(record);
+			expected[cg].write(record);
+			if (noRecordIds == 2) {
+				data.write(corruptTrailingId && i == 10 ? 0 : RECORD_IDS[cg]);
+			}
+		}
+
+		ByteBuffer bb = ByteBuffer.allocate(RECORD_IDS.length * CG_BLOCK_SIZE);
+		bb.order(ByteOrder.LITTLE_ENDIAN);
+		for (int cg = 0; cg < RECORD_IDS.length; cg++) {
+			bb.put(CGBLOCK.BLOCK_ID.getBytes());
+			bb.putShort((short) CG_BLOCK_SIZE);
+			bb.put(new byte[12]);
+			bb.putShort((short) RECORD_IDS[cg]);
+			bb.putShort((short) 1);
+			bb.putShort((short) DATA_RECORD_SIZES[cg]);
+			bb.putInt(RECORDS[cg]);
+		}
+		dataStart = bb.position();
+
+		file = Files.createTempFile("unsorted", ".dat");
+		Files.write(file, bb.array());
+		Files.write(file, data.toByteArray(), StandardOpenOption.APPEND);
+	}
+
+}
@@ -0,0 +1,110 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class BlockCacheTest {
+
+	private static final String[] TEXTS = { "first", "second text", "third" };
+
+	private static Path file;
+	private static long[] positions;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// write some TXBLOCKs
+		ByteBuffer bb = ByteBuffer.allocate(1024);
+		bb.order(ByteOrder.LITTLE_ENDIAN);
+		positions = new long[TEXTS.length];
+		for (int i = 0; i < TEXTS.length; i++) {
+			positions[i] = bb.position();
+			byte[] txt = TEXTS[i].getBytes(StandardCharsets.UTF_8);
+			bb.put("##TX".getBytes(StandardCharsets.ISO_8859_1));
+			bb.put(new byte[4]);
+			bb.putLong(24 + txt.length + 1);
+			bb.putLong(0);
+			bb.put(txt);
+			bb.put((byte) 0);
+			// 8-Byte alignment
+			bb.position((bb.position() + 7) & ~7);
+		}
+		file = Files.createTempFile("blockcache", ".mf4");
+		Files.write(file, java.util.Arrays.copyOf(bb.array(), bb.position()));
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testHitsAndMisses() throws IOException {
+		try (SeekableByteChannel sbc = Files.newByteChannel(file, StandardOpenOption.READ)) {
+			TXBLOCK first = TXBLOCK.read(sbc, positions[1]);
+			TXBLOCK second = TXBLOCK.read(sbc, positions[1]);
+			assertSame(first, second);
+			assertEquals(TEXTS[1], second.getTxData());
+			assertEquals("##TX", BLOCK.getBlockType(sbc, positions[1]));
+
+			BlockCache cache = BlockCache.release(sbc);
+			assertNotNull(cache);
+			assertEquals(1, cache.getHits());
+			assertEquals(1, cache.getMisses());
+			assertEquals(1, cache.size());
+		}
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction() throws IOException {
+		try (SeekableByteChannel sbc = Files.newByteChannel(file, StandardOpenOption.READ)) {
+			TXBLOCK[] blocks = new TXBLOCK[TEXTS.length];
+			for (int i = 0; i < TEXTS.length; i++) {
+				blocks[i] = TXBLOCK.read(sbc, positions[i]);
+			}
+			BlockCache.release(sbc);
+
+			// budget only fits two blocks
+			BlockCache cache = new BlockCache(blocks[0].getLength() + blocks[1].getLength());
+			cache.put(blocks[0]);
+			cache.put(blocks[1]);
+			assertNotNull(cache.get(positions[0], TXBLOCK.class));
+			cache.put(blocks[2]);
+
+			assertNull(cache.get(positions[1], TXBLOCK.class));
+			assertSame(blocks[0], cache.get(positions[0], TXBLOCK.class));
+			assertSame(blocks[2], cache.get(positions[2], TXBLOCK.class));
+			assertNull(cache.get(positions[2], CCBLOCK.class));
+		}
+	}
+
+}
@@ -0,0 +1,116 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.mdm.openatfx.mdf.util.MappedByteChannel;
+import org.junit.Test;
+
+/**
+ * Test case for reading the block structure of one MDF4 file from several
+ * threads sharing the same channel.
+ */
+public class ConcurrentReadTest {
+
+	private static final String mdfFile = "org/eclipse/mdm/openatfx/mdf/mdf4/simple/ETAS_SimpleSorted.mf4";
+
+	private static final int THREADS = 8;
+	private static final int ITERATIONS = 20;
+
+	@Test
+	public void testParallelReadsFileChannel() throws Exception {
+		Path path = Paths.get(ClassLoader.getSystemResource(mdfFile).toURI());
+		try (SeekableByteChannel sbc = Files.newByteChannel(path, StandardOpenOption.READ)) {
+			assertParallelReads(path, sbc);
+		}
+	}
+
+	@Test
+	public void testParallelReadsMappedChannel() throws Exception {
+		Path path = Paths.get(ClassLoader.getSystemResource(mdfFile).toURI());
+		try (SeekableByteChannel sbc = MappedByteChannel.open(path)) {
+			assertParallelReads(path, sbc);
+		}
+	}
+
+	private static void assertParallelReads(final Path path, final SeekableByteChannel sbc) throws Exception {
+		// single-threaded reference read with a fresh cache
+		final String expected = dump(IDBLOCK.read(path, sbc));
+		BlockCache.release(sbc);
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<String>> futures = new ArrayList<>();
+			for (int i = 0; i < THREADS * ITERATIONS; i++) {
+				futures.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						return dump(IDBLOCK.read(path, sbc));
+					}
+				}));
+			}
+			for (Future<String> future : futures) {
+				assertEquals(expected, future.get());
+			}
+		} finally {
+			executor.shutdown();
+			BlockCache.release(sbc);
+		}
+	}
+
+	/**
+	 * Walks the DG/CG/CN/CC link graph and returns the string representation
+	 * of all visited blocks.
+	 */
+	private static String dump(IDBLOCK idBlock) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		HDBLOCK hdBlock = idBlock.getHDBlock();
+		sb.append(hdBlock).append('\n');
+		DGBLOCK dgBlock = hdBlock.getDgFirstBlock();
+		while (dgBlock != null) {
+			sb.append(dgBlock).append('\n');
+			CGBLOCK cgBlock = dgBlock.getCgFirstBlock();
+			while (cgBlock != null) {
+				sb.append(cgBlock).append('\n');
+				CNBLOCK cnBlock = cgBlock.getCnFirstBlock();
+				while (cnBlock != null) {
+					sb.append(cnBlock).append('\n');
+					sb.append(cnBlock.getCnTxNameBlock().getTxData()).append('\n');
+					sb.append(cnBlock.getCcConversionBlock()).append('\n');
+					cnBlock = cnBlock.getCnNextBlock();
+				}
+				cgBlock = cgBlock.getCgNextBlock();
+			}
+			dgBlock = dgBlock.getDgNextBlock();
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,201 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DZCacheTest {
+
+	private static final String DEFLATE_FILE = "org/eclipse/mdm/openatfx/mdf/mdf4/compressed_data/datalist/Vector_DataList_Deflate.mf4";
+	private static final String TRANSPOSE_DEFLATE_FILE = "org/eclipse/mdm/openatfx/mdf/mdf4/compressed_data/datalist/Vector_DataList_TransposeDeflate.mf4";
+
+	private Path dir;
+
+	@Before
+	public void setUp() throws Exception {
+		// the cache is created next to the MDF file
+		dir = Files.createTempDirectory("dzcache");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+			for (Path file : files) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(dir);
+	}
+
+	@Test
+	public void testInflate() throws Exception {
+		// both files contain the same data
+		byte[] deflate = inflate(copy(DEFLATE_FILE), 4);
+		byte[] transposeDeflate = inflate(copy(TRANSPOSE_DEFLATE_FILE), 4);
+		assertEquals(320000, deflate.length);
+		assertArrayEquals(deflate, transposeDeflate);
+
+		// single threaded
+		assertArrayEquals(deflate, inflate(copy(TRANSPOSE_DEFLATE_FILE), 1));
+	}
+
+	@Test
+	public void testReuse() throws Exception {
+		Path mdfFile = copy(TRANSPOSE_DEFLATE_FILE);
+		byte[] expected = inflate(mdfFile, 2);
+		SeekableByteChannel sbc = Files.newByteChannel(mdfFile, StandardOpenOption.READ);
+		try {
+			List<Long> positions = getDZBlocks(sbc);
+
+			// unchanged file, all blocks are cached
+			try (DZCache cache = DZCache.open(mdfFile, 2)) {
+				for (long pos : positions) {
+					assertTrue(cache.getOffset(pos) >= 0);
+					assertEquals("##DT", cache.getOrgBlockType(pos));
+				}
+				assertArrayEquals(expected, read(cache, positions));
+			}
+
+			// modified file, cache is discarded
+			Files.setLastModifiedTime(mdfFile, FileTime.fromMillis(Files.getLastModifiedTime(mdfFile).toMillis() - 60000));
+			try (DZCache cache = DZCache.open(mdfFile, 2)) {
+				assertEquals(-1, cache.getOffset(positions.get(0)));
+				assertEquals(0, cache.getChannel().size());
+			}
+		} finally {
+			BlockCache.release(sbc);
+			sbc.close();
+		}
+	}
+
+	@Test
+	public void testLockedCache() throws Exception {
+		Path mdfFile = copy(TRANSPOSE_DEFLATE_FILE);
+		byte[] expected = inflate(mdfFile, 2);
+		Path path = mdfFile.resolveSibling(mdfFile.getFileName() + DZCache.FILE_SUFFIX);
+		SeekableByteChannel sbc = Files.newByteChannel(mdfFile, StandardOpenOption.READ);
+		try {
+			List<Long> positions = getDZBlocks(sbc);
+			try (DZCache cache = DZCache.open(mdfFile, 2)) {
+				assertEquals(path, cache.getPath());
+
+				// the second instance does not share the locked cache file
+				Path tempPath;
+				try (DZCache other = DZCache.open(mdfFile, 2)) {
+					tempPath = other.getPath();
+					assertFalse(path.equals(tempPath));
+					assertEquals(-1, other.getOffset(positions.get(0)));
+					other.inflate(sbc, positions);
+					assertArrayEquals(expected, read(other, positions));
+				}
+				assertFalse(Files.exists(tempPath));
+				assertArrayEquals(expected, read(cache, positions));
+			}
+
+			// the index is written without leaving a temporary file
+			List<Path> files = new ArrayList<>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+				for (Path file : stream) {
+					files.add(file.getFileName());
+				}
+			}
+			assertEquals(3, files.size());
+			assertTrue(files.contains(path.resolveSibling(path.getFileName() + DZCache.INDEX_SUFFIX).getFileName()));
+		} finally {
+			BlockCache.release(sbc);
+			sbc.close();
+		}
+	}
+
+	private Path copy(String resource) throws Exception {
+		Path source = Paths.get(ClassLoader.getSystemResource(resource).toURI());
+		return Files.copy(source, dir.resolve(source.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static byte[] inflate(Path mdfFile, int parallelism) throws IOException {
+		try (SeekableByteChannel sbc = Files.newByteChannel(mdfFile, StandardOpenOption.READ)) {
+			List<Long> positions = getDZBlocks(sbc);
+			try (DZCache cache = DZCache.open(mdfFile, parallelism)) {
+				cache.inflate(sbc, positions);
+				return read(cache, positions);
+			} finally {
+				BlockCache.release(sbc);
+			}
+		}
+	}
+
+	private static byte[] read(DZCache cache, List<Long> positions) throws IOException {
+		long length = 0;
+		for (long pos : positions) {
+			length += cache.getLength(pos);
+		}
+		ByteBuffer bb = ByteBuffer.allocate((int) length);
+		for (long pos : positions) {
+			bb.limit((int) (bb.position() + cache.getLength(pos)));
+			FileUtil.readFully(cache.getChannel(), bb, cache.getOffset(pos));
+		}
+		return bb.array();
+	}
+
+	/**
+	 * Returns the DZBLOCKs of the first data group: HD-&gt;DG-&gt;HL-&gt;DL.
+	 */
+	private static List<Long> getDZBlocks(SeekableByteChannel sbc) throws IOException {
+		long dgPos = readLink(sbc, 64 + 24);
+		long hlPos = readLink(sbc, dgPos + 24 + 16);
+		DLBLOCK dlBlock = DLBLOCK.read(sbc, readLink(sbc, hlPos + 24));
+		List<Long> positions = new ArrayList<>();
+		while (dlBlock != null) {
+			for (long pos : dlBlock.getLnkDlData()) {
+				positions.add(pos);
+			}
+			dlBlock = dlBlock.getDlNextBlock();
+		}
+		return positions;
+	}
+
+	private static long readLink(SeekableByteChannel sbc, long pos) throws IOException {
+		ByteBuffer bb = ByteBuffer.allocate(8);
+		bb.order(ByteOrder.LITTLE_ENDIAN);
+		FileUtil.readFully(sbc, bb, pos);
+		bb.rewind();
+		return bb.getLong();
+	}
+
+}
@@ -0,0 +1,161 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class DataListReaderTest {
+
+	private static final String DEFLATE_FILE = "org/eclipse/mdm/openatfx/mdf/mdf4/compressed_data/datalist/Vector_DataList_Deflate.mf4";
+
+	// data section lengths of the DTBLOCKs, two per data list
+	private static final int[] LENGTHS = { 32, 32, 48, 16 };
+
+	private static Path file;
+	private static long[] dtPositions;
+	private static long firstDlPos;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		ByteBuffer bb = ByteBuffer.allocate(4096);
+		bb.order(ByteOrder.LITTLE_ENDIAN);
+		bb.position(64);
+
+		// DTBLOCKs
+		dtPositions = new long[LENGTHS.length];
+		for (int i = 0; i < LENGTHS.length; i++) {
+			dtPositions[i] = bb.position();
+			putHeader(bb, "##DT", 24 + LENGTHS[i], 0);
+			bb.put(new byte[LENGTHS[i]]);
+		}
+
+		// two DLBLOCKs with two blocks each, the second one written first
+		long secondDlPos = bb.position();
+		putDataList(bb, 0, dtPositions[2], dtPositions[3], 48);
+		firstDlPos = bb.position();
+		putDataList(bb, secondDlPos, dtPositions[0], dtPositions[1], 32);
+
+		file = Files.createTempFile("datalist", ".mf4");
+		Files.write(file, Arrays.copyOf(bb.array(), bb.position()));
+	}
+
+	private static void putHeader(ByteBuffer bb, String id, long length, long linkCount) {
+		bb.put(id.getBytes(StandardCharsets.ISO_8859_1));
+		bb.put(new byte[4]);
+		bb.putLong(length);
+		bb.putLong(linkCount);
+	}
+
+	private static void putDataList(ByteBuffer bb, long next, long first, long second, long firstLength) {
+		putHeader(bb, "##DL", 24 + 3 * 8 + 8 + 2 * 8, 3);
+		bb.putLong(next);
+		bb.putLong(first);
+		bb.putLong(second);
+		bb.put((byte) 0); // no equal length
+		bb.put(new byte[3]);
+		bb.putInt(2);
+		bb.putLong(0);
+		bb.putLong(firstLength);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testReadChain() throws IOException {
+		try (SeekableByteChannel sbc = Files.newByteChannel(file, StandardOpenOption.READ)) {
+			readChain(sbc);
+			BlockCache.release(sbc);
+		}
+	}
+
+	private static void readChain(SeekableByteChannel sbc) throws IOException {
+		try (DataListReader reader = new DataListReader(sbc, firstDlPos)) {
+			int index = 0;
+			DataListReader.DataList dataList;
+			while ((dataList = reader.next()) != null) {
+				assertEquals(2, dataList.getCount());
+				assertFalse(dataList.getDlBlock().breaksRecordsInList(16));
+				for (int i = 0; i < dataList.getCount(); i++) {
+					assertEquals(dtPositions[index], dataList.getLnkData(i));
+					assertEquals(DTBLOCK.BLOCK_ID, dataList.getBlockType(i));
+					assertEquals(LENGTHS[index], dataList.getDataLength(i));
+					index++;
+				}
+			}
+			assertEquals(LENGTHS.length, index);
+			assertNull(reader.next());
+		}
+	}
+
+	@Test
+	public void testBreaksRecords() throws IOException {
+		try (SeekableByteChannel sbc = Files.newByteChannel(file, StandardOpenOption.READ)) {
+			DLBLOCK dlBlock = DLBLOCK.read(sbc, firstDlPos);
+			// 32 % 12 != 0, only the first list is checked
+			assertTrue(dlBlock.breaksRecordsInList(12));
+			assertFalse(dlBlock.breaksRecordsInList(32));
+			// 48 % 32 != 0 in the second list
+			assertTrue(dlBlock.breaksRecords(32));
+			BlockCache.release(sbc);
+		}
+	}
+
+	@Test
+	public void testHeaderList() throws Exception {
+		Path path = Paths.get(ClassLoader.getSystemResource(DEFLATE_FILE).toURI());
+		try (SeekableByteChannel sbc = Files.newByteChannel(path, StandardOpenOption.READ)) {
+			HDBLOCK hdBlock = HDBLOCK.read(sbc);
+			DGBLOCK dgBlock = hdBlock.getDgFirstBlock();
+			HLBLOCK hlBlock = (HLBLOCK) dgBlock.getDataBlock();
+			assertEquals(1, hlBlock.getFlags());
+			assertEquals(0, hlBlock.getZipType());
+
+			try (DataListReader reader = new DataListReader(sbc, hlBlock.getLnkDlFirst())) {
+				DataListReader.DataList dataList = reader.next();
+				assertEquals(10, dataList.getCount());
+				for (int i = 0; i < dataList.getCount(); i++) {
+					assertEquals(DZBLOCK.BLOCK_ID, dataList.getBlockType(i));
+					assertEquals(-1, dataList.getDataLength(i));
+				}
+				assertNull(reader.next());
+			}
+			BlockCache.release(sbc);
+		}
+	}
+
+}
@@ -0,0 +1,317 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import org.asam.ods.AoException;
+import org.asam.ods.AoSession;
+import org.asam.ods.ApplicationRelation;
+import org.asam.ods.ApplicationStructure;
+import org.asam.ods.InstanceElement;
+import org.asam.ods.InstanceElementIterator;
+import org.eclipse.mdm.openatfx.mdf.MDFConverter;
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
+import org.eclipse.mdm.openatfx.mdf.util.ODSModelCache;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.omg.CORBA.ORB;
+
+import de.rechner.openatfx.util.ODSHelper;
+import junit.framework.JUnit4TestAdapter;
+
+/**
+ * Test case for converting a MDF4-file with invalidation bits. The file is
+ * created by the test, its data list consists of a DT and a DZ block.
+ * <p>
+ * Channels:
+ * <ul>
+ * <li>t: master channel without invalidation bit</li>
+ * <li>A (UINT16 LE), B (INT16 LE): invalidation bit 1</li>
+ * <li>C (UINT16 LE): invalidation bit 2, same bits as invalidation bit 1</li>
+ * <li>D (UINT16 BE): invalidation bit 1</li>
+ * <li>E (UINT8): invalidation bit 4, other bits</li>
+ * <li>V (UINT8): invalidation bit 3, never set</li>
+ * </ul>
+ */
+public class InvalidationFlagsTest {
+
+	private static final int DATA_BYTES = 14;
+	private static final int RECORD_SIZE = DATA_BYTES + 1;
+
+	// records in the DT block and in the DZ block
+	private static final int DT_RECORDS = 7;
+	private static final int DZ_RECORDS = 5;
+	private static final int RECORDS = DT_RECORDS + DZ_RECORDS;
+
+	private static final short VALID = 15;
+	private static final short INVALID = 0;
+
+	private static ORB orb;
+	private static AoSession aoSession;
+	private static ODSModelCache modelCache;
+	private static Path dir;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		dir = Files.createTempDirectory("invalidation");
+		Path path = dir.resolve("InvalidationBits.mf4");
+		createFile(path);
+		orb = ORB.init(new String[0], System.getProperties());
+		MDFConverter reader = new MDFConverter();
+		aoSession = reader.getAoSessionForMDF(orb, path);
+		modelCache = new ODSModelCache(aoSession);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		if (aoSession != null) {
+			aoSession.close();
+		}
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+			for (Path file : files) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(dir);
+	}
+
+	@Test
+	public void testAllValid() {
+		try {
+			// neither the master channel nor a never set invalidation bit
+			// require flags
+			for (String channel : new String[] { "t", "V" }) {
+				InstanceElement[] ieEcs = getEcs(channel);
+				assertEquals(2, ieEcs.length);
+				for (InstanceElement ieEc : ieEcs) {
+					assertEquals(0, ieEc.getValue("ffl").value.flag);
+					assertEquals(0, ieEc.getValue("fso").value.flag);
+				}
+			}
+		} catch (AoException e) {
+			fail(e.reason);
+		}
+	}
+
+	@Test
+	public void testSharedFlags() throws IOException {
+		try {
+			long a = getFlagsOffset("A");
+			long d = getFlagsOffset("D");
+			long e = getFlagsOffset("E");
+
+			// same bitmap and byte order: the same invalidation bit as well as
+			// another invalidation bit with identical bits
+			assertEquals(a, getFlagsOffset("B"));
+			assertEquals(a, getFlagsOffset("C"));
+
+			// other byte order or other bits
+			assertFalse(a == d);
+			assertFalse(a == e);
+			assertFalse(d == e);
+
+			short[] expected = new short[RECORDS];
+			for (int i = 0; i < RECORDS; i++) {
+				expected[i] = i % 3 == 0 ? INVALID : VALID;
+			}
+			String flagFile = ODSHelper.getStringVal(getEcs("A")[0].getValue("ffl"));
+			assertEquals(Arrays.toString(expected), Arrays.toString(readFlags(flagFile, a, ByteOrder.LITTLE_ENDIAN)));
+			assertEquals(Arrays.toString(expected), Arrays.toString(readFlags(flagFile, d, ByteOrder.BIG_ENDIAN)));
+			for (int i = 0; i < RECORDS; i++) {
+				expected[i] = i % 4 == 1 ? INVALID : VALID;
+			}
+			assertEquals(Arrays.toString(expected), Arrays.toString(readFlags(flagFile, e, ByteOrder.LITTLE_ENDIAN)));
+		} catch (AoException e) {
+			fail(e.reason);
+		}
+	}
+
+	@Test
+	public void testSectionOffsets() {
+		try {
+			// each external component references the flags of its records
+			for (String channel : new String[] { "A", "B", "C", "D", "E" }) {
+				InstanceElement[] ieEcs = getEcs(channel);
+				assertEquals(2, ieEcs.length);
+				assertEquals(DT_RECORDS, ODSHelper.getLongVal(ieEcs[0].getValue("cl")));
+				assertEquals(DZ_RECORDS, ODSHelper.getLongVal(ieEcs[1].getValue("cl")));
+				assertEquals(ODSHelper.getStringVal(ieEcs[0].getValue("ffl")),
+						ODSHelper.getStringVal(ieEcs[1].getValue("ffl")));
+				long fso = ODSHelper.getLongLongVal(ieEcs[0].getValue("fso"));
+				assertEquals(fso + 2 * DT_RECORDS, ODSHelper.getLongLongVal(ieEcs[1].getValue("fso")));
+			}
+		} catch (AoException e) {
+			fail(e.reason);
+		}
+	}
+
+	/**
+	 * Returns the flags offset of the first external component of a channel.
+	 */
+	private static long getFlagsOffset(String channel) throws AoException {
+		return ODSHelper.getLongLongVal(getEcs(channel)[0].getValue("fso"));
+	}
+
+	/**
+	 * Returns the external components of a channel ordered by their ordinal
+	 * number.
+	 */
+	private static InstanceElement[] getEcs(String channel) throws AoException {
+		ApplicationStructure as = aoSession.getApplicationStructure();
+		InstanceElement ieMeq = as.getElementByName("meq").getInstances(channel).nextOne();
+		ApplicationRelation relMeqLc = modelCache.getApplicationRelation("meq", "lc", "lcs");
+		InstanceElement ieLc = ieMeq.getRelatedInstances(relMeqLc, "*").nextOne();
+		ApplicationRelation relLcEc = modelCache.getApplicationRelation("lc", "ec", "ecs");
+		InstanceElementIterator iter = ieLc.getRelatedInstances(relLcEc, "*");
+		InstanceElement[] ieEcs = new InstanceElement[iter.getCount()];
+		for (int i = 0; i < ieEcs.length; i++) {
+			InstanceElement ieEc = iter.nextOne();
+			ieEcs[ODSHelper.getLongVal(ieEc.getValue("on")) - 1] = ieEc;
+		}
+		return ieEcs;
+	}
+
+	private static short[] readFlags(String fileName, long startOffset, ByteOrder byteOrder) throws IOException {
+		ByteBuffer bb = ByteBuffer.allocate(RECORDS * 2).order(byteOrder);
+		try (SeekableByteChannel sbc = Files.newByteChannel(dir.resolve(fileName))) {
+			FileUtil.readFully(sbc, bb, startOffset);
+		}
+		bb.flip();
+		short[] flags = new short[RECORDS];
+		bb.asShortBuffer().get(flags);
+		return flags;
+	}
+
+	/**
+	 * Creates the MDF4 file, the DG-&gt;CG-&gt;CN blocks reference a DL block
+	 * with a DT and a DZ block.
+	 */
+	static void createFile(Path path) throws IOException {
+		ByteBuffer bb = ByteBuffer.allocate(8192).order(ByteOrder.LITTLE_ENDIAN);
+
+		// IDBLOCK, the HDBLOCK at 64 is written last
+		bb.put("MDF     4.10    openATFX".getBytes("ISO-8859-1"));
+		bb.putInt(0);
+		bb.putShort((short) 410);
+		bb.position(64 + 104);
+
+		// records, the invalidation byte follows the data bytes
+		ByteBuffer records = ByteBuffer.allocate(RECORDS * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < RECORDS; i++) {
+			records.putInt(i);
+			records.putShort((short) (i * 2));
+			records.putShort((short) -i);
+			records.putShort((short) (i * 3));
+			records.order(ByteOrder.BIG_ENDIAN).putShort((short) (i * 4)).order(ByteOrder.LITTLE_ENDIAN);
+			records.put((byte) i);
+			records.put((byte) (i * 5));
+			int inval = 0;
+			if (i % 3 == 0) {
+				inval |= 0x02 | 0x04;
+			}
+			if (i % 4 == 1) {
+				inval |= 0x10;
+			}
+			records.put((byte) inval);
+		}
+		byte[] dtData = Arrays.copyOf(records.array(), DT_RECORDS * RECORD_SIZE);
+		byte[] dzData = Arrays.copyOfRange(records.array(), DT_RECORDS * RECORD_SIZE, RECORDS * RECORD_SIZE);
+
+		long dt = writeBlock(bb, "##DT", new long[0], dtData);
+		Deflater deflater = new Deflater();
+		deflater.setInput(dzData);
+		deflater.finish();
+		byte[] zipped = new byte[1024];
+		int zippedLength = deflater.deflate(zipped);
+		deflater.end();
+		ByteBuffer dzBlock = ByteBuffer.allocate(24 + zippedLength).order(ByteOrder.LITTLE_ENDIAN);
+		dzBlock.put("DT".getBytes("ISO-8859-1")).put((byte) 0).put((byte) 0).putInt(0);
+		dzBlock.putLong(dzData.length).putLong(zippedLength).put(zipped, 0, zippedLength);
+		long dz = writeBlock(bb, "##DZ", new long[0], dzBlock.array());
+		ByteBuffer dlBlock = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+		dlBlock.put((byte) 0).put(new byte[3]).putInt(2).putLong(0).putLong(dtData.length);
+		long dl = writeBlock(bb, "##DL", new long[] { 0, dt, dz }, dlBlock.array());
+
+		// channels in reverse order: name, channel type, data type, byte
+		// offset, bit count, invalidation bit
+		Object[][] channels = { { "V", 0, 0, 12, 8, 3 }, { "E", 0, 0, 13, 8, 4 }, { "D", 0, 1, 10, 16, 1 },
+				{ "C", 0, 0, 8, 16, 2 }, { "B", 0, 2, 6, 16, 1 }, { "A", 0, 0, 4, 16, 1 }, { "t", 2, 0, 0, 32, 0 } };
+		long cn = 0;
+		for (Object[] channel : channels) {
+			long tx = writeBlock(bb, "##TX", new long[0], ((String) channel[0] + "\0").getBytes("ISO-8859-1"));
+			int invalBitPos = (Integer) channel[5];
+			ByteBuffer cnBlock = ByteBuffer.allocate(72).order(ByteOrder.LITTLE_ENDIAN);
+			cnBlock.put(((Integer) channel[1]).byteValue()); // channel type
+			cnBlock.put((byte) ((Integer) channel[1] == 2 ? 1 : 0)); // sync type
+			cnBlock.put(((Integer) channel[2]).byteValue()); // data type
+			cnBlock.put((byte) 0); // bit offset
+			cnBlock.putInt((Integer) channel[3]);
+			cnBlock.putInt((Integer) channel[4]);
+			cnBlock.putInt(invalBitPos > 0 ? 0x02 : 0); // flags
+			cnBlock.putInt(invalBitPos);
+			cn = writeBlock(bb, "##CN", new long[] { cn, 0, tx, 0, 0, 0, 0, 0 }, cnBlock.array());
+		}
+
+		ByteBuffer cgBlock = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+		cgBlock.putLong(0).putLong(RECORDS).putShort((short) 0).putShort((short) 0).putInt(0);
+		cgBlock.putInt(DATA_BYTES).putInt(1);
+		long cg = writeBlock(bb, "##CG", new long[] { 0, cn, 0, 0, 0, 0 }, cgBlock.array());
+		long dg = writeBlock(bb, "##DG", new long[] { 0, cg, dl, 0 }, new byte[8]);
+		int end = bb.position();
+
+		bb.position(64);
+		writeBlock(bb, "##HD", new long[] { dg, 0, 0, 0, 0, 0 }, new byte[32]);
+		Files.write(path, Arrays.copyOf(bb.array(), end));
+	}
+
+	/**
+	 * Writes a block at the next 8 byte aligned position.
+	 *
+	 * @return The position of the block.
+	 */
+	private static long writeBlock(ByteBuffer bb, String id, long[] links, byte[] data) throws IOException {
+		bb.position((bb.position() + 7) & ~7);
+		long pos = bb.position();
+		bb.put(id.getBytes("ISO-8859-1"));
+		bb.putInt(0);
+		bb.putLong(24 + 8 * links.length + data.length);
+		bb.putLong(links.length);
+		for (long link : links) {
+			bb.putLong(link);
+		}
+		bb.put(data);
+		return pos;
+	}
+
+	public static junit.framework.Test suite() {
+		return new JUnit4TestAdapter(InvalidationFlagsTest.class);
+	}
+
+}
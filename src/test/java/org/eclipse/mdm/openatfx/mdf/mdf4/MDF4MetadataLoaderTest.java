@@ -0,0 +1,79 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MDF4MetadataLoaderTest {
+
+	private static final String mdfFile = "org/eclipse/mdm/openatfx/mdf/mdf4/simple/Vector_CANape.MF4";
+
+	@Test
+	public void testSingleThreaded() throws Exception {
+		assertLoadedGraph(1);
+	}
+
+	@Test
+	public void testParallel() throws Exception {
+		assertLoadedGraph(4);
+	}
+
+	private static void assertLoadedGraph(int parallelism) throws Exception {
+		Path path = Paths.get(ClassLoader.getSystemResource(mdfFile).toURI());
+		try (SeekableByteChannel sbc = Files.newByteChannel(path, StandardOpenOption.READ)) {
+			HDBLOCK hdBlock = IDBLOCK.read(path, sbc).getHDBlock();
+			MDF4Metadata metadata = new MDF4MetadataLoader(parallelism).load(hdBlock);
+
+			// compare with the link chains of the file
+			List<MDF4Metadata.DataGroup> dataGroups = metadata.getDataGroups();
+			DGBLOCK dgBlock = hdBlock.getDgFirstBlock();
+			int channelCount = 0;
+			for (MDF4Metadata.DataGroup dataGroup : dataGroups) {
+				assertEquals(dgBlock, dataGroup.getDgBlock());
+				CGBLOCK cgBlock = dgBlock.getCgFirstBlock();
+				for (MDF4Metadata.ChannelGroup channelGroup : dataGroup.getChannelGroups()) {
+					assertEquals(cgBlock, channelGroup.getCgBlock());
+					CNBLOCK cnBlock = cgBlock.getCnFirstBlock();
+					for (MDF4Metadata.Channel channel : channelGroup.getChannels()) {
+						assertEquals(cnBlock, channel.getCnBlock());
+						assertSame(cnBlock.getCnTxNameBlock(), channel.getCnTxNameBlock());
+						assertSame(cnBlock.getCcConversionBlock(), channel.getCcConversionBlock());
+						cnBlock = cnBlock.getCnNextBlock();
+						channelCount++;
+					}
+					assertEquals(null, cnBlock);
+					cgBlock = cgBlock.getCgNextBlock();
+				}
+				assertEquals(null, cgBlock);
+				dgBlock = dgBlock.getDgNextBlock();
+			}
+			assertEquals(null, dgBlock);
+			assertEquals(channelCount, metadata.getChannelCount());
+			BlockCache.release(sbc);
+		}
+	}
+
+}
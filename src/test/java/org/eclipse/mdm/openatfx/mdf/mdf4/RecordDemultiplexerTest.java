@@ -0,0 +1,253 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RecordDemultiplexerTest {
+
+	private static final int CG_BLOCK_SIZE = 104;
+
+	// two normal channel groups and one VLSD channel group, record ID size 1
+	private static final int[] RECORD_IDS = { 1, 2, 3 };
+	private static final int[] DATA_BYTES = { 3, 6, 0 };
+	private static final int[] INVAL_BYTES = { 1, 0, 0 };
+	private static final int CYCLES = 50;
+
+	// data section lengths, the boundaries split records
+	private static final int[] LENGTHS = { 10, 3, 11, 100 };
+
+	// the data sections are separated by a gap of GAP bytes
+	private static final int GAP = 24;
+
+	private Path file;
+	private long dataStart;
+	private int dataLength;
+	private ByteArrayOutputStream[] expected;
+	private Path existing;
+
+	@Before
+	public void setUp() throws Exception {
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		expected = new ByteArrayOutputStream[RECORD_IDS.length];
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = new ByteArrayOutputStream();
+		}
+		long vlsdBytes = 0;
+		for (int cycle = 0; cycle < CYCLES; cycle++) {
+			for (int cg = 0; cg < RECORD_IDS.length; cg++) {
+				if (cg == 2) {
+					// VLSD record, some values are larger than the read buffer
+					byte[] value = new byte[cycle % 7 == 0 ? 40 : cycle % 5];
+					Arrays.fill(value, (byte) cycle);
+					byte[] length = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value.length).array();
+					data.write(RECORD_IDS[cg]);
+					data.write(length);
+					data.write(value);
+					expected[cg].write(length);
+					expected[cg].write(value);
+					vlsdBytes += value.length;
+				} else {
+					byte[] record = new byte[1 + DATA_BYTES[cg] + INVAL_BYTES[cg]];
+					Arrays.fill(record, (byte) (cycle + cg));
+					record[0] = (byte) RECORD_IDS[cg];
+					data.write(record);
+					expected[cg].write(record);
+				}
+			}
+		}
+		dataLength = data.size();
+
+		ByteBuffer bb = ByteBuffer.allocate(RECORD_IDS.length * CG_BLOCK_SIZE + dataLength + GAP * LENGTHS.length);
+		bb.order(ByteOrder.LITTLE_ENDIAN);
+		for (int cg = 0; cg < RECORD_IDS.length; cg++) {
+			long dataBytes = cg == 2 ? vlsdBytes : DATA_BYTES[cg];
+			writeCgBlock(bb, RECORD_IDS[cg], CYCLES, cg == 2 ? 1 : 0, dataBytes, INVAL_BYTES[cg]);
+		}
+		dataStart = bb.position();
+
+		// the last section takes the remaining records
+		byte[] bytes = data.toByteArray();
+		int offset = 0;
+		for (int i = 0; i < LENGTHS.length; i++) {
+			int length = i == LENGTHS.length - 1 ? bytes.length - offset : LENGTHS[i];
+			bb.put(new byte[GAP]);
+			bb.put(bytes, offset, length);
+			offset += length;
+		}
+		file = Files.createTempFile("unsorted", ".mf4");
+		Files.write(file, Arrays.copyOf(bb.array(), bb.position()));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(file.resolveSibling(file.getFileName() + RecordDemultiplexer.FILE_SUFFIX));
+		if (existing != null) {
+			Files.deleteIfExists(existing);
+		}
+	}
+
+	@Test
+	public void testDemultiplex() throws IOException {
+		try (SeekableByteChannel sbc = Files.newByteChannel(file, StandardOpenOption.READ);
+				RecordDemultiplexer demultiplexer = RecordDemultiplexer.open(file)) {
+			List<CGBLOCK> cgBlocks = readCgBlocks(sbc);
+
+			// small read buffer, forces many refills
+			Map<Long, DataSection> sorted = demultiplexer.demultiplex(getSections(sbc), 1, cgBlocks, 16);
+			assertSorted(cgBlocks, sorted);
+		}
+	}
+
+	@Test
+	public void testConcurrentDemultiplex() throws Exception {
+		final int count = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (final SeekableByteChannel sbc = Files.newByteChannel(file, StandardOpenOption.READ);
+				final RecordDemultiplexer demultiplexer = RecordDemultiplexer.open(file)) {
+			final List<CGBLOCK> cgBlocks = readCgBlocks(sbc);
+			List<Future<Map<Long, DataSection>>> futures = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				futures.add(executor.submit(new Callable<Map<Long, DataSection>>() {
+					@Override
+					public Map<Long, DataSection> call() throws IOException {
+						return demultiplexer.demultiplex(getSections(sbc), 1, cgBlocks, 16);
+					}
+				}));
+			}
+
+			// each data group has its own regions of the sidecar file
+			List<DataSection> sections = new ArrayList<>();
+			for (Future<Map<Long, DataSection>> future : futures) {
+				Map<Long, DataSection> sorted = future.get();
+				assertSorted(cgBlocks, sorted);
+				sections.addAll(sorted.values());
+			}
+			for (DataSection a : sections) {
+				for (DataSection b : sections) {
+					assertTrue(a == b || a.getPos() + a.getLength() <= b.getPos()
+							|| b.getPos() + b.getLength() <= a.getPos());
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testExistingSidecarFile() throws IOException {
+		// the existing sidecar file may be referenced, it is left untouched
+		Path sidecarFile = file.resolveSibling(file.getFileName() + RecordDemultiplexer.FILE_SUFFIX);
+		byte[] content = { 1, 2, 3, 4, 5 };
+		Files.write(sidecarFile, content);
+		try (SeekableByteChannel sbc = Files.newByteChannel(file, StandardOpenOption.READ);
+				RecordDemultiplexer demultiplexer = RecordDemultiplexer.open(file)) {
+			existing = demultiplexer.getPath();
+			assertFalse(sidecarFile.equals(existing));
+			List<CGBLOCK> cgBlocks = readCgBlocks(sbc);
+			assertSorted(cgBlocks, demultiplexer.demultiplex(getSections(sbc), 1, cgBlocks, 16));
+		}
+		assertArrayEquals(content, Files.readAllBytes(sidecarFile));
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownRecordId() throws IOException {
+		try (SeekableByteChannel sbc = Files.newByteChannel(file, StandardOpenOption.READ);
+				RecordDemultiplexer demultiplexer = RecordDemultiplexer.open(file)) {
+			// the records of the VLSD channel group cannot be assigned
+			demultiplexer.demultiplex(getSections(sbc), 1, readCgBlocks(sbc).subList(0, 2), 1024);
+		}
+	}
+
+	private void assertSorted(List<CGBLOCK> cgBlocks, Map<Long, DataSection> sorted) throws IOException {
+		assertEquals(cgBlocks.size(), sorted.size());
+		for (int cg = 0; cg < cgBlocks.size(); cg++) {
+			DataSection section = sorted.get(cgBlocks.get(cg).getPos());
+			assertEquals(cg == 2 ? SDBLOCK.BLOCK_ID : DTBLOCK.BLOCK_ID, section.getBlockType());
+			assertEquals(expected[cg].size(), section.getLength());
+
+			ByteBuffer bb = ByteBuffer.allocate((int) section.getLength());
+			FileUtil.readFully(section.getChannel(), bb, section.getPos());
+			assertArrayEquals(expected[cg].toByteArray(), bb.array());
+		}
+	}
+
+	private List<CGBLOCK> readCgBlocks(SeekableByteChannel sbc) throws IOException {
+		List<CGBLOCK> cgBlocks = new ArrayList<>();
+		for (int cg = 0; cg < RECORD_IDS.length; cg++) {
+			cgBlocks.add(CGBLOCK.read(sbc, cg * CG_BLOCK_SIZE));
+		}
+		return cgBlocks;
+	}
+
+	private List<DataSection> getSections(SeekableByteChannel sbc) {
+		List<DataSection> sections = new ArrayList<>();
+		long pos = dataStart;
+		int remaining = dataLength;
+		for (int i = 0; i < LENGTHS.length; i++) {
+			int length = i == LENGTHS.length - 1 ? remaining : LENGTHS[i];
+			pos += GAP;
+			sections.add(new DataSection(sbc, "unsorted.mf4", DTBLOCK.BLOCK_ID, pos, length));
+			pos += length;
+			remaining -= length;
+		}
+		return sections;
+	}
+
+	private static void writeCgBlock(ByteBuffer bb, long recordId, long cycles, int flags, long dataBytes,
+			long invalBytes) {
+		bb.put(CGBLOCK.BLOCK_ID.getBytes());
+		bb.putInt(0);
+		bb.putLong(CG_BLOCK_SIZE);
+		bb.putLong(6);
+		bb.put(new byte[48]);
+		bb.putLong(recordId);
+		bb.putLong(cycles);
+		bb.putShort((short) flags);
+		bb.putShort((short) 0);
+		bb.putInt(0);
+		bb.putInt((int) (dataBytes & 0xFFFFFFFFL));
+		bb.putInt((int) (invalBytes | dataBytes >>> 32));
+	}
+
+}
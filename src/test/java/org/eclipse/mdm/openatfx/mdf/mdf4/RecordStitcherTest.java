@@ -0,0 +1,188 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
+import org.eclipse.mdm.openatfx.mdf.util.MappedByteChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RecordStitcherTest {
+
+	private static final int RECORD_SIZE = 6;
+
+	// data section lengths, the boundaries split records
+	private static final int[] LENGTHS = { 10, 3, 11, 1000, 7 };
+
+	// the data sections are separated by a gap of GAP bytes
+	private static final int GAP = 24;
+
+	private Path file;
+	private byte[] records;
+	private final List<Path> sidecarFiles = new ArrayList<>();
+
+	@Before
+	public void setUp() throws Exception {
+		int total = 0;
+		for (int length : LENGTHS) {
+			total += length;
+		}
+		records = new byte[total];
+		for (int i = 0; i < total; i++) {
+			records[i] = (byte) (i / RECORD_SIZE + i % RECORD_SIZE);
+		}
+
+		ByteBuffer bb = ByteBuffer.allocate(total + GAP * LENGTHS.length);
+		int offset = 0;
+		for (int length : LENGTHS) {
+			bb.put(new byte[GAP]);
+			bb.put(records, offset, length);
+			offset += length;
+		}
+		file = Files.createTempFile("stitch", ".mf4");
+		Files.write(file, bb.array());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(file);
+		for (Path sidecarFile : sidecarFiles) {
+			Files.deleteIfExists(sidecarFile);
+		}
+	}
+
+	@Test
+	public void testStitchFileChannel() throws IOException {
+		try (SeekableByteChannel sbc = Files.newByteChannel(file, StandardOpenOption.READ)) {
+			assertStitched(sbc);
+		}
+	}
+
+	@Test
+	public void testStitchMappedChannel() throws IOException {
+		try (SeekableByteChannel sbc = MappedByteChannel.open(file)) {
+			assertStitched(sbc);
+		}
+	}
+
+	@Test
+	public void testConcurrentStitch() throws Exception {
+		final int count = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (final SeekableByteChannel sbc = Files.newByteChannel(file, StandardOpenOption.READ);
+				final RecordStitcher stitcher = RecordStitcher.open(file)) {
+			sidecarFiles.add(stitcher.getPath());
+			List<Future<DataSection>> futures = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				futures.add(executor.submit(new Callable<DataSection>() {
+					@Override
+					public DataSection call() throws IOException {
+						return stitcher.stitch(getSections(sbc), RECORD_SIZE);
+					}
+				}));
+			}
+
+			// each data list has its own region of the sidecar file
+			List<DataSection> sections = new ArrayList<>();
+			for (Future<DataSection> future : futures) {
+				DataSection stitched = future.get();
+				assertRecords(stitched);
+				sections.add(stitched);
+			}
+			for (DataSection a : sections) {
+				for (DataSection b : sections) {
+					assertTrue(a == b || a.getPos() + a.getLength() <= b.getPos()
+							|| b.getPos() + b.getLength() <= a.getPos());
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testExistingSidecarFile() throws IOException {
+		try (SeekableByteChannel sbc = Files.newByteChannel(file, StandardOpenOption.READ)) {
+			Path first = assertStitched(sbc);
+			assertEquals(file.resolveSibling(file.getFileName() + RecordStitcher.FILE_SUFFIX), first);
+			byte[] content = Files.readAllBytes(first);
+
+			// the existing sidecar file may be referenced, it is left untouched
+			Path second = assertStitched(sbc);
+			assertTrue(!first.equals(second));
+			assertTrue(second.getFileName().toString().endsWith(RecordStitcher.FILE_SUFFIX));
+			assertArrayEquals(content, Files.readAllBytes(first));
+		}
+	}
+
+	private List<DataSection> getSections(SeekableByteChannel sbc) {
+		List<DataSection> sections = new ArrayList<>();
+		long pos = 0;
+		for (int length : LENGTHS) {
+			pos += GAP;
+			sections.add(new DataSection(sbc, "stitch.mf4", DTBLOCK.BLOCK_ID, pos, length));
+			pos += length;
+		}
+		// sections without records are skipped
+		sections.add(1, new DataSection(sbc, "stitch.mf4", SDBLOCK.BLOCK_ID, 0, GAP));
+		return sections;
+	}
+
+	private Path assertStitched(SeekableByteChannel sbc) throws IOException {
+		List<DataSection> sections = getSections(sbc);
+		try (RecordStitcher stitcher = RecordStitcher.open(file)) {
+			sidecarFiles.add(stitcher.getPath());
+			// stitch twice, the second region is appended
+			for (int i = 0; i < 2; i++) {
+				DataSection stitched = stitcher.stitch(sections, RECORD_SIZE);
+				assertEquals(i * stitched.getLength(), stitched.getPos());
+				assertRecords(stitched);
+			}
+			return stitcher.getPath();
+		}
+	}
+
+	private void assertRecords(DataSection stitched) throws IOException {
+		int expectedLength = records.length - records.length % RECORD_SIZE;
+		assertEquals(expectedLength, stitched.getLength());
+		assertEquals(DTBLOCK.BLOCK_ID, stitched.getBlockType());
+
+		ByteBuffer bb = ByteBuffer.allocate(expectedLength);
+		FileUtil.readFully(stitched.getChannel(), bb, stitched.getPos());
+		assertArrayEquals(Arrays.copyOf(records, expectedLength), bb.array());
+	}
+
+}
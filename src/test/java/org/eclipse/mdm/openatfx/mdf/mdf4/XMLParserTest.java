@@ -16,11 +16,14 @@
 package org.eclipse.mdm.openatfx.mdf.mdf4;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 
 import org.asam.ods.AoException;
 import org.asam.ods.AoSession;
@@ -30,6 +33,7 @@ import org.eclipse.mdm.openatfx.mdf.ConvertException;
 import org.eclipse.mdm.openatfx.mdf.MDFConverter;
 import org.eclipse.mdm.openatfx.mdf.util.ODSInsertStatement;
 import org.eclipse.mdm.openatfx.mdf.util.ODSModelCache;
+import org.junit.Test;
 import org.omg.CORBA.ORB;
 
 import de.rechner.openatfx.util.ODSHelper;
@@ -58,4 +62,47 @@ public class XMLParserTest {
 		assertArrayEquals(new int[] { 1, 1, 2, 4 }, ODSHelper.getLongSeq(ieMea.getValue("score")));
 
 	}
+
+	@Test
+	public void testCNCommentsWithDifferentTypes() throws ConvertException, URISyntaxException, AoException, IOException {
+		String mdfFile = "org/eclipse/mdm/openatfx/mdf/mdf4/metadata/customextensions/Vector_CustomExtensions_CNcomment.mf4";
+		MDF4XMLParser pars = new MDF4XMLParser();
+		ORB orb = ORB.init(new String[0], System.getProperties());
+		Path path = Paths.get(ClassLoader.getSystemResource(mdfFile).toURI());
+		MDFConverter reader = new MDFConverter();
+		AoSession aoSession = reader.getAoSessionForMDF(orb, path);
+		ODSModelCache modelCache = new ODSModelCache(aoSession);
+		ApplicationStructure as = aoSession.getApplicationStructure();
+		long iidMea = ODSHelper.asJLong(as.getElementByName("mea").getInstances("*").nextOne().getId());
+
+		// two channels whose comments carry the same property with different
+		// types
+		ODSInsertStatement meqA = new ODSInsertStatement(modelCache, "meq");
+		meqA.setStringVal("iname", "ChannelA");
+		meqA.setLongLongVal("mea", iidMea);
+		pars.writeCNCommentToMeq(meqA,
+				"<CNcomment><TX>a</TX><common_properties><e name=\"gain\" type=\"integer\">2</e></common_properties></CNcomment>");
+		ODSInsertStatement meqB = new ODSInsertStatement(modelCache, "meq");
+		meqB.setStringVal("iname", "ChannelB");
+		meqB.setLongLongVal("mea", iidMea);
+		pars.writeCNCommentToMeq(meqB,
+				"<CNcomment><TX>b</TX><common_properties><e name=\"gain\" type=\"string\">high</e></common_properties></CNcomment>");
+
+		// the rows must not share a batch
+		List<String> signatureA = meqA.getSignature();
+		List<String> signatureB = meqB.getSignature();
+		assertFalse(signatureA.equals(signatureB));
+		ODSInsertStatement batchA = new ODSInsertStatement(modelCache, "meq");
+		assertEquals(0, batchA.append(meqA));
+		ODSInsertStatement batchB = new ODSInsertStatement(modelCache, "meq");
+		assertEquals(0, batchB.append(meqB));
+		assertEquals(signatureA, batchA.getSignature());
+		batchA.executeBatch();
+		batchB.executeBatch();
+
+		InstanceElement ieMeqA = as.getElementByName("meq").getInstances("ChannelA").nextOne();
+		assertEquals(2, ODSHelper.getLongVal(ieMeqA.getValue("gain")));
+		InstanceElement ieMeqB = as.getElementByName("meq").getInstances("ChannelB").nextOne();
+		assertEquals("high", ODSHelper.getStringVal(ieMeqB.getValue("gain")));
+	}
 }
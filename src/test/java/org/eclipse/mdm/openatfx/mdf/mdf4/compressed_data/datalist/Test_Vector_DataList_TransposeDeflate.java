@@ -18,7 +18,7 @@ package org.eclipse.mdm.openatfx.mdf.mdf4.compressed_data.datalist;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
-import org.eclipse.mdm.openatfx.mdf.ConvertException;
+import org.asam.ods.AoSession;
 import org.eclipse.mdm.openatfx.mdf.MDFConverter;
 import org.junit.Test;
 import org.omg.CORBA.ORB;
@@ -39,12 +39,13 @@ public class Test_Vector_DataList_TransposeDeflate {
 
 	private static final String mdfFile = "org/eclipse/mdm/openatfx/mdf/mdf4/compressed_data/datalist/Vector_DataList_TransposeDeflate.mf4";
 
-	@Test(expected = ConvertException.class)
+	@Test
 	public void setUpBeforeClass() throws Exception {
 		ORB orb = ORB.init(new String[0], System.getProperties());
 		Path path = Paths.get(ClassLoader.getSystemResource(mdfFile).toURI());
 		MDFConverter reader = new MDFConverter();
-		reader.getAoSessionForMDF(orb, path);
+		AoSession aoSession = reader.getAoSessionForMDF(orb, path);
+		aoSession.close();
 	}
 
 	/*
@@ -0,0 +1,139 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+package org.eclipse.mdm.openatfx.mdf.mdf4.conversion.text_conversion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.asam.ods.AoException;
+import org.asam.ods.AoSession;
+import org.asam.ods.ApplicationRelation;
+import org.asam.ods.ApplicationStructure;
+import org.asam.ods.InstanceElement;
+import org.asam.ods.InstanceElementIterator;
+import org.eclipse.mdm.openatfx.mdf.MDFConverter;
+import org.eclipse.mdm.openatfx.mdf.util.FileUtil;
+import org.eclipse.mdm.openatfx.mdf.util.ODSModelCache;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.omg.CORBA.ORB;
+
+import de.rechner.openatfx.util.ODSHelper;
+import junit.framework.JUnit4TestAdapter;
+
+/**
+ * Test case for reading the example MDF4-file
+ * <code>Vector_AlgebraicConversionSinus.mf4</code>.
+ */
+public class Test_Vector_AlgebraicConversionSinus {
+
+	private static final String mdfFile = "org/eclipse/mdm/openatfx/mdf/mdf4/conversion/text_conversion/Vector_AlgebraicConversionSinus.mf4";
+
+	private static ORB orb;
+	private static AoSession aoSession;
+	private static ODSModelCache modelCache;
+	private static Path path;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		orb = ORB.init(new String[0], System.getProperties());
+		path = Paths.get(ClassLoader.getSystemResource(mdfFile).toURI());
+		MDFConverter reader = new MDFConverter();
+		aoSession = reader.getAoSessionForMDF(orb, path);
+		modelCache = new ODSModelCache(aoSession);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		if (aoSession != null) {
+			aoSession.close();
+		}
+	}
+
+	@Test
+	public void testReadIDBlock() {
+		try {
+			ApplicationStructure as = aoSession.getApplicationStructure();
+			InstanceElement ieTst = as.getElementByName("tst").getInstances("*").nextOne();
+			assertEquals("MDF     ", ODSHelper.getStringVal(ieTst.getValue("mdf_file_id")));
+			assertEquals("4.10    ", ODSHelper.getStringVal(ieTst.getValue("mdf_version_str")));
+			assertEquals(410, ODSHelper.getLongVal(ieTst.getValue("mdf_version")));
+			assertEquals("MDF4Lib", ODSHelper.getStringVal(ieTst.getValue("mdf_program")));
+			assertEquals(0, ODSHelper.getLongVal(ieTst.getValue("mdf_unfin_flags")));
+			assertEquals(0, ODSHelper.getLongVal(ieTst.getValue("mdf_custom_unfin_flags")));
+		} catch (AoException e) {
+			fail(e.reason);
+		}
+	}
+
+	@Test
+	public void testReadAlgebraicConversion() throws IOException {
+		try {
+			ApplicationStructure as = aoSession.getApplicationStructure();
+			InstanceElement ieMeq = as.getElementByName("meq").getInstances("Data channel").nextOne();
+			assertEquals(7, ODSHelper.getEnumVal(ieMeq.getValue("dt"))); // DT_DOUBLE
+
+			// the physical values are calculated into an external component
+			ApplicationRelation relMeqLc = modelCache.getApplicationRelation("meq", "lc", "lcs");
+			InstanceElement ieLc = ieMeq.getRelatedInstances(relMeqLc, "*").nextOne();
+			assertEquals(7, ODSHelper.getEnumVal(ieLc.getValue("srp"))); // external_component
+
+			ApplicationRelation relLcEc = modelCache.getApplicationRelation("lc", "ec", "ecs");
+			InstanceElementIterator iter = ieLc.getRelatedInstances(relLcEc, "*");
+			assertEquals(1, iter.getCount());
+			InstanceElement ieEc = iter.nextOne();
+			assertEquals("rational_conversion.calc", ODSHelper.getStringVal(ieEc.getValue("fl")));
+			assertEquals(6, ODSHelper.getEnumVal(ieEc.getValue("vt"))); // ieeefloat8
+			assertEquals(10, ODSHelper.getLongVal(ieEc.getValue("cl")));
+			assertEquals(10, ODSHelper.getLongVal(ieEc.getValue("vb")));
+			assertEquals(0, ODSHelper.getLongVal(ieEc.getValue("vo")));
+
+			// formula "sin(X)"
+			double[] values = readValues(ODSHelper.getStringVal(ieEc.getValue("fl")),
+					ODSHelper.getLongLongVal(ieEc.getValue("so")), 10);
+			for (int i = 0; i < 10; i++) {
+				assertEquals(Math.sin(i), values[i], 1e-9);
+			}
+		} catch (AoException e) {
+			fail(e.reason);
+		}
+	}
+
+	private static double[] readValues(String fileName, long startOffset, int count) throws IOException {
+		ByteBuffer bb = ByteBuffer.allocate(count * 8).order(ByteOrder.LITTLE_ENDIAN);
+		try (SeekableByteChannel sbc = Files.newByteChannel(path.resolveSibling(fileName))) {
+			FileUtil.readFully(sbc, bb, startOffset);
+		}
+		bb.flip();
+		double[] values = new double[count];
+		bb.asDoubleBuffer().get(values);
+		return values;
+	}
+
+	public static junit.framework.Test suite() {
+		return new JUnit4TestAdapter(Test_Vector_AlgebraicConversionSinus.class);
+	}
+
+}
@@ -0,0 +1,116 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BitFieldDecoderTest {
+
+	private static final int RECORD_SIZE = 12;
+
+	private final byte[] data = new byte[RECORD_SIZE];
+
+	public BitFieldDecoderTest() {
+		new Random(4711).nextBytes(data);
+	}
+
+	@Test
+	public void testReadUnsigned() {
+		for (ByteOrder bufferOrder : new ByteOrder[] { ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN }) {
+			ByteBuffer bb = ByteBuffer.wrap(data).order(bufferOrder);
+			for (ByteOrder byteOrder : new ByteOrder[] { ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN }) {
+				for (int bitOffset = 0; bitOffset < 8; bitOffset++) {
+					for (int bitCount = 1; bitCount <= 64; bitCount++) {
+						int bytes = (bitOffset + bitCount + 7) >>> 3;
+						// all positions, including the byte by byte path at the end
+						for (int index = 0; index + bytes <= RECORD_SIZE; index++) {
+							long expected = reference(index, bitOffset, bitCount, byteOrder);
+							String msg = new StringBuilder().append(byteOrder).append(" index=").append(index).append(" bo=").append(bitOffset).append(" bc=")
+									.append(bitCount).toString();
+							assertEquals(msg, expected, BitFieldDecoder.readUnsigned(bb, index, bitOffset, bitCount, byteOrder));
+							long signed = expected << 64 - bitCount >> 64 - bitCount;
+							assertEquals(msg, signed, BitFieldDecoder.readSigned(bb, index, bitOffset, bitCount, byteOrder));
+						}
+					}
+				}
+			}
+			assertEquals(0, bb.position());
+		}
+	}
+
+	@Test
+	public void testBitOffsetBeyondFirstByte() {
+		ByteBuffer bb = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(BitFieldDecoder.readUnsigned(bb, 3, 5, 13, ByteOrder.LITTLE_ENDIAN),
+				BitFieldDecoder.readUnsigned(bb, 1, 21, 13, ByteOrder.LITTLE_ENDIAN));
+	}
+
+	@Test
+	public void testIsSet() {
+		ByteBuffer bb = ByteBuffer.wrap(new byte[] { 0x01, (byte) 0x80 });
+		assertTrue(BitFieldDecoder.isSet(bb, 0, 0));
+		assertFalse(BitFieldDecoder.isSet(bb, 0, 1));
+		assertFalse(BitFieldDecoder.isSet(bb, 0, 14));
+		assertTrue(BitFieldDecoder.isSet(bb, 0, 15));
+		assertTrue(BitFieldDecoder.isSet(bb, 1, 7));
+	}
+
+	@Test
+	public void testReadBytes() throws IOException {
+		ByteBuffer bb = ByteBuffer.wrap(data);
+		byte[] dst = new byte[RECORD_SIZE];
+		for (int skip = 0; skip < 24; skip++) {
+			for (int bitCount = 1; skip + bitCount <= RECORD_SIZE * 8; bitCount++) {
+				BitInputStream bis = new BitInputStream(data);
+				bis.skip(skip);
+				byte[] expected = bis.readByteArray(bitCount);
+
+				int bytes = BitFieldDecoder.readBytes(bb, 0, skip, bitCount, dst);
+				assertArrayEquals(new StringBuilder().append("skip=").append(skip).append(" bc=").append(bitCount).toString(), expected,
+						Arrays.copyOf(dst, bytes));
+			}
+		}
+		assertEquals(0, bb.position());
+	}
+
+	/**
+	 * Straightforward implementation of the MDF bit field layout.
+	 */
+	private long reference(int index, int bitOffset, int bitCount, ByteOrder byteOrder) {
+		int bytes = (bitOffset + bitCount + 7) >>> 3;
+		byte[] be = new byte[bytes + 1];
+		for (int i = 0; i < bytes; i++) {
+			// big endian magnitude with leading zero byte
+			be[i + 1] = byteOrder == ByteOrder.BIG_ENDIAN ? data[index + i] : data[index + bytes - 1 - i];
+		}
+		BigInteger value = new BigInteger(be).shiftRight(bitOffset);
+		return value.and(BigInteger.ONE.shiftLeft(bitCount).subtract(BigInteger.ONE)).longValue();
+	}
+
+}
@@ -0,0 +1,96 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FormulaTest {
+
+	@Test
+	public void testPrecedence() {
+		assertEquals(7, Formula.compile("1 + 2 * 3").evaluate(0), 0);
+		assertEquals(9, Formula.compile("(1 + 2) * 3").evaluate(0), 0);
+		assertEquals(-4, Formula.compile("-X * 2").evaluate(2), 0);
+		assertEquals(1, Formula.compile("X - 2 - 3").evaluate(6), 0);
+		assertEquals(2, Formula.compile("X / 2 / 2").evaluate(8), 0);
+		assertEquals(1, Formula.compile("X > 2 && X < 5").evaluate(3), 0);
+		assertEquals(0, Formula.compile("X > 2 && X < 5").evaluate(5), 0);
+		assertEquals(1, Formula.compile("X == 3 || !X").evaluate(0), 0);
+	}
+
+	@Test
+	public void testIntegerOperators() {
+		assertEquals(0x0F, Formula.compile("X & 0x0F").evaluate(0xFF), 0);
+		assertEquals(0x3, Formula.compile("x >> 4 | 1").evaluate(0x20), 0);
+		assertEquals(6, Formula.compile("X1 ^ 3").evaluate(5), 0);
+		assertEquals(8, Formula.compile("1 << X").evaluate(3), 0);
+		assertEquals(-6, Formula.compile("~X").evaluate(5), 0);
+		assertEquals(1, Formula.compile("X % 3").evaluate(7), 0);
+	}
+
+	@Test
+	public void testFunctions() {
+		assertEquals(Math.sin(0.5) + Math.log(2), Formula.compile("sin(X) + ln(4 * X)").evaluate(0.5), 1e-15);
+		assertEquals(8, Formula.compile("pow(X, 3)").evaluate(2), 0);
+		assertEquals(3, Formula.compile("ABS(SQRT(X) - 6)").evaluate(9), 0);
+		assertEquals(Math.atan(1), Formula.compile("arctan(X)").evaluate(1), 0);
+		assertEquals(1.5e3, Formula.compile("1.5e3").evaluate(0), 0);
+	}
+
+	@Test
+	public void testConstantFolding() {
+		Formula formula = Formula.compile("pow(2, 10) - 24");
+		assertTrue(formula.isConstant());
+		assertEquals(1000, formula.evaluate(Double.NaN), 0);
+		assertFalse(Formula.compile("X * (2 + 3)").isConstant());
+	}
+
+	@Test
+	public void testBulkEvaluation() {
+		Formula formula = Formula.compile("(X * 0.5 + 1) / (X + 2) - exp(-X / 1000) + (X & 7)");
+		double[] values = new double[1000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = i;
+		}
+		// partial range, spans several chunks
+		formula.evaluate(values, 10, 900);
+		for (int i = 0; i < values.length; i++) {
+			double expected = i < 10 || i >= 910 ? i : formula.evaluate(i);
+			assertEquals(expected, values[i], 1e-12);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownFunction() {
+		Formula.compile("foo(X)");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingParenthesis() {
+		Formula.compile("(X + 1");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTrailingInput() {
+		Formula.compile("X 1");
+	}
+
+}
@@ -0,0 +1,104 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InvalidationBitmapTest {
+
+	// record: 2 byte value, 1 invalidation byte
+	private static final int RECORD_SIZE = 3;
+	private static final int RECORD_COUNT = 1000;
+
+	private RecordFile file;
+	private Path sidecar;
+
+	@Before
+	public void setUp() throws Exception {
+		file = RecordFile.create(RECORD_SIZE, 1, RECORD_COUNT, 0, new RecordFile.RecordLayout() {
+			@Override
+			public void write(ByteBuffer bb, int index) {
+				bb.putShort((short) index);
+				// bit 0: never set, bit 1 and 3: every 7th record, bit 2: last
+				// record only
+				int flags = index % 7 == 0 ? 0x0A : 0x00;
+				if (index == RECORD_COUNT - 1) {
+					flags |= 0x04;
+				}
+				bb.put((byte) flags);
+			}
+		});
+		sidecar = file.createSidecar(".bin");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		file.close();
+	}
+
+	@Test
+	public void testBitmaps() throws IOException {
+		InvalidationBitmap[] bitmaps = new InvalidationBitmap[4];
+		try (FileChannel in = FileChannel.open(file.getPath(), StandardOpenOption.READ)) {
+			RecordReader records = new RecordReader(in, RECORD_SIZE, 100);
+			records.addSection(0, RECORD_COUNT * RECORD_SIZE);
+			RecordScanner scanner = new RecordScanner();
+			for (int bit = 0; bit < bitmaps.length; bit++) {
+				// the last bitmap is sized too small and has to grow
+				bitmaps[bit] = new InvalidationBitmap(2, bit, bit == 2 ? 10 : RECORD_COUNT);
+				scanner.addConsumer(bitmaps[bit]);
+			}
+			scanner.scan(records);
+		}
+
+		assertTrue(bitmaps[0].isAllValid());
+		assertEquals(RECORD_COUNT, bitmaps[0].getCount());
+		assertEquals(143, bitmaps[1].getInvalidCount());
+		assertEquals(1, bitmaps[2].getInvalidCount());
+		assertTrue(bitmaps[1].hasSameFlags(bitmaps[3]));
+		assertFalse(bitmaps[1].hasSameFlags(bitmaps[2]));
+		assertFalse(bitmaps[0].hasSameFlags(bitmaps[2]));
+
+		try (FileChannel out = FileChannel.open(sidecar, StandardOpenOption.WRITE)) {
+			// small write buffer forces several flushes
+			assertEquals(RECORD_COUNT * 2, bitmaps[1].writeFlags(out, 0, ByteOrder.BIG_ENDIAN, 64));
+			assertEquals(RECORD_COUNT * 2, bitmaps[2].writeFlags(out, RECORD_COUNT * 2, ByteOrder.LITTLE_ENDIAN, 1024));
+		}
+		ByteBuffer result = ByteBuffer.wrap(Files.readAllBytes(sidecar));
+		for (int i = 0; i < RECORD_COUNT; i++) {
+			result.order(ByteOrder.BIG_ENDIAN);
+			assertEquals(i % 7 == 0 ? 0 : 15, result.getShort(i * 2));
+			result.order(ByteOrder.LITTLE_ENDIAN);
+			assertEquals(i == RECORD_COUNT - 1 ? 0 : 15, result.getShort(RECORD_COUNT * 2 + i * 2));
+		}
+	}
+
+}
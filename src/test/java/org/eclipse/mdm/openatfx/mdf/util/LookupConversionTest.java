@@ -0,0 +1,173 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LookupConversionTest {
+
+	// size of the large tables, the bulk conversions are timed with them
+	private static final int TABLE_SIZE = 20000;
+	private static final int VALUE_COUNT = 1000000;
+
+	@Test
+	public void testInterpolated() {
+		LookupConversion conversion = LookupConversion.interpolated(new double[] { 10, 0, 20 },
+				new double[] { 100, 0, 0 });
+		assertEquals(0, conversion.convert(-5), 0);
+		assertEquals(50, conversion.convert(5), 0);
+		assertEquals(100, conversion.convert(10), 0);
+		assertEquals(25, conversion.convert(17.5), 0);
+		assertEquals(0, conversion.convert(25), 0);
+	}
+
+	@Test
+	public void testNearestAndLower() {
+		double[] keys = new double[] { 0, 10, 20 };
+		double[] values = new double[] { 1, 2, 3 };
+		LookupConversion nearest = LookupConversion.nearest(keys, values);
+		assertEquals(1, nearest.convert(5), 0);
+		assertEquals(2, nearest.convert(5.1), 0);
+		assertEquals(3, nearest.convert(100), 0);
+		LookupConversion lower = LookupConversion.lower(keys, values);
+		assertEquals(1, lower.convert(9.9), 0);
+		assertEquals(2, lower.convert(10), 0);
+		assertEquals(1, lower.convert(-1), 0);
+	}
+
+	@Test
+	public void testValueRanges() {
+		double[] lower = new double[] { 10, 0, 20 };
+		double[] upper = new double[] { 20, 10, 30 };
+		LookupConversion integer = LookupConversion.valueRangeToValue(lower, upper, new double[] { 2, 1, 3 }, -1,
+				true);
+		assertEquals(1, integer.convert(0), 0);
+		assertEquals(2, integer.convert(15), 0);
+		assertEquals(3, integer.convert(30), 0);
+		assertEquals(-1, integer.convert(31), 0);
+		assertEquals(-1, integer.convert(-1), 0);
+
+		LookupConversion real = LookupConversion.valueRangeToText(lower, upper, new String[] { "b", "a", "c" },
+				"default", false);
+		assertEquals("a", real.convertToText(9.99));
+		assertEquals("b", real.convertToText(10));
+		assertEquals("default", real.convertToText(30));
+	}
+
+	@Test
+	public void testOverlappingRanges() {
+		// the first range in table order wins
+		LookupConversion conversion = LookupConversion.valueRangeToValue(new double[] { 0, 5 },
+				new double[] { 100, 10 }, new double[] { 1, 2 }, -1, true);
+		assertEquals(1, conversion.convert(7), 0);
+		assertEquals(1, conversion.convert(50), 0);
+
+		conversion = LookupConversion.valueRangeToValue(new double[] { 5, 0, 20 }, new double[] { 10, 100, 30 },
+				new double[] { 2, 1, 3 }, -1, true);
+		assertEquals(2, conversion.convert(7), 0);
+		assertEquals(1, conversion.convert(25), 0);
+		assertEquals(1, conversion.convert(50), 0);
+
+		// integer ranges sharing a limit
+		conversion = LookupConversion.valueRangeToValue(new double[] { 10, 0 }, new double[] { 20, 10 },
+				new double[] { 2, 1 }, -1, true);
+		assertEquals(2, conversion.convert(10), 0);
+	}
+
+	@Test
+	public void testTexts() {
+		LookupConversion valueToText = LookupConversion.valueToText(new double[] { 3, 1, 2 },
+				new String[] { "three", "one", "two" }, null);
+		assertEquals("one", valueToText.convertToText(1));
+		assertNull(valueToText.convertToText(1.5));
+
+		LookupConversion textToValue = LookupConversion.textToValue(new String[] { "on", "off" },
+				new double[] { 1, 0 }, -1);
+		assertEquals(1, textToValue.convert("on"), 0);
+		assertEquals(-1, textToValue.convert("unknown"), 0);
+
+		LookupConversion textToText = LookupConversion.textToText(new String[] { "a" }, new String[] { "b" }, null);
+		assertEquals("b", textToText.convertToText("a"));
+		assertEquals("c", textToText.convertToText("c"));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testUnsupported() {
+		LookupConversion.textToValue(new String[0], new double[0], 0).convert(1.0);
+	}
+
+	@Test
+	public void testLargeTables() {
+		Random random = new Random(42);
+		double[] keys = new double[TABLE_SIZE];
+		double[] values = new double[TABLE_SIZE];
+		double[] upper = new double[TABLE_SIZE];
+		for (int i = 0; i < TABLE_SIZE; i++) {
+			// descending order, forces the index to sort the table
+			keys[i] = (TABLE_SIZE - i) * 2.0;
+			upper[i] = keys[i] + 1;
+			values[i] = random.nextDouble();
+		}
+		double[] raw = new double[VALUE_COUNT];
+		for (int i = 0; i < raw.length; i++) {
+			raw[i] = random.nextDouble() * TABLE_SIZE * 2;
+		}
+
+		LookupConversion interpolated = LookupConversion.interpolated(keys, values);
+		LookupConversion ranges = LookupConversion.valueRangeToValue(keys, upper, values, -1, false);
+		double[] interpolatedValues = raw.clone();
+		interpolated.convert(interpolatedValues, 0, interpolatedValues.length);
+		double[] rangeValues = raw.clone();
+		ranges.convert(rangeValues, 0, rangeValues.length);
+
+		// compare a sample with a linear search over the unsorted table
+		for (int i = 0; i < raw.length; i += 997) {
+			double x = raw[i];
+			double expectedRange = -1;
+			int below = -1;
+			int above = -1;
+			for (int k = 0; k < TABLE_SIZE; k++) {
+				if (keys[k] <= x && x < upper[k]) {
+					expectedRange = values[k];
+				}
+				if (keys[k] <= x && (below < 0 || keys[k] > keys[below])) {
+					below = k;
+				}
+				if (keys[k] > x && (above < 0 || keys[k] < keys[above])) {
+					above = k;
+				}
+			}
+			double expected;
+			if (below < 0) {
+				expected = values[above];
+			} else if (above < 0) {
+				expected = values[below];
+			} else {
+				expected = values[below]
+						+ (values[above] - values[below]) * (x - keys[below]) / (keys[above] - keys[below]);
+			}
+			assertEquals(expected, interpolatedValues[i], 1e-12);
+			assertEquals(expectedRange, rangeValues[i], 0);
+		}
+	}
+
+}
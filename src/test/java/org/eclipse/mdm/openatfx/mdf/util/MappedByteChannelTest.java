@@ -0,0 +1,102 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class MappedByteChannelTest {
+
+	// small window to force remapping within the test file
+	private static final int WINDOW_SIZE = 64 * 1024;
+
+	private static Path file;
+	private static byte[] content;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		content = new byte[5 * WINDOW_SIZE + 123];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) (i * 31 + 7);
+		}
+		file = Files.createTempFile("mapped", ".mf4");
+		Files.write(file, content);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testReadAcrossWindows() throws IOException {
+		try (MappedByteChannel channel = open()) {
+			assertEquals(content.length, channel.size());
+			// read starting shortly before a window boundary
+			long pos = 2 * WINDOW_SIZE - 10;
+			ByteBuffer bb = ByteBuffer.allocate(WINDOW_SIZE + 20);
+			channel.position(pos);
+			assertEquals(bb.capacity(), channel.read(bb));
+			assertArrayEquals(expected(pos, bb.capacity()), bb.array());
+			assertEquals(pos + bb.capacity(), channel.position());
+		}
+	}
+
+	@Test
+	public void testRandomAccess() throws IOException {
+		try (MappedByteChannel channel = open()) {
+			long[] positions = { 0, 4 * WINDOW_SIZE + 5, 17, 3 * WINDOW_SIZE, WINDOW_SIZE - 1, 5 * WINDOW_SIZE };
+			for (long pos : positions) {
+				ByteBuffer bb = ByteBuffer.allocate(88);
+				channel.position(pos);
+				channel.read(bb);
+				assertArrayEquals(expected(pos, 88), bb.array());
+			}
+		}
+	}
+
+	@Test
+	public void testReadAtEndOfFile() throws IOException {
+		try (MappedByteChannel channel = open()) {
+			ByteBuffer bb = ByteBuffer.allocate(200);
+			channel.position(content.length - 50);
+			assertEquals(50, channel.read(bb));
+			assertEquals(-1, channel.read(bb));
+		}
+	}
+
+	private static MappedByteChannel open() throws IOException {
+		return new MappedByteChannel(FileChannel.open(file, StandardOpenOption.READ), WINDOW_SIZE);
+	}
+
+	private static byte[] expected(long pos, int length) {
+		byte[] b = new byte[length];
+		System.arraycopy(content, (int) pos, b, 0, length);
+		return b;
+	}
+
+}
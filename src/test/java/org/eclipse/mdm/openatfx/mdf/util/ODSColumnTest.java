@@ -0,0 +1,107 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.asam.ods.DataType;
+import org.asam.ods.TS_Union;
+import org.asam.ods.TS_ValueSeq;
+import org.junit.Test;
+
+public class ODSColumnTest {
+
+	@Test
+	public void testGrow() throws Exception {
+		ODSColumn column = new ODSColumn(DataType.DT_LONG, 2);
+		column.setInt(0, 7);
+		column.ensureCapacity(4);
+		column.setInt(3, 9);
+
+		TS_ValueSeq seq = column.toValueSeq(4, null);
+		assertArrayEquals(new short[] { 15, 0, 0, 15 }, seq.flag);
+		assertArrayEquals(new int[] { 7, 0, 0, 9 }, seq.u.longVal());
+	}
+
+	@Test
+	public void testAllValuesNull() {
+		ODSColumn column = new ODSColumn(DataType.DT_STRING, 4);
+		column.setString(0, null, (short) 0);
+		assertTrue(column.isAllValuesNull(4));
+		column.setString(2, "a", (short) 15);
+		assertFalse(column.isAllValuesNull(4));
+		assertTrue(column.isAllValuesNull(2));
+	}
+
+	@Test
+	public void testDefaults() throws Exception {
+		ODSColumn strings = new ODSColumn(DataType.DT_STRING, 4);
+		strings.setString(1, "a", (short) 15);
+		assertArrayEquals(new String[] { "", "a", "" }, strings.toValueSeq(3, null).u.stringVal());
+
+		ODSColumn seqs = new ODSColumn(DataType.DS_DOUBLE, 4);
+		seqs.setObject(1, new double[] { 1, 2 });
+		double[][] values = seqs.toValueSeq(2, null).u.doubleSeq();
+		assertEquals(0, values[0].length);
+		assertArrayEquals(new double[] { 1, 2 }, values[1], 0);
+	}
+
+	@Test
+	public void testUnionValues() throws Exception {
+		ODSColumn longs = new ODSColumn(DataType.DT_LONGLONG, 2);
+		TS_Union u = new TS_Union();
+		u.longlongVal(ODSHelper.asODSLongLong(1L << 40));
+		longs.set(1, u, (short) 15);
+		TS_ValueSeq seq = longs.toValueSeq(2, null);
+		assertArrayEquals(new long[] { 0, 1L << 40 }, ODSHelper.asJLong(seq.u.longlongVal()));
+		assertArrayEquals(new short[] { 0, 15 }, seq.flag);
+
+		ODSColumn floats = new ODSColumn(DataType.DT_FLOAT, 2);
+		u = new TS_Union();
+		u.floatVal(1.5f);
+		floats.set(0, u, (short) 15);
+		assertArrayEquals(new float[] { 1.5f, 0 }, floats.toValueSeq(2, null).u.floatVal(), 0);
+	}
+
+	@Test
+	public void testCopyTo() throws Exception {
+		ODSColumn source = new ODSColumn(DataType.DT_LONG, 2);
+		source.setInt(1, 7);
+		ODSColumn target = new ODSColumn(DataType.DT_LONG, 3);
+		source.copyTo(1, target, 2);
+		source.copyTo(0, target, 0);
+
+		TS_ValueSeq seq = target.toValueSeq(3, null);
+		assertArrayEquals(new short[] { 0, 0, 15 }, seq.flag);
+		assertArrayEquals(new int[] { 0, 0, 7 }, seq.u.longVal());
+
+		ODSColumn strings = new ODSColumn(DataType.DT_STRING, 1);
+		strings.setString(0, "a", (short) 15);
+		ODSColumn stringTarget = new ODSColumn(DataType.DT_STRING, 1);
+		strings.copyTo(0, stringTarget, 0);
+		assertArrayEquals(new String[] { "a" }, stringTarget.toValueSeq(1, null).u.stringVal());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsupported() throws Exception {
+		new ODSColumn(DataType.DT_UNKNOWN, 1).toValueSeq(1, null);
+	}
+
+}
@@ -0,0 +1,85 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.asam.ods.AIDNameValueSeqUnitId;
+import org.asam.ods.AoException;
+import org.asam.ods.ApplAttr;
+import org.asam.ods.ApplElem;
+import org.asam.ods.DataType;
+import org.junit.Test;
+
+public class ODSInsertPlanTest {
+
+	private static ApplElem createApplElem() {
+		ApplElem applElem = new ApplElem();
+		applElem.aid = ODSHelper.asODSLongLong(5);
+		applElem.aeName = "lc";
+		applElem.attributes = new ApplAttr[] { createApplAttr("lc_iid", "id"), createApplAttr("iname", "name"),
+				createApplAttr("glb", "global_flag") };
+		return applElem;
+	}
+
+	private static ApplAttr createApplAttr(String aaName, String baName) {
+		ApplAttr applAttr = new ApplAttr();
+		applAttr.aaName = aaName;
+		applAttr.baName = baName;
+		return applAttr;
+	}
+
+	@Test
+	public void testBind() throws Exception {
+		ODSInsertPlan plan = new ODSInsertPlan(createApplElem(),
+				new String[] { "lc_iid", "iname", "glb", "min" },
+				new DataType[] { DataType.DT_LONGLONG, DataType.DT_STRING, DataType.DT_SHORT, DataType.DT_DOUBLE });
+
+		ODSColumn iid = new ODSColumn(DataType.DT_LONGLONG, 2);
+		iid.setLong(0, 1);
+		ODSColumn iname = new ODSColumn(DataType.DT_STRING, 2);
+		iname.setString(0, "a", (short) 15);
+		iname.setString(1, "b", (short) 15);
+		ODSColumn glb = new ODSColumn(DataType.DT_SHORT, 2);
+		glb.setShort(1, (short) 15);
+		ODSColumn min = new ODSColumn(DataType.DT_DOUBLE, 2);
+
+		// the id and the attribute without values are left out
+		AIDNameValueSeqUnitId[] values = plan.bind(new ODSColumn[] { iid, iname, glb, min }, 2, null);
+		assertEquals(2, values.length);
+		assertEquals("iname", values[0].attr.aaName);
+		assertEquals(5, ODSHelper.asJLong(values[0].attr.aid));
+		assertArrayEquals(new String[] { "a", "b" }, values[0].values.u.stringVal());
+		assertEquals("glb", values[1].attr.aaName);
+		assertArrayEquals(new short[] { 0, 15 }, values[1].values.flag);
+
+		// the attribute identifiers are shared by all executions
+		AIDNameValueSeqUnitId[] again = plan.bind(new ODSColumn[] { iid, iname, glb, min }, 1, null);
+		assertEquals(1, again.length);
+		assertSame(values[0].attr, again[0].attr);
+	}
+
+	@Test(expected = AoException.class)
+	public void testDataTypeMismatch() throws Exception {
+		ODSInsertPlan plan = new ODSInsertPlan(createApplElem(), new String[] { "iname" },
+				new DataType[] { DataType.DT_STRING });
+		plan.bind(new ODSColumn[] { new ODSColumn(DataType.DT_DATE, 1) }, 1, null);
+	}
+
+}
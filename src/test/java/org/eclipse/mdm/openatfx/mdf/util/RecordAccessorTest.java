@@ -0,0 +1,115 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class RecordAccessorTest {
+
+	// record: 1 byte record ID, 4 byte record number, 3 byte 20 bit field at
+	// bit offset 2
+	private static final int RECORD_SIZE = 8;
+	private static final int RECORDS_PER_SECTION = 1000;
+
+	private static RecordFile file;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// three sections of records, each after 24 bytes of garbage
+		file = RecordFile.create(RECORD_SIZE, 3, RECORDS_PER_SECTION, 24, new RecordFile.RecordLayout() {
+			@Override
+			public void write(ByteBuffer bb, int index) {
+				bb.put((byte) 1);
+				bb.putInt(index);
+				int field = (-index & 0xFFFFF) << 2;
+				bb.put((byte) field);
+				bb.put((byte) (field >> 8));
+				bb.put((byte) (field >> 16));
+			}
+		});
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		file.close();
+	}
+
+	@Test
+	public void testRandomAccess() throws IOException {
+		try (FileChannel channel = FileChannel.open(file.getPath(), StandardOpenOption.READ)) {
+			// small buffer, forces reads across sections
+			RecordAccessor records = createAccessor(channel, 10 * RECORD_SIZE);
+			assertEquals(3 * RECORDS_PER_SECTION, records.getRecordCount());
+
+			for (long index : new long[] { 2999, 0, 999, 1000, 1500, 1001, 1000, 2000, 1999 }) {
+				ByteBuffer bb = records.read(index, 50);
+				int count = bb.remaining() / RECORD_SIZE;
+				assertEquals(0, bb.remaining() % RECORD_SIZE);
+				for (int i = 0; i < count; i++) {
+					assertEquals(index + i, bb.getInt(bb.position() + i * RECORD_SIZE + 1));
+				}
+				// never across a section end or beyond the buffer
+				assertEquals(Math.min(10, Math.min(50, RECORDS_PER_SECTION - index % RECORDS_PER_SECTION)), count);
+			}
+		}
+	}
+
+	@Test
+	public void testNumericFieldReader() throws IOException {
+		try (FileChannel channel = FileChannel.open(file.getPath(), StandardOpenOption.READ)) {
+			RecordAccessor records = createAccessor(channel, 64 * RECORD_SIZE);
+			NumericFieldReader number = new NumericFieldReader(records, 1, 0, 32,
+					NumericFieldReader.Type.SIGNED_INTEGER, ByteOrder.LITTLE_ENDIAN);
+			NumericFieldReader field = new NumericFieldReader(records, 5, 2, 20,
+					NumericFieldReader.Type.SIGNED_INTEGER, ByteOrder.LITTLE_ENDIAN);
+
+			long[] numbers = new long[3 * RECORDS_PER_SECTION];
+			number.readLongs(0, numbers.length, numbers, 0);
+			long[] fields = new long[numbers.length];
+			field.readLongs(0, fields.length, fields, 0);
+			for (int i = 0; i < numbers.length; i++) {
+				assertEquals(i, numbers[i]);
+				// 20 bit two's complement of -i
+				assertEquals(i == 0 ? 0 : ((-i & 0xFFFFF) << 12) >> 12, fields[i]);
+			}
+
+			double[] values = new double[4];
+			number.readDoubles(998, 3, values, 1);
+			assertArrayEquals(new double[] { 0, 998, 999, 1000 }, values, 0);
+		}
+	}
+
+	private static RecordAccessor createAccessor(FileChannel channel, int bufferSize) {
+		RecordAccessor records = new RecordAccessor(RECORD_SIZE, bufferSize);
+		for (int section = 0; section < 3; section++) {
+			records.addSection(channel, file.getSectionPos(section), file.getSectionLength());
+		}
+		return records;
+	}
+
+}
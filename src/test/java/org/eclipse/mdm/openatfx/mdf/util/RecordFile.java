@@ -0,0 +1,146 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Temporary file of synthetic records used by the record tests. The records
+ * are written in sections of equal size, each section is preceded by a gap of
+ * garbage bytes. The file and the sidecar files receiving the output of a test
+ * are deleted on {@link #close()}.
+ */
+class RecordFile implements Closeable {
+
+	/**
+	 * Writes the fields of a single record.
+	 */
+	interface RecordLayout {
+
+		/**
+		 * @param bb
+		 *            The buffer receiving the record, little endian.
+		 * @param index
+		 *            The index of the record over all sections.
+		 */
+		void write(ByteBuffer bb, int index);
+
+	}
+
+	private final Path path;
+	private final int recordSize;
+	private final int recordsPerSection;
+	private final int gap;
+	private final List<Path> sidecars = new ArrayList<>();
+
+	private RecordFile(Path path, int recordSize, int recordsPerSection, int gap) {
+		this.path = path;
+		this.recordSize = recordSize;
+		this.recordsPerSection = recordsPerSection;
+		this.gap = gap;
+	}
+
+	/**
+	 * Creates the temporary file.
+	 *
+	 * @param recordSize
+	 *            The size of a single record.
+	 * @param sections
+	 *            The number of sections.
+	 * @param recordsPerSection
+	 *            The number of records of each section.
+	 * @param gap
+	 *            The number of garbage bytes in front of each section.
+	 * @param layout
+	 *            Writes the records.
+	 * @return The record file.
+	 * @throws IOException
+	 *             Error writing the file.
+	 */
+	static RecordFile create(int recordSize, int sections, int recordsPerSection, int gap, RecordLayout layout)
+			throws IOException {
+		ByteBuffer bb = ByteBuffer.allocate(sections * (gap + recordsPerSection * recordSize));
+		int index = 0;
+		for (int section = 0; section < sections; section++) {
+			bb.put(new byte[gap]);
+			for (int i = 0; i < recordsPerSection; i++) {
+				int start = bb.position();
+				bb.order(ByteOrder.LITTLE_ENDIAN);
+				layout.write(bb, index++);
+				if (bb.position() - start != recordSize) {
+					throw new IllegalStateException("record layout does not match the record size " + recordSize);
+				}
+			}
+		}
+		Path path = Files.createTempFile("records", ".mf4");
+		Files.write(path, bb.array());
+		return new RecordFile(path, recordSize, recordsPerSection, gap);
+	}
+
+	/**
+	 * @return The file containing the records.
+	 */
+	Path getPath() {
+		return path;
+	}
+
+	/**
+	 * @param section
+	 *            The index of the section.
+	 * @return The position of the first record of the section.
+	 */
+	long getSectionPos(int section) {
+		return gap + section * (gap + getSectionLength());
+	}
+
+	/**
+	 * @return The length of each section.
+	 */
+	long getSectionLength() {
+		return (long) recordsPerSection * recordSize;
+	}
+
+	/**
+	 * Creates an empty sidecar file, which is deleted with the record file.
+	 *
+	 * @param suffix
+	 *            The file name suffix, e.g. ".calc".
+	 * @return The sidecar file.
+	 * @throws IOException
+	 *             Error creating the file.
+	 */
+	Path createSidecar(String suffix) throws IOException {
+		Path sidecar = Files.createTempFile("records", suffix);
+		sidecars.add(sidecar);
+		return sidecar;
+	}
+
+	@Override
+	public void close() throws IOException {
+		Files.deleteIfExists(path);
+		for (Path sidecar : sidecars) {
+			Files.deleteIfExists(sidecar);
+		}
+	}
+
+}
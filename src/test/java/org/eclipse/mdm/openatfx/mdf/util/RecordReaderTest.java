@@ -0,0 +1,103 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class RecordReaderTest {
+
+	// record: 4 byte record number, 2 byte marker
+	private static final int RECORD_SIZE = 6;
+	private static final int RECORDS_PER_SECTION = 1000;
+
+	private static RecordFile file;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// two sections of records, each after 24 bytes of garbage
+		file = RecordFile.create(RECORD_SIZE, 2, RECORDS_PER_SECTION, 24, new RecordFile.RecordLayout() {
+			@Override
+			public void write(ByteBuffer bb, int index) {
+				bb.putInt(index);
+				bb.putShort((short) 0x7F7F);
+			}
+		});
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		file.close();
+	}
+
+	@Test
+	public void testReadSections() throws IOException {
+		try (FileChannel channel = FileChannel.open(file.getPath(), StandardOpenOption.READ)) {
+			// small buffer, forces many refills
+			RecordReader records = createReader(channel, 100);
+			assertEquals(2 * RECORDS_PER_SECTION, records.getRecordCount());
+			assertRecords(records);
+
+			// second pass after rewind
+			records.rewind();
+			assertRecords(records);
+		}
+	}
+
+	@Test
+	public void testIncompleteRecordIgnored() throws IOException {
+		try (FileChannel channel = FileChannel.open(file.getPath(), StandardOpenOption.READ)) {
+			RecordReader records = new RecordReader(channel, RECORD_SIZE, RecordReader.DEFAULT_BUFFER_SIZE);
+			records.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+			records.addSection(file.getSectionPos(0), 2 * RECORD_SIZE + 3);
+			records.addSection(file.getSectionPos(0), RECORD_SIZE - 1);
+			assertEquals(2, records.getRecordCount());
+			assertEquals(0, records.next().getInt());
+			assertEquals(1, records.next().getInt());
+			assertNull(records.next());
+		}
+	}
+
+	private static RecordReader createReader(FileChannel channel, int bufferSize) {
+		RecordReader records = new RecordReader(channel, RECORD_SIZE, bufferSize);
+		records.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+		records.addSection(file.getSectionPos(0), file.getSectionLength());
+		records.addSection(file.getSectionPos(1), file.getSectionLength());
+		return records;
+	}
+
+	private static void assertRecords(RecordReader records) throws IOException {
+		for (int i = 0; i < 2 * RECORDS_PER_SECTION; i++) {
+			ByteBuffer record = records.next();
+			assertEquals(RECORD_SIZE, record.remaining());
+			assertEquals(i, record.getInt(record.position()));
+			assertEquals((short) 0x7F7F, record.getShort(record.position() + 4));
+			assertEquals(i, records.getRecordIndex());
+		}
+		assertNull(records.next());
+	}
+
+}
@@ -0,0 +1,111 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RecordScannerTest {
+
+	// record: 4 byte unsigned integer, 2 byte signed integer, 1 invalidation byte
+	private static final int RECORD_SIZE = 7;
+	private static final int RECORD_COUNT = 1000;
+
+	private RecordFile file;
+	private Path sidecar;
+
+	@Before
+	public void setUp() throws Exception {
+		file = RecordFile.create(RECORD_SIZE, 1, RECORD_COUNT, 0, new RecordFile.RecordLayout() {
+			@Override
+			public void write(ByteBuffer bb, int index) {
+				bb.putInt(0xFFFFFFFF - index);
+				bb.putShort((short) -index);
+				bb.put((byte) (index % 3 == 0 ? 0x04 : 0x00));
+			}
+		});
+		sidecar = file.createSidecar(".calc");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		file.close();
+	}
+
+	@Test
+	public void testScan() throws IOException {
+		// linear conversion 2x + 1
+		double[] p = new double[] { 0, 2, 1, 0, 0, 1 };
+		long flagsPos = RECORD_COUNT * 8L;
+		long ratConvPos = RECORD_COUNT * 10L;
+		try (FileChannel in = FileChannel.open(file.getPath(), StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(sidecar, StandardOpenOption.WRITE)) {
+			RecordReader records = new RecordReader(in, RECORD_SIZE, 100);
+			records.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+			records.addSection(0, RECORD_COUNT * RECORD_SIZE);
+
+			// small write buffers force several flushes
+			RecordScanner scanner = new RecordScanner();
+			scanner.addConsumer(new RationalConversionConsumer(out, 0, 64, 0, ByteOrder.LITTLE_ENDIAN, 32, true, true, p));
+			scanner.addConsumer(new FlagConsumer(out, flagsPos, 64, ByteOrder.LITTLE_ENDIAN, 6, 2));
+			scanner.addConsumer(new RationalConversionConsumer(out, ratConvPos, 64, 4, ByteOrder.LITTLE_ENDIAN, 16, true, false, p));
+			assertEquals(3, scanner.getConsumerCount());
+			assertEquals(RECORD_COUNT, scanner.scan(records));
+		}
+
+		ByteBuffer result = ByteBuffer.wrap(Files.readAllBytes(sidecar));
+		result.order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(RECORD_COUNT * 18, result.capacity());
+		for (int i = 0; i < RECORD_COUNT; i++) {
+			assertEquals(2 * (0xFFFFFFFFL - i) + 1, result.getDouble(i * 8), 0);
+			assertEquals(i % 3 == 0 ? 0 : 15, result.getShort((int) flagsPos + i * 2));
+			assertEquals(-2 * i + 1, result.getDouble((int) ratConvPos + i * 8), 0);
+		}
+	}
+
+	@Test
+	public void testSwapByteOrder() throws IOException {
+		double[] p = new double[] { 0, 1, 0, 0, 0, 1 };
+		try (FileChannel in = FileChannel.open(file.getPath(), StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(sidecar, StandardOpenOption.WRITE)) {
+			// records are read big endian, the value is little endian
+			RecordReader records = new RecordReader(in, RECORD_SIZE, RecordReader.DEFAULT_BUFFER_SIZE);
+			records.addSection(0, RECORD_COUNT * RECORD_SIZE);
+			RecordScanner scanner = new RecordScanner();
+			scanner.addConsumer(new RationalConversionConsumer(out, 0, 1024, 4, ByteOrder.LITTLE_ENDIAN, 16, true, false, p));
+			scanner.scan(records);
+		}
+
+		ByteBuffer result = ByteBuffer.wrap(Files.readAllBytes(sidecar));
+		result.order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < RECORD_COUNT; i++) {
+			assertEquals(-i, result.getDouble(i * 8), 0);
+		}
+	}
+
+}
@@ -0,0 +1,174 @@
+/********************************************************************************
+ * Copyright (c) 2015-2018 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ ********************************************************************************/
+
+
+
+package org.eclipse.mdm.openatfx.mdf.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ValueConversionWriterTest {
+
+	// record: 4 byte unsigned integer (little endian), 8 byte double (big endian)
+	private static final int RECORD_SIZE = 12;
+	private static final int RECORDS_PER_SECTION = 100000;
+
+	private RecordFile file;
+	private Path sidecar;
+
+	@Before
+	public void setUp() throws Exception {
+		// two sections of records, each after 16 bytes of garbage
+		file = RecordFile.create(RECORD_SIZE, 2, RECORDS_PER_SECTION, 16, new RecordFile.RecordLayout() {
+			@Override
+			public void write(ByteBuffer bb, int index) {
+				bb.putInt(0xFFFFFFFF - index);
+				bb.order(ByteOrder.BIG_ENDIAN);
+				bb.putDouble(index * 0.5);
+			}
+		});
+		sidecar = file.createSidecar(".calc");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		file.close();
+	}
+
+	@Test
+	public void testParallelWrite() throws IOException {
+		int count = 2 * RECORDS_PER_SECTION;
+		double[] p = new double[] { 1, 2, 3, 0.5, 0, 4 };
+		RationalConversion uint32 = new RationalConversion(0, ByteOrder.LITTLE_ENDIAN, 32, true, true, p);
+		RationalConversion float64 = new RationalConversion(4, ByteOrder.BIG_ENDIAN, 64, false, false, p);
+		try (FileChannel in = FileChannel.open(file.getPath(), StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(sidecar, StandardOpenOption.WRITE)) {
+			// small buffer, forces many blocks per range
+			RecordAccessor records = new RecordAccessor(RECORD_SIZE, 1000);
+			records.addSection(in, file.getSectionPos(0), file.getSectionLength());
+			records.addSection(in, file.getSectionPos(1), file.getSectionLength());
+
+			ValueConversionWriter writer = new ValueConversionWriter(records, 3);
+			writer.addChannel(uint32, 8);
+			writer.addChannel(float64, 8 + count * 8L);
+			writer.write(out);
+		}
+
+		ByteBuffer result = ByteBuffer.wrap(Files.readAllBytes(sidecar));
+		result.order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(8 + count * 16, result.capacity());
+		for (int i = 0; i < count; i++) {
+			double x = 0xFFFFFFFFL - i;
+			assertEquals((x * x + 2 * x + 3) / (0.5 * x * x + 4), result.getDouble(8 + i * 8), 1e-12);
+			x = i * 0.5;
+			assertEquals((x * x + 2 * x + 3) / (0.5 * x * x + 4), result.getDouble(8 + count * 8 + i * 8), 1e-12);
+		}
+	}
+
+	@Test
+	public void testFormula() throws IOException {
+		int count = 2 * RECORDS_PER_SECTION;
+		Formula formula = Formula.compile("sqrt(X) * 2 + 1");
+		try (FileChannel in = FileChannel.open(file.getPath(), StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(sidecar, StandardOpenOption.WRITE)) {
+			RecordAccessor records = new RecordAccessor(RECORD_SIZE, 1000);
+			records.addSection(in, file.getSectionPos(0), file.getSectionLength());
+			records.addSection(in, file.getSectionPos(1), file.getSectionLength());
+
+			ValueConversionWriter writer = new ValueConversionWriter(records, 2);
+			writer.addChannel(new FormulaConversion(4, ByteOrder.BIG_ENDIAN, 64, false, false, formula), 0);
+			writer.write(out);
+		}
+
+		ByteBuffer result = ByteBuffer.wrap(Files.readAllBytes(sidecar));
+		result.order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(count * 8, result.capacity());
+		for (int i = 0; i < count; i++) {
+			assertEquals(Math.sqrt(i * 0.5) * 2 + 1, result.getDouble(i * 8), 1e-12);
+		}
+	}
+
+	@Test
+	public void testExponentialAndTable() throws IOException {
+		int count = 2 * RECORDS_PER_SECTION;
+		// ln(((x - 1) * 4 + 6) / 2) / 3, p5 is not used
+		ExponentialConversion exponential = new ExponentialConversion(4, ByteOrder.BIG_ENDIAN, 64, false, false,
+				false, new double[] { 2, 3, -6, 0, 5, 4, 1 });
+		// exp((2 / (x + 1) - 6) / 4) / 5, p2 is not used
+		ExponentialConversion logarithmic = new ExponentialConversion(4, ByteOrder.BIG_ENDIAN, 64, false, false,
+				true, new double[] { 0, 3, 2, 4, 5, 6, -1 });
+		TableConversion table = new TableConversion(4, ByteOrder.BIG_ENDIAN, 64, false, false,
+				LookupConversion.lower(new double[] { 0, 1000, 50000 }, new double[] { 1, 2, 3 }));
+		try (FileChannel in = FileChannel.open(file.getPath(), StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(sidecar, StandardOpenOption.WRITE)) {
+			RecordAccessor records = new RecordAccessor(RECORD_SIZE, 1000);
+			records.addSection(in, file.getSectionPos(0), file.getSectionLength());
+			records.addSection(in, file.getSectionPos(1), file.getSectionLength());
+
+			ValueConversionWriter writer = new ValueConversionWriter(records, 2);
+			writer.addChannel(exponential, 0);
+			writer.addChannel(logarithmic, count * 8L);
+			writer.addChannel(table, count * 16L);
+			writer.write(out);
+		}
+
+		ByteBuffer result = ByteBuffer.wrap(Files.readAllBytes(sidecar));
+		result.order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(count * 24, result.capacity());
+		for (int i = 0; i < count; i++) {
+			double x = i * 0.5;
+			double expectedExponential = Math.log(((x - 1) * 4 + 6) / 2) / 3;
+			double expectedLogarithmic = Math.exp((2 / (x + 1) - 6) / 4) / 5;
+			assertEquals(expectedExponential, result.getDouble(i * 8), 1e-12);
+			assertEquals(expectedLogarithmic, result.getDouble(count * 8 + i * 8), 1e-12);
+			assertEquals(expectedExponential, exponential.convert(x), 1e-12);
+			assertEquals(expectedLogarithmic, logarithmic.convert(x), 1e-12);
+			assertEquals(x < 1000 ? 1 : x < 50000 ? 2 : 3, result.getDouble(count * 16 + i * 8), 0);
+		}
+	}
+
+	@Test
+	public void testDecode() {
+		ByteBuffer records = ByteBuffer.allocate(12);
+		records.order(ByteOrder.BIG_ENDIAN);
+		records.put(new byte[] { 0, (byte) 0xFF, (byte) 0xFE, 0, 0x7F, (byte) 0x80 });
+		records.put(new byte[] { 0, 0x01, 0x00, 0, (byte) 0x80, 0x00 });
+
+		// 2 records of 6 bytes with a 16 bit value at offset 1 and 4
+		records.position(0);
+		double[] values = new double[2];
+		new RationalConversion(1, ByteOrder.BIG_ENDIAN, 16, true, true, new double[6]).decode(records, 6, 2, values);
+		assertEquals(0xFFFE, values[0], 0);
+		assertEquals(0x0100, values[1], 0);
+		new RationalConversion(4, ByteOrder.LITTLE_ENDIAN, 16, true, false, new double[6]).decode(records, 6, 2, values);
+		assertEquals((short) 0x807F, values[0], 0);
+		assertEquals(0x0080, values[1], 0);
+		new RationalConversion(2, ByteOrder.BIG_ENDIAN, 8, true, false, new double[6]).decode(records, 6, 2, values);
+		assertEquals(-2, values[0], 0);
+		assertEquals(0, values[1], 0);
+	}
+
+}